@@ -60,6 +60,7 @@ import io.github.tomaso2468.rpgonline.render.Graphics;
 import io.github.tomaso2468.rpgonline.render.RenderException;
 import io.github.tomaso2468.rpgonline.render.RenderMode;
 import io.github.tomaso2468.rpgonline.render.Renderer;
+import io.github.tomaso2468.rpgonline.threading.ContinuousPool;
 import io.github.tomaso2468.rpgonline.transition.BlankTransition;
 import io.github.tomaso2468.rpgonline.transition.Transition;
 import io.github.tomaso2468.rpgonline.world2d.pathfinding.PathFindingManager;
@@ -492,6 +493,12 @@ public class Game {
 				y = drawDebugLineRYWLow(g, "Client Time", ServerManager.client_time / 1000000.0,
 						ServerManager.client_max_time / 1000000.0, ServerManager.client_max_time / 2 / 1000000.0, y,
 						false);
+				if (ServerManager.client_ticks != null) {
+					y = drawDebugLineRYWLow(g, "Client Time (p99)",
+							ServerManager.client_ticks.getPercentile(99) / 1000000.0,
+							ServerManager.client_max_time / 1000000.0, ServerManager.client_max_time / 2 / 1000000.0, y,
+							false);
+				}
 			}
 			if (ServerManager.server_max_time != 0) {
 				if (ServerManager.server_time == 0) {
@@ -506,6 +513,12 @@ public class Game {
 				y = drawDebugLineRYWLow(g, "Server Time", ServerManager.server_time / 1000000.0,
 						ServerManager.server_max_time / 1000000.0, ServerManager.server_max_time / 2 / 1000000.0, y,
 						false);
+				if (ServerManager.server_ticks != null) {
+					y = drawDebugLineRYWLow(g, "Server Time (p99)",
+							ServerManager.server_ticks.getPercentile(99) / 1000000.0,
+							ServerManager.server_max_time / 1000000.0, ServerManager.server_max_time / 2 / 1000000.0, y,
+							false);
+				}
 			}
 
 			y = drawDebugLineRAM(g, "RAM Usage",
@@ -628,9 +641,13 @@ public class Game {
 			y = drawDebugLineLabel(g, "SpriteMap Size", RPGConfig.getAutoSpriteMapSize() + "", y, true);
 			y = drawDebugLineLabel(g, "SpriteMap Enabled", RPGConfig.isMapped() + "", y, true);
 			y = drawDebugLineLabel(g, "Texture Mode", RPGConfig.getFilterMode() + "", y, true);
-			y = drawDebugLineLabel(g, "Path Sleep Delay", RPGConfig.getPathfindingSleepDelay() + "", y, true);
-			y = drawDebugLineLabel(g, "Path Sleep Time", RPGConfig.getPathfindingSleepTime() + "", y, true);
 			y = drawDebugLineLabel(g, "Path Threads", RPGConfig.getPathfindingThreads() + "", y, true);
+			y = drawDebugLineLabel(g, "Path Queue Size", RPGConfig.getPathfindingQueueSize() + "", y, true);
+			ContinuousPool pathPool = PathFindingManager.getPool();
+			if (pathPool != null) {
+				y = drawDebugLineLabel(g, "Path Queue", pathPool.getQueueDepth() + "/" + pathPool.getCapacity(), y, true);
+				y = drawDebugLineLabel(g, "Path Rejected", pathPool.getRejectedCount() + "", y, true);
+			}
 			y = drawDebugLineLabel(g, "Tile Size", RPGConfig.getTileSize() + "", y, true);
 			y = drawDebugLineLabel(g, "Hitbox Rendering", RPGConfig.isHitbox() + "", y, true);
 			y = drawDebugLineLabel(g, "Particles", RPGConfig.isParticles() + "", y, true);
@@ -154,6 +154,12 @@ public final class RPGConfig {
 	 */
 	private static int pathfindingThreads = Math.min(Math.max(2, Runtime.getRuntime().availableProcessors() - 3), 6);
 
+	/**
+	 * The maximum number of queued pathfinding operations.
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.PathFindingManager
+	 */
+	private static int pathfindingQueueSize = 1024;
 	/**
 	 * The time to wait before entering sleep in a pathfinding thread.
 	 * 
@@ -587,11 +593,38 @@ public final class RPGConfig {
 		RPGConfig.pathfindingThreads = pathfindingThreads;
 	}
 
+	/**
+	 * Gets the maximum number of queued pathfinding operations.
+	 * 
+	 * @return A positive int value.
+	 */
+	public static int getPathfindingQueueSize() {
+		return pathfindingQueueSize;
+	}
+
+	/**
+	 * Sets the maximum number of queued pathfinding operations. This must be set
+	 * before the first pathfinding operation. When the queue is full the operation
+	 * with the lowest priority is rejected instead of blocking the caller.
+	 * 
+	 * @param pathfindingQueueSize A positive int value.
+	 */
+	public static void setPathfindingQueueSize(int pathfindingQueueSize) {
+		if (pathfindingQueueSize < 1) {
+			throw new IllegalArgumentException("The pathfinding queue must hold at least one operation.");
+		}
+		RPGConfig.pathfindingQueueSize = pathfindingQueueSize;
+	}
+
 	/**
 	 * Gets the time to wait before entering sleep in a pathfinding thread.
 	 * 
 	 * @return A long value.
+	 * 
+	 * @deprecated Pathfinding threads wait for work without polling so this is no
+	 *             longer used.
 	 */
+	@Deprecated
 	public static long getPathfindingSleepDelay() {
 		return pathfindingSleepDelay;
 	}
@@ -600,7 +633,11 @@ public final class RPGConfig {
 	 * Sets the time to wait before entering sleep in a pathfinding thread.
 	 * 
 	 * @param pathfindingSleepDelay A long value.
+	 * 
+	 * @deprecated Pathfinding threads wait for work without polling so this is no
+	 *             longer used.
 	 */
+	@Deprecated
 	public static void setPathfindingSleepDelay(long pathfindingSleepDelay) {
 		RPGConfig.pathfindingSleepDelay = pathfindingSleepDelay;
 	}
@@ -609,7 +646,11 @@ public final class RPGConfig {
 	 * Gets the time to sleep for in a pathfinding thread.
 	 * 
 	 * @return A long value.
+	 * 
+	 * @deprecated Pathfinding threads wait for work without polling so this is no
+	 *             longer used.
 	 */
+	@Deprecated
 	public static long getPathfindingSleepTime() {
 		return pathfindingSleepTime;
 	}
@@ -618,7 +659,11 @@ public final class RPGConfig {
 	 * Sets the time to sleep for in a pathfinding thread.
 	 * 
 	 * @param pathfindingSleepTime A long value.
+	 * 
+	 * @deprecated Pathfinding threads wait for work without polling so this is no
+	 *             longer used.
 	 */
+	@Deprecated
 	public static void setPathfindingSleepTime(long pathfindingSleepTime) {
 		RPGConfig.pathfindingSleepTime = pathfindingSleepTime;
 	}
@@ -31,14 +31,18 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package io.github.tomaso2468.rpgonline.net;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.newdawn.slick.util.Log;
 
@@ -52,6 +56,7 @@ import io.github.tomaso2468.rpgonline.net.packet.ServerInfoPacket;
 import io.github.tomaso2468.rpgonline.net.packet.SoundPacket;
 import io.github.tomaso2468.rpgonline.net.packet.StopAmbientPacket;
 import io.github.tomaso2468.rpgonline.net.packet.TextPacket;
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
 import io.github.tomaso2468.rpgonline.world2d.LightSource;
 import io.github.tomaso2468.rpgonline.world2d.net.packet.ChunkPacket;
 import io.github.tomaso2468.rpgonline.world2d.net.packet.ChunkRequestPacket;
@@ -63,25 +68,39 @@ import io.github.tomaso2468.rpgonline.world2d.net.packet.WindPacket;
 
 /**
  * A connection that uses TCP over IP to send data. The data is sent as one or
- * more packets and are read in the order they are sent. First, the ID of the
- * packet is sent as an 8bit integer. Next, the data of the packet is sent.
+ * more packets and are read in the order they are sent. Each packet is sent as
+ * a frame. First, the length of the frame is sent as a 32bit integer. Next, the
+ * ID of the packet is sent as an 8bit integer followed by the data of the
+ * packet. Packets are collected into batches that are written with a single
+ * flush. Each connection uses its own reading and writing threads so servers
+ * with many clients should use {@code SelectorPacketConnection} instead.
  * 
  * @author Tomaso2468
  *
+ * @see io.github.tomaso2468.rpgonline.net.SelectorPacketConnection
  */
 public class BasicPacketConnection implements Connection {
 	/**
-	 * The list of packets to send.
+	 * The batches of frames to send.
 	 */
-	private List<NetPacket> toSend = Collections.synchronizedList(new ArrayList<NetPacket>());
+	private final BlockingQueue<ByteBuffer> toSend = new LinkedBlockingQueue<ByteBuffer>();
 	/**
-	 * The list of received packets/
+	 * The packets that have not been passed to the writing thread.
 	 */
-	private List<NetPacket> recieved = Collections.synchronizedList(new ArrayList<NetPacket>());
+	private final PacketBatch batch = new PacketBatch(toSend::add);
+	/**
+	 * The list of received packets.
+	 */
+	private final Queue<NetPacket> recieved = new ConcurrentLinkedQueue<NetPacket>();
+	/**
+	 * An empty batch used to wake up the writing thread when the connection is
+	 * closed.
+	 */
+	private static final ByteBuffer STOP = ByteBuffer.allocate(0);
 	/**
 	 * Determines if the system should be stopped.
 	 */
-	private boolean stopped = false;
+	private volatile boolean stopped = false;
 	/**
 	 * Determines if packets should be logged. This is set to true for encryption setup.
 	 */
@@ -119,6 +138,14 @@ public class BasicPacketConnection implements Connection {
 		types[ModePacket.PACKET_ID & 0xFF] = new ModePacket.Type();
 		types[ChunkPacket.PACKET_ID & 0xFF] = new ChunkPacket.Type();
 		types[EntityAddPacket.PACKET_ID & 0xFF] = new EntityAddPacket.Type();
+		types[UpdatePacket.UString.PACKET_ID & 0xFF] = new UpdatePacket.UString.Type();
+		types[UpdatePacket.ULong.PACKET_ID & 0xFF] = new UpdatePacket.ULong.Type();
+		types[UpdatePacket.UInt.PACKET_ID & 0xFF] = new UpdatePacket.UInt.Type();
+		types[UpdatePacket.UFloat.PACKET_ID & 0xFF] = new UpdatePacket.UFloat.Type();
+		types[UpdatePacket.UDouble.PACKET_ID & 0xFF] = new UpdatePacket.UDouble.Type();
+		types[UpdatePacket.UBoolean.PACKET_ID & 0xFF] = new UpdatePacket.UBoolean.Type();
+		types[UpdatePacket.UTag.PACKET_ID & 0xFF] = new UpdatePacket.UTag.Type();
+		types[UpdatePacket.UBatch.PACKET_ID & 0xFF] = new UpdatePacket.UBatch.Type();
 
 		return types;
 	}
@@ -132,64 +159,93 @@ public class BasicPacketConnection implements Connection {
 		if (types.length != 0x100) {
 			throw new IllegalArgumentException("Type array must be of length 256");
 		}
-		new Thread(toString()) {
+		new Thread(toString() + " Read") {
 			public void run() {
 				try {
-					OutputStream buffer = s.getOutputStream();
-					DataOutputStream out = new DataOutputStream(buffer);
-					DataInputStream in = new DataInputStream(s.getInputStream());
+					DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+					byte[] frame = new byte[256];
 
 					while (!stopped) {
-						while (toSend.size() > 0) {
-							try {
-								if(logPackets) {
-									Log.debug("Writing: " + toSend.get(0));
-								}
-								toSend.get(0).write(out);
-								toSend.remove(0);
-							} catch (IOException e) {
-								Log.error("Error writing packet.", e);
-							}
-							if(logPackets) Log.debug("Write complete.");
+						int length = in.readInt();
+						if (length < 1 || length > PacketBatch.MAX_FRAME_SIZE) {
+							throw new IOException("Invalid frame length: " + length);
 						}
-						out.flush();
-
-						while (in.available() > 0) {
-							try {
-								byte id = (byte) in.read();
-								PacketType type = types[id & 0xFF];
-								if (type == null) {
-									throw new IllegalArgumentException("Unknown packet type: " + id);
-								} else {
-									recieved.add(type.readPacket(in));
-								}
-							} catch (ClassNotFoundException e) {
-								Log.error("Error reading packet.", e);
-							}
-							if(logPackets) Log.debug("Reading.");
+						if (frame.length < length) {
+							frame = new byte[Math.max(length, frame.length * 2)];
 						}
+						in.readFully(frame, 0, length);
 
-						if (s.isClosed()) {
-							stopped = true;
-						}	
-
-						Thread.yield();
+						NetPacket p = PacketBatch.decode(types, frame, length);
+						if (p != null) {
+							recieved.add(p);
+						}
+						if(logPackets) Log.debug("Read: " + p);
+					}
+				} catch (EOFException e) {
+					Log.debug("Connection closed by remote host.");
+				} catch (IOException e) {
+					if (!stopped) {
+						Log.error(e);
 					}
+				} finally {
+					closeSocket(s);
+				}
+			}
+		}.start();
+		new Thread(toString() + " Write") {
+			public void run() {
+				try {
+					OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024);
 
-					s.close();
+					while (true) {
+						ByteBuffer b = toSend.take();
+						do {
+							if (b == STOP) {
+								out.flush();
+								return;
+							}
+							if(logPackets) {
+								Log.debug("Writing " + b.remaining() + " bytes.");
+							}
+							out.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+						} while ((b = toSend.poll()) != null);
+						out.flush();
+					}
 				} catch (IOException e) {
-					Log.error(e);
+					if (!stopped) {
+						Log.error("Error writing packet.", e);
+					}
+				} catch (InterruptedException e) {
+					Log.error("Interrupted while writing packets.", e);
+				} finally {
+					closeSocket(s);
 				}
 			}
 		}.start();
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Stops the connection and closes the socket.
+	 * @param s The socket to close.
+	 */
+	private void closeSocket(Socket s) {
+		stopped = true;
+		toSend.add(STOP);
+		try {
+			s.close();
+		} catch (IOException e) {
+			Log.error("Error closing connection.", e);
+		}
+	}
+
+	/**
+	 * Closes this connection once all packets that have been sent have been
+	 * written.
 	 */
 	@Override
 	public void close() throws IOException {
-		stopped = true;
+		batch.flush();
+		toSend.add(STOP);
 	}
 
 	/**
@@ -197,10 +253,48 @@ public class BasicPacketConnection implements Connection {
 	 */
 	@Override
 	public void send(NetPacket p) throws IOException {
+		if (stopped) {
+			throw new IOException("Connection closed.");
+		}
 		if (logPackets) {
 			Log.debug("Sending " + p);
 		}
-		toSend.add(p);
+		batch.add(p);
+	}
+
+	/**
+	 * Passes all buffered packets to the writing thread to be written with a
+	 * single flush.
+	 */
+	@Override
+	public void flush() throws IOException {
+		batch.flush();
+	}
+
+	/**
+	 * Sets the time to wait for more packets before sending buffered packets.
+	 * @param delay The delay in milliseconds, zero to send every packet at once or
+	 *            a negative number to only send packets when flushed.
+	 */
+	public void setFlushDelay(long delay) {
+		batch.setFlushDelay(delay);
+	}
+
+	/**
+	 * Sets the number of buffered bytes at which packets are sent without
+	 * waiting for a flush.
+	 * @param threshold A positive integer.
+	 */
+	public void setFlushThreshold(int threshold) {
+		batch.setFlushThreshold(threshold);
+	}
+
+	/**
+	 * Determines if this connection has been closed.
+	 * @return {@code true} if the connection is closed, {@code false} otherwise.
+	 */
+	public boolean isClosed() {
+		return stopped;
 	}
 
 	/**
@@ -208,7 +302,7 @@ public class BasicPacketConnection implements Connection {
 	 */
 	@Override
 	public boolean isAvaliable() throws IOException {
-		return recieved.size() > 0;
+		return !recieved.isEmpty();
 	}
 
 	/**
@@ -216,9 +310,7 @@ public class BasicPacketConnection implements Connection {
 	 */
 	@Override
 	public NetPacket getNext() throws IOException {
-		NetPacket p = recieved.get(0);
-		recieved.remove(0);
-		return p;
+		return recieved.poll();
 	}
 
 	/**
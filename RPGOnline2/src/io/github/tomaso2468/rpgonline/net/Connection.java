@@ -81,6 +81,14 @@ public interface Connection extends Closeable {
 	 */
 	public NetPacket getNext() throws IOException;
 
+	/**
+	 * Sends any packets that the connection has buffered. Connections that send
+	 * packets in batches should have this method called once per tick.
+	 * @throws IOException If an error occurs sending data.
+	 */
+	public default void flush() throws IOException {
+	}
+
 	/**
 	 * Encrypts the connection. This method will wait until the encryption is finished.
 	 * @throws IOException If an error occurs sending and receiving data to perform an encryption.
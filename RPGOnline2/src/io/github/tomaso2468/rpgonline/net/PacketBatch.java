@@ -0,0 +1,279 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.newdawn.slick.util.Log;
+
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+
+/**
+ * <p>
+ * A buffer that collects packets into frames so they can be sent with a single
+ * write.
+ * </p>
+ * <p>
+ * Each frame starts with the length of the rest of the frame as a 32bit
+ * integer. Next, the ID of the packet is sent as an 8bit integer followed by
+ * the data of the packet.
+ * </p>
+ * <p>
+ * Buffered frames are passed on when {@code flush()} is called, when the
+ * buffer reaches the flush threshold or when the flush delay has passed since
+ * the first buffered packet. A delay of zero passes every packet on as soon as
+ * it is added. A negative delay only passes packets on when flushed or when the
+ * threshold is reached.
+ * </p>
+ *
+ * @author Tomaso2468
+ */
+class PacketBatch {
+	/**
+	 * The largest frame that will be accepted.
+	 */
+	public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+	/**
+	 * The timer used to flush delayed batches.
+	 */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "Packet Flush Timer");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * The object that sends completed batches.
+	 */
+	private final Consumer<ByteBuffer> sink;
+	/**
+	 * The frames that have not been passed on.
+	 */
+	private FrameBuffer buffer = new FrameBuffer();
+	/**
+	 * The stream used to write packets to the buffer.
+	 */
+	private DataOutputStream data = new DataOutputStream(buffer);
+	/**
+	 * The size in bytes at which a batch is passed on without waiting.
+	 */
+	private int threshold = 16 * 1024;
+	/**
+	 * The time in milliseconds to wait before passing on a batch.
+	 */
+	private long delay = 0;
+	/**
+	 * Determines if a delayed flush has been scheduled.
+	 */
+	private boolean scheduled = false;
+	/**
+	 * The number of packets added.
+	 */
+	private long packets = 0;
+	/**
+	 * The number of batches passed on.
+	 */
+	private long batches = 0;
+
+	/**
+	 * Constructs a new PacketBatch.
+	 *
+	 * @param sink The object that sends completed batches.
+	 */
+	public PacketBatch(Consumer<ByteBuffer> sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Adds a packet to the batch.
+	 *
+	 * @param p The packet to add.
+	 * @throws IOException If the packet could not be encoded.
+	 */
+	public synchronized void add(NetPacket p) throws IOException {
+		int start = buffer.size();
+		data.writeInt(0);
+		try {
+			p.write(data);
+			data.flush();
+		} catch (IOException | RuntimeException e) {
+			buffer.truncate(start);
+			throw e;
+		}
+		int length = buffer.size() - start - 4;
+		if (length > MAX_FRAME_SIZE) {
+			buffer.truncate(start);
+			throw new IOException("Packet too large: " + length);
+		}
+		buffer.putInt(start, length);
+		packets += 1;
+
+		if (delay == 0 || buffer.size() >= threshold) {
+			flush();
+		} else if (delay > 0 && !scheduled) {
+			scheduled = true;
+			TIMER.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Passes all buffered frames on to be sent.
+	 */
+	public synchronized void flush() {
+		scheduled = false;
+		if (buffer.size() == 0) {
+			return;
+		}
+		ByteBuffer b = buffer.toByteBuffer();
+		buffer = new FrameBuffer();
+		data = new DataOutputStream(buffer);
+		batches += 1;
+		sink.accept(b);
+	}
+
+	/**
+	 * Sets the size in bytes at which a batch is passed on without waiting.
+	 *
+	 * @param threshold A positive integer.
+	 */
+	public synchronized void setFlushThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Sets the time to wait before passing on a batch.
+	 *
+	 * @param delay The delay in milliseconds, zero to pass on every packet at once
+	 *            or a negative number to only pass on packets when flushed.
+	 */
+	public synchronized void setFlushDelay(long delay) {
+		this.delay = delay;
+		if (delay == 0) {
+			flush();
+		}
+	}
+
+	/**
+	 * Gets the number of packets added to this batch.
+	 *
+	 * @return A long value.
+	 */
+	public synchronized long getPacketCount() {
+		return packets;
+	}
+
+	/**
+	 * Gets the number of batches passed on to be sent.
+	 *
+	 * @return A long value.
+	 */
+	public synchronized long getBatchCount() {
+		return batches;
+	}
+
+	/**
+	 * Decodes the packet in a frame.
+	 *
+	 * @param types The array of packet types indexed by ID.
+	 * @param frame The frame data without the length field.
+	 * @param length The length of the frame data.
+	 * @return A packet or {@code null} if the packet could not be read.
+	 */
+	public static NetPacket decode(PacketType[] types, byte[] frame, int length) {
+		byte id = frame[0];
+		PacketType type = types[id & 0xFF];
+		if (type == null) {
+			Log.error("Unknown packet type: " + id);
+			return null;
+		}
+		try {
+			return type.readPacket(new DataInputStream(new ByteArrayInputStream(frame, 1, length - 1)));
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			Log.error("Error reading packet.", e);
+			return null;
+		}
+	}
+
+	/**
+	 * A byte array stream that allows frame lengths to be filled in after the
+	 * frame has been written.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class FrameBuffer extends ByteArrayOutputStream {
+		/**
+		 * Constructs a new FrameBuffer.
+		 */
+		public FrameBuffer() {
+			super(256);
+		}
+
+		/**
+		 * Writes a 32bit integer at a position that has already been written.
+		 *
+		 * @param index The position to write at.
+		 * @param v The value to write.
+		 */
+		public void putInt(int index, int v) {
+			buf[index] = (byte) (v >>> 24);
+			buf[index + 1] = (byte) (v >>> 16);
+			buf[index + 2] = (byte) (v >>> 8);
+			buf[index + 3] = (byte) v;
+		}
+
+		/**
+		 * Removes all data after a position.
+		 *
+		 * @param size The new size of the buffer.
+		 */
+		public void truncate(int size) {
+			count = size;
+		}
+
+		/**
+		 * Wraps the data in this buffer without copying it.
+		 *
+		 * @return A byte buffer.
+		 */
+		public ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * A small fixed group of threads that perform IO for many
+ * {@code SelectorPacketConnection} objects. Each thread owns a selector and
+ * only wakes up when one of its connections can be read from or written to.
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.net.SelectorPacketConnection
+ */
+public class PacketSelector implements Closeable {
+	/**
+	 * The shared selector used when no selector is specified.
+	 */
+	private static PacketSelector defaultSelector;
+	/**
+	 * The IO threads of this selector.
+	 */
+	private final Worker[] workers;
+	/**
+	 * The index of the next thread to give a connection to.
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Constructs a new PacketSelector and starts its threads.
+	 *
+	 * @param threads The number of IO threads to use.
+	 * @throws IOException If a selector could not be opened.
+	 */
+	public PacketSelector(int threads) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive: " + threads);
+		}
+		workers = new Worker[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(Selector.open(), "Packet Selector " + i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Gets the shared selector used when no selector is specified. The selector
+	 * is created with one thread for every two processors (up to 4) the first time
+	 * it is used.
+	 *
+	 * @return A packet selector.
+	 * @throws IOException If a selector could not be opened.
+	 */
+	public static synchronized PacketSelector getDefault() throws IOException {
+		if (defaultSelector == null) {
+			defaultSelector = new PacketSelector(
+					Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+		}
+		return defaultSelector;
+	}
+
+	/**
+	 * Assigns a connection to one of the IO threads.
+	 *
+	 * @param c The connection to add.
+	 * @return The thread that will perform IO for the connection.
+	 */
+	Worker register(SelectorPacketConnection c) {
+		Worker w = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+		w.request(c);
+		return w;
+	}
+
+	/**
+	 * Gets the number of IO threads used by this selector.
+	 *
+	 * @return A positive integer.
+	 */
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+	/**
+	 * Stops all IO threads. Connections using this selector are closed without
+	 * sending any remaining packets.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Worker w : workers) {
+			w.running = false;
+			w.selector.wakeup();
+		}
+	}
+
+	/**
+	 * A thread that performs IO for a set of connections.
+	 *
+	 * @author Tomaso2468
+	 */
+	static class Worker extends Thread {
+		/**
+		 * The selector used to wait for IO.
+		 */
+		private final Selector selector;
+		/**
+		 * The connections that need to be registered or have packets to send.
+		 */
+		private final Queue<SelectorPacketConnection> requests = new ConcurrentLinkedQueue<SelectorPacketConnection>();
+		/**
+		 * Determines if this thread should keep running.
+		 */
+		private volatile boolean running = true;
+
+		/**
+		 * Constructs a new Worker.
+		 *
+		 * @param selector The selector to use.
+		 * @param name The name of the thread.
+		 */
+		private Worker(Selector selector, String name) {
+			super(name);
+			this.selector = selector;
+			setDaemon(true);
+		}
+
+		/**
+		 * Asks this thread to process a connection on its next wake up.
+		 *
+		 * @param c The connection to process.
+		 */
+		void request(SelectorPacketConnection c) {
+			requests.add(c);
+			selector.wakeup();
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			while (running) {
+				try {
+					selector.select();
+				} catch (IOException e) {
+					Log.error("Error waiting for IO.", e);
+					break;
+				}
+
+				SelectorPacketConnection c;
+				while ((c = requests.poll()) != null) {
+					try {
+						c.process(selector);
+					} catch (IOException e) {
+						Log.error("Error writing packets.", e);
+						c.closeNow();
+					}
+				}
+
+				Iterator<SelectionKey> i = selector.selectedKeys().iterator();
+				while (i.hasNext()) {
+					SelectionKey key = i.next();
+					i.remove();
+					c = (SelectorPacketConnection) key.attachment();
+					try {
+						if (key.isValid() && key.isReadable()) {
+							c.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							c.write();
+						}
+					} catch (IOException e) {
+						Log.error("Connection error.", e);
+						c.closeNow();
+					}
+				}
+			}
+
+			for (SelectionKey key : selector.keys()) {
+				((SelectorPacketConnection) key.attachment()).closeNow();
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				Log.error("Error closing selector.", e);
+			}
+		}
+	}
+}
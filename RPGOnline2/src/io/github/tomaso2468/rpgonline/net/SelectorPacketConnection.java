@@ -0,0 +1,426 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.newdawn.slick.util.Log;
+
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+
+/**
+ * <p>
+ * A connection that uses non-blocking TCP channels to send data. IO is
+ * performed by the threads of a {@code PacketSelector} so many connections can
+ * share a few threads.
+ * </p>
+ * <p>
+ * Each packet is sent as a frame. First, the length of the frame is sent as a
+ * 32bit integer. Next, the ID of the packet is sent as an 8bit integer followed
+ * by the data of the packet. The packet types used to read packets are the same
+ * as those used by {@code BasicPacketConnection}.
+ * </p>
+ * <p>
+ * Packets are collected into batches that are written together. By default
+ * every packet is sent as soon as possible. Servers should set a flush delay
+ * and call {@code flush()} once per tick so that all packets sent during the
+ * tick are written at once.
+ * </p>
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.net.PacketSelector
+ * @see io.github.tomaso2468.rpgonline.net.BasicPacketConnection#basicTypes()
+ */
+public class SelectorPacketConnection implements Connection {
+	/**
+	 * The initial size of the IO buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/**
+	 * The channel used for IO.
+	 */
+	private final SocketChannel channel;
+	/**
+	 * The array of packet types indexed by ID.
+	 */
+	private final PacketType[] types;
+	/**
+	 * The thread performing IO for this connection.
+	 */
+	private final PacketSelector.Worker worker;
+	/**
+	 * The batches of frames waiting to be sent.
+	 */
+	private final Queue<ByteBuffer> toSend = new ConcurrentLinkedQueue<ByteBuffer>();
+	/**
+	 * The packets that have not been passed to the IO thread.
+	 */
+	private final PacketBatch batch = new PacketBatch(this::queue);
+	/**
+	 * The received packets.
+	 */
+	private final Queue<NetPacket> recieved = new ConcurrentLinkedQueue<NetPacket>();
+	/**
+	 * Determines if this connection is waiting for the IO thread to send packets.
+	 */
+	private final AtomicBoolean writeRequested = new AtomicBoolean();
+	/**
+	 * The buffer holding incomplete frames.
+	 */
+	private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	/**
+	 * The array used to decode frames.
+	 */
+	private byte[] frame = new byte[256];
+	/**
+	 * The buffer holding data that is being written to the channel.
+	 */
+	private final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	/**
+	 * The key of the channel or {@code null} if the channel has not been
+	 * registered.
+	 */
+	private SelectionKey key;
+	/**
+	 * Determines if the connection should close once all packets have been sent.
+	 */
+	private volatile boolean closing = false;
+	/**
+	 * Determines if the connection has been closed.
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructs a new SelectorPacketConnection using the default packet types and
+	 * selector.
+	 *
+	 * @param channel The connected channel to use.
+	 * @throws IOException If an error occurs setting up the channel.
+	 */
+	public SelectorPacketConnection(SocketChannel channel) throws IOException {
+		this(channel, BasicPacketConnection.basicTypes());
+	}
+
+	/**
+	 * Constructs a new SelectorPacketConnection using the default selector.
+	 *
+	 * @param channel The connected channel to use.
+	 * @param types The array of packet types.
+	 * @throws IOException If an error occurs setting up the channel.
+	 */
+	public SelectorPacketConnection(SocketChannel channel, PacketType[] types) throws IOException {
+		this(channel, types, PacketSelector.getDefault());
+	}
+
+	/**
+	 * Constructs a new SelectorPacketConnection.
+	 *
+	 * @param channel The connected channel to use.
+	 * @param types The array of packet types.
+	 * @param selector The selector to perform IO on.
+	 * @throws IOException If an error occurs setting up the channel.
+	 */
+	public SelectorPacketConnection(SocketChannel channel, PacketType[] types, PacketSelector selector)
+			throws IOException {
+		if (types.length != 0x100) {
+			throw new IllegalArgumentException("Type array must be of length 256");
+		}
+		this.channel = channel;
+		this.types = types;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		this.worker = selector.register(this);
+	}
+
+	/**
+	 * Opens a connection to a server.
+	 *
+	 * @param address The address to connect to.
+	 * @param port The port to connect to.
+	 * @return A new connection using the default packet types and selector.
+	 * @throws IOException If the connection could not be opened.
+	 */
+	public static SelectorPacketConnection connect(String address, int port) throws IOException {
+		return new SelectorPacketConnection(SocketChannel.open(new InetSocketAddress(address, port)));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void send(NetPacket p) throws IOException {
+		if (closing) {
+			throw new IOException("Connection closed.");
+		}
+		batch.add(p);
+	}
+
+	/**
+	 * Passes all buffered packets to the IO thread to be written in a single
+	 * batch.
+	 */
+	@Override
+	public void flush() throws IOException {
+		batch.flush();
+	}
+
+	/**
+	 * Sets the time to wait for more packets before sending buffered packets.
+	 *
+	 * @param delay The delay in milliseconds, zero to send every packet at once or
+	 *            a negative number to only send packets when flushed.
+	 */
+	public void setFlushDelay(long delay) {
+		batch.setFlushDelay(delay);
+	}
+
+	/**
+	 * Sets the number of buffered bytes at which packets are sent without
+	 * waiting for a flush.
+	 *
+	 * @param threshold A positive integer.
+	 */
+	public void setFlushThreshold(int threshold) {
+		batch.setFlushThreshold(threshold);
+	}
+
+	/**
+	 * Gets the number of batches of packets that have been passed to the IO
+	 * thread.
+	 *
+	 * @return A long value.
+	 */
+	public long getBatchCount() {
+		return batch.getBatchCount();
+	}
+
+	/**
+	 * Adds a batch of frames to the queue of data to write.
+	 *
+	 * @param frames The frames to write.
+	 */
+	private void queue(ByteBuffer frames) {
+		toSend.add(frames);
+		if (writeRequested.compareAndSet(false, true)) {
+			worker.request(this);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isAvaliable() throws IOException {
+		return !recieved.isEmpty();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NetPacket getNext() throws IOException {
+		return recieved.poll();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void encrypt() throws IOException {
+		throw new UnsupportedOperationException("encrypt");
+	}
+
+	/**
+	 * Closes this connection once all packets waiting to be sent have been sent.
+	 */
+	@Override
+	public void close() throws IOException {
+		batch.flush();
+		closing = true;
+		if (writeRequested.compareAndSet(false, true)) {
+			worker.request(this);
+		}
+	}
+
+	/**
+	 * Determines if this connection has been closed.
+	 *
+	 * @return {@code true} if the connection is closed, {@code false} otherwise.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Gets the number of batches waiting to be written.
+	 *
+	 * @return A positive integer.
+	 */
+	public int getSendQueueSize() {
+		return toSend.size();
+	}
+
+	/**
+	 * Registers the channel if needed and sends any waiting packets. This method
+	 * is called on the IO thread.
+	 *
+	 * @param selector The selector of the IO thread.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	void process(Selector selector) throws IOException {
+		if (closed) {
+			return;
+		}
+		if (key == null) {
+			key = channel.register(selector, SelectionKey.OP_READ, this);
+		}
+		writeRequested.set(false);
+		write();
+	}
+
+	/**
+	 * Reads all available data from the channel and decodes all complete frames.
+	 * This method is called on the IO thread.
+	 *
+	 * @throws IOException If an error occurs reading data.
+	 */
+	void read() throws IOException {
+		int count = channel.read(in);
+		if (count < 0) {
+			closeNow();
+			return;
+		}
+
+		in.flip();
+		while (in.remaining() >= 4) {
+			int length = in.getInt(in.position());
+			if (length < 1 || length > PacketBatch.MAX_FRAME_SIZE) {
+				throw new IOException("Invalid frame length: " + length);
+			}
+			if (in.remaining() < length + 4) {
+				if (length + 4 > in.capacity()) {
+					ByteBuffer b = ByteBuffer.allocateDirect(length + 4);
+					b.put(in);
+					in = b;
+					return;
+				}
+				break;
+			}
+			in.getInt();
+			if (frame.length < length) {
+				frame = new byte[Math.max(length, frame.length * 2)];
+			}
+			in.get(frame, 0, length);
+			NetPacket p = PacketBatch.decode(types, frame, length);
+			if (p != null) {
+				recieved.add(p);
+			}
+		}
+		in.compact();
+	}
+
+	/**
+	 * Writes as many waiting frames to the channel as it will accept. Write
+	 * interest is only kept while data remains. This method is called on the IO
+	 * thread.
+	 *
+	 * @throws IOException If an error occurs writing data.
+	 */
+	void write() throws IOException {
+		while (true) {
+			ByteBuffer frame;
+			while (out.hasRemaining() && (frame = toSend.peek()) != null) {
+				if (frame.remaining() <= out.remaining()) {
+					out.put(frame);
+					toSend.poll();
+				} else {
+					int limit = frame.limit();
+					frame.limit(frame.position() + out.remaining());
+					out.put(frame);
+					frame.limit(limit);
+				}
+			}
+
+			out.flip();
+			if (!out.hasRemaining()) {
+				out.clear();
+				break;
+			}
+			channel.write(out);
+			boolean blocked = out.hasRemaining();
+			out.compact();
+			if (blocked) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+		}
+
+		key.interestOps(SelectionKey.OP_READ);
+		if (closing && toSend.isEmpty()) {
+			closeNow();
+		}
+	}
+
+	/**
+	 * Closes the channel immediately.
+	 */
+	void closeNow() {
+		closed = true;
+		closing = true;
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			Log.error("Error closing connection.", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SelectorPacketConnection[" + channel + "]";
+	}
+}
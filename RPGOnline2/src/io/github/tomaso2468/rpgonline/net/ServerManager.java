@@ -73,6 +73,14 @@ public final class ServerManager {
 	 * The maximum time of a server tick in nanoseconds.
 	 */
 	public static long client_max_time;
+	/**
+	 * The times of all server ticks or null if no server has been started.
+	 */
+	public static TickHistogram server_ticks;
+	/**
+	 * The times of all client ticks or null if no client has been started.
+	 */
+	public static TickHistogram client_ticks;
 	
 	/**
 	 * Gets the currently used client instance.
@@ -45,20 +45,27 @@ import io.github.tomaso2468.rpgonline.debug.DebugFrame;
  */
 public interface TickBased {
 	/**
-	 * Start the system.
+	 * Start the system. The system is initialised and then ticked by a
+	 * {@code TickScheduler} on a new thread.
+	 * 
+	 * @see #createScheduler()
 	 */
 	public default void start() {
 		new Thread(getMainThreadName()) {
 			public void run() {
 				Thread.currentThread().setUncaughtExceptionHandler(new GameExceptionHandler());
 
-				long last_update = System.nanoTime();
+				TickScheduler scheduler = createScheduler();
 
 				if (ServerManager.getServer() == TickBased.this) {
-					ServerManager.server_max_time = (long) (1000000000 / getTickSpeed());
+					ServerManager.server_max_time = scheduler.getPeriod();
+					ServerManager.server_ticks = scheduler.getTickTimes();
+					scheduler.setTickListener(t -> ServerManager.server_time = t);
 				}
 				if (ServerManager.getClient() == TickBased.this) {
-					ServerManager.client_max_time = (long) (1000000000 / getTickSpeed());
+					ServerManager.client_max_time = scheduler.getPeriod();
+					ServerManager.client_ticks = scheduler.getTickTimes();
+					scheduler.setTickListener(t -> ServerManager.client_time = t);
 				}
 				
 				try {
@@ -80,73 +87,26 @@ public interface TickBased {
 						return;
 					}
 				}
-				try {
-					while (true) {
-						double delta = (System.nanoTime() - last_update) / 1000000000.0;
-						if(delta > 0.5) {
-							delta = 0.5;
-						}
-						last_update = System.nanoTime();
-						update(delta);
-						if (System.nanoTime() - last_update > (1000000000 / getTickSpeed())) {
-							if (System.nanoTime() - last_update - 1000000000 / getTickSpeed() > 32000) {
-								Log.warn(getType() + " is running "
-										+ (System.nanoTime() - last_update - 1000000000 / getTickSpeed()) / 1000000
-										+ " millis behind.");
-							}
-						}
-						if (ServerManager.getServer() == TickBased.this) {
-							ServerManager.server_time = System.nanoTime() - last_update;
-						}
-						if (ServerManager.getClient() == TickBased.this) {
-							ServerManager.client_time = System.nanoTime() - last_update;
-						}
-						while (System.nanoTime() - last_update < (1000000000 / getTickSpeed())) {
-							Thread.yield();
-						}
-					}
-				} catch (Exception e) {
-					Log.error("Error in " + getType() + " thread.", e);
-
-					try {
-						Thread.sleep(1000);
-					} catch (InterruptedException e1) {
-						Log.error(e);
-					}
-
-					Log.info("Re-entering " + getType() + " loop.");
-					try {
-						while (true) {
-							double delta = (System.nanoTime() - last_update) / 1000000000.0;
-							last_update = System.nanoTime();
-							update(delta);
-							if (System.nanoTime() - last_update > (1000000000 / getTickSpeed())) {
-								if (System.nanoTime() - last_update - 1000000000 / getTickSpeed() > 32000) {
-									Log.warn(getType() + " is running "
-											+ (System.nanoTime() - last_update - 1000000000 / getTickSpeed()) / 1000000
-											+ " millis behind.");
-								}
-							}
-							while (System.nanoTime() - last_update < (1000000000 / getTickSpeed())) {
-								Thread.yield();
-							}
-							if (ServerManager.getServer() == TickBased.this) {
-								ServerManager.server_time = System.nanoTime() - last_update;
-							}
-							if (ServerManager.getClient() == TickBased.this) {
-								ServerManager.client_time = System.nanoTime() - last_update;
-							}
-						}
-					} catch (Exception e2) {
-						Log.error(
-								getTypeTitle() + " loop failed again. Assuming the error will repeat indefinetly. Stopping " + getType() + ".",
-								e2);
-
-					}
-				}
+				
+				scheduler.run();
 			}
 		}.start();
 	}
+	/**
+	 * Creates the scheduler used to tick this system. By default
+	 * {@code update(double)} is run in the {@code WORLD} phase. Systems can
+	 * override this to add tasks to other phases or to keep a reference to the
+	 * scheduler so that it can be stopped.
+	 * 
+	 * @return A new tick scheduler.
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.net.TickScheduler
+	 */
+	public default TickScheduler createScheduler() {
+		TickScheduler scheduler = new TickScheduler(getType(), getTickSpeed());
+		scheduler.addTask(TickPhase.WORLD, this::update);
+		return scheduler;
+	}
 	/**
 	 * Gets the type of the system.
 	 * @return {@code server} if this is a server, {@code client} if this is a client and a lowercase classname if this is anything else.
@@ -0,0 +1,196 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+/**
+ * <p>
+ * A histogram of tick times in nanoseconds.
+ * </p>
+ * <p>
+ * Times are counted in buckets that grow with the size of the time so that
+ * each bucket is at most an eighth of its lower bound wide. This keeps
+ * percentiles accurate to about 12.5% while using a fixed amount of memory
+ * and no allocation when recording.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.net.TickScheduler
+ */
+public class TickHistogram {
+	/**
+	 * The number of bits used to split each power of two.
+	 */
+	private static final int SUB_BITS = 3;
+	/**
+	 * The number of buckets in each power of two.
+	 */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	/**
+	 * The counts of each bucket.
+	 */
+	private final long[] counts = new long[(64 - SUB_BITS) * SUB_COUNT];
+	/**
+	 * The number of recorded times.
+	 */
+	private long count;
+	/**
+	 * The sum of all recorded times.
+	 */
+	private long total;
+	/**
+	 * The largest recorded time.
+	 */
+	private long max;
+
+	/**
+	 * Records a time.
+	 * 
+	 * @param nanos The time in nanoseconds. Negative times are counted as zero.
+	 */
+	public synchronized void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts[bucket(nanos)] += 1;
+		count += 1;
+		total += nanos;
+		if (nanos > max) {
+			max = nanos;
+		}
+	}
+
+	/**
+	 * Gets the number of recorded times.
+	 * 
+	 * @return A long value.
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the largest recorded time.
+	 * 
+	 * @return A time in nanoseconds or 0 if no times have been recorded.
+	 */
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the mean of the recorded times.
+	 * 
+	 * @return A time in nanoseconds or 0 if no times have been recorded.
+	 */
+	public synchronized double getMean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * Gets the time that a percentage of recorded times are less than or equal
+	 * to.
+	 * 
+	 * @param percentile A percentage between 0 and 100.
+	 * @return The upper bound of the bucket containing the percentile in
+	 *         nanoseconds or 0 if no times have been recorded.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(count * Math.max(0, Math.min(100, percentile)) / 100);
+		if (target < 1) {
+			target = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(upperBound(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Removes all recorded times.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", count, getMean() / 1000000,
+				getPercentile(50) / 1000000.0, getPercentile(99) / 1000000.0, max / 1000000.0);
+	}
+
+	/**
+	 * Gets the bucket that a time is counted in.
+	 * 
+	 * @param v A positive time.
+	 * @return A bucket index.
+	 */
+	static int bucket(long v) {
+		if (v < SUB_COUNT) {
+			return (int) v;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	/**
+	 * Gets the largest time counted in a bucket.
+	 * 
+	 * @param bucket A bucket index.
+	 * @return A time in nanoseconds.
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+		int sub = bucket % SUB_COUNT;
+		long upper = ((long) (SUB_COUNT + sub + 1) << (exp - SUB_BITS)) - 1;
+		return upper < 0 ? Long.MAX_VALUE : upper;
+	}
+}
@@ -0,0 +1,477 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+import org.newdawn.slick.util.Log;
+
+/**
+ * <p>
+ * Runs tasks at a fixed tick rate.
+ * </p>
+ * <p>
+ * Each tick runs the tasks of every {@code TickPhase} in order. The tasks of a
+ * phase marked as parallel are independent of each other and are run at the
+ * same time on a fork-join pool. The tick finishes once every task of the last
+ * phase has finished.
+ * </p>
+ * <p>
+ * Ticks use a fixed timestep. If a tick overruns, the following ticks are run
+ * without waiting until the scheduler has caught up. At most
+ * {@code getMaxCatchUp()} ticks are run back to back, after which the remaining
+ * missed ticks are skipped. Between ticks the thread is parked rather than
+ * spinning.
+ * </p>
+ * <p>
+ * The time taken by each tick and by each phase is recorded in a
+ * {@code TickHistogram}.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.net.TickBased
+ * @see io.github.tomaso2468.rpgonline.net.TickPhase
+ */
+public class TickScheduler implements Runnable {
+	/**
+	 * The phases in order.
+	 */
+	private static final TickPhase[] PHASES = TickPhase.values();
+	/**
+	 * The name used in log messages.
+	 */
+	private final String name;
+	/**
+	 * The length of a tick in nanoseconds.
+	 */
+	private final long period;
+	/**
+	 * The tasks of each phase.
+	 */
+	private final List<List<TickTask>> tasks = new ArrayList<List<TickTask>>(PHASES.length);
+	/**
+	 * Determines which phases have independent tasks.
+	 */
+	private final boolean[] parallel = new boolean[PHASES.length];
+	/**
+	 * The time taken by each tick.
+	 */
+	private final TickHistogram tickTimes = new TickHistogram();
+	/**
+	 * The time taken by each phase.
+	 */
+	private final TickHistogram[] phaseTimes = new TickHistogram[PHASES.length];
+	/**
+	 * The pool used to run parallel phases.
+	 */
+	private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+	/**
+	 * The maximum number of ticks to run without waiting.
+	 */
+	private volatile int maxCatchUp = 5;
+	/**
+	 * The number of failed ticks in a row after which the scheduler stops.
+	 */
+	private volatile int maxFailures = 2;
+	/**
+	 * An object that is told the time of each completed tick.
+	 */
+	private volatile LongConsumer listener;
+	/**
+	 * Determines if the scheduler is running.
+	 */
+	private volatile boolean running;
+	/**
+	 * Determines if the scheduler has been stopped. This is never cleared so a
+	 * stop requested before the scheduler thread starts is not lost.
+	 */
+	private volatile boolean stopped;
+	/**
+	 * The thread running the scheduler.
+	 */
+	private volatile Thread thread;
+	/**
+	 * The number of ticks run.
+	 */
+	private volatile long ticks;
+	/**
+	 * The number of ticks skipped to catch up.
+	 */
+	private volatile long skipped;
+
+	/**
+	 * Constructs a new TickScheduler.
+	 * 
+	 * @param name      The name used in log messages.
+	 * @param tickSpeed The number of ticks per second.
+	 */
+	public TickScheduler(String name, double tickSpeed) {
+		if (!(tickSpeed > 0)) {
+			throw new IllegalArgumentException("Tick speed must be positive: " + tickSpeed);
+		}
+		this.name = name;
+		this.period = Math.max(1, (long) (1000000000 / tickSpeed));
+		for (int i = 0; i < PHASES.length; i++) {
+			tasks.add(new CopyOnWriteArrayList<TickTask>());
+			phaseTimes[i] = new TickHistogram();
+		}
+	}
+
+	/**
+	 * Adds a task to a phase. Tasks of a phase are run in the order they were
+	 * added unless the phase is parallel.
+	 * 
+	 * @param phase The phase to run the task in.
+	 * @param task  The task to add.
+	 */
+	public void addTask(TickPhase phase, TickTask task) {
+		tasks.get(phase.ordinal()).add(task);
+	}
+
+	/**
+	 * Removes a task from a phase.
+	 * 
+	 * @param phase The phase the task was added to.
+	 * @param task  The task to remove.
+	 */
+	public void removeTask(TickPhase phase, TickTask task) {
+		tasks.get(phase.ordinal()).remove(task);
+	}
+
+	/**
+	 * Sets whether the tasks of a phase are independent and can be run at the
+	 * same time.
+	 * 
+	 * @param phase    The phase to change.
+	 * @param parallel {@code true} to run the tasks on the fork-join pool,
+	 *                 {@code false} to run them in order on the scheduler thread.
+	 */
+	public void setParallel(TickPhase phase, boolean parallel) {
+		this.parallel[phase.ordinal()] = parallel;
+	}
+
+	/**
+	 * Determines if the tasks of a phase are run at the same time.
+	 * 
+	 * @param phase The phase to check.
+	 * @return {@code true} if the phase is parallel, {@code false} otherwise.
+	 */
+	public boolean isParallel(TickPhase phase) {
+		return parallel[phase.ordinal()];
+	}
+
+	/**
+	 * Sets the pool used to run parallel phases.
+	 * 
+	 * @param pool A fork-join pool.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the maximum number of ticks that are run without waiting when the
+	 * scheduler is behind.
+	 * 
+	 * @param maxCatchUp A positive integer.
+	 */
+	public void setMaxCatchUp(int maxCatchUp) {
+		if (maxCatchUp < 1) {
+			throw new IllegalArgumentException("Catch up limit must be positive: " + maxCatchUp);
+		}
+		this.maxCatchUp = maxCatchUp;
+	}
+
+	/**
+	 * Gets the maximum number of ticks that are run without waiting when the
+	 * scheduler is behind.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getMaxCatchUp() {
+		return maxCatchUp;
+	}
+
+	/**
+	 * Sets the number of failed ticks in a row after which the scheduler stops.
+	 * 
+	 * @param maxFailures A positive integer.
+	 */
+	public void setMaxFailures(int maxFailures) {
+		if (maxFailures < 1) {
+			throw new IllegalArgumentException("Failure limit must be positive: " + maxFailures);
+		}
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * Sets the object that is told the time of each completed tick.
+	 * 
+	 * @param listener A listener that is passed the tick time in nanoseconds or
+	 *                 {@code null}.
+	 */
+	public void setTickListener(LongConsumer listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Gets the length of a tick.
+	 * 
+	 * @return A time in nanoseconds.
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * Gets the time taken by each tick.
+	 * 
+	 * @return A histogram of times in nanoseconds.
+	 */
+	public TickHistogram getTickTimes() {
+		return tickTimes;
+	}
+
+	/**
+	 * Gets the time taken by a phase of each tick.
+	 * 
+	 * @param phase The phase to get times for.
+	 * @return A histogram of times in nanoseconds.
+	 */
+	public TickHistogram getPhaseTimes(TickPhase phase) {
+		return phaseTimes[phase.ordinal()];
+	}
+
+	/**
+	 * Gets the number of ticks that have been run.
+	 * 
+	 * @return A long value.
+	 */
+	public long getTickCount() {
+		return ticks;
+	}
+
+	/**
+	 * Gets the number of ticks that were skipped because the scheduler was too
+	 * far behind.
+	 * 
+	 * @return A long value.
+	 */
+	public long getSkippedCount() {
+		return skipped;
+	}
+
+	/**
+	 * Determines if the scheduler is running.
+	 * 
+	 * @return {@code true} if the scheduler is running, {@code false} otherwise.
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+
+	/**
+	 * Starts the scheduler on a new thread.
+	 * 
+	 * @param threadName The name of the thread.
+	 * @return The thread running the scheduler.
+	 */
+	public Thread start(String threadName) {
+		Thread t = new Thread(this, threadName);
+		t.start();
+		return t;
+	}
+
+	/**
+	 * Stops the scheduler once the current tick has finished. A stopped scheduler
+	 * cannot be started again.
+	 */
+	public void stop() {
+		stopped = true;
+		Thread t = thread;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+	}
+
+	/**
+	 * Runs ticks on the current thread until the scheduler is stopped, the
+	 * thread is interrupted or too many ticks fail in a row.
+	 */
+	@Override
+	public void run() {
+		thread = Thread.currentThread();
+		running = true;
+		int failures = 0;
+		long next = System.nanoTime();
+		try {
+			while (!stopped && !Thread.currentThread().isInterrupted()) {
+				long start = System.nanoTime();
+				try {
+					tick();
+					failures = 0;
+				} catch (Exception e) {
+					failures += 1;
+					if (failures >= maxFailures) {
+						Log.error(TickBased.toTitleCase(name) + " failed " + failures
+								+ " ticks in a row. Assuming the error will repeat indefinetly. Stopping " + name + ".",
+								e);
+						break;
+					}
+					Log.error("Error in " + name + " tick.", e);
+					waitUntil(System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+					next = System.nanoTime();
+					continue;
+				}
+				long end = System.nanoTime();
+				long time = end - start;
+				tickTimes.record(time);
+				ticks += 1;
+				LongConsumer l = listener;
+				if (l != null) {
+					l.accept(time);
+				}
+
+				next += period;
+				long behind = end - next;
+				if (behind >= maxCatchUp * period) {
+					long skip = behind / period - maxCatchUp + 1;
+					skipped += skip;
+					next += skip * period;
+					Log.warn(TickBased.toTitleCase(name) + " is running " + behind / 1000000 + " millis behind. Skipping " + skip
+							+ " ticks.");
+				}
+				waitUntil(next);
+			}
+		} finally {
+			running = false;
+			thread = null;
+		}
+	}
+
+	/**
+	 * Runs a single tick on the current thread.
+	 * 
+	 * @throws Exception If a task fails.
+	 */
+	public void tick() throws Exception {
+		double delta = period / 1000000000.0;
+		for (int i = 0; i < PHASES.length; i++) {
+			List<TickTask> phase = tasks.get(i);
+			if (phase.isEmpty()) {
+				continue;
+			}
+			long start = System.nanoTime();
+			if (parallel[i] && phase.size() > 1) {
+				runParallel(phase, delta);
+			} else {
+				for (TickTask t : phase) {
+					t.tick(delta);
+				}
+			}
+			phaseTimes[i].record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Runs the tasks of a phase on the fork-join pool and waits for all of them
+	 * to finish.
+	 * 
+	 * @param phase The tasks to run.
+	 * @param delta The length of the tick in seconds.
+	 * @throws Exception The first error thrown by a task.
+	 */
+	private void runParallel(List<TickTask> phase, double delta) throws Exception {
+		List<Callable<Void>> calls = new ArrayList<Callable<Void>>(phase.size());
+		for (TickTask t : phase) {
+			calls.add(() -> {
+				t.tick(delta);
+				return null;
+			});
+		}
+		Exception error = null;
+		for (Future<Void> f : pool.invokeAll(calls)) {
+			try {
+				f.get();
+			} catch (ExecutionException e) {
+				if (error == null) {
+					error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Parks the current thread until a time has been reached or the scheduler is
+	 * stopped.
+	 * 
+	 * @param deadline The time to wait until as given by {@code System.nanoTime()}.
+	 */
+	private void waitUntil(long deadline) {
+		long remaining;
+		while (!stopped && (remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(this, remaining);
+			if (Thread.currentThread().isInterrupted()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * A task that is run once per tick.
+	 * 
+	 * @author Tomaso2468
+	 */
+	@FunctionalInterface
+	public static interface TickTask {
+		/**
+		 * Runs the task.
+		 * 
+		 * @param delta The length of a tick in seconds.
+		 * @throws Exception If an error occurs.
+		 */
+		public void tick(double delta) throws Exception;
+	}
+}
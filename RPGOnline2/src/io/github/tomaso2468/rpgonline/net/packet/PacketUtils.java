@@ -0,0 +1,148 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net.packet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Utility methods for writing compact packet data.
+ *
+ * @author Tomaso2468
+ */
+public final class PacketUtils {
+	/**
+	 * Prevent instantiation
+	 */
+	private PacketUtils() {
+
+	}
+
+	/**
+	 * Writes an unsigned variable length integer. Each byte holds 7 bits of the
+	 * value and the top bit is set if more bytes follow.
+	 *
+	 * @param out The stream to write to.
+	 * @param v   The value to write. This is treated as unsigned.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	public static void writeVarLong(DataOutputStream out, long v) throws IOException {
+		while ((v & ~0x7FL) != 0) {
+			out.write((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int) v);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param in The stream to read from.
+	 * @return The value read.
+	 * @throws IOException If an error occurs reading data or the value is too
+	 *                     long.
+	 */
+	public static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+		}
+		throw new IOException("Variable length integer is too long.");
+	}
+
+	/**
+	 * Writes an entity ID. IDs made by {@code EntityManager} are hexadecimal
+	 * numbers and are written as a variable length integer. Other IDs are written
+	 * as strings.
+	 *
+	 * @param out The stream to write to.
+	 * @param id  The ID to write.
+	 * @throws IOException If an error occurs writing data.
+	 *
+	 * @see io.github.tomaso2468.rpgonline.world2d.entity.EntityManager#getNextID()
+	 */
+	public static void writeID(DataOutputStream out, String id) throws IOException {
+		long v = parseID(id);
+		writeVarLong(out, v + 1);
+		if (v == -1) {
+			out.writeUTF(id);
+		}
+	}
+
+	/**
+	 * Reads an entity ID.
+	 *
+	 * @param in The stream to read from.
+	 * @return An entity ID.
+	 * @throws IOException If an error occurs reading data.
+	 */
+	public static String readID(DataInputStream in) throws IOException {
+		long v = readVarLong(in);
+		if (v == 0) {
+			return in.readUTF();
+		}
+		return Long.toString(v - 1, 16);
+	}
+
+	/**
+	 * Converts an entity ID to a number if it can be recreated exactly from the
+	 * number.
+	 *
+	 * @param id The ID to convert.
+	 * @return A positive number or -1 if the ID must be written as a string.
+	 */
+	private static long parseID(String id) {
+		int length = id.length();
+		if (length == 0 || length > 15 || (id.charAt(0) == '0' && length > 1)) {
+			return -1;
+		}
+		long v = 0;
+		for (int i = 0; i < length; i++) {
+			char c = id.charAt(i);
+			int d;
+			if (c >= '0' && c <= '9') {
+				d = c - '0';
+			} else if (c >= 'a' && c <= 'f') {
+				d = c - 'a' + 10;
+			} else {
+				return -1;
+			}
+			v = (v << 4) | d;
+		}
+		return v;
+	}
+}
@@ -31,24 +31,71 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 */
 package io.github.tomaso2468.rpgonline.net.packet;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.newdawn.slick.util.Log;
 
+import io.github.tomaso2468.abt.TagDoc;
 import io.github.tomaso2468.abt.TagGroup;
+import io.github.tomaso2468.rpgonline.net.PacketType;
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityList;
 
 /**
+ * <p>
  * Packet used for sending entity updates.
+ * </p>
+ * <p>
+ * Each update type is written as its own packet. The entity ID is written as a
+ * variable length integer and the key is written as the index of an interned
+ * key if it has been registered. The value is written as a raw primitive.
+ * Several updates to one entity can be sent together as a {@code UBatch}.
+ * </p>
  * @author Tomaso2468
  *
+ * @see #registerKey(String)
  */
 public class UpdatePacket implements Serializable, NetPacket {
 	/**
 	 * The serialisation ID.
 	 */
 	private static final long serialVersionUID = -5002558159873982231L;
+	/**
+	 * The interned keys indexed by their ID.
+	 */
+	private static volatile String[] keys = new String[0];
+	/**
+	 * The IDs of interned keys.
+	 */
+	private static final Map<String, Integer> keyIDs = new ConcurrentHashMap<String, Integer>();
+	/**
+	 * The types of updates that can be part of a batch indexed by packet ID.
+	 */
+	private static final UpdateType[] types = new UpdateType[0x100];
+
+	static {
+		for (String key : new String[] { "x", "y", "dx", "dy", "direction", "solid", "flying", "weight_f", "hitbox_a",
+				"hitbox_x", "hitbox_y", "hitbox_w", "hitbox_h", "entity_id", "id" }) {
+			registerKey(key);
+		}
+
+		types[UString.PACKET_ID & 0xFF] = new UString.Type();
+		types[ULong.PACKET_ID & 0xFF] = new ULong.Type();
+		types[UInt.PACKET_ID & 0xFF] = new UInt.Type();
+		types[UFloat.PACKET_ID & 0xFF] = new UFloat.Type();
+		types[UDouble.PACKET_ID & 0xFF] = new UDouble.Type();
+		types[UBoolean.PACKET_ID & 0xFF] = new UBoolean.Type();
+		types[UTag.PACKET_ID & 0xFF] = new UTag.Type();
+	}
+
 	protected final String id;
 	protected final String key;
 
@@ -69,10 +116,161 @@ public class UpdatePacket implements Serializable, NetPacket {
 	 * Apply the packet.
 	 */
 	public void apply(List<Entity> entities) {
+		Entity e = find(id, entities);
+
+		if (e != null) {
+			applyTo(e);
+		}
+	}
+
+	/**
+	 * Applies this update to an entity.
+	 * @param e The entity with the ID of this update.
+	 */
+	public void applyTo(Entity e) {
+
+	}
+
+	/**
+	 * Determines if this update changes a key.
+	 * @param key The key to check.
+	 * @return {@code true} if the key is changed by this update, {@code false}
+	 *         otherwise.
+	 */
+	public boolean hasKey(String key) {
+		return this.key.equals(key);
+	}
+
+	/**
+	 * Gets the ID of the packet type of this update.
+	 * @return A packet ID or {@code PACKET_OBJECT} if this update is sent using
+	 *         serialisation.
+	 */
+	protected byte getPacketID() {
+		return PACKET_OBJECT;
+	}
+
+	/**
+	 * Writes the value of this update.
+	 * @param out The stream to write to.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	protected void writeValue(DataOutputStream out) throws IOException {
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(DataOutputStream out) throws IOException {
+		byte packetID = getPacketID();
+		if (packetID == PACKET_OBJECT) {
+			NetPacket.super.write(out);
+			return;
+		}
+		out.write(packetID);
+		PacketUtils.writeID(out, id);
+		writeKey(out, key);
+		writeValue(out);
+	}
+
+	/**
+	 * Registers a key so that it is sent as a small number instead of a string.
+	 * Keys must be registered in the same order on the server and all clients
+	 * before any connection is made.
+	 * @param key The key to register.
+	 * @return The ID of the key.
+	 */
+	public static synchronized int registerKey(String key) {
+		Integer i = keyIDs.get(key);
+		if (i != null) {
+			return i;
+		}
+		String[] k = new String[keys.length + 1];
+		System.arraycopy(keys, 0, k, 0, keys.length);
+		k[keys.length] = key;
+		keys = k;
+		keyIDs.put(key, keys.length - 1);
+		return keys.length - 1;
+	}
 
+	/**
+	 * Writes a key as the index of an interned key or as a string if the key has
+	 * not been registered.
+	 * @param out The stream to write to.
+	 * @param key The key to write.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	protected static final void writeKey(DataOutputStream out, String key) throws IOException {
+		Integer i = keyIDs.get(key);
+		if (i == null) {
+			PacketUtils.writeVarLong(out, 0);
+			out.writeUTF(key);
+		} else {
+			PacketUtils.writeVarLong(out, i + 1);
+		}
+	}
+
+	/**
+	 * Reads a key written by {@code writeKey}.
+	 * @param in The stream to read from.
+	 * @return A key.
+	 * @throws IOException If an error occurs reading data or the key is not known.
+	 */
+	protected static final String readKey(DataInputStream in) throws IOException {
+		long i = PacketUtils.readVarLong(in);
+		if (i == 0) {
+			return in.readUTF();
+		}
+		String[] k = keys;
+		if (i > k.length) {
+			throw new IOException("Unknown key ID: " + i);
+		}
+		return k[(int) i - 1];
 	}
 
+	/**
+	 * A packet type for an update that can also read the update from a batch.
+	 * @author Tomaso2468
+	 */
+	public static abstract class UpdateType implements PacketType {
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public final NetPacket readPacket(DataInputStream in) throws IOException, ClassNotFoundException {
+			String id = PacketUtils.readID(in);
+			String key = readKey(in);
+			return readValue(id, key, in);
+		}
+
+		/**
+		 * Reads the value of an update.
+		 * @param id The ID of the entity.
+		 * @param key The key of the update.
+		 * @param in The stream to read from.
+		 * @return A new update.
+		 * @throws IOException If an error occurs reading data.
+		 */
+		public abstract UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Finds the entity with an ID. Lists of type {@code EntityList} are searched
+	 * using their ID index.
+	 * @param id The ID to find.
+	 * @param entities The list to search.
+	 * @return An entity or null if there is no entity with the ID in the list.
+	 */
 	public final static Entity find(String id, List<Entity> entities) {
+		if (entities instanceof EntityList) {
+			Entity e = ((EntityList) entities).getByID(id);
+			if (e == null) {
+				Log.error("Could not find entity with ID: " + id);
+			}
+			return e;
+		}
 		for (Entity e : entities) {
 			if (e.getID().equals(id)) {
 				return e;
@@ -83,6 +281,10 @@ public class UpdatePacket implements Serializable, NetPacket {
 	}
 
 	public static final class UString extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 18;
 		/**
 		 * 
 		 */
@@ -95,16 +297,46 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setString(key, value);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeUTF(value);
+		}
 
-			if (e != null) {
-				e.setString(key, value);
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UString(id, key, in.readUTF());
 			}
 		}
 	}
 
 	public static final class ULong extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 19;
 		/**
 		 * 
 		 */
@@ -117,16 +349,46 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setLong(key, value);
+		}
 
-			if (e != null) {
-				e.setLong(key, value);
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeLong(value);
+		}
+
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new ULong(id, key, in.readLong());
 			}
 		}
 	}
 
 	public static final class UInt extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 20;
 		/**
 		 * 
 		 */
@@ -139,16 +401,46 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setInt(key, value);
+		}
 
-			if (e != null) {
-				e.setInt(key, value);
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeInt(value);
+		}
+
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UInt(id, key, in.readInt());
 			}
 		}
 	}
 
 	public static final class UFloat extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 21;
 		/**
 		 * 
 		 */
@@ -161,16 +453,46 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setFloat(key, value);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeFloat(value);
+		}
 
-			if (e != null) {
-				e.setFloat(key, value);
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UFloat(id, key, in.readFloat());
 			}
 		}
 	}
 
 	public static final class UDouble extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 22;
 		/**
 		 * 
 		 */
@@ -182,17 +504,55 @@ public class UpdatePacket implements Serializable, NetPacket {
 			this.value = value;
 		}
 
+		/**
+		 * Gets the value of this update.
+		 * @return A double value.
+		 */
+		public double getValue() {
+			return value;
+		}
+
+		@Override
+		public void applyTo(Entity e) {
+			e.setDouble(key, value);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeDouble(value);
+		}
 
-			if (e != null) {
-				e.setDouble(key, value);
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UDouble(id, key, in.readDouble());
 			}
 		}
 	}
 
 	public static final class UBoolean extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 23;
 		/**
 		 * 
 		 */
@@ -205,16 +565,46 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setBoolean(key, value);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			out.writeBoolean(value);
+		}
 
-			if (e != null) {
-				e.setBoolean(key, value);
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UBoolean(id, key, in.readBoolean());
 			}
 		}
 	}
 
 	public static final class UTag extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 24;
 		/**
 		 * 
 		 */
@@ -227,11 +617,153 @@ public class UpdatePacket implements Serializable, NetPacket {
 		}
 
 		@Override
-		public void apply(List<Entity> entities) {
-			Entity e = find(id, entities);
+		public void applyTo(Entity e) {
+			e.setTag(key, value);
+		}
 
-			if (e != null) {
-				e.setTag(key, value);
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void writeValue(DataOutputStream out) throws IOException {
+			new TagDoc("tag", value).write(out);
+		}
+
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type extends UpdateType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public UpdatePacket readValue(String id, String key, DataInputStream in) throws IOException {
+				return new UTag(id, key, TagDoc.read(in, "tag").getTags());
+			}
+		}
+	}
+
+	/**
+	 * A set of updates to one entity sent as a single packet. The entity ID is
+	 * only written once.
+	 * @author Tomaso2468
+	 */
+	public static final class UBatch extends UpdatePacket {
+		/**
+		 * The ID of this packet type.
+		 */
+		public static final byte PACKET_ID = (byte) 0xFF - 25;
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 4360917218338462105L;
+		/**
+		 * The updates in this batch.
+		 */
+		private final List<UpdatePacket> updates;
+
+		/**
+		 * Constructs a new UBatch.
+		 * @param id The ID of the entity.
+		 * @param updates The updates to the entity. These must not be batches.
+		 */
+		public UBatch(String id, List<UpdatePacket> updates) {
+			super(id, "");
+			this.updates = updates;
+		}
+
+		/**
+		 * Gets the updates in this batch.
+		 * @return An unmodifiable list.
+		 */
+		public List<UpdatePacket> getUpdates() {
+			return Collections.unmodifiableList(updates);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void applyTo(Entity e) {
+			for (UpdatePacket up : updates) {
+				up.applyTo(e);
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasKey(String key) {
+			for (UpdatePacket up : updates) {
+				if (up.hasKey(key)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected byte getPacketID() {
+			return PACKET_ID;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void write(DataOutputStream out) throws IOException {
+			out.write(PACKET_ID);
+			PacketUtils.writeID(out, id);
+			PacketUtils.writeVarLong(out, updates.size());
+			for (UpdatePacket up : updates) {
+				byte packetID = up.getPacketID();
+				if (types[packetID & 0xFF] == null) {
+					throw new IOException("Update cannot be batched: " + up.getClass());
+				}
+				out.write(packetID);
+				writeKey(out, up.key);
+				up.writeValue(out);
+			}
+		}
+
+		/**
+		 * The packet type for this packet.
+		 * @author Tomaso2468
+		 */
+		public static class Type implements PacketType {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public NetPacket readPacket(DataInputStream in) throws IOException, ClassNotFoundException {
+				String id = PacketUtils.readID(in);
+				long count = PacketUtils.readVarLong(in);
+				if (count > 0xFFFF) {
+					throw new IOException("Too many updates in batch: " + count);
+				}
+				List<UpdatePacket> updates = new ArrayList<UpdatePacket>((int) count);
+				for (int i = 0; i < count; i++) {
+					byte packetID = in.readByte();
+					UpdateType type = types[packetID & 0xFF];
+					if (type == null) {
+						throw new IOException("Unknown update type: " + packetID);
+					}
+					updates.add(type.readValue(id, readKey(in), in));
+				}
+				return new UBatch(id, updates);
 			}
 		}
 	}
@@ -38,4 +38,6 @@ public enum ColorMode {
 	MULTIPLY,
 	ADD,
 	SCREEN,
+	BAKE,
+	PREMULTIPLIED,
 }
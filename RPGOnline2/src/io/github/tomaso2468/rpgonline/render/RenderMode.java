@@ -36,4 +36,15 @@ public enum RenderMode {
 	MODE_2D_COLOR_NOVBO,
 	MODE_2D_SPRITE_NOVBO,
 	MODE_2D_LINES_NOVBO,
+	/**
+	 * Draws sprites in batches using client side vertex arrays.
+	 * @see SpriteBatch
+	 */
+	MODE_2D_SPRITE_BATCH,
+	/**
+	 * Draws sprites in batches uploaded to a vertex buffer object. Renderers
+	 * without vertex buffer objects use client side vertex arrays.
+	 * @see SpriteBatch
+	 */
+	MODE_2D_SPRITE_BATCH_VBO,
 }
@@ -132,6 +132,9 @@ public interface Renderer {
 	public void popTransform();
 	
 	public void clear();
+	public default void clear(Color color) {
+		clear();
+	}
 	
 	public Graphics getGUIGraphics();
 
@@ -0,0 +1,328 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.TextureReference;
+
+/**
+ * <p>
+ * A buffer of textured quads that are drawn together.
+ * </p>
+ * <p>
+ * Each quad is stored as four vertices in a direct buffer. Each vertex holds
+ * its position, texture coordinates and colour as {@code x, y, u, v, r, g, b,
+ * a}. The batch is flushed when the texture changes, when it is full or when
+ * {@code flush()} is called. Flushing passes the buffer to a {@code Flusher}
+ * which draws it, so batches can be built and tested without an OpenGL
+ * context.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.render.RenderMode#MODE_2D_SPRITE_BATCH
+ * @see io.github.tomaso2468.rpgonline.render.RenderMode#MODE_2D_SPRITE_BATCH_VBO
+ */
+public class SpriteBatch {
+	/**
+	 * The number of floats stored for each vertex.
+	 */
+	public static final int VERTEX_SIZE = 8;
+	/**
+	 * The number of bytes between the start of each vertex.
+	 */
+	public static final int STRIDE = VERTEX_SIZE * 4;
+	/**
+	 * The number of floats stored for each quad.
+	 */
+	public static final int QUAD_SIZE = VERTEX_SIZE * 4;
+	/**
+	 * The default number of quads in a batch.
+	 */
+	public static final int DEFAULT_CAPACITY = 2048;
+	/**
+	 * The vertex data.
+	 */
+	private final FloatBuffer buffer;
+	/**
+	 * The vertex data of the quad being added, copied into the buffer in one
+	 * call.
+	 */
+	private final float[] quad = new float[QUAD_SIZE];
+	/**
+	 * The maximum number of quads in a batch.
+	 */
+	private final int capacity;
+	/**
+	 * The function used to draw batches.
+	 */
+	private final Flusher flusher;
+	/**
+	 * The texture of the current batch.
+	 */
+	private TextureReference texture;
+	/**
+	 * The number of quads in the current batch.
+	 */
+	private int quads;
+	/**
+	 * The red component of the current colour.
+	 */
+	private float r = 1;
+	/**
+	 * The green component of the current colour.
+	 */
+	private float g = 1;
+	/**
+	 * The blue component of the current colour.
+	 */
+	private float b = 1;
+	/**
+	 * The alpha component of the current colour.
+	 */
+	private float a = 1;
+	/**
+	 * The number of batches flushed.
+	 */
+	private long flushes;
+	/**
+	 * The number of quads flushed.
+	 */
+	private long flushed;
+
+	/**
+	 * Constructs a new SpriteBatch with the default capacity.
+	 * 
+	 * @param flusher The function used to draw batches.
+	 */
+	public SpriteBatch(Flusher flusher) {
+		this(DEFAULT_CAPACITY, flusher);
+	}
+
+	/**
+	 * Constructs a new SpriteBatch.
+	 * 
+	 * @param capacity The maximum number of quads in a batch.
+	 * @param flusher  The function used to draw batches.
+	 */
+	public SpriteBatch(int capacity, Flusher flusher) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.flusher = flusher;
+		this.buffer = ByteBuffer.allocateDirect(capacity * QUAD_SIZE * 4).order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+	}
+
+	/**
+	 * Sets the texture of the following quads. The current batch is flushed if
+	 * the texture is different.
+	 * 
+	 * @param texture The texture to use.
+	 */
+	public void setTexture(TextureReference texture) {
+		if (texture != this.texture) {
+			flush();
+			this.texture = texture;
+		}
+	}
+
+	/**
+	 * Gets the texture of the current batch.
+	 * 
+	 * @return A texture or null if no texture has been set.
+	 */
+	public TextureReference getTexture() {
+		return texture;
+	}
+
+	/**
+	 * Sets the colour of the following quads.
+	 * 
+	 * @param r The red component.
+	 * @param g The green component.
+	 * @param b The blue component.
+	 * @param a The alpha component.
+	 */
+	public void setColor(float r, float g, float b, float a) {
+		this.r = r;
+		this.g = g;
+		this.b = b;
+		this.a = a;
+	}
+
+	/**
+	 * Adds a quad that draws an image.
+	 * 
+	 * @param img The image to draw. This should be part of the current texture.
+	 * @param x   The X position of the quad.
+	 * @param y   The Y position of the quad.
+	 * @param w   The width of the quad.
+	 * @param h   The height of the quad.
+	 */
+	public void add(Image img, float x, float y, float w, float h) {
+		addSheared(img, x, y, w, h, 0, 0);
+	}
+
+	/**
+	 * Adds a sheared quad that draws an image.
+	 * 
+	 * @param img    The image to draw. This should be part of the current
+	 *               texture.
+	 * @param x      The X position of the quad.
+	 * @param y      The Y position of the quad.
+	 * @param w      The width of the quad.
+	 * @param h      The height of the quad.
+	 * @param hshear The horizontal shear.
+	 * @param vshear The vertical shear.
+	 */
+	public void addSheared(Image img, float x, float y, float w, float h, float hshear, float vshear) {
+		float u = img.getTextureOffsetX();
+		float v = img.getTextureOffsetY();
+		float u2 = u + img.getTextureWidth();
+		float v2 = v + img.getTextureHeight();
+		if (quads == capacity) {
+			flush();
+		}
+		vertex(0, x, y, u, v);
+		vertex(VERTEX_SIZE, x + hshear, y + h, u, v2);
+		vertex(VERTEX_SIZE * 2, x + w + hshear, y + h + vshear, u2, v2);
+		vertex(VERTEX_SIZE * 3, x + w, y, u2, v);
+		buffer.put(quad);
+		quads += 1;
+	}
+
+	/**
+	 * Stores a vertex of the quad being added.
+	 * 
+	 * @param i The index of the first float of the vertex.
+	 * @param x The X position of the vertex.
+	 * @param y The Y position of the vertex.
+	 * @param u The U texture coordinate.
+	 * @param v The V texture coordinate.
+	 */
+	private void vertex(int i, float x, float y, float u, float v) {
+		float[] q = quad;
+		q[i] = x;
+		q[i + 1] = y;
+		q[i + 2] = u;
+		q[i + 3] = v;
+		q[i + 4] = r;
+		q[i + 5] = g;
+		q[i + 6] = b;
+		q[i + 7] = a;
+	}
+
+	/**
+	 * Draws the current batch if it is not empty. The buffer passed to the
+	 * flusher is positioned at the first vertex and limited to the last.
+	 */
+	public void flush() {
+		if (quads == 0) {
+			return;
+		}
+		buffer.flip();
+		flusher.flush(texture, buffer, quads);
+		buffer.clear();
+		flushes += 1;
+		flushed += quads;
+		quads = 0;
+	}
+
+	/**
+	 * Removes all quads from the current batch without drawing them.
+	 */
+	public void reset() {
+		buffer.clear();
+		quads = 0;
+		texture = null;
+	}
+
+	/**
+	 * Gets the number of quads in the current batch.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getQuadCount() {
+		return quads;
+	}
+
+	/**
+	 * Gets the maximum number of quads in a batch.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of batches flushed.
+	 * 
+	 * @return A long value.
+	 */
+	public long getFlushCount() {
+		return flushes;
+	}
+
+	/**
+	 * Gets the number of quads flushed.
+	 * 
+	 * @return A long value.
+	 */
+	public long getFlushedQuadCount() {
+		return flushed;
+	}
+
+	/**
+	 * A function that draws a batch of quads.
+	 * 
+	 * @author Tomaso2468
+	 */
+	@FunctionalInterface
+	public static interface Flusher {
+		/**
+		 * Draws a batch of quads.
+		 * 
+		 * @param texture The texture of the quads.
+		 * @param buffer  The vertex data of the quads. This buffer is reused after
+		 *                this method returns.
+		 * @param quads   The number of quads.
+		 */
+		public void flush(TextureReference texture, FloatBuffer buffer, int quads);
+	}
+}
@@ -0,0 +1,947 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render.java2d;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.math3.util.FastMath;
+import org.newdawn.slick.Color;
+import org.newdawn.slick.geom.Shape;
+import org.newdawn.slick.geom.Transform;
+
+import io.github.tomaso2468.rpgonline.Font;
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.ImageFilter;
+import io.github.tomaso2468.rpgonline.TextureReference;
+import io.github.tomaso2468.rpgonline.input.Input;
+import io.github.tomaso2468.rpgonline.post.LUT;
+import io.github.tomaso2468.rpgonline.render.BasicGraphics;
+import io.github.tomaso2468.rpgonline.render.ColorMode;
+import io.github.tomaso2468.rpgonline.render.Graphics;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.RenderMode;
+import io.github.tomaso2468.rpgonline.render.Renderer;
+import io.github.tomaso2468.rpgonline.render.Shader;
+import io.github.tomaso2468.rpgonline.render.SpriteBatch;
+
+/**
+ * <p>
+ * A renderer that draws nothing and instead records what would have been
+ * drawn. It does not need a display or GPU so it can be used to benchmark and
+ * test rendering code on headless machines.
+ * </p>
+ * <p>
+ * Draw calls, quads, texture binds, state changes, render target switches,
+ * clears, transform changes and frames are counted. Quads are counted for
+ * every command that draws pixels. Quads drawn with {@code renderEmbedded()}
+ * or {@code renderShearedEmbedded()} are collected into a batch in the same
+ * way as the OpenGL renderers and the batch counts as one draw call when it is
+ * flushed. Batches are flushed by {@code endUse()} and by changes of render
+ * mode, colour mode or render target. In the sprite batch render modes they
+ * are also flushed when the texture changes or a {@code SpriteBatch} would be
+ * full. Other commands count as one draw call each. Texture binds are only
+ * counted when {@code startUse()} is called with a different texture to the
+ * one already bound. State changes are changes of render mode, colour mode,
+ * shader, LUT, colour or filter. Frames are counted by {@code doUpdate()}.
+ * </p>
+ * <p>
+ * If logging is enabled each command is also added to a log as a string.
+ * Positions of draw commands are logged in screen pixels after the current
+ * transform has been applied.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.render.java2d.RecordingTexture
+ * @see io.github.tomaso2468.rpgonline.render.java2d.RecordingShader
+ */
+public class RecordingRenderer implements Renderer {
+	/**
+	 * The width of the screen.
+	 */
+	private int width;
+	/**
+	 * The height of the screen.
+	 */
+	private int height;
+	/**
+	 * The command log or null if logging is disabled.
+	 */
+	private List<String> log;
+	/**
+	 * The number of draw calls.
+	 */
+	private long draws;
+	/**
+	 * The number of quads drawn.
+	 */
+	private long quads;
+	/**
+	 * The number of quads in the current batch.
+	 */
+	private int pending;
+	/**
+	 * The number of texture binds.
+	 */
+	private long binds;
+	/**
+	 * The number of state changes.
+	 */
+	private long stateChanges;
+	/**
+	 * The number of render target switches.
+	 */
+	private long targetSwitches;
+	/**
+	 * The number of clears.
+	 */
+	private long clears;
+	/**
+	 * The number of transform changes.
+	 */
+	private long transforms;
+	/**
+	 * The number of frames.
+	 */
+	private long frames;
+	/**
+	 * The texture currently bound.
+	 */
+	private TextureReference bound;
+	/**
+	 * The current render target or null for the screen.
+	 */
+	private Image target;
+	/**
+	 * The current render mode.
+	 */
+	private RenderMode mode = RenderMode.MODE_NONE;
+	/**
+	 * The current colour mode.
+	 */
+	private ColorMode colorMode = ColorMode.NORMAL;
+	/**
+	 * The current shader.
+	 */
+	private Shader shader;
+	/**
+	 * The current font.
+	 */
+	private Font font;
+	/**
+	 * The current transform stored as {@code a, b, c, d, tx, ty} where a point
+	 * is transformed to {@code (a * x + c * y + tx, b * x + d * y + ty)}.
+	 */
+	private float[] transform = { 1, 0, 0, 1, 0, 0 };
+	/**
+	 * Transforms saved by {@code pushTransform()}.
+	 */
+	private final List<float[]> stack = new ArrayList<float[]>();
+	/**
+	 * An input that never has any keys or buttons pressed.
+	 */
+	private final Input input = new NullInput();
+
+	/**
+	 * Constructs a new RecordingRenderer.
+	 * 
+	 * @param width  The width of the screen.
+	 * @param height The height of the screen.
+	 */
+	public RecordingRenderer(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Sets if commands are added to the log. Enabling logging clears the log.
+	 * 
+	 * @param logging {@code true} to log commands, {@code false} otherwise.
+	 */
+	public void setLogging(boolean logging) {
+		log = logging ? new ArrayList<String>() : null;
+	}
+
+	/**
+	 * Determines if commands are added to the log.
+	 * 
+	 * @return {@code true} if commands are logged, {@code false} otherwise.
+	 */
+	public boolean isLogging() {
+		return log != null;
+	}
+
+	/**
+	 * Gets the command log.
+	 * 
+	 * @return A list of commands or an empty list if logging is disabled.
+	 */
+	public List<String> getLog() {
+		return log == null ? Collections.<String>emptyList() : log;
+	}
+
+	/**
+	 * Resets all counters and clears the log.
+	 */
+	public void resetCounters() {
+		draws = 0;
+		quads = 0;
+		pending = 0;
+		binds = 0;
+		stateChanges = 0;
+		targetSwitches = 0;
+		clears = 0;
+		transforms = 0;
+		frames = 0;
+		if (log != null) {
+			log.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of draw calls.
+	 * 
+	 * @return A long value.
+	 */
+	public long getDrawCalls() {
+		return draws;
+	}
+
+	/**
+	 * Gets the number of quads drawn.
+	 * 
+	 * @return A long value.
+	 */
+	public long getQuads() {
+		return quads;
+	}
+
+	/**
+	 * Gets the number of texture binds.
+	 * 
+	 * @return A long value.
+	 */
+	public long getBinds() {
+		return binds;
+	}
+
+	/**
+	 * Gets the number of state changes.
+	 * 
+	 * @return A long value.
+	 */
+	public long getStateChanges() {
+		return stateChanges;
+	}
+
+	/**
+	 * Gets the number of render target switches.
+	 * 
+	 * @return A long value.
+	 */
+	public long getTargetSwitches() {
+		return targetSwitches;
+	}
+
+	/**
+	 * Gets the number of clears.
+	 * 
+	 * @return A long value.
+	 */
+	public long getClears() {
+		return clears;
+	}
+
+	/**
+	 * Gets the number of transform changes.
+	 * 
+	 * @return A long value.
+	 */
+	public long getTransformChanges() {
+		return transforms;
+	}
+
+	/**
+	 * Gets the number of frames ended with {@code doUpdate()}.
+	 * 
+	 * @return A long value.
+	 */
+	public long getFrames() {
+		return frames;
+	}
+
+	/**
+	 * Adds a command to the log if logging is enabled.
+	 * 
+	 * @param command The command.
+	 */
+	private void log(String command) {
+		if (log != null) {
+			log.add(command);
+		}
+	}
+
+	/**
+	 * Records a command that draws one quad as its own draw call.
+	 * 
+	 * @param name The name of the command.
+	 * @param tex  The texture drawn or null.
+	 * @param x    The X position of the command.
+	 * @param y    The Y position of the command.
+	 * @param w    The width of the command.
+	 * @param h    The height of the command.
+	 */
+	private void draw(String name, Object tex, float x, float y, float w, float h) {
+		draws += 1;
+		quad(name, tex, x, y, w, h);
+	}
+
+	/**
+	 * Records a quad added to the current batch.
+	 * 
+	 * @param name The name of the command.
+	 * @param tex  The texture drawn.
+	 * @param x    The X position of the command.
+	 * @param y    The Y position of the command.
+	 * @param w    The width of the command.
+	 * @param h    The height of the command.
+	 */
+	private void embedded(String name, Object tex, float x, float y, float w, float h) {
+		if (isBatching() && pending == SpriteBatch.DEFAULT_CAPACITY) {
+			flush();
+		}
+		pending += 1;
+		quad(name, tex, x, y, w, h);
+	}
+
+	/**
+	 * Counts and logs a quad.
+	 * 
+	 * @param name The name of the command.
+	 * @param tex  The texture drawn or null.
+	 * @param x    The X position of the command.
+	 * @param y    The Y position of the command.
+	 * @param w    The width of the command.
+	 * @param h    The height of the command.
+	 */
+	private void quad(String name, Object tex, float x, float y, float w, float h) {
+		quads += 1;
+		if (log != null) {
+			float[] t = transform;
+			log.add(name + " " + tex + " " + (t[0] * x + t[2] * y + t[4]) + " " + (t[1] * x + t[3] * y + t[5]) + " "
+					+ w + " " + h);
+		}
+	}
+
+	/**
+	 * Ends the current batch. A batch containing quads counts as one draw call.
+	 */
+	private void flush() {
+		if (pending > 0) {
+			draws += 1;
+			pending = 0;
+		}
+	}
+
+	/**
+	 * Determines if a sprite batch render mode is in use.
+	 * 
+	 * @return {@code true} if quads are batched across texture binds,
+	 *         {@code false} otherwise.
+	 */
+	private boolean isBatching() {
+		return mode == RenderMode.MODE_2D_SPRITE_BATCH || mode == RenderMode.MODE_2D_SPRITE_BATCH_VBO;
+	}
+
+	/**
+	 * Records a state change.
+	 * 
+	 * @param command The command.
+	 */
+	private void state(String command) {
+		stateChanges += 1;
+		log(command);
+	}
+
+	/**
+	 * Gets the current transform.
+	 * 
+	 * @return An array of {@code a, b, c, d, tx, ty}.
+	 */
+	public float[] getTransform() {
+		return transform.clone();
+	}
+
+	@Override
+	public void renderEmbedded(Image img, float x, float y, float w, float h) {
+		embedded("renderEmbedded", img.getTexture(), x, y, w, h);
+	}
+
+	@Override
+	public void startUse(Image img) {
+		if (img.getTexture() != bound) {
+			if (isBatching()) {
+				flush();
+			}
+			bound = img.getTexture();
+			binds += 1;
+			log("bind " + bound);
+		}
+	}
+
+	@Override
+	public void endUse(Image img) {
+		flush();
+	}
+
+	@Override
+	public void renderFiltered(Image img, float x, float y, float w, float h, Color c) {
+		startUse(img);
+		draw("renderFiltered", img.getTexture(), x, y, w, h);
+		endUse(img);
+	}
+
+	@Override
+	public void renderShearedEmbedded(Image img, float x, float y, float w, float h, float hshear, float vshear) {
+		embedded("renderShearedEmbedded", img.getTexture(), x, y, w, h);
+	}
+
+	@Override
+	public void drawQuad(float x, float y, float w, float h, Color c) {
+		draw("drawQuad", c, x, y, w, h);
+	}
+
+	@Override
+	public void translate2D(float x, float y) {
+		float[] t = transform;
+		t[4] += t[0] * x + t[2] * y;
+		t[5] += t[1] * x + t[3] * y;
+		transforms += 1;
+	}
+
+	@Override
+	public void scale2D(float x, float y) {
+		float[] t = transform;
+		t[0] *= x;
+		t[1] *= x;
+		t[2] *= y;
+		t[3] *= y;
+		transforms += 1;
+	}
+
+	/**
+	 * Rotates around a point. The OpenGL renderers rotate around the axis
+	 * {@code (0, 0, a)} so the rotation is always by the absolute value of the
+	 * angle. This is copied so recorded positions match.
+	 */
+	@Override
+	public void rotate2D(float x, float y, float a) {
+		translate2D(x, y);
+		float[] t = transform;
+		float cos = (float) FastMath.cos(FastMath.toRadians(FastMath.abs(a)));
+		float sin = (float) FastMath.sin(FastMath.toRadians(FastMath.abs(a)));
+		float ta = t[0] * cos + t[2] * sin;
+		float tb = t[1] * cos + t[3] * sin;
+		t[2] = t[2] * cos - t[0] * sin;
+		t[3] = t[3] * cos - t[1] * sin;
+		t[0] = ta;
+		t[1] = tb;
+		translate2D(-x, -y);
+		transforms -= 1;
+	}
+
+	@Override
+	public void transform2D(Transform transform) {
+		float[] m = transform.getMatrixPosition();
+		float[] t = this.transform;
+		this.transform = new float[] { t[0] * m[0] + t[2] * m[3], t[1] * m[0] + t[3] * m[3],
+				t[0] * m[1] + t[2] * m[4], t[1] * m[1] + t[3] * m[4], t[0] * m[2] + t[2] * m[5] + t[4],
+				t[1] * m[2] + t[3] * m[5] + t[5] };
+		transforms += 1;
+	}
+
+	@Override
+	public void resetTransform() {
+		float[] t = transform;
+		t[0] = 1;
+		t[1] = 0;
+		t[2] = 0;
+		t[3] = 1;
+		t[4] = 0;
+		t[5] = 0;
+		transforms += 1;
+	}
+
+	@Override
+	public void pushTransform() {
+		stack.add(transform.clone());
+	}
+
+	@Override
+	public void popTransform() {
+		transform = stack.remove(stack.size() - 1);
+		transforms += 1;
+	}
+
+	@Override
+	public void clear() {
+		clears += 1;
+		log("clear");
+	}
+
+	@Override
+	public void clear(Color color) {
+		clears += 1;
+		log("clear " + color);
+	}
+
+	@Override
+	public Graphics getGUIGraphics() {
+		return new BasicGraphics(this);
+	}
+
+	@Override
+	public int getScreenWidth() {
+		return width;
+	}
+
+	@Override
+	public int getScreenHeight() {
+		return height;
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getRenderWidth() {
+		return target == null ? width : (int) target.getWidth();
+	}
+
+	@Override
+	public int getRenderHeight() {
+		return target == null ? height : (int) target.getHeight();
+	}
+
+	@Override
+	public void init(Game game) throws RenderException {
+	}
+
+	@Override
+	public void exit(Game game) {
+	}
+
+	@Override
+	public void setFullscreen(boolean fullscreen) throws RenderException {
+	}
+
+	@Override
+	public void setResolution(int width, int height) throws RenderException {
+		this.width = width;
+		this.height = height;
+	}
+
+	@Override
+	public void setVSync(boolean vsync) {
+	}
+
+	@Override
+	public void setWindowTitle(String title) {
+	}
+
+	/**
+	 * Ends a frame.
+	 */
+	@Override
+	public void doUpdate() {
+		frames += 1;
+		log("frame");
+	}
+
+	@Override
+	public void sync(float fps) {
+	}
+
+	@Override
+	public boolean displayClosePressed() {
+		return false;
+	}
+
+	@Override
+	public void setMode(RenderMode mode) {
+		if (this.mode != mode) {
+			flush();
+			this.mode = mode;
+			state("mode " + mode);
+		}
+	}
+
+	@Override
+	public RenderMode getMode() {
+		return mode;
+	}
+
+	@Override
+	public void setColorMode(ColorMode mode) {
+		if (colorMode != mode) {
+			flush();
+			colorMode = mode;
+			state("colorMode " + mode);
+		}
+	}
+
+	@Override
+	public ColorMode getColorMode() {
+		return colorMode;
+	}
+
+	@Override
+	public TextureReference getPNG(URL url) throws RenderException, IOException {
+		BufferedImage img = ImageIO.read(url);
+		if (img == null) {
+			throw new IOException("Failed to read image: " + url);
+		}
+		String name = url.getPath();
+		return new RecordingTexture(img.getWidth(), img.getHeight(), name.substring(name.lastIndexOf('/') + 1));
+	}
+
+	@Override
+	public void copyArea(Image buffer, int x, int y) {
+		draw("copyArea", buffer.getTexture(), x, y, buffer.getWidth(), buffer.getHeight());
+	}
+
+	@Override
+	public TextureReference createEmptyTexture(int width, int height) throws RenderException {
+		return new RecordingTexture(width, height, "empty" + width + "x" + height);
+	}
+
+	@Override
+	public TextureReference createHDRTexture(int width, int height) throws RenderException {
+		return new RecordingTexture(width, height, "hdr" + width + "x" + height);
+	}
+
+	@Override
+	public void useHDRBuffers(boolean hdr) throws RenderException {
+	}
+
+	@Override
+	public String getVersion() {
+		return "1.0";
+	}
+
+	@Override
+	public String getVendor() {
+		return "RPGOnline";
+	}
+
+	@Override
+	public String getRendererGL() {
+		return "None";
+	}
+
+	/**
+	 * Sets the render target. Like the OpenGL renderers this resets the
+	 * transform and sets the render mode to {@code MODE_2D_SPRITE_NOVBO}.
+	 */
+	@Override
+	public void setRenderTarget(Image img) throws RenderException {
+		if (img == target) {
+			return;
+		}
+		flush();
+		target = img;
+		targetSwitches += 1;
+		log("target " + (img == null ? "screen" : img.getTexture()));
+		setMode(RenderMode.MODE_2D_SPRITE_NOVBO);
+		setColorMode(ColorMode.NORMAL);
+		resetTransform();
+	}
+
+	/**
+	 * Gets the render target.
+	 * 
+	 * @return An image or null if drawing to the screen.
+	 */
+	@Override
+	public Image getCurrentTarget() throws RenderException {
+		return target;
+	}
+
+	@Override
+	public void draw(Shape shape, Color color) {
+		draw("draw", color, shape.getX(), shape.getY(), shape.getWidth(), shape.getHeight());
+	}
+
+	@Override
+	public void fill(Shape shape, Color color) {
+		draw("fill", color, shape.getX(), shape.getY(), shape.getWidth(), shape.getHeight());
+	}
+
+	@Override
+	public void setFont(Font font) {
+		this.font = font;
+	}
+
+	@Override
+	public Font getFont() {
+		return font;
+	}
+
+	@Override
+	public Font loadFont(String name, int type, float size, int[] codepages) throws RenderException {
+		return new NullFont(size);
+	}
+
+	@Override
+	public Font loadFont(URL url, int type, float size, int[] codepages) throws RenderException {
+		return new NullFont(size);
+	}
+
+	@Override
+	public void drawFont(Font font, float x, float y, String str) {
+		draw("drawFont", str, x, y, font.getWidth(str), font.getHeight(str));
+	}
+
+	@Override
+	public Input getInput() {
+		return input;
+	}
+
+	@Override
+	public void setFilter(TextureReference texture, ImageFilter filterMode) {
+		state("filter " + texture + " " + filterMode);
+	}
+
+	/**
+	 * Writes a transparent image with the size of an image as no pixels are
+	 * stored.
+	 */
+	@Override
+	public void writeImage(Image image, OutputStream out, boolean writeAlpha) throws IOException, RenderException {
+		BufferedImage img = new BufferedImage((int) image.getWidth(), (int) image.getHeight(),
+				writeAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		ImageIO.write(img, "PNG", out);
+	}
+
+	@Override
+	public Shader createShader(URL vertex, URL fragment) throws RenderException {
+		return new RecordingShader(vertex, fragment);
+	}
+
+	@Override
+	public void useShader(Shader shader) throws RenderException {
+		if (this.shader != shader) {
+			this.shader = shader;
+			state("shader " + shader);
+		}
+	}
+
+	@Override
+	public void deleteShader(Shader shader) throws RenderException {
+		if (shader instanceof RecordingShader) {
+			((RecordingShader) shader).delete();
+		}
+		log("deleteShader " + shader);
+	}
+
+	@Override
+	public void renderLine(float x, float y, float x2, float y2, Color color) {
+		draw("renderLine", color, x, y, x2 - x, y2 - y);
+	}
+
+	@Override
+	public void setAntialias(boolean antialias) {
+	}
+
+	@Override
+	public void setMouseGrab(boolean mouseGrabbed) {
+	}
+
+	@Override
+	public void setIcon(URL icon) {
+	}
+
+	@Override
+	public LUT loadLUT(URL loc) throws IOException, RenderException {
+		return new NullLUT();
+	}
+
+	@Override
+	public void setLUT(LUT lut) {
+		state("lut " + lut);
+	}
+
+	@Override
+	public String getGPU() {
+		return "None";
+	}
+
+	@Override
+	public void bindColor(Color c) {
+		state("color " + c);
+	}
+
+	/**
+	 * A font that has a fixed size for each character.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class NullFont implements Font {
+		/**
+		 * The size of the font.
+		 */
+		private final float size;
+
+		/**
+		 * Constructs a new NullFont.
+		 * 
+		 * @param size The size of the font.
+		 */
+		public NullFont(float size) {
+			this.size = size;
+		}
+
+		@Override
+		public float getHeight(String text) {
+			return size;
+		}
+
+		@Override
+		public float getHeight() {
+			return size;
+		}
+
+		@Override
+		public float getWidth(String text) {
+			return text.length() * size / 2;
+		}
+	}
+
+	/**
+	 * An input that never has any keys or buttons pressed.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class NullInput implements Input {
+		@Override
+		public boolean isKeyDown(int keyCodeForAction) {
+			return false;
+		}
+
+		@Override
+		public float getMouseX() {
+			return 0;
+		}
+
+		@Override
+		public float getMouseY() {
+			return 0;
+		}
+
+		@Override
+		public float getMouseDX() {
+			return 0;
+		}
+
+		@Override
+		public float getMouseDY() {
+			return 0;
+		}
+
+		@Override
+		public int getButtonCount() {
+			return 0;
+		}
+
+		@Override
+		public boolean isButtonDown(int i) {
+			return false;
+		}
+
+		@Override
+		public boolean hasWheel() {
+			return false;
+		}
+
+		@Override
+		public float getDWheel() {
+			return 0;
+		}
+	}
+
+	/**
+	 * A LUT that does not change colours.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class NullLUT implements LUT {
+		@Override
+		public Color apply(Color in) {
+			return in;
+		}
+
+		@Override
+		public float lookupRed(float r, float g, float b) {
+			return r;
+		}
+
+		@Override
+		public float lookupGreen(float r, float g, float b) {
+			return g;
+		}
+
+		@Override
+		public float lookupBlue(float r, float g, float b) {
+			return b;
+		}
+
+		@Override
+		public void bindToShader(Shader shader, String var) {
+		}
+	}
+}
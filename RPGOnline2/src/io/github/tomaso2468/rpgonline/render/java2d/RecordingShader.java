@@ -0,0 +1,239 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render.java2d;
+
+import java.net.URL;
+
+import io.github.tomaso2468.rpgonline.render.Shader;
+
+/**
+ * A shader that only counts the uniforms set on it. It is used by the
+ * {@code RecordingRenderer}.
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.render.java2d.RecordingRenderer
+ */
+public class RecordingShader implements Shader {
+	/**
+	 * The location of the vertex shader.
+	 */
+	private final URL vertex;
+	/**
+	 * The location of the fragment shader.
+	 */
+	private final URL fragment;
+	/**
+	 * The number of uniforms set.
+	 */
+	private long uniforms;
+	/**
+	 * Determines if this shader has been deleted.
+	 */
+	private boolean deleted;
+
+	/**
+	 * Constructs a new RecordingShader.
+	 * 
+	 * @param vertex   The location of the vertex shader.
+	 * @param fragment The location of the fragment shader.
+	 */
+	public RecordingShader(URL vertex, URL fragment) {
+		this.vertex = vertex;
+		this.fragment = fragment;
+	}
+
+	/**
+	 * Records a uniform being set.
+	 * 
+	 * @param name The name of the uniform.
+	 */
+	private void set(String name) {
+		uniforms += 1;
+	}
+
+	@Override
+	public void setUniform(String name, float value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, float v1, float v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, float v1, float v2, float v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, float v1, float v2, float v3, float v4) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, int value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, int v1, int v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, int v1, int v2, int v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniform(String name, int v1, int v2, int v3, int v4) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, float value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, float v1, float v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, float v1, float v2, float v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, float v1, float v2, float v3, float v4) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, int value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, int v1, int v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, int v1, int v2, int v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArray(String name, int index, int v1, int v2, int v3, int v4) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, float value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, float v1, float v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, float v1, float v2, float v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, float v1, float v2, float v3, float v4) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, int value) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, int v1, int v2) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, int v1, int v2, int v3) {
+		set(name);
+	}
+
+	@Override
+	public void setUniformArrayStruct(String name, int index, String field, int v1, int v2, int v3, int v4) {
+		set(name);
+	}
+
+	/**
+	 * Gets the number of uniforms set on this shader.
+	 * 
+	 * @return A long value.
+	 */
+	public long getUniformCount() {
+		return uniforms;
+	}
+
+	/**
+	 * Determines if this shader has been deleted.
+	 * 
+	 * @return {@code true} if the shader has been deleted, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	/**
+	 * Marks this shader as deleted.
+	 */
+	void delete() {
+		deleted = true;
+	}
+
+	/**
+	 * Gets the names of the shader files.
+	 * 
+	 * @return A string.
+	 */
+	@Override
+	public String toString() {
+		return vertex + "+" + fragment;
+	}
+}
@@ -0,0 +1,141 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render.java2d;
+
+import io.github.tomaso2468.rpgonline.TextureReference;
+
+/**
+ * A texture that only stores its size. It is used by the
+ * {@code RecordingRenderer}.
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.render.java2d.RecordingRenderer
+ */
+public class RecordingTexture implements TextureReference {
+	/**
+	 * The width of the texture.
+	 */
+	private final int width;
+	/**
+	 * The height of the texture.
+	 */
+	private final int height;
+	/**
+	 * A name used in the command log.
+	 */
+	private final String name;
+	/**
+	 * Determines if this texture has been destroyed.
+	 */
+	private boolean destroyed;
+
+	/**
+	 * Constructs a new RecordingTexture.
+	 * 
+	 * @param width  The width of the texture.
+	 * @param height The height of the texture.
+	 * @param name   A name used in the command log.
+	 */
+	public RecordingTexture(int width, int height, String name) {
+		this.width = width;
+		this.height = height;
+		this.name = name;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public float getLibraryWidth() {
+		return 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public float getLibraryHeight() {
+		return 1;
+	}
+
+	/**
+	 * Does nothing as there is no GPU texture to bind.
+	 */
+	@Override
+	public void bind() {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void destroy() {
+		destroyed = true;
+	}
+
+	/**
+	 * Determines if this texture has been destroyed.
+	 * 
+	 * @return {@code true} if {@code destroy()} has been called, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isDestroyed() {
+		return destroyed;
+	}
+
+	/**
+	 * Gets the name of this texture.
+	 * 
+	 * @return A string.
+	 */
+	@Override
+	public String toString() {
+		return name;
+	}
+}
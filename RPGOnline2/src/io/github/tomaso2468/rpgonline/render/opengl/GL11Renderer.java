@@ -46,6 +46,7 @@ import java.util.List;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
 import org.newdawn.slick.Color;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.UnicodeFont;
@@ -70,6 +71,7 @@ import io.github.tomaso2468.rpgonline.render.RenderException;
 import io.github.tomaso2468.rpgonline.render.RenderMode;
 import io.github.tomaso2468.rpgonline.render.Renderer;
 import io.github.tomaso2468.rpgonline.render.Shader;
+import io.github.tomaso2468.rpgonline.render.SpriteBatch;
 import io.github.tomaso2468.rpgonline.render.TextureCreateException;
 import io.github.tomaso2468.rpgonline.render.java2d.AWTResourceException;
 
@@ -81,12 +83,67 @@ public abstract class GL11Renderer implements Renderer {
 	private int stackIndex;
 	private float sx, sy;
 	private Font font;
+	private SpriteBatch batch;
+
+	/**
+	 * Determines if sprites are drawn in batches.
+	 * 
+	 * @return {@code true} if a batched render mode is in use, {@code false}
+	 *         otherwise.
+	 */
+	protected boolean isBatching() {
+		return mode == RenderMode.MODE_2D_SPRITE_BATCH || mode == RenderMode.MODE_2D_SPRITE_BATCH_VBO;
+	}
+
+	/**
+	 * Gets the sprite batch used by the batched render modes.
+	 * 
+	 * @return A sprite batch.
+	 */
+	protected SpriteBatch getBatch() {
+		if (batch == null) {
+			batch = new SpriteBatch(this::drawBatch);
+		}
+		return batch;
+	}
+
+	/**
+	 * Draws a batch of quads using client side vertex arrays. The texture of the
+	 * batch must already be bound.
+	 * 
+	 * @param texture The texture of the quads.
+	 * @param buffer  The vertex data of the quads.
+	 * @param quads   The number of quads.
+	 */
+	protected void drawBatch(TextureReference texture, FloatBuffer buffer, int quads) {
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+
+		buffer.position(0);
+		GL11.glVertexPointer(2, SpriteBatch.STRIDE, buffer);
+		buffer.position(2);
+		GL11.glTexCoordPointer(2, SpriteBatch.STRIDE, buffer);
+		buffer.position(4);
+		GL11.glColorPointer(4, SpriteBatch.STRIDE, buffer);
+		buffer.position(0);
+
+		GL11.glDrawArrays(GL11.GL_QUADS, 0, quads * 4);
+
+		GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void renderEmbedded(Image img, float x, float y, float w, float h) {
+		if (isBatching()) {
+			getBatch().add(img, x, y, w, h);
+			return;
+		}
 		GL11.glTexCoord2f(img.getTextureOffsetX(), img.getTextureOffsetY());
 		GL11.glVertex3f(x, y, 0);
 		GL11.glTexCoord2f(img.getTextureOffsetX(), img.getTextureOffsetY() + img.getTextureHeight());
@@ -122,6 +179,12 @@ public abstract class GL11Renderer implements Renderer {
 	 */
 	@Override
 	public void startUse(Image img) {
+		if (isBatching()) {
+			getBatch().setTexture(img.getTexture());
+			getBatch().setColor(1, 1, 1, 1);
+			img.getTexture().bind();
+			return;
+		}
 		GL11.glColor4f(1, 1, 1, 1);
 		img.getTexture().bind();
 		GL11.glBegin(GL11.GL_QUADS);
@@ -132,6 +195,10 @@ public abstract class GL11Renderer implements Renderer {
 	 */
 	@Override
 	public void endUse(Image img) {
+		if (isBatching()) {
+			getBatch().flush();
+			return;
+		}
 		GL11.glEnd();
 	}
 
@@ -142,6 +209,13 @@ public abstract class GL11Renderer implements Renderer {
 	public void renderFiltered(Image img, float x, float y, float w, float h, Color c) {
 		startUse(img);
 
+		if (isBatching()) {
+			getBatch().setColor(c.r, c.g, c.b, c.a);
+			getBatch().add(img, x, y, w, h);
+			endUse(img);
+			return;
+		}
+
 		GL11.glColor4f(c.r, c.g, c.b, c.a);
 
 		GL11.glTexCoord2f(img.getTextureOffsetX(), img.getTextureOffsetY());
@@ -168,6 +242,10 @@ public abstract class GL11Renderer implements Renderer {
 
 	@Override
 	public void renderShearedEmbedded(Image img, float x, float y, float w, float h, float hshear, float vshear) {
+		if (isBatching()) {
+			getBatch().addSheared(img, x, y, w, h, hshear, vshear);
+			return;
+		}
 		GL11.glTexCoord2f(img.getTextureOffsetX(), img.getTextureOffsetY());
 		GL11.glVertex3f(x, y, 0);
 		GL11.glTexCoord2f(img.getTextureOffsetX(), img.getTextureOffsetY() + img.getTextureHeight());
@@ -187,6 +265,8 @@ public abstract class GL11Renderer implements Renderer {
 		case MODE_2D_COLOR_NOVBO:
 		case MODE_2D_LINES_NOVBO:
 		case MODE_2D_SPRITE_NOVBO:
+		case MODE_2D_SPRITE_BATCH:
+		case MODE_2D_SPRITE_BATCH_VBO:
 			GL11.glColor4f(c.r, c.g, c.b, c.a);
 			GL11.glBegin(GL11.GL_QUADS);
 			GL11.glVertex2f(x, y);
@@ -307,6 +387,12 @@ public abstract class GL11Renderer implements Renderer {
 		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 	}
 
+	@Override
+	public void clear(Color color) {
+		GL11.glClearColor(color.r, color.g, color.b, color.a);
+		GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
+	}
+
 	@Override
 	public RenderMode getMode() {
 		return mode;
@@ -317,6 +403,9 @@ public abstract class GL11Renderer implements Renderer {
 		if (this.mode == mode) {
 			return;
 		}
+		if (batch != null) {
+			batch.flush();
+		}
 		this.mode = mode;
 		if (this.mode == RenderMode.MODE_2D_COLOR_NOVBO && mode == RenderMode.MODE_2D_LINES_NOVBO) {
 			return;
@@ -340,7 +429,8 @@ public abstract class GL11Renderer implements Renderer {
 
 			GL11.glEnable(GL11.GL_BLEND);
 			GL11.glBlendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA);
-		} else if (mode == RenderMode.MODE_2D_SPRITE_NOVBO) {
+		} else if (mode == RenderMode.MODE_2D_SPRITE_NOVBO || mode == RenderMode.MODE_2D_SPRITE_BATCH
+				|| mode == RenderMode.MODE_2D_SPRITE_BATCH_VBO) {
 			GL11.glMatrixMode(GL11.GL_PROJECTION);
 			GL11.glLoadIdentity();
 			GL11.glOrtho(0, getRenderWidth(), getRenderHeight(), 0, 1, -1);
@@ -426,6 +516,9 @@ public abstract class GL11Renderer implements Renderer {
 		if (this.colorMode == mode) {
 			return;
 		}
+		if (batch != null) {
+			batch.flush();
+		}
 		this.colorMode = mode;
 
 		switch (mode) {
@@ -458,6 +551,18 @@ public abstract class GL11Renderer implements Renderer {
 			GL11.glColorMask(true, true, true, true);
 			GL11.glBlendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_COLOR);
 			break;
+		case BAKE:
+			// Colours are premultiplied by alpha and alpha is accumulated once.
+			GL11.glEnable(GL11.GL_BLEND);
+			GL11.glColorMask(true, true, true, true);
+			GL14.glBlendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE,
+					GL11.GL_ONE_MINUS_SRC_ALPHA);
+			break;
+		case PREMULTIPLIED:
+			GL11.glEnable(GL11.GL_BLEND);
+			GL11.glColorMask(true, true, true, true);
+			GL11.glBlendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+			break;
 		default:
 			break;
 		}
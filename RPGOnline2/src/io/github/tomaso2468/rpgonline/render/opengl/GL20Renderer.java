@@ -35,20 +35,72 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.newdawn.slick.util.Log;
 
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.TextureReference;
 import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.RenderMode;
 import io.github.tomaso2468.rpgonline.render.RenderResourceException;
 import io.github.tomaso2468.rpgonline.render.Shader;
 import io.github.tomaso2468.rpgonline.render.ShaderCompileException;
 import io.github.tomaso2468.rpgonline.render.ShaderLinkException;
+import io.github.tomaso2468.rpgonline.render.SpriteBatch;
 
 public abstract class GL20Renderer extends GL12Renderer {
+	private int batchVBO;
+
+	/**
+	 * Draws a batch of quads by uploading it to a vertex buffer object if the
+	 * batched VBO mode is in use.
+	 * 
+	 * @param texture The texture of the quads.
+	 * @param buffer  The vertex data of the quads.
+	 * @param quads   The number of quads.
+	 */
+	@Override
+	protected void drawBatch(TextureReference texture, FloatBuffer buffer, int quads) {
+		if (getMode() != RenderMode.MODE_2D_SPRITE_BATCH_VBO) {
+			super.drawBatch(texture, buffer, quads);
+			return;
+		}
+		if (batchVBO == 0) {
+			batchVBO = GL15.glGenBuffers();
+		}
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, batchVBO);
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STREAM_DRAW);
+
+		GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+		GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
+
+		GL11.glVertexPointer(2, GL11.GL_FLOAT, SpriteBatch.STRIDE, 0);
+		GL11.glTexCoordPointer(2, GL11.GL_FLOAT, SpriteBatch.STRIDE, 2 * 4);
+		GL11.glColorPointer(4, GL11.GL_FLOAT, SpriteBatch.STRIDE, 4 * 4);
+
+		GL11.glDrawArrays(GL11.GL_QUADS, 0, quads * 4);
+
+		GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+		GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+		GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+	}
+
+	@Override
+	public void exit(Game game) {
+		if (batchVBO != 0) {
+			GL15.glDeleteBuffers(batchVBO);
+			batchVBO = 0;
+		}
+	}
+
 	@Override
 	public void useShader(Shader shader) {
 		if (shader == null) {
@@ -183,6 +183,7 @@ public abstract class GL30Renderer extends GL20Renderer {
 	
 	@Override
 	public void exit(Game game) {
+		super.exit(game);
 		for (int i : fbos) {
 			GL30.glDeleteFramebuffers(i);
 		}
@@ -32,401 +32,661 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package io.github.tomaso2468.rpgonline.threading;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.newdawn.slick.util.Log;
 
 /**
- * A class that acts as a constantly running thread pool that tasks can be submitted to. This class will appear terminated until new tasks are submitted.
+ * <p>
+ * A constantly running thread pool that tasks can be submitted to.
+ * </p>
+ * <p>
+ * Tasks wait in a bounded priority queue. Tasks with a higher priority are run
+ * first and tasks with the same priority are run in the order they were
+ * submitted. Submitting never blocks: while the queue is full a new task
+ * replaces the queued task with the lowest priority if its own priority is
+ * higher and is rejected otherwise. The future of a rejected task throws an
+ * {@code ExecutionException} caused by a {@code RejectedExecutionException}.
+ * Idle threads wait on the queue without spinning and wake up as soon as a
+ * task is submitted.
+ * </p>
+ * <p>
+ * Tasks can be given a deadline. A task that is still queued when its deadline
+ * passes is not run and its future throws an {@code ExecutionException} caused
+ * by a {@code TimeoutException}. Cancelling a queued task removes it from the
+ * queue.
+ * </p>
+ * 
  * @author Tomaso2468
- *
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.PathFindingManager
  */
-public class ContinuousPool implements ExecutorService {
+public class ContinuousPool extends AbstractExecutorService {
+	/**
+	 * The priority of tasks submitted without a priority.
+	 */
+	public static final int DEFAULT_PRIORITY = 0;
+	/**
+	 * The lock guarding the queue and counters.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	/**
+	 * Signalled when a task is added or the pool is shut down.
+	 */
+	private final Condition notEmpty = lock.newCondition();
+	/**
+	 * Signalled when the last thread has finished.
+	 */
+	private final Condition terminated = lock.newCondition();
 	/**
 	 * The queue of tasks.
 	 */
-	private Queue<Callable<?>> tasks = new LinkedList<>();
+	private final TreeSet<PoolTask<?>> tasks = new TreeSet<PoolTask<?>>();
+	/**
+	 * The maximum number of queued tasks.
+	 */
+	private final int capacity;
+	/**
+	 * The pool of threads.
+	 */
+	private final Thread[] threads;
+	/**
+	 * The number of threads that have not finished.
+	 */
+	private int alive;
+	/**
+	 * The number of threads running a task.
+	 */
+	private int active;
 	/**
 	 * Determines if a shutdown was started.
 	 */
 	private boolean shutdown = false;
 	/**
-	 * The pool of threads.
+	 * The number of tasks submitted.
 	 */
-	private Thread[] threads;
-	
+	private long submitted;
 	/**
-	 * Constructs a new ContinuousPool.
+	 * The number of tasks that have been run.
+	 */
+	private long completed;
+	/**
+	 * The number of tasks that were not run because their deadline passed.
+	 */
+	private long expired;
+	/**
+	 * The number of tasks cancelled while queued.
+	 */
+	private long cancelled;
+	/**
+	 * The number of tasks rejected because the queue was full.
+	 */
+	private long rejected;
+	/**
+	 * The largest number of tasks that have been queued at once.
+	 */
+	private int maxDepth;
+
+	/**
+	 * Constructs a new ContinuousPool with a queue of 1024 tasks.
+	 * 
 	 * @param tc The number of threads to use.
-	 * @param sleepDelay The delay until a thread will sleep if no tasks are available.
-	 * @param sleepTime The time a thread will sleep for before checking for more tasks.
 	 */
-	public ContinuousPool(int tc, long sleepDelay, long sleepTime) {
+	public ContinuousPool(int tc) {
+		this(tc, 1024);
+	}
+
+	/**
+	 * Constructs a new ContinuousPool.
+	 * 
+	 * @param tc       The number of threads to use.
+	 * @param capacity The maximum number of queued tasks.
+	 */
+	public ContinuousPool(int tc, int capacity) {
+		if (tc < 1) {
+			throw new IllegalArgumentException("Thread count must be positive: " + tc);
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
 		threads = new Thread[tc];
-		
+		alive = tc;
+
 		for (int i = 0; i < threads.length; i++) {
-			threads[i] = new Thread() {
-				@Override
-				public void run() {
-					long time = System.currentTimeMillis();
-					
-					while (!shutdown) {
-						Callable<?> next = getNext();
-						if (next != null) {
-							time = System.currentTimeMillis();
-							
-							try {
-								next.call();
-							} catch (Exception e) {
-								Log.error("Error in ConinuousPool task", e);
-							}
-						}
-						
-						if (System.currentTimeMillis() > time + sleepDelay) {
-							try {
-								Thread.sleep(sleepTime);
-							} catch (InterruptedException e) {
-								// Assume shutdown
-							}
-						}
-					}
-				}
-			};
+			threads[i] = new Thread(this::work, "Continuous Pool " + i);
+			threads[i].setDaemon(true);
 		}
-		
+
 		for (int i = 0; i < threads.length; i++) {
 			threads[i].start();
 		}
 	}
-	
+
 	/**
-	 * Gets the next available task in the queue.
-	 * @return A callable object or null if no tasks are available.
+	 * Constructs a new ContinuousPool.
+	 * 
+	 * @param tc         The number of threads to use.
+	 * @param sleepDelay Ignored.
+	 * @param sleepTime  Ignored.
+	 * 
+	 * @deprecated Threads no longer sleep while polling. Use
+	 *             {@link #ContinuousPool(int, int)}.
 	 */
-	private synchronized Callable<?> getNext() {
-		return tasks.poll();
+	@Deprecated
+	public ContinuousPool(int tc, long sleepDelay, long sleepTime) {
+		this(tc);
 	}
-	
+
 	/**
-	 * {@inheritDoc}
+	 * The loop run by each thread.
 	 */
-	@Override
-	public synchronized void execute(Runnable command) {
-		submit(command);
+	private void work() {
+		try {
+			PoolTask<?> next;
+			while ((next = take()) != null) {
+				try {
+					if (next.isExpired()) {
+						next.expire();
+					} else {
+						next.run();
+					}
+				} finally {
+					lock.lock();
+					try {
+						active -= 1;
+						completed += 1;
+					} finally {
+						lock.unlock();
+					}
+				}
+			}
+		} finally {
+			lock.lock();
+			try {
+				alive -= 1;
+				if (alive == 0) {
+					terminated.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Waits for the next task in the queue.
+	 * 
+	 * @return A task or {@code null} if the pool has been shut down and the queue
+	 *         is empty.
 	 */
-	@Override
-	public synchronized void shutdown() {
-		shutdown = true;
+	private PoolTask<?> take() {
+		lock.lock();
+		try {
+			while (tasks.isEmpty()) {
+				if (shutdown) {
+					return null;
+				}
+				try {
+					notEmpty.await();
+				} catch (InterruptedException e) {
+					// Checked on the next loop.
+				}
+			}
+			PoolTask<?> next = tasks.pollFirst();
+			active += 1;
+			return next;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Adds a task to the queue without waiting. If the queue is full either the
+	 * queued task with the lowest priority or the new task is rejected, whichever
+	 * would run last.
+	 * 
+	 * @param task The task to add.
+	 * @throws RejectedExecutionException If the pool has been shut down.
 	 */
-	@Override
-	public synchronized List<Runnable> shutdownNow() {
-		shutdown();
-		return new ArrayList<Runnable>();
+	private void enqueue(PoolTask<?> task) {
+		PoolTask<?> dropped = null;
+		lock.lock();
+		try {
+			if (shutdown) {
+				throw new RejectedExecutionException("The pool has been shut down.");
+			}
+			task.sequence = submitted++;
+			if (tasks.size() >= capacity) {
+				PoolTask<?> lowest = tasks.last();
+				if (task.compareTo(lowest) < 0) {
+					tasks.remove(lowest);
+					tasks.add(task);
+					dropped = lowest;
+				} else {
+					dropped = task;
+				}
+				rejected += 1;
+			} else {
+				tasks.add(task);
+				maxDepth = Math.max(maxDepth, tasks.size());
+			}
+			if (dropped != task) {
+				notEmpty.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+		if (dropped != null) {
+			dropped.reject();
+		}
+	}
+
+	/**
+	 * Submits a task with a priority.
+	 * 
+	 * @param <T>      The type of the result.
+	 * @param task     The task to run.
+	 * @param priority The priority of the task. Higher priorities are run first.
+	 * @return A future representing the result of the task.
+	 */
+	public <T> Future<T> submit(Callable<T> task, int priority) {
+		PoolTask<T> t = new PoolTask<T>(task, priority, 0);
+		enqueue(t);
+		return t;
+	}
+
+	/**
+	 * Submits a task with a priority and a deadline.
+	 * 
+	 * @param <T>      The type of the result.
+	 * @param task     The task to run.
+	 * @param priority The priority of the task. Higher priorities are run first.
+	 * @param timeout  The time the task may wait in the queue or zero to wait
+	 *                 forever.
+	 * @param unit     The unit of the timeout.
+	 * @return A future representing the result of the task.
+	 */
+	public <T> Future<T> submit(Callable<T> task, int priority, long timeout, TimeUnit unit) {
+		long deadline = 0;
+		if (timeout > 0) {
+			deadline = System.nanoTime() + unit.toNanos(timeout);
+			if (deadline == 0) {
+				deadline = 1;
+			}
+		}
+		PoolTask<T> t = new PoolTask<T>(task, priority, deadline);
+		enqueue(t);
+		return t;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized boolean isShutdown() {
-		return shutdown;
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+		return new PoolTask<T>(callable, DEFAULT_PRIORITY, 0);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized boolean isTerminated() {
-		return tasks.size() == 0;
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new PoolTask<T>(Executors.callable(runnable, value), DEFAULT_PRIORITY, 0);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Adds a task to the queue. This method never blocks. If the queue is full the
+	 * task or a queued task with a lower priority is rejected.
 	 */
 	@Override
-	public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
-		return false;
+	public void execute(Runnable command) {
+		if (command instanceof PoolTask && ((PoolTask<?>) command).getPool() == this) {
+			enqueue((PoolTask<?>) command);
+		} else {
+			enqueue(new PoolTask<Object>(Executors.callable(command), DEFAULT_PRIORITY, 0));
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized <T> Future<T> submit(Callable<T> task) {
-		SetableFuture<T> future = new SetableFuture<T>();
-		
-		Callable<T> task2 = new Callable<T>() {
-
-			@Override
-			public T call() throws Exception {
-				T t = task.call();
-				future.setResult(t);
-				return t;
-			}
-			
-		};
-		future.register(task2);
-		
-		tasks.add(task2);
-		
-		return future;
+	public void shutdown() {
+		lock.lock();
+		try {
+			shutdown = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized <T> Future<T> submit(Runnable task, T result) {
-		return submit(new Callable<T>() {
-			@Override
-			public T call() throws Exception {
-				return result;
+	public List<Runnable> shutdownNow() {
+		List<Runnable> remaining = new ArrayList<Runnable>();
+		lock.lock();
+		try {
+			shutdown();
+			PoolTask<?> t;
+			while ((t = tasks.pollFirst()) != null) {
+				remaining.add(t);
 			}
-		});
+		} finally {
+			lock.unlock();
+		}
+		for (Thread t : threads) {
+			t.interrupt();
+		}
+		return remaining;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized Future<?> submit(Runnable task) {
-		return submit(task, (Void) null);
+	public boolean isShutdown() {
+		lock.lock();
+		try {
+			return shutdown;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
-		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
-		
-		for (Callable<T> c : tasks) {
-			futures.add(submit(c));
-		}
-		
-		while (true) {
-			boolean complete = true;
-			
-			for (Future<T> f : futures) {
-				if (!f.isDone()) {
-					complete = false;
-				}
-			}
-			
-			if (complete) break;
+	public boolean isTerminated() {
+		lock.lock();
+		try {
+			return shutdown && alive == 0;
+		} finally {
+			lock.unlock();
 		}
-		
-		return futures;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public synchronized <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
-			throws InterruptedException {
-		long time = System.currentTimeMillis() + unit.toMillis(timeout);
-		
-		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
-		
-		for (Callable<T> c : tasks) {
-			futures.add(submit(c));
-		}
-		
-		while (true) {
-			boolean complete = true;
-			
-			for (Future<T> f : futures) {
-				if (!f.isDone()) {
-					complete = false;
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lock();
+		try {
+			while (alive > 0) {
+				if (nanos <= 0) {
+					return false;
 				}
+				nanos = terminated.awaitNanos(nanos);
 			}
-			
-			if (complete || time > System.currentTimeMillis()) {
-				break;
-			}
-			
-			Thread.yield();
+			return true;
+		} finally {
+			lock.unlock();
 		}
-		
-		return futures;
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Gets the number of threads in this pool.
+	 * 
+	 * @return A positive integer.
 	 */
-	@Override
-	public synchronized <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
-		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
-		
-		for (Callable<T> c : tasks) {
-			futures.add(submit(c));
-		}
-		
-		Future<T> success = null;
-		
-		while (true) {
-			boolean complete = false;
-			
-			for (Future<T> f : futures) {
-				if (f.isDone()) {
-					complete = true;
-					success = f;
-				}
-			}
-			
-			if (complete) break;
+	public int getThreadCount() {
+		return threads.length;
+	}
+
+	/**
+	 * Gets the maximum number of queued tasks.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of tasks waiting to be run.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return tasks.size();
+		} finally {
+			lock.unlock();
 		}
+	}
 
-		for (Future<T> f : futures) {
-			if (f != success) {
-				f.cancel(true);
-			}
+	/**
+	 * Gets the largest number of tasks that have been waiting at once.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getMaxQueueDepth() {
+		lock.lock();
+		try {
+			return maxDepth;
+		} finally {
+			lock.unlock();
 		}
-		
-		return success.get();
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Gets the number of threads currently running a task.
+	 * 
+	 * @return A positive integer or zero.
 	 */
-	@Override
-	public synchronized <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
-			throws InterruptedException, ExecutionException, TimeoutException {
-		long time = System.currentTimeMillis() + unit.toMillis(timeout);
-		
-		List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
-		
-		for (Callable<T> c : tasks) {
-			futures.add(submit(c));
-		}
-		
-		Future<T> success = null;
-		
-		while (true) {
-			boolean complete = false;
-			
-			for (Future<T> f : futures) {
-				if (f.isDone()) {
-					complete = true;
-					success = f;
-				}
-			}
-			
-			if (complete || time > System.currentTimeMillis()) {
-				break;
-			}
+	public int getActiveCount() {
+		lock.lock();
+		try {
+			return active;
+		} finally {
+			lock.unlock();
 		}
+	}
 
-		for (Future<T> f : futures) {
-			if (f != success) {
-				f.cancel(true);
-			}
+	/**
+	 * Gets the number of tasks submitted to this pool.
+	 * 
+	 * @return A long value.
+	 */
+	public long getSubmittedCount() {
+		lock.lock();
+		try {
+			return submitted;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of tasks taken from the queue including tasks that expired.
+	 * 
+	 * @return A long value.
+	 */
+	public long getCompletedCount() {
+		lock.lock();
+		try {
+			return completed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of tasks that were not run because their deadline passed.
+	 * 
+	 * @return A long value.
+	 */
+	public long getExpiredCount() {
+		lock.lock();
+		try {
+			return expired;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Gets the number of tasks that were cancelled while queued.
+	 * 
+	 * @return A long value.
+	 */
+	public long getCancelledCount() {
+		lock.lock();
+		try {
+			return cancelled;
+		} finally {
+			lock.unlock();
 		}
-		
-		if (success == null) {
-			return null;
+	}
+
+	/**
+	 * Gets the number of tasks that were rejected because the queue was full.
+	 * 
+	 * @return A long value.
+	 */
+	public long getRejectedCount() {
+		lock.lock();
+		try {
+			return rejected;
+		} finally {
+			lock.unlock();
 		}
-		return success.get();
 	}
 
 	/**
-	 * A future implementation for this pool.
-	 * @author Tomas
+	 * A future for a task in this pool.
+	 * 
+	 * @author Tomaso2468
 	 *
-	 * @param <T> The type of the future.
+	 * @param <T> The type of the result.
 	 */
-	private final class SetableFuture<T> implements Future<T> {
+	private final class PoolTask<T> extends FutureTask<T> implements Comparable<PoolTask<?>> {
 		/**
-		 * The task.
+		 * The priority of the task.
 		 */
-		private Callable<T> task;
+		private final int priority;
 		/**
-		 * Determines if the task was cancelled.
+		 * The time after which the task will not be run or zero if the task has no
+		 * deadline.
 		 */
-		private boolean cancelled = false;
+		private final long deadline;
 		/**
-		 * Determines if the task is done.
+		 * The order the task was submitted in or {@code -1} if it has not been
+		 * queued.
 		 */
-		private boolean done = false;
+		private long sequence = -1;
+
 		/**
-		 * The result of the task.
+		 * Constructs a new PoolTask.
+		 * 
+		 * @param task     The task to run.
+		 * @param priority The priority of the task.
+		 * @param deadline The deadline as given by {@code System.nanoTime()} or zero
+		 *                 for no deadline.
 		 */
-		private T result;
-		
+		public PoolTask(Callable<T> task, int priority, long deadline) {
+			super(task);
+			this.priority = priority;
+			this.deadline = deadline;
+		}
+
 		/**
-		 * {@inheritDoc}
+		 * Gets the pool this task belongs to.
+		 * 
+		 * @return A pool.
 		 */
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			cancelled = true;
-			return tasks.remove(task);
+		public ContinuousPool getPool() {
+			return ContinuousPool.this;
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Determines if the deadline of this task has passed.
+		 * 
+		 * @return {@code true} if the task should not be run, {@code false}
+		 *         otherwise.
 		 */
-		@Override
-		public boolean isCancelled() {
-			return cancelled;
+		public boolean isExpired() {
+			return deadline != 0 && System.nanoTime() - deadline > 0;
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Completes this task with a {@code TimeoutException} without running it.
 		 */
-		@Override
-		public boolean isDone() {
-			return done;
+		public void expire() {
+			super.setException(new TimeoutException("Task was not started before its deadline."));
+			lock.lock();
+			try {
+				expired += 1;
+			} finally {
+				lock.unlock();
+			}
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Completes this task with a {@code RejectedExecutionException} without
+		 * running it.
 		 */
-		@Override
-		public T get() throws InterruptedException, ExecutionException {
-			return result;
+		public void reject() {
+			super.setException(new RejectedExecutionException("The queue was full."));
 		}
 
 		/**
-		 * {@inheritDoc}
+		 * Logs the error before storing it in the future.
 		 */
 		@Override
-		public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-			return result;
+		protected void setException(Throwable t) {
+			Log.error("Error in ContinuousPool task", t);
+			super.setException(t);
 		}
-		
+
 		/**
-		 * Sets the result of the task.
-		 * @param t A object of type T
+		 * Cancels this task and removes it from the queue if it has not started.
 		 */
-		public void setResult(T t) {
-			result = t;
-			done = true;
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean result = super.cancel(mayInterruptIfRunning);
+			if (result) {
+				lock.lock();
+				try {
+					if (tasks.remove(this)) {
+						cancelled += 1;
+					}
+				} finally {
+					lock.unlock();
+				}
+			}
+			return result;
 		}
-		
+
 		/**
-		 * Registers a callable for this task.
-		 * @param c A callable object.
+		 * Orders tasks by highest priority and then by submission order.
 		 */
-		public void register(Callable<T> c) {
-			this.task = c;
+		@Override
+		public int compareTo(PoolTask<?> o) {
+			if (priority != o.priority) {
+				return priority > o.priority ? -1 : 1;
+			}
+			return Long.compare(sequence, o.sequence);
 		}
 	}
 }
@@ -41,8 +41,8 @@ import org.newdawn.slick.util.Log;
 
 import io.github.tomaso2468.abt.*;
 import io.github.tomaso2468.rpgonline.net.ServerManager;
-import io.github.tomaso2468.rpgonline.world2d.chunk.CacheEntry;
 import io.github.tomaso2468.rpgonline.world2d.chunk.Chunk;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkFormat;
 import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
 import io.github.tomaso2468.rpgonline.world2d.net.Client2D;
 
@@ -96,7 +96,7 @@ public class ABTNetWorld extends ChunkWorld {
 						long z = ((TagLong) tg.getTag("z")).getData();
 						
 						try {
-							loadChunk(registry, x, y, z, tg, getChunk(x, y, z));
+							fireChunkChanged(loadChunk(registry, x, y, z, tg, getChunk(x, y, z)));
 						} catch (IOException e) {
 							Log.error("Error loading chunk.", e);
 						}
@@ -110,44 +110,18 @@ public class ABTNetWorld extends ChunkWorld {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected synchronized Chunk getChunk(long x, long y, long z) {
-		long cx = (int) Math.floor(x / (Chunk.SIZE * 1f));
-		long cy = (int) Math.floor(y / (Chunk.SIZE * 1f));
-		long cz = (int) Math.floor(z / (2 * 1f));
-
-		if (last_chunk != null) {
-			if (last_chunk.isAt(cx, cy, cz)) {
-				return last_chunk;
-			}
-		}
-
-		synchronized (cache) {
-			for (CacheEntry e : cache) {
-				Chunk chunk = e.getChunk();
-				if (chunk.isAt(cx, cy, cz)) {
-					e.setTime(System.currentTimeMillis());
-					last_chunk = chunk;
-					return chunk;
-				}
-			}
-		}
-
-		for (Chunk chunk : chunks) {
-			if (chunk.isAt(cx, cy, cz)) {
-				cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
-				last_chunk = chunk;
-				return chunk;
-			}
-		}
-		
+	protected Chunk createChunk(long cx, long cy, long cz) {
 		((Client2D) ServerManager.getClient()).requestChunk(cx, cy, cz);
 
-		Chunk chunk = new Chunk(registry, cx, cy, cz);
-		chunks.add(chunk);
-		cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
-		last_chunk = chunk;
-
-		return chunk;
+		return new Chunk(registry, cx, cy, cz);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean unloadChunk(Chunk chunk) {
+		return true;
 	}
 	
 	/**
@@ -162,31 +136,7 @@ public class ABTNetWorld extends ChunkWorld {
 	 * @throws IOException If an error occurs reading world data.
 	 */
 	protected Chunk loadChunk(Map<String, Tile> registry, long x, long y, long z, TagGroup tg, Chunk c) throws IOException {
-		int version = ((TagInt) tg.getTag("version")).getData();
-		
-		if (version == 0) {
-			if (x == ((TagLong) tg.getTag("x")).getData()
-					&& y == ((TagLong) tg.getTag("y")).getData()
-					&& z == ((TagLong) tg.getTag("z")).getData()) {
-				for (int cz = 0; cz < 1; cz++) {
-					for (int cy = 0; cy < Chunk.SIZE; cy++) {
-						for (int cx = 0; cx < Chunk.SIZE; cx++) {
-							c.setTile(cx, cy, cz, registry.get(((TagString) tg.getTag("tile/" + cz + "/" + cy + "/" + cx)).getData()));
-							c.setState(cx, cy, cz, ((TagString) tg.getTag("state/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setFlag(cx, cy, cz, ((TagBoolean) tg.getTag("flag/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setArea(cx, cy, cz, ((TagString) tg.getTag("area/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setBiome(cx, cy, cz, ((TagInt) tg.getTag("biome/" + cz + "/" + cy + "/" + cx)).getData());
-						}
-					}
-				}
-				
-				return c;
-			} else {
-				throw new IOException("Chunk has inconsistant location data.");
-			}
-		} else {
-			throw new IOException("Chunk file is from newer version.");
-		}
+		return ChunkFormat.readTags(registry, x, y, z, tg, c);
 	}
 	
 	/**
@@ -33,28 +33,47 @@ package io.github.tomaso2468.rpgonline.world2d;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.newdawn.slick.Color;
 import org.newdawn.slick.util.Log;
 
 import io.github.tomaso2468.abt.*;
-import io.github.tomaso2468.rpgonline.world2d.chunk.CacheEntry;
 import io.github.tomaso2468.rpgonline.world2d.chunk.Chunk;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkFormat;
 import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.chunk.RegionFile;
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
 import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
 
 /**
- * A world format that stores data as ABT.
+ * A world format that stores world metadata as ABT and chunks in region files.
  * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.chunk.RegionFile
+ * @see io.github.tomaso2468.rpgonline.world2d.chunk.RegionConverter
  */
 public class ABTWorld extends ChunkWorld {
 	/**
@@ -65,6 +84,57 @@ public class ABTWorld extends ChunkWorld {
 	 * The format version number for this ABTWorld.
 	 */
 	protected int format;
+	/**
+	 * The maximum number of region files to keep open.
+	 */
+	private static final int MAX_OPEN_REGIONS = 64;
+	/**
+	 * The open region files in least recently used order.
+	 */
+	protected final Map<File, RegionFile> regions = new LinkedHashMap<File, RegionFile>(16, 0.75f, true) {
+		private static final long serialVersionUID = -3271380466213848432L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, RegionFile> eldest) {
+			if (size() > MAX_OPEN_REGIONS) {
+				try {
+					eldest.getValue().close();
+				} catch (IOException e) {
+					Log.error("Error closing region file.", e);
+				}
+				return true;
+			}
+			return false;
+		}
+	};
+	/**
+	 * The threads used to encode and write chunks.
+	 */
+	private final ExecutorService saveExecutor = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+		Thread t = new Thread(r, "ABTWorld Save");
+		t.setDaemon(true);
+		return t;
+	});
+	/**
+	 * Snapshots of chunks waiting to be written keyed by chunk position.
+	 */
+	private final Map<String, Chunk> pending = new ConcurrentHashMap<String, Chunk>();
+	/**
+	 * The keys of pending snapshots that failed to write and should be retried by the next save.
+	 */
+	private final Set<String> failed = ConcurrentHashMap.newKeySet();
+	/**
+	 * The number of save jobs that have not finished.
+	 */
+	private final AtomicInteger saveQueue = new AtomicInteger();
+	/**
+	 * The number of chunks that have been written.
+	 */
+	private final AtomicLong savedChunks = new AtomicLong();
+	/**
+	 * The time taken by the most recent save in nanoseconds.
+	 */
+	private volatile long lastSaveTime = 0;
 	/**
 	 * 
 	 * @param folder The folder containing world data.
@@ -136,64 +206,256 @@ public class ABTWorld extends ChunkWorld {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected synchronized Chunk getChunk(long x, long y, long z) {
-		long cx = (int) Math.floor(x / (Chunk.SIZE * 1f));
-		long cy = (int) Math.floor(y / (Chunk.SIZE * 1f));
-		long cz = (int) Math.floor(z / (2 * 1f));
-
-		if (last_chunk != null) {
-			if (last_chunk.isAt(cx, cy, cz)) {
-				return last_chunk;
-			}
+	protected Chunk createChunk(long cx, long cy, long cz) {
+		Chunk p = pending.get(chunkKey(cx, cy, cz));
+		if (p != null) {
+			// The chunk was unloaded but has not been written yet.
+			return p.snapshot();
 		}
-
-		synchronized (cache) {
-			for (CacheEntry e : cache) {
-				Chunk chunk = e.getChunk();
-				if (chunk.isAt(cx, cy, cz)) {
-					e.setTime(System.currentTimeMillis());
-					last_chunk = chunk;
-					return chunk;
+		
+		try {
+			ByteBuffer buf = readRegionChunk(cx, cy, cz);
+			if (buf != null) {
+				Chunk c = ChunkFormat.read(registry, buf);
+				if (c.isAt(cx, cy, cz)) {
+					return c;
 				}
+				Log.error("Chunk " + cx + " " + cy + " " + cz + " has inconsistant location data.");
 			}
+		} catch (IOException e) {
+			Log.error("Error reading chunk " + cx + " " + cy + " " + cz + " from region file", e);
 		}
+		
+		File f = getChunkFile(cx, cy, cz);
 
-		for (Chunk chunk : chunks) {
-			if (chunk.isAt(cx, cy, cz)) {
-				cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
-				last_chunk = chunk;
-				return chunk;
+		if (f.exists()) {
+			try {
+				Chunk c = loadChunk(registry, cx, cy, cz, f);
+				// Mark as dirty so that the chunk is moved to a region file.
+				c.setDirty(true);
+				return c;
+			} catch (IOException | NullPointerException e) {
+				Log.error("Error reading chunk from file " + f.getName(), e);
 			}
 		}
 		
-		File f = new File(folder, "chunk_" + Long.toHexString(x) + "_" + Long.toHexString(y) + "_" + Long.toHexString(z) + ".abt");
+		File legacy = getLegacyChunkFile(cx, cy, cz);
 		
-		if (f.exists()) {
-			Chunk c;
+		if (legacy.exists()) {
 			try {
-				c = loadChunk(registry, cx, cy, cz, f);
-				
-				chunks.add(c);
-				cache.add(new CacheEntry(c, System.currentTimeMillis()));
-				last_chunk = c;
-				
+				Chunk c = loadChunk(registry, cx, cy, cz, legacy);
+				// Mark as dirty so that the chunk is written in the binary format.
+				c.setDirty(true);
 				return c;
-			} catch (IOException | NullPointerException e) {
-				Log.error("Error reading chunk from file " + f.getName(), e);
+			} catch (IOException | NullPointerException | ClassCastException e) {
+				Log.error("Error reading chunk from file " + legacy.getName(), e);
 			}
 		}
 
 		Chunk chunk = new Chunk(registry, cx, cy, cz);
 		generateChunk(chunk);
-		chunks.add(chunk);
-		cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
-		last_chunk = chunk;
 
 		return chunk;
 	}
 	
 	/**
-	 * Loads a chunk from a file.
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean unloadChunk(Chunk chunk) {
+		if (chunk.isDirty()) {
+			queueChunk(chunk);
+		}
+		return true;
+	}
+	
+	/**
+	 * Takes a snapshot of a chunk, marks it as saved and queues the snapshot to be written to its region file.
+	 * @param c The chunk to write.
+	 * @return A future that completes once the chunk has been written or the write has failed.
+	 */
+	protected CompletableFuture<Void> queueChunk(Chunk c) {
+		String key = chunkKey(c.getX(), c.getY(), c.getZ());
+		
+		c.setDirty(false);
+		Chunk snapshot = c.snapshot();
+		pending.put(key, snapshot);
+		failed.remove(key);
+		
+		return queueSnapshot(key, snapshot);
+	}
+	
+	/**
+	 * Queues a pending snapshot to be written to its region file. If the write fails the snapshot is kept so that it can still be loaded and is retried by the next save.
+	 * @param key The key of the chunk in the pending snapshots.
+	 * @param snapshot The snapshot to write.
+	 * @return A future that completes once the chunk has been written or the write has failed.
+	 */
+	private CompletableFuture<Void> queueSnapshot(String key, Chunk snapshot) {
+		return submit(() -> {
+			try {
+				writeChunk(key, snapshot);
+			} catch (IOException | RuntimeException e) {
+				Log.error("Error writing chunk " + snapshot.getX() + " " + snapshot.getY() + " " + snapshot.getZ(), e);
+				if (pending.get(key) == snapshot) {
+					failed.add(key);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Runs a save job on the save threads. If the world has been closed the job is run on the calling thread instead.
+	 * @param r The job to run.
+	 * @return A future that completes once the job has finished.
+	 */
+	private CompletableFuture<Void> submit(Runnable r) {
+		saveQueue.incrementAndGet();
+		Runnable job = () -> {
+			try {
+				r.run();
+			} finally {
+				saveQueue.decrementAndGet();
+			}
+		};
+		
+		try {
+			return CompletableFuture.runAsync(job, saveExecutor);
+		} catch (RejectedExecutionException e) {
+			job.run();
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+	
+	/**
+	 * Writes a chunk snapshot to its region file unless a newer snapshot of the same chunk has been queued.
+	 * @param key The key of the chunk in the pending snapshots.
+	 * @param c The snapshot to write.
+	 * @throws IOException If an error occurs writing chunk data.
+	 */
+	protected void writeChunk(String key, Chunk c) throws IOException {
+		byte[] data = ChunkFormat.write(c);
+		
+		synchronized (regions) {
+			if (pending.get(key) != c) {
+				return;
+			}
+			getRegion(c.getX(), c.getY(), c.getZ(), true).write(RegionFile.toLocal(c.getX()), RegionFile.toLocal(c.getY()), data);
+			pending.remove(key, c);
+		}
+		
+		savedChunks.incrementAndGet();
+	}
+	
+	/**
+	 * Gets the key of a chunk in the pending snapshots.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A string key.
+	 */
+	private static String chunkKey(long cx, long cy, long cz) {
+		return cx + "_" + cy + "_" + cz;
+	}
+	
+	/**
+	 * Reads the data of a chunk from its region file.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A buffer containing the chunk in the binary chunk format or {@code null} if the chunk is not stored in a region file.
+	 * @throws IOException If an error occurs reading the region file.
+	 */
+	protected ByteBuffer readRegionChunk(long cx, long cy, long cz) throws IOException {
+		synchronized (regions) {
+			RegionFile r = getRegion(cx, cy, cz, false);
+			if (r == null) {
+				return null;
+			}
+			return r.read(RegionFile.toLocal(cx), RegionFile.toLocal(cy));
+		}
+	}
+	
+	/**
+	 * Gets the region file containing a chunk opening it if needed. This must be called while holding the lock on {@code regions}.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @param create Determines if the region file should be created if it does not exist.
+	 * @return A region file or {@code null} if the file does not exist and {@code create} is {@code false}.
+	 * @throws IOException If an error occurs opening the region file.
+	 */
+	protected RegionFile getRegion(long cx, long cy, long cz, boolean create) throws IOException {
+		File f = getRegionFile(RegionFile.toRegion(cx), RegionFile.toRegion(cy), cz);
+		RegionFile r = regions.get(f);
+		
+		if (r == null) {
+			if (!create && !f.exists()) {
+				return null;
+			}
+			r = new RegionFile(f);
+			regions.put(f, r);
+		}
+		
+		return r;
+	}
+	
+	/**
+	 * Closes all open region files. Region files are reopened when they are next used.
+	 */
+	public void closeRegions() {
+		synchronized (regions) {
+			for (RegionFile r : regions.values()) {
+				try {
+					r.close();
+				} catch (IOException e) {
+					Log.error("Error closing region file.", e);
+				}
+			}
+			regions.clear();
+		}
+	}
+	
+	/**
+	 * Gets the region file used to store a block of chunks.
+	 * @param rx The X position of the region.
+	 * @param ry The Y position of the region.
+	 * @param cz The Z position of the chunks.
+	 * @return A file object.
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.world2d.chunk.RegionFile
+	 */
+	protected File getRegionFile(long rx, long ry, long cz) {
+		return new File(folder, "region_" + Long.toHexString(rx) + "_" + Long.toHexString(ry) + "_" + Long.toHexString(cz) + ".region");
+	}
+	
+	/**
+	 * Gets the file used to store a single chunk by older versions.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A file object.
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.world2d.chunk.ChunkFormat
+	 */
+	protected File getChunkFile(long cx, long cy, long cz) {
+		return new File(folder, "chunk_" + Long.toHexString(cx) + "_" + Long.toHexString(cy) + "_" + Long.toHexString(cz) + ".chunk");
+	}
+	
+	/**
+	 * Gets the file used to store a single chunk as an ABT tag tree by older versions.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A file object.
+	 */
+	protected File getLegacyChunkFile(long cx, long cy, long cz) {
+		return new File(folder, "chunk_" + Long.toHexString(cx) + "_" + Long.toHexString(cy) + "_" + Long.toHexString(cz) + ".abt");
+	}
+	
+	/**
+	 * Loads a chunk from a file. Both binary chunk files and ABT chunk files are
+	 * supported.
 	 * @param registry The tile registry to use.
 	 * @param x The X position of the chunk.
 	 * @param y The Y position of the chunk.
@@ -204,44 +466,38 @@ public class ABTWorld extends ChunkWorld {
 	 * @throws IOException If an error occurs reading chunk data.
 	 */
 	protected Chunk loadChunk(Map<String, Tile> registry, long x, long y, long z, File f) throws FileNotFoundException, IOException {
-		TagDoc d = TagDoc.read(new GZIPInputStream(new BufferedInputStream(new FileInputStream(f))), "map_c");
-		
-		TagGroup tg = d.getTags();
-		
-		int version = ((TagInt) tg.getTag("version")).getData();
+		ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(f.toPath()));
 		
-		if (version == 0) {
-			if (x == ((TagLong) tg.getTag("x")).getData()
-					&& y == ((TagLong) tg.getTag("y")).getData()
-					&& z == ((TagLong) tg.getTag("z")).getData()) {
-				Chunk c = new Chunk(registry, x, y, z);
-				
-				for (int cz = 0; cz < 1; cz++) {
-					for (int cy = 0; cy < Chunk.SIZE; cy++) {
-						for (int cx = 0; cx < Chunk.SIZE; cx++) {
-							c.setTile(cx, cy, cz, registry.get(((TagString) tg.getTag("tile/" + cz + "/" + cy + "/" + cx)).getData()));
-							c.setState(cx, cy, cz, ((TagString) tg.getTag("state/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setFlag(cx, cy, cz, ((TagBoolean) tg.getTag("flag/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setArea(cx, cy, cz, ((TagString) tg.getTag("area/" + cz + "/" + cy + "/" + cx)).getData());
-							c.setBiome(cx, cy, cz, ((TagInt) tg.getTag("biome/" + cz + "/" + cy + "/" + cx)).getData());
-						}
-					}
-				}
-				
-				return c;
-			} else {
+		if (ChunkFormat.isBinary(buf)) {
+			Chunk c = ChunkFormat.read(registry, buf);
+			if (!c.isAt(x, y, z)) {
 				throw new IOException("Chunk has inconsistant location data.");
 			}
-		} else {
-			throw new IOException("Chunk file is from newer version.");
+			return c;
 		}
+		
+		TagDoc d = TagDoc.read(new GZIPInputStream(new ByteArrayInputStream(buf.array(), 0, buf.limit())), "map_c");
+		
+		return ChunkFormat.readTags(registry, x, y, z, d.getTags(), new Chunk(registry, x, y, z));
 	}
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * This method blocks until all data has been written.
 	 */
 	@Override
 	public void save() {
+		saveAsync().join();
+	}
+	
+	/**
+	 * Saves the world without waiting for data to be written. World metadata is collected and snapshots of all changed chunks are taken on the calling thread. The data is then encoded and written by background threads.
+	 * @return A future that completes once all data has been written or failed to write.
+	 */
+	public CompletableFuture<Void> saveAsync() {
+		long start = System.nanoTime();
+		
 		TagGroup tg = new TagGroup("map");
 		tg.add(new TagInt("version", 0));
 		
@@ -271,24 +527,79 @@ public class ABTWorld extends ChunkWorld {
 			entities.add(e.toABT(e.toString()));
 		}
 		
+		tg.add(entities);
+		
 		TagDoc d = new TagDoc("map", tg);
 		
-		try {
-			d.write(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(new File(folder, "map.abt")))));
-		} catch (IOException e) {
-			Log.error("Error writing map data.", e);
-		}
+		List<CompletableFuture<Void>> jobs = new ArrayList<CompletableFuture<Void>>();
 		
-		for (Chunk c : chunks) {
-			File f = new File(folder, "chunk_" + Long.toHexString(c.getX()) + "_" + Long.toHexString(c.getY()) + "_" + Long.toHexString(c.getZ()) + ".abt");
-			TagDoc doc = new TagDoc("map_c", c.save());
-			
-			try {
-				doc.write(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(f))));
+		jobs.add(submit(() -> {
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(folder, "map.abt")))) {
+				d.write(out);
 			} catch (IOException e) {
-				Log.error("Error writing chunk " + c.getX() + " " + c.getY() + " " + c.getZ(), e);
+				Log.error("Error writing map data.", e);
+			}
+		}));
+		
+		for (Chunk c : getChunks()) {
+			if (c.isDirty()) {
+				jobs.add(queueChunk(c));
+			}
+		}
+		
+		for (String key : failed) {
+			failed.remove(key);
+			Chunk snapshot = pending.get(key);
+			if (snapshot != null) {
+				jobs.add(queueSnapshot(key, snapshot));
 			}
 		}
+		
+		return CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[jobs.size()])).whenComplete((v, e) -> {
+			lastSaveTime = System.nanoTime() - start;
+		});
+	}
+	
+	/**
+	 * Saves the world, waits for all queued writes (including those of unloaded chunks) to finish and closes all files.
+	 * After the world has been closed chunks are written on the thread that saves or unloads them and any region files opened by those writes must be closed with {@link #closeRegions()}.
+	 */
+	public void close() {
+		save();
+		saveExecutor.shutdown();
+		try {
+			while (!saveExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+				Log.warn("Waiting for " + saveQueue.get() + " chunk writes to finish.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			Log.error("Interrupted while waiting for chunks to be written.", e);
+		}
+		closeRegions();
+	}
+	
+	/**
+	 * Gets the number of save jobs that have been queued but not finished.
+	 * @return A positive integer.
+	 */
+	public int getSaveQueueDepth() {
+		return saveQueue.get();
+	}
+	
+	/**
+	 * Gets the time taken by the most recent call to {@link #saveAsync()} to write all data.
+	 * @return A time in nanoseconds.
+	 */
+	public long getLastSaveTime() {
+		return lastSaveTime;
+	}
+	
+	/**
+	 * Gets the number of chunks that have been written.
+	 * @return A long value.
+	 */
+	public long getSavedChunkCount() {
+		return savedChunks.get();
 	}
 	
 	/**
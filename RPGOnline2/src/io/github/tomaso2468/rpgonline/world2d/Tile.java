@@ -50,6 +50,10 @@ public class Tile {
 	 * The default hitbox.
 	 */
 	private static final Rectangle defaultBox = new Rectangle(0, 0, 1, 1);
+	/**
+	 * The cached bounds of the hitbox.
+	 */
+	private volatile float[] bounds;
 	/**
 	 * The color on maps of this tile.
 	 */
@@ -181,4 +185,20 @@ public class Tile {
 	public Rectangle getHitBox() {
 		return defaultBox;
 	}
+	
+	/**
+	 * Gets the hitbox of this tile as primitive values. The hitbox is only read
+	 * the first time this method is called so it must not change.
+	 * @return An array containing the X position, Y position, width and height of
+	 *         the hitbox. This array must not be modified.
+	 */
+	public final float[] getHitBoxBounds() {
+		float[] b = bounds;
+		if (b == null) {
+			Rectangle r = getHitBox();
+			b = new float[] { r.getX(), r.getY(), r.getWidth(), r.getHeight() };
+			bounds = b;
+		}
+		return b;
+	}
 }
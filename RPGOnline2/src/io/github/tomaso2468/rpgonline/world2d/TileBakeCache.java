@@ -0,0 +1,701 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.newdawn.slick.Color;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.RPGConfig;
+import io.github.tomaso2468.rpgonline.TextureMap;
+import io.github.tomaso2468.rpgonline.render.ColorMode;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.Renderer;
+
+/**
+ * <p>
+ * A cache of tile layers pre-rendered into offscreen images.
+ * </p>
+ * <p>
+ * The world is split into units of {@code size} by {@code size} tiles on each
+ * Z layer. The static textures of a unit are drawn once into an image with a
+ * border of one tile for textures that overhang their tile. The unit can then
+ * be drawn with a single quad. Units containing textures that are not static
+ * are not baked and are drawn tile by tile so they are drawn in the same order
+ * as without baking.
+ * </p>
+ * <p>
+ * Units are baked with {@link ColorMode#BAKE} so the images hold premultiplied
+ * colours and must be drawn with {@link ColorMode#PREMULTIPLIED}. This keeps
+ * partly transparent textures from being blended twice.
+ * </p>
+ * <p>
+ * Units are marked for rebaking when tiles in or next to them change. The
+ * memory used by baked images is limited by a budget. When the budget is full
+ * the least recently drawn unit that was not drawn in the current or previous
+ * frame is replaced. Memory is counted using power of two texture sizes.
+ * </p>
+ * <p>
+ * Images of replaced units are reused for the next unit. Images of all units
+ * are kept in a free list when everything is rebaked and a unit that can no
+ * longer be baked moves its image to the list. Free images are reused before
+ * new images are created. Images are only destroyed when their size no longer
+ * matches the tile size or when the cache is disposed.
+ * </p>
+ * <p>
+ * All methods apart from {@code tilesChanged()} must be called on the render
+ * thread.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.TileRenderCache
+ * @see io.github.tomaso2468.rpgonline.world2d.WorldState#setTileBakingEnabled(boolean)
+ */
+public class TileBakeCache implements WorldChangeListener {
+	/**
+	 * The default width and height of a unit in tiles. With a border on each
+	 * side this gives images of 512 by 512 pixels for 16 pixel tiles.
+	 */
+	public static final int DEFAULT_SIZE = 30;
+	/**
+	 * The default memory budget in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 128L * 1024 * 1024;
+	/**
+	 * The colour used to clear images before baking.
+	 */
+	private static final Color CLEAR = new Color(0, 0, 0, 0);
+	/**
+	 * The world to cache.
+	 */
+	private final World world;
+	/**
+	 * The width and height of a unit in tiles.
+	 */
+	private final int size;
+	/**
+	 * Determines if the world reports changes.
+	 */
+	private final boolean enabled;
+	/**
+	 * The baked units in order of last use.
+	 */
+	private final LinkedHashMap<Long, Bake> bakes = new LinkedHashMap<Long, Bake>(16, 0.75f, true);
+	/**
+	 * The keys of units that have changed since the last frame.
+	 */
+	private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+	/**
+	 * Images that are no longer used by any unit.
+	 */
+	private final List<Image> free = new ArrayList<Image>();
+	/**
+	 * The memory budget in bytes.
+	 */
+	private long budget = DEFAULT_BUDGET;
+	/**
+	 * The maximum number of units baked each frame.
+	 */
+	private int maxBakesPerFrame = 4;
+	/**
+	 * The number of units that can still be baked this frame.
+	 */
+	private int bakesLeft;
+	/**
+	 * The memory used by all images in bytes.
+	 */
+	private long bytes;
+	/**
+	 * The current frame number.
+	 */
+	private int frame;
+	/**
+	 * Set when all units must be rebaked.
+	 */
+	private volatile boolean reset;
+	/**
+	 * The texture map used to bake the cached units.
+	 */
+	private TextureMap textureMap;
+	/**
+	 * The tile size used to bake the cached units.
+	 */
+	private float tileSize;
+	/**
+	 * The wind setting used to bake the cached units.
+	 */
+	private boolean wind;
+	/**
+	 * The number of units baked.
+	 */
+	private long bakeCount;
+	/**
+	 * The number of units replaced to stay within the budget.
+	 */
+	private long evictions;
+
+	/**
+	 * Constructs a new TileBakeCache with the default unit size.
+	 * 
+	 * @param world The world to cache.
+	 */
+	public TileBakeCache(World world) {
+		this(world, DEFAULT_SIZE);
+	}
+
+	/**
+	 * Constructs a new TileBakeCache.
+	 * 
+	 * @param world The world to cache.
+	 * @param size  The width and height of a unit in tiles.
+	 */
+	public TileBakeCache(World world, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Unit size must be positive: " + size);
+		}
+		this.world = world;
+		this.size = size;
+		this.enabled = world.addChangeListener(this);
+	}
+
+	/**
+	 * Gets the world cached by this object.
+	 * 
+	 * @return A world.
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Determines if the cache can be used.
+	 * 
+	 * @return {@code true} if the world reports changes, {@code false} otherwise.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Gets the width and height of a unit.
+	 * 
+	 * @return A size in tiles.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Prepares the cache for a new frame. All units are rebaked if the texture
+	 * map, tile size or wind setting has changed and changed units are marked
+	 * for rebaking.
+	 * 
+	 * @param game The current game.
+	 */
+	public void beginFrame(Game game) {
+		frame += 1;
+		bakesLeft = maxBakesPerFrame;
+		if (reset || game.getTextures() != textureMap || RPGConfig.getTileSize() != tileSize
+				|| RPGConfig.isWind() != wind) {
+			reset = false;
+			textureMap = game.getTextures();
+			tileSize = RPGConfig.getTileSize();
+			wind = RPGConfig.isWind();
+			dirty.clear();
+			for (Bake b : bakes.values()) {
+				if (b.image != null) {
+					free.add(b.image);
+				}
+			}
+			bakes.clear();
+		}
+		if (!dirty.isEmpty()) {
+			Iterator<Long> i = dirty.iterator();
+			while (i.hasNext()) {
+				Bake b = bakes.get(i.next());
+				i.remove();
+				if (b != null) {
+					b.valid = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines if a unit must be baked before it can be drawn from the cache.
+	 * 
+	 * @param bx The X position of the unit.
+	 * @param by The Y position of the unit.
+	 * @param z  The Z position of the unit.
+	 * @return {@code true} if the unit is not baked or has changed, {@code false}
+	 *         otherwise.
+	 */
+	public boolean needsBake(long bx, long by, long z) {
+		Bake b = bakes.get(key(bx, by, z));
+		return b == null || !b.valid;
+	}
+
+	/**
+	 * Bakes a unit if the frame limit and memory budget allow it. The render
+	 * target is changed to the image of the unit and is not restored. Units
+	 * containing textures that are not static are marked as checked without
+	 * being baked and without changing the render target.
+	 * 
+	 * @param game     The current game.
+	 * @param renderer The renderer to use.
+	 * @param tiles    The cache of tile textures.
+	 * @param bx       The X position of the unit.
+	 * @param by       The Y position of the unit.
+	 * @param z        The Z position of the unit.
+	 * @return {@code true} if the unit was baked, {@code false} otherwise.
+	 * @throws RenderException If an error occurs rendering the unit.
+	 */
+	public boolean bake(Game game, Renderer renderer, TileRenderCache tiles, long bx, long by, long z)
+			throws RenderException {
+		if (bakesLeft <= 0) {
+			return false;
+		}
+		Long key = key(bx, by, z);
+		Bake b = bakes.get(key);
+		if (!isStatic(tiles, bx, by, z)) {
+			if (b == null) {
+				b = new Bake(bx, by, z);
+				bakes.put(key, b);
+			} else if (b.image != null) {
+				free.add(b.image);
+				b.image = null;
+			}
+			b.valid = true;
+			return false;
+		}
+		if (b == null) {
+			b = new Bake(bx, by, z);
+			bakes.put(key, b);
+		}
+		if (b.image == null) {
+			b.image = allocate(renderer);
+			if (b.image == null) {
+				return false;
+			}
+		}
+		bakesLeft -= 1;
+		bakeCount += 1;
+		b.lastFrame = frame;
+
+		long minX = bx * size;
+		long minY = by * size;
+		float ox = (minX - 1) * tileSize;
+		float oy = (minY - 1) * tileSize;
+
+		renderer.setRenderTarget(b.image);
+		renderer.clear(CLEAR);
+		ColorMode colorMode = renderer.getColorMode();
+		renderer.setColorMode(ColorMode.BAKE);
+		Image current = null;
+		for (long y = minY; y < minY + size; y++) {
+			long x = minX;
+			while (x < minX + size) {
+				TileRenderCache.Section s = tiles.getSection(x, y, z);
+				long end = Math.min(minX + size - 1, s.getMaxX());
+				for (; x <= end; x++) {
+					int last = s.getEnd(x, y);
+					for (int i = s.getStart(x, y); i < last; i++) {
+						Image img = s.getImage(i);
+						Image sheet = s.getSheet(i);
+						if (sheet != current) {
+							if (current != null)
+								renderer.endUse(current);
+							current = sheet;
+							renderer.startUse(current);
+						}
+						renderer.renderEmbedded(img, s.getX(i) - ox, s.getY(i) - oy, img.getWidth(), img.getHeight());
+					}
+				}
+			}
+		}
+		if (current != null) {
+			renderer.endUse(current);
+		}
+		renderer.setColorMode(colorMode);
+		b.valid = true;
+		return true;
+	}
+
+	/**
+	 * Determines if all textures of a unit can be baked.
+	 * 
+	 * @param tiles The cache of tile textures.
+	 * @param bx    The X position of the unit.
+	 * @param by    The Y position of the unit.
+	 * @param z     The Z position of the unit.
+	 * @return {@code true} if every texture of the unit is cached as an image,
+	 *         {@code false} otherwise.
+	 */
+	private boolean isStatic(TileRenderCache tiles, long bx, long by, long z) {
+		long minX = bx * size;
+		long minY = by * size;
+		for (long y = minY; y < minY + size; y++) {
+			long x = minX;
+			while (x < minX + size) {
+				TileRenderCache.Section s = tiles.getSection(x, y, z);
+				long end = Math.min(minX + size - 1, s.getMaxX());
+				for (; x <= end; x++) {
+					int last = s.getEnd(x, y);
+					for (int i = s.getStart(x, y); i < last; i++) {
+						if (s.getImage(i) == null) {
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets an image for a new unit. Free images are reused before new images are
+	 * created. If the budget is full the least recently drawn unit that was not
+	 * drawn this frame or the previous frame gives up its image.
+	 * 
+	 * @param renderer The renderer to use.
+	 * @return An image or null if the budget is full.
+	 * @throws RenderException If an error occurs creating the image.
+	 */
+	private Image allocate(Renderer renderer) throws RenderException {
+		int px = (int) Math.ceil((size + 2) * tileSize);
+		if (!free.isEmpty()) {
+			Image img = free.remove(free.size() - 1);
+			if (img.getWidth() == px) {
+				return img;
+			}
+			bytes -= imageBytes(img);
+			img.destroy();
+		}
+		long need = textureBytes(px, px);
+		if (bytes + need <= budget) {
+			bytes += need;
+			return new Image(renderer, px, px);
+		}
+		Iterator<Bake> i = bakes.values().iterator();
+		while (i.hasNext()) {
+			Bake b = i.next();
+			if (b.image == null || frame - b.lastFrame <= 1) {
+				continue;
+			}
+			i.remove();
+			evictions += 1;
+			if (b.image.getWidth() == px) {
+				return b.image;
+			}
+			bytes -= imageBytes(b.image);
+			b.image.destroy();
+			if (bytes + need <= budget) {
+				bytes += need;
+				return new Image(renderer, px, px);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets a baked unit to draw. The unit is marked as used this frame.
+	 * 
+	 * @param bx The X position of the unit.
+	 * @param by The Y position of the unit.
+	 * @param z  The Z position of the unit.
+	 * @return A baked unit or null if the unit has not been baked, has changed or
+	 *         cannot be baked.
+	 */
+	public Bake getBake(long bx, long by, long z) {
+		Bake b = bakes.get(key(bx, by, z));
+		if (b == null || !b.valid || b.image == null) {
+			return null;
+		}
+		b.lastFrame = frame;
+		return b;
+	}
+
+	/**
+	 * Marks the units in an area and the units next to it for rebaking.
+	 */
+	@Override
+	public void tilesChanged(long minX, long minY, long minZ, long maxX, long maxY, long maxZ) {
+		long minBX = Math.floorDiv(minX - 1, size);
+		long minBY = Math.floorDiv(minY - 1, size);
+		long maxBX = Math.floorDiv(maxX + 1, size);
+		long maxBY = Math.floorDiv(maxY + 1, size);
+		long count = (maxBX - minBX + 1) * (maxBY - minBY + 1) * (maxZ - minZ + 3);
+		if (count < 0 || count > 4096) {
+			invalidate();
+			return;
+		}
+		for (long z = minZ - 1; z <= maxZ + 1; z++) {
+			for (long by = minBY; by <= maxBY; by++) {
+				for (long bx = minBX; bx <= maxBX; bx++) {
+					dirty.add(key(bx, by, z));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Marks all units for rebaking. The change is applied at the start of the
+	 * next frame.
+	 */
+	public void invalidate() {
+		reset = true;
+	}
+
+	/**
+	 * Stops this cache from listening to its world and destroys all images.
+	 */
+	public void dispose() {
+		world.removeChangeListener(this);
+		for (Bake b : bakes.values()) {
+			if (b.image != null) {
+				b.image.destroy();
+			}
+		}
+		for (Image img : free) {
+			img.destroy();
+		}
+		bakes.clear();
+		free.clear();
+		dirty.clear();
+		bytes = 0;
+		textureMap = null;
+	}
+
+	/**
+	 * Gets the memory budget.
+	 * 
+	 * @return A number of bytes.
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Sets the memory budget. Images already created are kept until they are
+	 * replaced.
+	 * 
+	 * @param budget A number of bytes.
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Gets the maximum number of units baked each frame.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getMaxBakesPerFrame() {
+		return maxBakesPerFrame;
+	}
+
+	/**
+	 * Sets the maximum number of units baked each frame. Units that are not baked
+	 * are drawn tile by tile until they are.
+	 * 
+	 * @param maxBakesPerFrame A positive integer.
+	 */
+	public void setMaxBakesPerFrame(int maxBakesPerFrame) {
+		this.maxBakesPerFrame = maxBakesPerFrame;
+	}
+
+	/**
+	 * Gets the number of baked units.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getBakedCount() {
+		int count = 0;
+		for (Bake b : bakes.values()) {
+			if (b.image != null) {
+				count += 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of units that have been baked.
+	 * 
+	 * @return A long value.
+	 */
+	public long getBakeCount() {
+		return bakeCount;
+	}
+
+	/**
+	 * Gets the number of units replaced to stay within the budget.
+	 * 
+	 * @return A long value.
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Gets the memory used by images.
+	 * 
+	 * @return A number of bytes.
+	 */
+	public long getMemoryUsed() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the memory used by an image.
+	 * 
+	 * @param img The image.
+	 * @return A number of bytes.
+	 */
+	private static long imageBytes(Image img) {
+		return textureBytes((int) img.getWidth(), (int) img.getHeight());
+	}
+
+	/**
+	 * Gets the memory used by a texture. Sizes are rounded up to a power of two.
+	 * 
+	 * @param w The width of the texture.
+	 * @param h The height of the texture.
+	 * @return A number of bytes.
+	 */
+	private static long textureBytes(int w, int h) {
+		return (long) Integer.highestOneBit(w * 2 - 1) * Integer.highestOneBit(h * 2 - 1) * 4;
+	}
+
+	/**
+	 * Packs the position of a unit into a key. Unit positions are stored in 24
+	 * bits and Z positions in 16 bits.
+	 * 
+	 * @param bx The X position of the unit.
+	 * @param by The Y position of the unit.
+	 * @param z  The Z position of the unit.
+	 * @return A long value.
+	 */
+	private static long key(long bx, long by, long z) {
+		return ((bx & 0xFFFFFFL) << 40) | ((by & 0xFFFFFFL) << 16) | (z & 0xFFFFL);
+	}
+
+	/**
+	 * A baked unit.
+	 * 
+	 * @author Tomaso2468
+	 */
+	public static final class Bake {
+		/**
+		 * The X position of the unit.
+		 */
+		private final long bx;
+		/**
+		 * The Y position of the unit.
+		 */
+		private final long by;
+		/**
+		 * The Z position of the unit.
+		 */
+		private final long z;
+		/**
+		 * The image the unit is baked into or null if the unit cannot be baked.
+		 */
+		private Image image;
+		/**
+		 * Determines if the image matches the world.
+		 */
+		private boolean valid;
+		/**
+		 * The last frame this unit was used in.
+		 */
+		private int lastFrame;
+
+		/**
+		 * Constructs a new Bake.
+		 * 
+		 * @param bx The X position of the unit.
+		 * @param by The Y position of the unit.
+		 * @param z  The Z position of the unit.
+		 */
+		private Bake(long bx, long by, long z) {
+			this.bx = bx;
+			this.by = by;
+			this.z = z;
+		}
+
+		/**
+		 * Gets the X position of the unit.
+		 * 
+		 * @return A unit position.
+		 */
+		public long getBX() {
+			return bx;
+		}
+
+		/**
+		 * Gets the Y position of the unit.
+		 * 
+		 * @return A unit position.
+		 */
+		public long getBY() {
+			return by;
+		}
+
+		/**
+		 * Gets the Z position of the unit.
+		 * 
+		 * @return A Z position.
+		 */
+		public long getZ() {
+			return z;
+		}
+
+		/**
+		 * Gets the baked image. The image starts one tile above and to the left of
+		 * the first tile of the unit.
+		 * 
+		 * @return An image.
+		 */
+		public Image getImage() {
+			return image;
+		}
+	}
+}
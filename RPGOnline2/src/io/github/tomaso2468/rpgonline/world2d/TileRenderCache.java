@@ -0,0 +1,580 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.RPGConfig;
+import io.github.tomaso2468.rpgonline.TextureMap;
+import io.github.tomaso2468.rpgonline.world2d.texture.TileTexture;
+
+/**
+ * <p>
+ * A cache of the textures drawn for each tile of a world.
+ * </p>
+ * <p>
+ * The world is split into sections of {@code SIZE} by {@code SIZE} tiles on
+ * each Z layer. The first time a section is drawn the textures of its tiles are
+ * expanded and the image, sheet and position of each static texture is stored.
+ * Textures that use custom rendering or that are not static (such as animated
+ * and wind textures) are stored as patches that are drawn normally each frame.
+ * </p>
+ * <p>
+ * Sections are removed when tiles in or next to them change and when they have
+ * not been drawn for a while. The cache is only used if the world reports tile
+ * changes.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.WorldState
+ * @see io.github.tomaso2468.rpgonline.world2d.texture.TileTexture#isStatic()
+ */
+public class TileRenderCache implements WorldChangeListener {
+	/**
+	 * The width and height of a section in tiles.
+	 */
+	public static final int SIZE = 16;
+	/**
+	 * The number of frames a section is kept for without being drawn.
+	 */
+	private static final int MAX_AGE = 120;
+	/**
+	 * The world to cache.
+	 */
+	private final World world;
+	/**
+	 * The function used to expand textures.
+	 */
+	private final Expander expander;
+	/**
+	 * Determines if the world reports changes.
+	 */
+	private final boolean enabled;
+	/**
+	 * The cached sections.
+	 */
+	private final Map<Long, Section> sections = new ConcurrentHashMap<Long, Section>();
+	/**
+	 * Incremented whenever sections are invalidated.
+	 */
+	private final AtomicLong version = new AtomicLong();
+	/**
+	 * A reusable list of textures used when building sections.
+	 */
+	private final List<TileTexture> textures = new ArrayList<TileTexture>();
+	/**
+	 * The current frame number.
+	 */
+	private int frame;
+	/**
+	 * The texture map used to build the cached sections.
+	 */
+	private TextureMap textureMap;
+	/**
+	 * The tile size used to build the cached sections.
+	 */
+	private float tileSize;
+	/**
+	 * The wind setting used to build the cached sections. Wind textures are only
+	 * static while wind is disabled.
+	 */
+	private boolean wind;
+	/**
+	 * The number of sections built.
+	 */
+	private long builds;
+
+	/**
+	 * Constructs a new TileRenderCache.
+	 * 
+	 * @param world    The world to cache.
+	 * @param expander The function used to expand textures.
+	 */
+	public TileRenderCache(World world, Expander expander) {
+		this.world = world;
+		this.expander = expander;
+		this.enabled = world.addChangeListener(this);
+	}
+
+	/**
+	 * Gets the world cached by this object.
+	 * 
+	 * @return A world.
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Determines if the cache can be used.
+	 * 
+	 * @return {@code true} if the world reports changes, {@code false} otherwise.
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Prepares the cache for a new frame. Sections are removed if the texture map
+	 * or tile size has changed or if they have not been used recently.
+	 * 
+	 * @param game The current game.
+	 */
+	public void beginFrame(Game game) {
+		frame += 1;
+		if (game.getTextures() != textureMap || RPGConfig.getTileSize() != tileSize
+				|| RPGConfig.isWind() != wind) {
+			textureMap = game.getTextures();
+			tileSize = RPGConfig.getTileSize();
+			wind = RPGConfig.isWind();
+			invalidate();
+		}
+		if (frame % 64 == 0) {
+			Iterator<Section> i = sections.values().iterator();
+			while (i.hasNext()) {
+				if (frame - i.next().lastFrame > MAX_AGE) {
+					i.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the section containing a tile, building it if it is not cached.
+	 * 
+	 * @param x The X position of the tile.
+	 * @param y The Y position of the tile.
+	 * @param z The Z position of the tile.
+	 * @return A section.
+	 */
+	public Section getSection(long x, long y, long z) {
+		long cx = Math.floorDiv(x, SIZE);
+		long cy = Math.floorDiv(y, SIZE);
+		Long key = key(cx, cy, z);
+		Section s = sections.get(key);
+		if (s == null) {
+			long v = version.get();
+			s = build(cx * SIZE, cy * SIZE, z);
+			sections.put(key, s);
+			if (version.get() != v) {
+				sections.remove(key, s);
+			}
+		}
+		s.lastFrame = frame;
+		return s;
+	}
+
+	/**
+	 * Builds a section.
+	 * 
+	 * @param minX The X position of the first tile.
+	 * @param minY The Y position of the first tile.
+	 * @param z    The Z position of the section.
+	 * @return A new section.
+	 */
+	private Section build(long minX, long minY, long z) {
+		builds += 1;
+		Section s = new Section(minX, minY, z);
+		List<Object> entries = new ArrayList<Object>();
+		for (int ty = 0; ty < SIZE; ty++) {
+			for (int tx = 0; tx < SIZE; tx++) {
+				long x = minX + tx;
+				long y = minY + ty;
+				int tile = ty * SIZE + tx;
+				Tile t = world.getTile(x, y, z);
+				String state = world.getTileState(x, y, z);
+				s.tiles[tile] = t;
+				s.states[tile] = state;
+				s.starts[tile] = entries.size();
+
+				expander.expand(t.getTexture(), textures, x, y, z, world, t, state);
+				for (TileTexture tex : textures) {
+					if (tex.isCustom() || !tex.isStatic()) {
+						entries.add(tex);
+					} else {
+						Image img = textureMap.getTexture(tex.getTexture(x, y, z, world, state, t));
+						if (img != null) {
+							entries.add(img);
+							entries.add(tex);
+						}
+					}
+				}
+				textures.clear();
+			}
+		}
+		s.starts[SIZE * SIZE] = entries.size();
+		s.fill(entries, textureMap, tileSize);
+		return s;
+	}
+
+	/**
+	 * Removes the cached sections in an area and the sections next to it.
+	 */
+	@Override
+	public void tilesChanged(long minX, long minY, long minZ, long maxX, long maxY, long maxZ) {
+		version.incrementAndGet();
+		long minCX = Math.floorDiv(minX - 1, SIZE);
+		long minCY = Math.floorDiv(minY - 1, SIZE);
+		long maxCX = Math.floorDiv(maxX + 1, SIZE);
+		long maxCY = Math.floorDiv(maxY + 1, SIZE);
+		long count = (maxCX - minCX + 1) * (maxCY - minCY + 1) * (maxZ - minZ + 3);
+		if (count < 0 || count > sections.size()) {
+			Iterator<Section> i = sections.values().iterator();
+			while (i.hasNext()) {
+				Section s = i.next();
+				long cx = Math.floorDiv(s.minX, SIZE);
+				long cy = Math.floorDiv(s.minY, SIZE);
+				if (cx >= minCX && cx <= maxCX && cy >= minCY && cy <= maxCY && s.z >= minZ - 1 && s.z <= maxZ + 1) {
+					i.remove();
+				}
+			}
+			return;
+		}
+		for (long z = minZ - 1; z <= maxZ + 1; z++) {
+			for (long cy = minCY; cy <= maxCY; cy++) {
+				for (long cx = minCX; cx <= maxCX; cx++) {
+					sections.remove(key(cx, cy, z));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached sections.
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+		sections.clear();
+	}
+
+	/**
+	 * Stops this cache from listening to its world and removes all cached
+	 * sections.
+	 */
+	public void dispose() {
+		world.removeChangeListener(this);
+		invalidate();
+	}
+
+	/**
+	 * Gets the number of cached sections.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getSectionCount() {
+		return sections.size();
+	}
+
+	/**
+	 * Gets the number of sections that have been built.
+	 * 
+	 * @return A long value.
+	 */
+	public long getBuildCount() {
+		return builds;
+	}
+
+	/**
+	 * Packs the position of a section into a key. Section positions are stored
+	 * in 24 bits and Z positions in 16 bits.
+	 * 
+	 * @param cx The X position of the section.
+	 * @param cy The Y position of the section.
+	 * @param z  The Z position of the section.
+	 * @return A long value.
+	 */
+	private static long key(long cx, long cy, long z) {
+		return ((cx & 0xFFFFFFL) << 40) | ((cy & 0xFFFFFFL) << 16) | (z & 0xFFFFL);
+	}
+
+	/**
+	 * A function that expands a texture into the textures it contains.
+	 * 
+	 * @author Tomaso2468
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.world2d.WorldState#expandTexture(TileTexture,
+	 *      List, long, long, long, World, Tile, String)
+	 */
+	@FunctionalInterface
+	public static interface Expander {
+		/**
+		 * Expands a texture.
+		 * 
+		 * @param t     The texture to expand.
+		 * @param l     The list to expand into.
+		 * @param x     The tile X position.
+		 * @param y     The tile Y position.
+		 * @param z     The tile Z position.
+		 * @param world The current world.
+		 * @param tile  The current tile.
+		 * @param state The tile's current state.
+		 */
+		public void expand(TileTexture t, List<TileTexture> l, long x, long y, long z, World world, Tile tile,
+				String state);
+	}
+
+	/**
+	 * The cached draw list of a section. Entries of each tile are stored in
+	 * drawing order from {@code getStart(x, y)} to {@code getEnd(x, y)}. An entry
+	 * with an image is drawn from the cache. An entry without an image is a patch
+	 * that must be drawn using its texture.
+	 * 
+	 * @author Tomaso2468
+	 */
+	public static final class Section {
+		/**
+		 * The X position of the first tile.
+		 */
+		private final long minX;
+		/**
+		 * The Y position of the first tile.
+		 */
+		private final long minY;
+		/**
+		 * The Z position of the section.
+		 */
+		private final long z;
+		/**
+		 * The index of the first entry of each tile.
+		 */
+		private final int[] starts = new int[SIZE * SIZE + 1];
+		/**
+		 * The tile at each position.
+		 */
+		private final Tile[] tiles = new Tile[SIZE * SIZE];
+		/**
+		 * The state of each tile.
+		 */
+		private final String[] states = new String[SIZE * SIZE];
+		/**
+		 * The image of each entry or null for patches.
+		 */
+		private Image[] images;
+		/**
+		 * The sheet of each entry.
+		 */
+		private Image[] sheets;
+		/**
+		 * The texture of each entry.
+		 */
+		private TileTexture[] textures;
+		/**
+		 * The X position of each entry in world pixels.
+		 */
+		private float[] xs;
+		/**
+		 * The Y position of each entry in world pixels.
+		 */
+		private float[] ys;
+		/**
+		 * The last frame this section was used in.
+		 */
+		private volatile int lastFrame;
+
+		/**
+		 * Constructs a new Section.
+		 * 
+		 * @param minX The X position of the first tile.
+		 * @param minY The Y position of the first tile.
+		 * @param z    The Z position of the section.
+		 */
+		private Section(long minX, long minY, long z) {
+			this.minX = minX;
+			this.minY = minY;
+			this.z = z;
+		}
+
+		/**
+		 * Stores the entries of this section.
+		 * 
+		 * @param entries  A list of textures each of which may be preceded by an
+		 *                 image.
+		 * @param map      The texture map used to find sheets.
+		 * @param tileSize The size of a tile in pixels.
+		 */
+		private void fill(List<Object> entries, TextureMap map, float tileSize) {
+			int n = 0;
+			for (Object o : entries) {
+				if (o instanceof TileTexture) {
+					n += 1;
+				}
+			}
+			images = new Image[n];
+			sheets = new Image[n];
+			textures = new TileTexture[n];
+			xs = new float[n];
+			ys = new float[n];
+
+			int e = 0;
+			int i = 0;
+			for (int tile = 0; tile < SIZE * SIZE; tile++) {
+				int end = starts[tile + 1];
+				starts[tile] = e;
+				for (; i < end; i++) {
+					Object o = entries.get(i);
+					if (o instanceof Image) {
+						images[e] = (Image) o;
+						sheets[e] = map.getSheet((Image) o);
+						continue;
+					}
+					TileTexture tex = (TileTexture) o;
+					textures[e] = tex;
+					xs[e] = (minX + tile % SIZE) * tileSize + tex.getX();
+					ys[e] = (minY + tile / SIZE) * tileSize + tex.getY();
+					e += 1;
+				}
+			}
+			starts[SIZE * SIZE] = e;
+		}
+
+		/**
+		 * Gets the X position of the last tile in this section.
+		 * 
+		 * @return A long value.
+		 */
+		public long getMaxX() {
+			return minX + SIZE - 1;
+		}
+
+		/**
+		 * Gets the index of the first entry of a tile.
+		 * 
+		 * @param x The X position of the tile.
+		 * @param y The Y position of the tile.
+		 * @return An entry index.
+		 */
+		public int getStart(long x, long y) {
+			return starts[(int) ((y - minY) * SIZE + (x - minX))];
+		}
+
+		/**
+		 * Gets the index after the last entry of a tile.
+		 * 
+		 * @param x The X position of the tile.
+		 * @param y The Y position of the tile.
+		 * @return An entry index.
+		 */
+		public int getEnd(long x, long y) {
+			return starts[(int) ((y - minY) * SIZE + (x - minX)) + 1];
+		}
+
+		/**
+		 * Gets the tile at a position.
+		 * 
+		 * @param x The X position of the tile.
+		 * @param y The Y position of the tile.
+		 * @return A tile.
+		 */
+		public Tile getTile(long x, long y) {
+			return tiles[(int) ((y - minY) * SIZE + (x - minX))];
+		}
+
+		/**
+		 * Gets the state of the tile at a position.
+		 * 
+		 * @param x The X position of the tile.
+		 * @param y The Y position of the tile.
+		 * @return A tile state.
+		 */
+		public String getState(long x, long y) {
+			return states[(int) ((y - minY) * SIZE + (x - minX))];
+		}
+
+		/**
+		 * Gets the image of an entry.
+		 * 
+		 * @param i The index of the entry.
+		 * @return An image or null if the entry is a patch.
+		 */
+		public Image getImage(int i) {
+			return images[i];
+		}
+
+		/**
+		 * Gets the sheet of an entry.
+		 * 
+		 * @param i The index of the entry.
+		 * @return An image or null if the entry is a patch.
+		 */
+		public Image getSheet(int i) {
+			return sheets[i];
+		}
+
+		/**
+		 * Gets the texture of an entry.
+		 * 
+		 * @param i The index of the entry.
+		 * @return A tile texture.
+		 */
+		public TileTexture getTexture(int i) {
+			return textures[i];
+		}
+
+		/**
+		 * Gets the X position of an entry.
+		 * 
+		 * @param i The index of the entry.
+		 * @return The X position in world pixels.
+		 */
+		public float getX(int i) {
+			return xs[i];
+		}
+
+		/**
+		 * Gets the Y position of an entry.
+		 * 
+		 * @param i The index of the entry.
+		 * @return The Y position in world pixels.
+		 */
+		public float getY(int i) {
+			return ys[i];
+		}
+
+		/**
+		 * Determines if this section has no entries.
+		 * 
+		 * @return {@code true} if nothing is drawn for this section, {@code false}
+		 *         otherwise.
+		 */
+		public boolean isEmpty() {
+			return starts[SIZE * SIZE] == 0;
+		}
+	}
+}
@@ -37,6 +37,7 @@ import java.util.List;
 import org.newdawn.slick.Color;
 
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
 
 /**
  * <p>An interface for classes storing world data.</p>
@@ -170,6 +171,17 @@ public interface World {
 	public default void doUpdateClient() {
 	}
 
+	/**
+	 * Requests that the area within a radius of a position is loaded in the
+	 * background so it is ready when it is needed.
+	 * @param x The X position in world coordinates.
+	 * @param y The Y position in world coordinates.
+	 * @param z The Z position in world coordinates.
+	 * @param radius The radius in chunks.
+	 */
+	public default void prefetch(double x, double y, long z, int radius) {
+	}
+
 	/**
 	 * A method where server-side updates should be performed (e.g. unloading). Normally, this method calls {@code doUpdateClient} at a slower rate.
 	 */
@@ -218,4 +230,33 @@ public interface World {
 	 * @return A list object.
 	 */
 	public List<Entity> getEntities();
+
+	/**
+	 * Gets the grid used to find entities near a position.
+	 * @return An entity grid containing all entities in the world or {@code null}
+	 *         if this world does not index its entities.
+	 */
+	public default EntityGrid getEntityGrid() {
+		return null;
+	}
+
+	/**
+	 * Registers an object to be told when tiles in this world change. This
+	 * includes tiles that may change because their chunk finished loading in the
+	 * background or was unloaded.
+	 * @param l The listener to add.
+	 * @return {@code true} if this world reports changes, {@code false} if it
+	 *         does not and the listener will never be called.
+	 */
+	public default boolean addChangeListener(WorldChangeListener l) {
+		return false;
+	}
+
+	/**
+	 * Removes an object registered with {@code addChangeListener()}.
+	 * @param l The listener to remove.
+	 */
+	public default void removeChangeListener(WorldChangeListener l) {
+
+	}
 }
@@ -43,6 +43,7 @@ import org.newdawn.slick.Color;
 import org.newdawn.slick.SlickException;
 import org.newdawn.slick.geom.Rectangle;
 import org.newdawn.slick.geom.Transform;
+import org.newdawn.slick.util.Log;
 
 import io.github.tomaso2468.rpgonline.BaseScaleState;
 import io.github.tomaso2468.rpgonline.Game;
@@ -61,13 +62,16 @@ import io.github.tomaso2468.rpgonline.net.ServerManager;
 import io.github.tomaso2468.rpgonline.particle.Particle;
 import io.github.tomaso2468.rpgonline.post.HDRPost;
 import io.github.tomaso2468.rpgonline.post.PostProcessing;
+import io.github.tomaso2468.rpgonline.render.ColorMode;
 import io.github.tomaso2468.rpgonline.render.Graphics;
 import io.github.tomaso2468.rpgonline.render.RenderException;
 import io.github.tomaso2468.rpgonline.render.RenderMode;
 import io.github.tomaso2468.rpgonline.render.Renderer;
 import io.github.tomaso2468.rpgonline.sky.SkyLayer;
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
 import io.github.tomaso2468.rpgonline.world2d.net.Client2D;
+import io.github.tomaso2468.rpgonline.world2d.net.EntityInterpolator;
 import io.github.tomaso2468.rpgonline.world2d.texture.TileTexture;
 import io.github.tomaso2468.rpgonline.world2d.texture.WindTexture;
 import io.github.tomaso2468.rpgonline.world2d.texture.entity.EntityTexture;
@@ -102,6 +106,10 @@ public class WorldState implements GameState, BaseScaleState {
 	 * The world zoom.
 	 */
 	protected float zoom = 1f;
+	/**
+	 * The radius in chunks around the player to load in the background.
+	 */
+	protected int prefetch_radius = 2;
 	/**
 	 * The scale to scale the graphics by. This also effects GUI.
 	 */
@@ -159,6 +167,31 @@ public class WorldState implements GameState, BaseScaleState {
 	 */
 	protected LightingEngine lighting = new LightingDisabled();
 
+	/**
+	 * Determines if the textures drawn for each tile are cached.
+	 */
+	protected boolean tile_cache = false;
+
+	/**
+	 * The cache of tile textures for the current world.
+	 */
+	protected TileRenderCache tileCache;
+
+	/**
+	 * Determines if static tile layers are pre-rendered into images.
+	 */
+	protected boolean tile_bake = false;
+
+	/**
+	 * The cache of pre-rendered tile layers for the current world.
+	 */
+	protected TileBakeCache bakeCache;
+
+	/**
+	 * Determines if world sprites are drawn in batches.
+	 */
+	protected boolean sprite_batch = false;
+
 	/**
 	 * Creates a new {@code WorldState}.
 	 * 
@@ -341,9 +374,24 @@ public class WorldState implements GameState, BaseScaleState {
 
 	protected List<Entity> computeEntities(Game game, float dist_x, float dist_y, Rectangle screen_bounds) {
 		Debugger.start("entity-compute");
-		List<Entity> entities1 = ((Client2D) ServerManager.getClient()).getWorld().getEntities();
+		Client2D client = (Client2D) ServerManager.getClient();
+		World world = client.getWorld();
+		EntityInterpolator interpolator = client.getInterpolator();
+		if (interpolator != null) {
+			interpolator.update();
+		}
+		List<Entity> entities1 = world.getEntities();
 		List<Entity> entities = new ArrayList<Entity>();
 
+		EntityGrid grid = world.getEntityGrid();
+		if (grid != null) {
+			grid.queryAABB(screen_bounds.getMinX(), screen_bounds.getMinY(), screen_bounds.getMaxX(),
+					screen_bounds.getMaxY(), entities);
+			entities.removeIf(e -> !screen_bounds.contains((float) e.getX(), (float) e.getY()));
+			Debugger.stop("entity-compute");
+			return entities;
+		}
+
 		synchronized (entities1) {
 			for (Entity e : entities1) {
 				if (screen_bounds.contains((float) e.getX(), (float) e.getY())) {
@@ -388,36 +436,38 @@ public class WorldState implements GameState, BaseScaleState {
 		expandTexture(t.getTexture(), textures, x, y, z, world, t, state);
 
 		for (TileTexture tex : textures) {
-			if (tex.isCustom()) {
-				// Optimise wind textures to use embedded drawing.
-				if (tex instanceof WindTexture) {
-					Image img = game.getTextures().getTexture(tex.getTexture(x, y, z, world, state, t));
+			current = renderTileTexture(game, renderer, world, sx, sy, t, state, tex, current, x, y, z, wind);
+		}
 
-					if (img != null) {
-						if (game.getTextures().getSheet(img) != current) {
-							if (current != null)
-								renderer.endUse(current);
-							current = game.getTextures().getSheet(img);
-							renderer.startUse(current);
-						}
-						float amount = ((WindTexture) tex).windAmount(x, y, wind);
-						renderer.renderShearedEmbedded(img, x * RPGConfig.getTileSize() + tex.getX() - sx - amount,
-								y * RPGConfig.getTileSize() + tex.getY() - sy, img.getWidth(), img.getHeight(), amount,
-								0);
-					}
-				} else {
-					Debugger.start("custom-tile");
-					if (current != null)
-						renderer.endUse(current);
+		textures.clear();
 
-					tex.render(game, renderer, x, y, z, world, state, t, x * RPGConfig.getTileSize() + tex.getX() - sx,
-							y * RPGConfig.getTileSize() + tex.getY() - sy, wind);
+		return current;
+	}
 
-					if (current != null)
-						renderer.startUse(current);
-					Debugger.stop("custom-tile");
-				}
-			} else {
+	/**
+	 * Renders one texture of a tile.
+	 * 
+	 * @param game     The current game.
+	 * @param renderer The renderer to use.
+	 * @param world    The current world.
+	 * @param sx       The X position of the camera in pixels.
+	 * @param sy       The Y position of the camera in pixels.
+	 * @param t        The tile to render.
+	 * @param state    The state of the tile.
+	 * @param tex      The texture to render.
+	 * @param current  The sheet currently in use or null.
+	 * @param x        The X position of the tile.
+	 * @param y        The Y position of the tile.
+	 * @param z        The Z position of the tile.
+	 * @param wind     The current wind value.
+	 * @return The sheet in use after rendering or null.
+	 * @throws RenderException If an error occurs rendering the texture.
+	 */
+	protected Image renderTileTexture(Game game, Renderer renderer, World world, float sx, float sy, Tile t,
+			String state, TileTexture tex, Image current, long x, long y, long z, float wind) throws RenderException {
+		if (tex.isCustom()) {
+			// Optimise wind textures to use embedded drawing.
+			if (tex instanceof WindTexture) {
 				Image img = game.getTextures().getTexture(tex.getTexture(x, y, z, world, state, t));
 
 				if (img != null) {
@@ -427,17 +477,269 @@ public class WorldState implements GameState, BaseScaleState {
 						current = game.getTextures().getSheet(img);
 						renderer.startUse(current);
 					}
-					renderer.renderEmbedded(img, x * RPGConfig.getTileSize() + tex.getX() - sx,
-							y * RPGConfig.getTileSize() + tex.getY() - sy, img.getWidth(), img.getHeight());
+					float amount = ((WindTexture) tex).windAmount(x, y, wind);
+					renderer.renderShearedEmbedded(img, x * RPGConfig.getTileSize() + tex.getX() - sx - amount,
+							y * RPGConfig.getTileSize() + tex.getY() - sy, img.getWidth(), img.getHeight(), amount,
+							0);
 				}
+			} else {
+				Debugger.start("custom-tile");
+				if (current != null)
+					renderer.endUse(current);
+
+				tex.render(game, renderer, x, y, z, world, state, t, x * RPGConfig.getTileSize() + tex.getX() - sx,
+						y * RPGConfig.getTileSize() + tex.getY() - sy, wind);
+
+				if (current != null)
+					renderer.startUse(current);
+				Debugger.stop("custom-tile");
+			}
+		} else {
+			Image img = game.getTextures().getTexture(tex.getTexture(x, y, z, world, state, t));
+
+			if (img != null) {
+				if (game.getTextures().getSheet(img) != current) {
+					if (current != null)
+						renderer.endUse(current);
+					current = game.getTextures().getSheet(img);
+					renderer.startUse(current);
+				}
+				renderer.renderEmbedded(img, x * RPGConfig.getTileSize() + tex.getX() - sx,
+						y * RPGConfig.getTileSize() + tex.getY() - sy, img.getWidth(), img.getHeight());
 			}
 		}
 
-		textures.clear();
+		return current;
+	}
+
+	/**
+	 * Renders a tile using the textures stored in a cached section.
+	 * 
+	 * @param game     The current game.
+	 * @param renderer The renderer to use.
+	 * @param world    The current world.
+	 * @param sx       The X position of the camera in pixels.
+	 * @param sy       The Y position of the camera in pixels.
+	 * @param s        The section containing the tile.
+	 * @param current  The sheet currently in use or null.
+	 * @param x        The X position of the tile.
+	 * @param y        The Y position of the tile.
+	 * @param z        The Z position of the tile.
+	 * @param wind     The current wind value.
+	 * @return The sheet in use after rendering or null.
+	 * @throws RenderException If an error occurs rendering the tile.
+	 */
+	protected Image renderCachedTile(Game game, Renderer renderer, World world, float sx, float sy,
+			TileRenderCache.Section s, Image current, long x, long y, long z, float wind) throws RenderException {
+		int end = s.getEnd(x, y);
+		for (int i = s.getStart(x, y); i < end; i++) {
+			Image img = s.getImage(i);
+			if (img == null) {
+				current = renderTileTexture(game, renderer, world, sx, sy, s.getTile(x, y), s.getState(x, y),
+						s.getTexture(i), current, x, y, z, wind);
+				continue;
+			}
+			Image sheet = s.getSheet(i);
+			if (sheet != current) {
+				if (current != null)
+					renderer.endUse(current);
+				current = sheet;
+				renderer.startUse(current);
+			}
+			renderer.renderEmbedded(img, s.getX(i) - sx, s.getY(i) - sy, img.getWidth(), img.getHeight());
+		}
 
 		return current;
 	}
 
+	/**
+	 * Gets the tile texture cache for a world. A new cache is created if the world
+	 * has changed.
+	 * 
+	 * @param world The world being rendered.
+	 * @return A cache or null if caching is disabled or not supported by the
+	 *         world.
+	 */
+	protected TileRenderCache getTileCache(World world) {
+		if (!tile_cache) {
+			return null;
+		}
+		if (tileCache == null || tileCache.getWorld() != world) {
+			if (tileCache != null) {
+				tileCache.dispose();
+			}
+			tileCache = new TileRenderCache(world, this::expandTexture);
+		}
+		return tileCache.isEnabled() ? tileCache : null;
+	}
+
+	/**
+	 * Gets the cache of pre-rendered tile layers for a world. A new cache is
+	 * created if the world has changed.
+	 * 
+	 * @param world The world being rendered.
+	 * @return A cache or null if baking is disabled or not supported by the
+	 *         world.
+	 */
+	protected TileBakeCache getBakeCache(World world) {
+		if (!tile_bake) {
+			return null;
+		}
+		if (bakeCache == null || bakeCache.getWorld() != world) {
+			if (bakeCache != null) {
+				bakeCache.dispose();
+			}
+			bakeCache = new TileBakeCache(world);
+		}
+		return bakeCache.isEnabled() ? bakeCache : null;
+	}
+
+	/**
+	 * Bakes the visible tile layers that are not baked or have changed. The
+	 * render target and transform are restored afterwards. Baking is disabled if
+	 * the renderer does not support render targets.
+	 * 
+	 * @param game     The current game.
+	 * @param renderer The renderer to use.
+	 * @param cache    The cache of tile textures.
+	 * @param bakes    The cache of baked layers.
+	 * @param mix      The X position of the first visible tile.
+	 * @param miy      The Y position of the first visible tile.
+	 * @param max      The X position of the last visible tile.
+	 * @param may      The Y position of the last visible tile.
+	 * @param miz      The lowest Z position.
+	 * @param maz      The highest Z position.
+	 * @return {@code true} if the baked layers can be drawn, {@code false}
+	 *         otherwise.
+	 * @throws RenderException If an error occurs restoring the render target.
+	 */
+	protected boolean bakeTiles(Game game, Renderer renderer, TileRenderCache cache, TileBakeCache bakes, long mix,
+			long miy, long max, long may, long miz, long maz) throws RenderException {
+		Debugger.start("tile-bake");
+		int size = bakes.getSize();
+		RenderMode mode = renderer.getMode();
+		Image target = null;
+		boolean switched = false;
+		try {
+			for (long z = maz; z >= FastMath.min(-1, miz); z--) {
+				if (z == -1) {
+					continue;
+				}
+				for (long by = Math.floorDiv(miy, size); by <= Math.floorDiv(may, size); by++) {
+					for (long bx = Math.floorDiv(mix, size); bx <= Math.floorDiv(max, size); bx++) {
+						if (bakes.needsBake(bx, by, z)) {
+							if (!switched) {
+								target = getRenderTarget(renderer);
+								renderer.pushTransform();
+								switched = true;
+							}
+							bakes.bake(game, renderer, cache, bx, by, z);
+						}
+					}
+				}
+			}
+		} catch (RenderException e) {
+			Log.error("An error occured baking tiles. Tile baking has been disabled.", e);
+			setTileBakingEnabled(false);
+			if (switched) {
+				try {
+					renderer.setRenderTarget(target);
+				} catch (RenderException e2) {
+					Log.error("An error occured restoring the render target.", e2);
+				}
+				renderer.setMode(mode);
+				renderer.popTransform();
+			}
+			Debugger.stop("tile-bake");
+			return false;
+		}
+		if (switched) {
+			renderer.setRenderTarget(target);
+			renderer.setMode(mode);
+			renderer.popTransform();
+		}
+		Debugger.stop("tile-bake");
+		return true;
+	}
+
+	/**
+	 * Gets the current render target of a renderer.
+	 * 
+	 * @param renderer The renderer to use.
+	 * @return An image or null if drawing to the screen.
+	 */
+	private static Image getRenderTarget(Renderer renderer) {
+		try {
+			return renderer.getCurrentTarget();
+		} catch (RenderException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Renders a tile layer using baked units. Units that are not baked or cannot
+	 * be baked are drawn tile by tile.
+	 * 
+	 * @param game     The current game.
+	 * @param renderer The renderer to use.
+	 * @param world    The current world.
+	 * @param sx       The X position of the camera in pixels.
+	 * @param sy       The Y position of the camera in pixels.
+	 * @param cache    The cache of tile textures.
+	 * @param bakes    The cache of baked layers.
+	 * @param current  The sheet currently in use or null.
+	 * @param mix      The X position of the first visible tile.
+	 * @param miy      The Y position of the first visible tile.
+	 * @param max      The X position of the last visible tile.
+	 * @param may      The Y position of the last visible tile.
+	 * @param z        The Z position of the layer.
+	 * @param wind     The current wind value.
+	 * @return The sheet in use after rendering or null.
+	 * @throws RenderException If an error occurs rendering the layer.
+	 */
+	protected Image renderBakedLayer(Game game, Renderer renderer, World world, float sx, float sy,
+			TileRenderCache cache, TileBakeCache bakes, Image current, long mix, long miy, long max, long may, long z,
+			float wind) throws RenderException {
+		int size = bakes.getSize();
+		float ts = RPGConfig.getTileSize();
+		for (long by = Math.floorDiv(miy, size); by <= Math.floorDiv(may, size); by++) {
+			for (long bx = Math.floorDiv(mix, size); bx <= Math.floorDiv(max, size); bx++) {
+				TileBakeCache.Bake b = bakes.getBake(bx, by, z);
+				if (b == null) {
+					long minX = FastMath.max(mix, bx * size);
+					long maxX = FastMath.min(max, bx * size + size - 1);
+					long maxY = FastMath.min(may, by * size + size - 1);
+					for (long y = FastMath.max(miy, by * size); y <= maxY; y++) {
+						long x = minX;
+						while (x <= maxX) {
+							TileRenderCache.Section s = cache.getSection(x, y, z);
+							long end = FastMath.min(maxX, s.getMaxX());
+							for (; x <= end; x++) {
+								current = renderCachedTile(game, renderer, world, sx, sy, s, current, x, y, z, wind);
+							}
+						}
+					}
+					continue;
+				}
+
+				// Baked images hold premultiplied colours.
+				Image img = b.getImage();
+				if (current != null) {
+					renderer.endUse(current);
+					current = null;
+				}
+				ColorMode colorMode = renderer.getColorMode();
+				renderer.setColorMode(ColorMode.PREMULTIPLIED);
+				renderer.startUse(img);
+				renderer.renderEmbedded(img, (bx * size - 1) * ts - sx, (by * size - 1) * ts - sy, img.getWidth(),
+						img.getHeight());
+				renderer.endUse(img);
+				renderer.setColorMode(colorMode);
+			}
+		}
+		return current;
+	}
+
 	protected Image renderWorld(Game game, Renderer renderer, float dist_x, float dist_y, World world, float sx,
 			float sy, List<Entity> entities) throws RenderException {
 		Debugger.start("world");
@@ -452,6 +754,44 @@ public class WorldState implements GameState, BaseScaleState {
 
 		Image current = null;
 
+		TileRenderCache cache = getTileCache(world);
+		if (cache != null) {
+			cache.beginFrame(game);
+			TileBakeCache bakes = getBakeCache(world);
+			if (bakes != null) {
+				bakes.beginFrame(game);
+				if (!bakeTiles(game, renderer, cache, bakes, mix, miy, max, may, miz, maz)) {
+					bakes = null;
+				}
+			}
+			for (long z = maz; z >= FastMath.min(-1, miz); z--) {
+				if (bakes != null && z != -1) {
+					current = renderBakedLayer(game, renderer, world, sx, sy, cache, bakes, current, mix, miy, max,
+							may, z, wind);
+					continue;
+				}
+				for (long y = miy; y <= may; y++) {
+					long x = mix;
+					while (x <= max) {
+						TileRenderCache.Section s = cache.getSection(x, y, z);
+						long end = FastMath.min(max, s.getMaxX());
+						for (; x <= end; x++) {
+							current = renderCachedTile(game, renderer, world, sx, sy, s, current, x, y, z, wind);
+
+							current = renderEntitiesAtTile(game, renderer, dist_x, dist_y, world, sx, sy, entities,
+									current, wind, x, y, z);
+						}
+					}
+				}
+			}
+
+			current = renderEntitiesFlying(game, renderer, dist_x, dist_y, world, sx, sy, entities, current, wind);
+
+			Debugger.stop("world");
+
+			return current;
+		}
+
 		for (long z = maz; z >= FastMath.min(-1, miz); z--) {
 			for (long y = miy; y <= may; y++) {
 				for (long x = mix; x <= max; x++) {
@@ -667,6 +1007,11 @@ public class WorldState implements GameState, BaseScaleState {
 		List<Particle> particles_light = particles[0];
 		List<Particle> particles_nolight = particles[1];
 
+		RenderMode mode = renderer.getMode();
+		if (sprite_batch) {
+			renderer.setMode(RenderMode.MODE_2D_SPRITE_BATCH_VBO);
+		}
+
 		Image current = renderWorld(game, renderer, dist_x, dist_y, world, sx, sy, entities);
 
 		current = renderParticles(game, renderer, particles_light, current, sx, sy);
@@ -676,6 +1021,10 @@ public class WorldState implements GameState, BaseScaleState {
 		}
 		current = null;
 
+		if (sprite_batch) {
+			renderer.setMode(mode);
+		}
+
 		renderer.resetTransform();
 
 		doLighting(game, renderer, lights, world, sx, sy);
@@ -916,7 +1265,9 @@ public class WorldState implements GameState, BaseScaleState {
 	 */
 	public void updateWorld(float delta) {
 		Debugger.start("world");
-		((Client2D) ServerManager.getClient()).getWorld().doUpdateClient();
+		World world = ((Client2D) ServerManager.getClient()).getWorld();
+		world.doUpdateClient();
+		world.prefetch(x, y, 0, prefetch_radius);
 		Debugger.stop("world");
 	}
 
@@ -1167,4 +1518,81 @@ public class WorldState implements GameState, BaseScaleState {
 	public void setLighting(LightingEngine lighting) {
 		this.lighting = lighting;
 	}
+
+	/**
+	 * Determines if the textures drawn for each tile are cached.
+	 * @return {@code true} if tile textures are cached, {@code false} otherwise.
+	 */
+	public boolean isTileCacheEnabled() {
+		return tile_cache;
+	}
+
+	/**
+	 * Sets if the textures drawn for each tile are cached. Caching is disabled by
+	 * default and is only used for worlds that report tile changes. Only textures
+	 * that report {@code isStatic()} are cached. Subclasses that override
+	 * {@code renderTile()} should disable caching as cached tiles are drawn by
+	 * {@code renderCachedTile()}.
+	 * @param tile_cache {@code true} to cache tile textures, {@code false}
+	 *            otherwise.
+	 */
+	public void setTileCacheEnabled(boolean tile_cache) {
+		this.tile_cache = tile_cache;
+		if (!tile_cache && tileCache != null) {
+			tileCache.dispose();
+			tileCache = null;
+		}
+	}
+
+	/**
+	 * Determines if world sprites are drawn in batches.
+	 * @return {@code true} if sprites are batched, {@code false} otherwise.
+	 */
+	public boolean isSpriteBatchEnabled() {
+		return sprite_batch;
+	}
+
+	/**
+	 * Sets if world sprites are drawn in batches. Batches are uploaded to a
+	 * vertex buffer object where supported and flushed when the sheet in use
+	 * changes.
+	 * @param sprite_batch {@code true} to batch sprites, {@code false}
+	 *            otherwise.
+	 * @see io.github.tomaso2468.rpgonline.render.SpriteBatch
+	 */
+	public void setSpriteBatchEnabled(boolean sprite_batch) {
+		this.sprite_batch = sprite_batch;
+	}
+
+	/**
+	 * Determines if static tile layers are pre-rendered into images.
+	 * @return {@code true} if tile layers are baked, {@code false} otherwise.
+	 */
+	public boolean isTileBakingEnabled() {
+		return tile_bake;
+	}
+
+	/**
+	 * <p>
+	 * Sets if static tile layers are pre-rendered into images. Each layer apart
+	 * from the entity layer is split into units that are drawn with a single
+	 * quad once baked. Baking requires tile caching and a renderer that supports
+	 * render targets.
+	 * </p>
+	 * <p>
+	 * Textures that overhang into a neighbouring unit may be drawn in a
+	 * different order to unbaked rendering and textures that are not static are
+	 * drawn after the baked quad of their unit. {@code renderEntitiesAtTile()} is
+	 * not called for baked layers.
+	 * </p>
+	 * @param tile_bake {@code true} to bake tile layers, {@code false}
+	 *            otherwise.
+	 */
+	public void setTileBakingEnabled(boolean tile_bake) {
+		this.tile_bake = tile_bake;
+		if (!tile_bake && bakeCache != null) {
+			bakeCache.dispose();
+			bakeCache = null;
+		}
+	}
 }
@@ -37,6 +37,7 @@ import java.util.List;
 import org.newdawn.slick.Color;
 
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
 
 /**
  * A class to allow overriding of one method of a world without subclassing.
@@ -57,6 +58,14 @@ public class WorldWrapper implements World {
 		this.world = world;
 	}
 
+	/**
+	 * Gets the world wrapped by this wrapper.
+	 * @return A world.
+	 */
+	public World getWrappedWorld() {
+		return world;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -177,6 +186,38 @@ public class WorldWrapper implements World {
 		world.doUpdateServer();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void prefetch(double x, double y, long z, int radius) {
+		world.prefetch(x, y, z, radius);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityGrid getEntityGrid() {
+		return world.getEntityGrid();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean addChangeListener(WorldChangeListener l) {
+		return world.addChangeListener(l);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeChangeListener(WorldChangeListener l) {
+		world.removeChangeListener(l);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -34,7 +34,10 @@ package io.github.tomaso2468.rpgonline.world2d.chunk;
 /**
  * A class storing a cache of a chunk.
  * @author Tomaso2468
+ * 
+ * @deprecated Chunk residency is tracked by {@link ChunkWorld} directly.
  */
+@Deprecated
 public class CacheEntry {
 	/**
 	 * The chunk to cache.
@@ -32,6 +32,7 @@ OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package io.github.tomaso2468.rpgonline.world2d.chunk;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import io.github.tomaso2468.abt.*;
 import io.github.tomaso2468.rpgonline.world2d.Tile;
@@ -59,26 +60,51 @@ public class Chunk {
 	 * The Z position of this chunk.
 	 */
 	private final long z;
+	/**
+	 * The number of Z layers stored in a chunk.
+	 */
+	static final int LAYERS = 1;
+	/**
+	 * The number of cells stored in a chunk.
+	 */
+	static final int CELLS = LAYERS * SIZE * SIZE;
 	/**
 	 * The tile data in this chunk.
 	 */
-	private Tile[][][] tiles = new Tile[1][SIZE][SIZE];
+	private final ChunkPalette<Tile> tiles;
 	/**
 	 * The state data in this chunk.
 	 */
-	private String[][][] states = new String[1][SIZE][SIZE];
+	private final ChunkPalette<String> states;
 	/**
-	 * The flag data in this chunk used for marking generated data.
+	 * The flag data in this chunk used for marking generated data stored as one
+	 * bit per cell.
 	 */
-	private boolean[][][] flag = new boolean[1][SIZE][SIZE];
+	private final long[] flag;
 	/**
 	 * The area data in this chunk.
 	 */
-	private String[][][] area = new String[1][SIZE][SIZE];
+	private final ChunkPalette<String> area;
 	/**
 	 * The biome data in this chunk.
 	 */
-	private int[][][] biome = new int[1][SIZE][SIZE];
+	private final ChunkPalette<Integer> biome;
+	/**
+	 * Determines if this chunk has changed since it was last saved.
+	 */
+	private volatile boolean dirty = false;
+	/**
+	 * Determines if this chunk has been accessed since the last eviction sweep.
+	 */
+	volatile boolean accessed = true;
+	/**
+	 * The time of the last eviction sweep that found this chunk accessed.
+	 */
+	long lastAccess = System.currentTimeMillis();
+	/**
+	 * The pending load of the real chunk if this chunk is a placeholder.
+	 */
+	CompletableFuture<Chunk> loading = null;
 
 	/**
 	 * Constructs a new chunk.
@@ -92,15 +118,53 @@ public class Chunk {
 		this.x = x;
 		this.y = y;
 		this.z = z;
-		for (int tx = 0; tx < tiles[0].length; tx++) {
-			for (int ty = 0; ty < tiles[0][0].length; ty++) {
-				for (int tz = 0; tz < tiles.length; tz++) {
-					tiles[tz][tx][ty] = registry.get("air");
-					states[tz][tx][ty] = "";
-					area[tz][tx][ty] = null;
-				}
-			}
+		this.tiles = new ChunkPalette<Tile>(CELLS, registry.get("air"));
+		this.states = new ChunkPalette<String>(CELLS, "");
+		this.flag = new long[CELLS / 64];
+		this.area = new ChunkPalette<String>(CELLS, null);
+		this.biome = new ChunkPalette<Integer>(CELLS, 0);
+	}
+
+	/**
+	 * Constructs a copy of a chunk.
+	 * 
+	 * @param c The chunk to copy.
+	 */
+	private Chunk(Chunk c) {
+		this.x = c.x;
+		this.y = c.y;
+		this.z = c.z;
+		this.tiles = c.tiles.snapshot();
+		this.states = c.states.snapshot();
+		this.flag = c.flag.clone();
+		this.area = c.area.snapshot();
+		this.biome = c.biome.snapshot();
+		this.dirty = c.dirty;
+	}
+
+	/**
+	 * Creates a copy of this chunk. The copy shares tile data with this chunk until
+	 * either chunk is modified so a snapshot is cheap to take.
+	 * 
+	 * @return A new chunk with the same data as this chunk.
+	 */
+	public Chunk snapshot() {
+		return new Chunk(this);
+	}
+
+	/**
+	 * Converts a position in this chunk to a cell index.
+	 * 
+	 * @param x The X position in this chunk.
+	 * @param y The Y position in this chunk.
+	 * @param z The Z position in this chunk.
+	 * @return A cell index.
+	 */
+	private static int index(long x, long y, long z) {
+		if (x < 0 || x >= SIZE || y < 0 || y >= SIZE || z < 0 || z >= LAYERS) {
+			throw new ArrayIndexOutOfBoundsException("Position outside chunk: " + x + " " + y + " " + z);
 		}
+		return (int) ((z * SIZE + x) * SIZE + y);
 	}
 
 	/**
@@ -112,7 +176,7 @@ public class Chunk {
 	 * @return A non-null tile instance.
 	 */
 	public Tile getTile(long x, long y, long z) {
-		return tiles[(int) z][(int) x][(int) y];
+		return tiles.get(index(x, y, z));
 	}
 
 	/**
@@ -124,7 +188,8 @@ public class Chunk {
 	 * @param tile A non-null tile instance.
 	 */
 	public void setTile(long x, long y, long z, Tile tile) {
-		tiles[(int) z][(int) x][(int) y] = tile;
+		tiles.set(index(x, y, z), tile);
+		dirty = true;
 	}
 
 	/**
@@ -136,7 +201,7 @@ public class Chunk {
 	 * @return A non-null string.
 	 */
 	public String getState(long x, long y, long z) {
-		return states[(int) z][(int) x][(int) y];
+		return states.get(index(x, y, z));
 	}
 
 	/**
@@ -148,7 +213,8 @@ public class Chunk {
 	 * @param state A non-null string.
 	 */
 	public void setState(long x, long y, long z, String state) {
-		states[(int) z][(int) x][(int) y] = state;
+		states.set(index(x, y, z), state);
+		dirty = true;
 	}
 
 	/**
@@ -160,7 +226,8 @@ public class Chunk {
 	 * @return A boolean flag.
 	 */
 	public boolean getFlag(long x, long y, long z) {
-		return flag[(int) z][(int) x][(int) y];
+		int i = index(x, y, z);
+		return (flag[i >> 6] & (1L << i)) != 0;
 	}
 
 	/**
@@ -172,7 +239,13 @@ public class Chunk {
 	 * @param f A boolean flag.
 	 */
 	public void setFlag(long x, long y, long z, boolean f) {
-		flag[(int) z][(int) x][(int) y] = f;
+		int i = index(x, y, z);
+		if (f) {
+			flag[i >> 6] |= 1L << i;
+		} else {
+			flag[i >> 6] &= ~(1L << i);
+		}
+		dirty = true;
 	}
 
 	/**
@@ -184,7 +257,7 @@ public class Chunk {
 	 * @return A string or null to indicate no area.
 	 */
 	public String getArea(long x, long y, long z) {
-		return area[(int) z][(int) x][(int) y];
+		return area.get(index(x, y, z));
 	}
 
 	/**
@@ -196,7 +269,8 @@ public class Chunk {
 	 * @param id A string or null to indicate no area.
 	 */
 	public void setArea(long x, long y, long z, String id) {
-		area[(int) z][(int) x][(int) y] = id;
+		area.set(index(x, y, z), id);
+		dirty = true;
 	}
 
 	/**
@@ -208,7 +282,7 @@ public class Chunk {
 	 * @return A int biome index.
 	 */
 	public int getBiome(long x, long y, long z) {
-		return biome[(int) z][(int) x][(int) y];
+		return biome.get(index(x, y, z));
 	}
 
 	/**
@@ -220,7 +294,84 @@ public class Chunk {
 	 * @param id A int biome index.
 	 */
 	public void setBiome(long x, long y, long z, int id) {
-		biome[(int) z][(int) x][(int) y] = id;
+		biome.set(index(x, y, z), id);
+		dirty = true;
+	}
+
+	/**
+	 * Gets the tile palette of this chunk.
+	 * 
+	 * @return A palette array.
+	 */
+	ChunkPalette<Tile> getTilePalette() {
+		return tiles;
+	}
+
+	/**
+	 * Gets the state palette of this chunk.
+	 * 
+	 * @return A palette array.
+	 */
+	ChunkPalette<String> getStatePalette() {
+		return states;
+	}
+
+	/**
+	 * Gets the area palette of this chunk.
+	 * 
+	 * @return A palette array.
+	 */
+	ChunkPalette<String> getAreaPalette() {
+		return area;
+	}
+
+	/**
+	 * Gets the biome palette of this chunk.
+	 * 
+	 * @return A palette array.
+	 */
+	ChunkPalette<Integer> getBiomePalette() {
+		return biome;
+	}
+
+	/**
+	 * Gets the flag bits of this chunk.
+	 * 
+	 * @return An array containing one bit per cell.
+	 */
+	long[] getFlagBits() {
+		return flag;
+	}
+
+	/**
+	 * Determines if this chunk is an empty placeholder shown while the real chunk
+	 * is being loaded.
+	 * 
+	 * @return {@code true} if this chunk is a placeholder, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isPlaceholder() {
+		return loading != null;
+	}
+
+	/**
+	 * Determines if this chunk has changed since it was last saved.
+	 * 
+	 * @return {@code true} if the chunk has unsaved changes, {@code false}
+	 *         otherwise.
+	 */
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Sets whether this chunk has changed since it was last saved.
+	 * 
+	 * @param dirty {@code true} if the chunk has unsaved changes, {@code false}
+	 *              otherwise.
+	 */
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
 	}
 
 	/**
@@ -0,0 +1,371 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import io.github.tomaso2468.abt.*;
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * <p>
+ * A compact binary format for chunk data.
+ * </p>
+ * <p>
+ * A chunk is stored as a header (magic number, format version, chunk position
+ * and dimensions) followed by each attribute of the chunk. Tiles, states,
+ * areas and biomes are each written as the palette of values used in the chunk
+ * followed by run length encoded palette indexes. Flags are written as raw
+ * bits. All values are big endian.
+ * </p>
+ * <p>
+ * Chunks can be read directly from any {@link ByteBuffer} including memory
+ * mapped files. Chunks stored as ABT tag trees (version 0) can be read with
+ * {@link #readTags(Map, long, long, long, TagGroup, Chunk)}.
+ * </p>
+ * 
+ * @author Tomaso2468
+ */
+public final class ChunkFormat {
+	/**
+	 * The magic number at the start of every binary chunk ("RPGC").
+	 */
+	public static final int MAGIC = 0x52504743;
+	/**
+	 * The current binary chunk format version.
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * Prevent instantiation.
+	 */
+	private ChunkFormat() {
+	}
+
+	/**
+	 * Encodes a chunk in the binary chunk format.
+	 * 
+	 * @param c The chunk to encode.
+	 * @return An array of bytes.
+	 */
+	public static byte[] write(Chunk c) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		try {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeLong(c.getX());
+			out.writeLong(c.getY());
+			out.writeLong(c.getZ());
+			out.writeShort(Chunk.SIZE);
+			out.writeShort(Chunk.LAYERS);
+
+			writePalette(out, c.getTilePalette(), (o, t) -> writeString(o, t == null ? null : t.getID()));
+			writePalette(out, c.getStatePalette(), ChunkFormat::writeString);
+			writePalette(out, c.getAreaPalette(), ChunkFormat::writeString);
+			writePalette(out, c.getBiomePalette(), (o, b) -> o.writeInt(b));
+
+			for (long l : c.getFlagBits()) {
+				out.writeLong(l);
+			}
+
+			out.flush();
+		} catch (IOException e) {
+			// Writing to a byte array does not fail.
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Determines if a buffer starts with a binary chunk.
+	 * 
+	 * @param buf The buffer to check. The position of the buffer is not changed.
+	 * @return {@code true} if the buffer holds a binary chunk, {@code false}
+	 *         otherwise.
+	 */
+	public static boolean isBinary(ByteBuffer buf) {
+		return buf.remaining() >= 4 && buf.getInt(buf.position()) == MAGIC;
+	}
+
+	/**
+	 * Decodes a chunk from the binary chunk format.
+	 * 
+	 * @param registry The tile registry to use.
+	 * @param buf      The buffer to read from.
+	 * @return A chunk object that is not marked as dirty.
+	 * @throws IOException If the data is not a valid binary chunk.
+	 */
+	public static Chunk read(Map<String, Tile> registry, ByteBuffer buf) throws IOException {
+		try {
+			if (buf.getInt() != MAGIC) {
+				throw new IOException("Not a binary chunk.");
+			}
+			short version = buf.getShort();
+			if (version != VERSION) {
+				throw new IOException("Unknown chunk version: " + version);
+			}
+
+			Chunk c = new Chunk(registry, buf.getLong(), buf.getLong(), buf.getLong());
+
+			if (buf.getShort() != Chunk.SIZE || buf.getShort() != Chunk.LAYERS) {
+				throw new IOException("Chunk has inconsistant size data.");
+			}
+
+			readPalette(buf, c.getTilePalette(), b -> {
+				String id = readString(b);
+				return id == null ? null : registry.get(id);
+			});
+			readPalette(buf, c.getStatePalette(), ChunkFormat::readString);
+			readPalette(buf, c.getAreaPalette(), ChunkFormat::readString);
+			readPalette(buf, c.getBiomePalette(), ByteBuffer::getInt);
+
+			long[] flag = c.getFlagBits();
+			for (int i = 0; i < flag.length; i++) {
+				flag[i] = buf.getLong();
+			}
+
+			c.setDirty(false);
+
+			return c;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Chunk data is truncated.", e);
+		}
+	}
+
+	/**
+	 * Reads chunk data stored as an ABT tag tree (chunk version 0).
+	 * 
+	 * @param registry The tile registry to use.
+	 * @param x        The X position of the chunk.
+	 * @param y        The Y position of the chunk.
+	 * @param z        The Z position of the chunk.
+	 * @param tg       The tag containing chunk data.
+	 * @param c        The chunk to load to.
+	 * @return The chunk that was loaded to.
+	 * @throws IOException If the tag does not contain valid chunk data.
+	 */
+	public static Chunk readTags(Map<String, Tile> registry, long x, long y, long z, TagGroup tg, Chunk c)
+			throws IOException {
+		int version = ((TagInt) tg.getTag("version")).getData();
+
+		if (version == 0) {
+			if (x == ((TagLong) tg.getTag("x")).getData() && y == ((TagLong) tg.getTag("y")).getData()
+					&& z == ((TagLong) tg.getTag("z")).getData()) {
+				for (int cz = 0; cz < 1; cz++) {
+					TagGroup tile = (TagGroup) tg.getTag("tile/" + cz);
+					TagGroup state = (TagGroup) tg.getTag("state/" + cz);
+					TagGroup flag = (TagGroup) tg.getTag("flag/" + cz);
+					TagGroup area = (TagGroup) tg.getTag("area/" + cz);
+					TagGroup biome = (TagGroup) tg.getTag("biome/" + cz);
+					for (int cy = 0; cy < Chunk.SIZE; cy++) {
+						String row = Integer.toString(cy);
+						TagGroup tileRow = (TagGroup) tile.getTag(row);
+						TagGroup stateRow = (TagGroup) state.getTag(row);
+						TagGroup flagRow = (TagGroup) flag.getTag(row);
+						TagGroup areaRow = (TagGroup) area.getTag(row);
+						TagGroup biomeRow = (TagGroup) biome.getTag(row);
+						for (int cx = 0; cx < Chunk.SIZE; cx++) {
+							String col = Integer.toString(cx);
+							c.setTile(cx, cy, cz, registry.get(((TagString) tileRow.getTag(col)).getData()));
+							c.setState(cx, cy, cz, ((TagString) stateRow.getTag(col)).getData());
+							c.setFlag(cx, cy, cz, ((TagBoolean) flagRow.getTag(col)).getData());
+							c.setArea(cx, cy, cz, ((TagString) areaRow.getTag(col)).getData());
+							c.setBiome(cx, cy, cz, ((TagInt) biomeRow.getTag(col)).getData());
+						}
+					}
+				}
+
+				return c;
+			} else {
+				throw new IOException("Chunk has inconsistant location data.");
+			}
+		} else {
+			throw new IOException("Chunk file is from newer version.");
+		}
+	}
+
+	/**
+	 * Writes the values used by a palette array followed by run length encoded
+	 * indexes.
+	 * 
+	 * @param out The stream to write to.
+	 * @param p   The palette array to write.
+	 * @param w   The method used to write a value.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	private static <T> void writePalette(DataOutputStream out, ChunkPalette<T> p, ValueWriter<T> w)
+			throws IOException {
+		int[] remap = new int[p.getPaletteSize()];
+		Arrays.fill(remap, -1);
+		List<T> used = new ArrayList<T>();
+		int[] runs = new int[p.length() * 2];
+		int runCount = 0;
+
+		for (int i = 0; i < p.length(); i++) {
+			int v = p.indexAt(i);
+			if (remap[v] == -1) {
+				remap[v] = used.size();
+				used.add(p.getPaletteValue(v));
+			}
+			v = remap[v];
+			if (runCount > 0 && runs[runCount * 2 - 2] == v) {
+				runs[runCount * 2 - 1] += 1;
+			} else {
+				runs[runCount * 2] = v;
+				runs[runCount * 2 + 1] = 1;
+				runCount += 1;
+			}
+		}
+
+		out.writeShort(used.size());
+		for (T t : used) {
+			w.write(out, t);
+		}
+		out.writeShort(runCount);
+		for (int i = 0; i < runCount; i++) {
+			out.writeShort(runs[i * 2]);
+			out.writeShort(runs[i * 2 + 1]);
+		}
+	}
+
+	/**
+	 * Reads palette values and run length encoded indexes into a palette array.
+	 * 
+	 * @param buf The buffer to read from.
+	 * @param p   The palette array to read to.
+	 * @param r   The method used to read a value.
+	 * @throws IOException If the data is not valid.
+	 */
+	private static <T> void readPalette(ByteBuffer buf, ChunkPalette<T> p, ValueReader<T> r) throws IOException {
+		int size = buf.getShort() & 0xFFFF;
+		List<T> values = new ArrayList<T>(size);
+		for (int i = 0; i < size; i++) {
+			values.add(r.read(buf));
+		}
+
+		int runCount = buf.getShort() & 0xFFFF;
+		int start = 0;
+		for (int i = 0; i < runCount; i++) {
+			int v = buf.getShort() & 0xFFFF;
+			int length = buf.getShort() & 0xFFFF;
+			if (v >= size || start + length > p.length()) {
+				throw new IOException("Chunk has invalid palette data.");
+			}
+			p.setRun(start, length, values.get(v));
+			start += length;
+		}
+		if (start != p.length()) {
+			throw new IOException("Chunk has invalid palette data.");
+		}
+	}
+
+	/**
+	 * Writes a string that may be null as UTF-8.
+	 * 
+	 * @param out The stream to write to.
+	 * @param s   The string to write.
+	 * @throws IOException If an error occurs writing data.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] b = s.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(b.length);
+			out.write(b);
+		}
+	}
+
+	/**
+	 * Reads a string that may be null as UTF-8.
+	 * 
+	 * @param buf The buffer to read from.
+	 * @return A string or {@code null}.
+	 * @throws IOException If the data is not valid.
+	 */
+	private static String readString(ByteBuffer buf) throws IOException {
+		int length = buf.getInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > buf.remaining()) {
+			throw new IOException("Chunk has invalid string data.");
+		}
+		byte[] b = new byte[length];
+		buf.get(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A method for writing a palette value.
+	 *
+	 * @param <T> The type of value.
+	 */
+	private interface ValueWriter<T> {
+		/**
+		 * Writes a value.
+		 * 
+		 * @param out The stream to write to.
+		 * @param t   The value to write.
+		 * @throws IOException If an error occurs writing data.
+		 */
+		void write(DataOutputStream out, T t) throws IOException;
+	}
+
+	/**
+	 * A method for reading a palette value.
+	 *
+	 * @param <T> The type of value.
+	 */
+	private interface ValueReader<T> {
+		/**
+		 * Reads a value.
+		 * 
+		 * @param buf The buffer to read from.
+		 * @return A value.
+		 * @throws IOException If the data is not valid.
+		 */
+		T read(ByteBuffer buf) throws IOException;
+	}
+}
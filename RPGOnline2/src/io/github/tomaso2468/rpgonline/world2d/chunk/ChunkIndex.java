@@ -0,0 +1,263 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * <p>
+ * An open addressing hash index of chunks keyed by their chunk position.
+ * </p>
+ * <p>
+ * Chunk positions are packed into a single {@code long} key which is used to
+ * select a slot so no boxing or string building occurs during a lookup. Reads
+ * do not take any lock and are safe to perform from any thread. Writes are
+ * synchronized on the index and publish a new table when the index needs to
+ * grow.
+ * </p>
+ * <p>
+ * A read that races with a removal or resize may miss a chunk that is present.
+ * Callers should treat a miss as a hint and check again while holding the lock
+ * used to add chunks.
+ * </p>
+ * 
+ * @author Tomaso2468
+ */
+public class ChunkIndex {
+	/**
+	 * A marker placed in a slot when a chunk is removed.
+	 */
+	private static final Chunk REMOVED = new Chunk(Collections.<String, Tile>emptyMap(), Long.MIN_VALUE,
+			Long.MIN_VALUE, Long.MIN_VALUE);
+	/**
+	 * The initial amount of slots in the table. This must be a power of two.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+	/**
+	 * The current table of chunks.
+	 */
+	private volatile AtomicReferenceArray<Chunk> table = new AtomicReferenceArray<Chunk>(INITIAL_CAPACITY);
+	/**
+	 * The number of chunks in the table.
+	 */
+	private volatile int size = 0;
+	/**
+	 * The number of slots holding the removed marker.
+	 */
+	private int removed = 0;
+
+	/**
+	 * Packs a chunk position into a single key.
+	 * 
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A long key.
+	 */
+	public static long key(long cx, long cy, long cz) {
+		return ((cx & 0x3FFFFFFL) << 38) | ((cy & 0x3FFFFFFL) << 12) | (cz & 0xFFFL);
+	}
+
+	/**
+	 * Mixes the bits of a key to spread nearby chunks across the table.
+	 * 
+	 * @param key A key from {@link #key(long, long, long)}.
+	 * @return A hash value.
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * Gets a chunk at the specified chunk position without locking.
+	 * 
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A chunk or {@code null} if no chunk was found.
+	 */
+	public Chunk get(long cx, long cy, long cz) {
+		AtomicReferenceArray<Chunk> t = table;
+		int mask = t.length() - 1;
+		int i = hash(key(cx, cy, cz)) & mask;
+
+		for (int n = 0; n <= mask; n++) {
+			Chunk c = t.get(i);
+			if (c == null) {
+				return null;
+			}
+			if (c != REMOVED && c.isAt(cx, cy, cz)) {
+				return c;
+			}
+			i = (i + 1) & mask;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds a chunk to this index replacing any chunk at the same position.
+	 * 
+	 * @param chunk The chunk to add.
+	 */
+	public synchronized void put(Chunk chunk) {
+		if ((size + removed + 1) * 4 >= table.length() * 3) {
+			rehash(size + 1 > table.length() / 2 ? table.length() * 2 : table.length());
+		}
+
+		AtomicReferenceArray<Chunk> t = table;
+		int mask = t.length() - 1;
+		int i = hash(key(chunk.getX(), chunk.getY(), chunk.getZ())) & mask;
+		int free = -1;
+
+		while (true) {
+			Chunk c = t.get(i);
+			if (c == null) {
+				break;
+			}
+			if (c == REMOVED) {
+				if (free == -1) {
+					free = i;
+				}
+			} else if (c.isAt(chunk.getX(), chunk.getY(), chunk.getZ())) {
+				t.set(i, chunk);
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		if (free != -1) {
+			t.set(free, chunk);
+			removed -= 1;
+		} else {
+			t.set(i, chunk);
+		}
+		size += 1;
+	}
+
+	/**
+	 * Removes the chunk at the specified chunk position.
+	 * 
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return The removed chunk or {@code null} if no chunk was found.
+	 */
+	public synchronized Chunk remove(long cx, long cy, long cz) {
+		AtomicReferenceArray<Chunk> t = table;
+		int mask = t.length() - 1;
+		int i = hash(key(cx, cy, cz)) & mask;
+
+		while (true) {
+			Chunk c = t.get(i);
+			if (c == null) {
+				return null;
+			}
+			if (c != REMOVED && c.isAt(cx, cy, cz)) {
+				t.set(i, REMOVED);
+				size -= 1;
+				removed += 1;
+				return c;
+			}
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Removes all chunks from this index.
+	 */
+	public synchronized void clear() {
+		table = new AtomicReferenceArray<Chunk>(INITIAL_CAPACITY);
+		size = 0;
+		removed = 0;
+	}
+
+	/**
+	 * Gets the number of chunks in this index.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets a list of all chunks in this index.
+	 * 
+	 * @return A unique list object.
+	 */
+	public synchronized List<Chunk> values() {
+		List<Chunk> l = new ArrayList<Chunk>(size);
+		AtomicReferenceArray<Chunk> t = table;
+		for (int i = 0; i < t.length(); i++) {
+			Chunk c = t.get(i);
+			if (c != null && c != REMOVED) {
+				l.add(c);
+			}
+		}
+		return l;
+	}
+
+	/**
+	 * Copies all chunks into a new table and publishes it.
+	 * 
+	 * @param capacity The size of the new table. This must be a power of two.
+	 */
+	private void rehash(int capacity) {
+		AtomicReferenceArray<Chunk> old = table;
+		AtomicReferenceArray<Chunk> t = new AtomicReferenceArray<Chunk>(capacity);
+		int mask = capacity - 1;
+
+		for (int j = 0; j < old.length(); j++) {
+			Chunk c = old.get(j);
+			if (c == null || c == REMOVED) {
+				continue;
+			}
+			int i = hash(key(c.getX(), c.getY(), c.getZ())) & mask;
+			while (t.get(i) != null) {
+				i = (i + 1) & mask;
+			}
+			t.lazySet(i, c);
+		}
+
+		removed = 0;
+		table = t;
+	}
+}
@@ -0,0 +1,399 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>
+ * A flat array of values stored as indexes into a small palette of distinct
+ * values.
+ * </p>
+ * <p>
+ * While every cell holds the same value no index array is allocated. Indexes
+ * are stored as bytes until the palette grows past 256 values and as shorts
+ * after that. Unused values are removed when the palette grows larger than the
+ * number of cells.
+ * </p>
+ * <p>
+ * Reads do not lock. Writes and snapshots are synchronized. Whenever the
+ * palette or the index array is replaced the new arrays are filled first and
+ * then published together with a single volatile write, so a concurrent read
+ * always sees an index array that matches its palette.
+ * </p>
+ * 
+ * @author Tomaso2468
+ *
+ * @param <T> The type of value stored.
+ */
+public class ChunkPalette<T> {
+	/**
+	 * The palette size above which a hash map is used to find palette indexes.
+	 */
+	private static final int MAP_THRESHOLD = 16;
+	/**
+	 * The number of cells in this array.
+	 */
+	private final int length;
+	/**
+	 * The current palette and index array.
+	 */
+	private volatile Cells cells;
+	/**
+	 * A map from values to palette indexes used for large palettes.
+	 */
+	private Map<Object, Integer> lookup;
+	/**
+	 * Determines if the arrays of this palette are shared with a snapshot and must
+	 * be copied before they are modified.
+	 */
+	private boolean shared = false;
+
+	/**
+	 * Constructs a new palette array.
+	 * 
+	 * @param length The number of cells.
+	 * @param fill   The initial value of every cell.
+	 */
+	public ChunkPalette(int length, T fill) {
+		this.length = length;
+		this.cells = new Cells(new Object[] { fill }, 1, null, null);
+	}
+
+	/**
+	 * Gets the value at the specified cell.
+	 * 
+	 * @param i The index of the cell.
+	 * @return A value in the palette.
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int i) {
+		Cells c = cells;
+		int p = c.indexAt(i);
+		while (p >= c.size) {
+			// The index was written for a value added after this palette was read.
+			c = cells;
+			p = c.indexAt(i);
+		}
+		return (T) c.values[p];
+	}
+
+	/**
+	 * Sets the value at the specified cell.
+	 * 
+	 * @param i The index of the cell.
+	 * @param v The value to store.
+	 */
+	public synchronized void set(int i, T v) {
+		int p = indexOf(v);
+		if (p != -1 && p == cells.indexAt(i)) {
+			return;
+		}
+		if (shared) {
+			unshare();
+		}
+		if (p == -1) {
+			if (cells.size >= length) {
+				compact();
+			}
+			Cells c = cells;
+			Object[] nv = c.values;
+			byte[] nb = c.bytes;
+			short[] ns = c.shorts;
+			if (nb == null && ns == null) {
+				nb = new byte[length];
+			}
+			if (c.size == 256 && ns == null) {
+				ns = new short[length];
+				for (int j = 0; j < length; j++) {
+					ns[j] = (short) (nb[j] & 0xFF);
+				}
+				nb = null;
+			}
+			if (c.size == nv.length) {
+				nv = Arrays.copyOf(nv, nv.length * 2);
+			}
+			p = c.size;
+			nv[p] = v;
+			cells = new Cells(nv, p + 1, nb, ns);
+			if (lookup != null) {
+				lookup.put(v, p);
+			} else if (p + 1 > MAP_THRESHOLD) {
+				lookup = new HashMap<Object, Integer>();
+				for (int j = 0; j <= p; j++) {
+					lookup.put(nv[j], j);
+				}
+			}
+		}
+		Cells c = cells;
+		if (c.shorts != null) {
+			c.shorts[i] = (short) p;
+		} else if (c.bytes != null) {
+			c.bytes[i] = (byte) p;
+		}
+	}
+
+	/**
+	 * Sets a run of consecutive cells to the same value.
+	 * 
+	 * @param start  The index of the first cell.
+	 * @param length The number of cells to set.
+	 * @param v      The value to store.
+	 */
+	public synchronized void setRun(int start, int length, T v) {
+		if (start == 0 && length == this.length) {
+			fill(v);
+			return;
+		}
+		if (length <= 0) {
+			return;
+		}
+		if (shared) {
+			unshare();
+		}
+		set(start, v);
+		Cells c = cells;
+		int p = c.indexAt(start);
+		if (c.shorts != null) {
+			Arrays.fill(c.shorts, start, start + length, (short) p);
+		} else if (c.bytes != null) {
+			Arrays.fill(c.bytes, start, start + length, (byte) p);
+		}
+	}
+
+	/**
+	 * Sets every cell to the same value and discards the palette.
+	 * 
+	 * @param v The value to store.
+	 */
+	public synchronized void fill(T v) {
+		cells = new Cells(new Object[] { v }, 1, null, null);
+		lookup = null;
+		shared = false;
+	}
+
+	/**
+	 * Creates a copy of this palette array. The copy shares its arrays with this
+	 * palette until either palette is modified, so taking a snapshot does not copy
+	 * any cells.
+	 * 
+	 * @return A new palette array with the same values.
+	 */
+	public synchronized ChunkPalette<T> snapshot() {
+		ChunkPalette<T> p = new ChunkPalette<T>(length, null);
+		Cells c = cells;
+		synchronized (p) {
+			p.cells = c;
+			p.lookup = lookup;
+			if (c.bytes != null || c.shorts != null || lookup != null || c.size > 1) {
+				p.shared = true;
+				shared = true;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Copies the arrays of this palette so that it no longer shares them with a
+	 * snapshot.
+	 */
+	private void unshare() {
+		Cells c = cells;
+		cells = new Cells(c.values.clone(), c.size, c.bytes == null ? null : c.bytes.clone(), c.shorts == null ? null : c.shorts.clone());
+		if (lookup != null) {
+			lookup = new HashMap<Object, Integer>(lookup);
+		}
+		shared = false;
+	}
+
+	/**
+	 * Gets the palette index of the specified cell.
+	 * 
+	 * @param i The index of the cell.
+	 * @return A palette index.
+	 */
+	public int indexAt(int i) {
+		return cells.indexAt(i);
+	}
+
+	/**
+	 * Gets the value at the specified palette index.
+	 * 
+	 * @param p A palette index.
+	 * @return A value in the palette.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getPaletteValue(int p) {
+		return (T) cells.values[p];
+	}
+
+	/**
+	 * Gets the number of values in the palette.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getPaletteSize() {
+		return cells.size;
+	}
+
+	/**
+	 * Gets the number of cells in this array.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Removes values from the palette that are no longer used by any cell. The
+	 * compacted palette and index array are built before either is published.
+	 */
+	private void compact() {
+		Cells c = cells;
+		int[] remap = new int[c.size];
+		Arrays.fill(remap, -1);
+		Object[] nv = new Object[c.values.length];
+		byte[] nb = c.bytes == null ? null : new byte[length];
+		short[] ns = c.shorts == null ? null : new short[length];
+		int n = 0;
+
+		for (int j = 0; j < length; j++) {
+			int p = c.indexAt(j);
+			if (remap[p] == -1) {
+				remap[p] = n;
+				nv[n] = c.values[p];
+				n += 1;
+			}
+			if (ns != null) {
+				ns[j] = (short) remap[p];
+			} else if (nb != null) {
+				nb[j] = (byte) remap[p];
+			}
+		}
+
+		cells = new Cells(nv, n, nb, ns);
+		lookup = null;
+		if (n > MAP_THRESHOLD) {
+			lookup = new HashMap<Object, Integer>();
+			for (int j = 0; j < n; j++) {
+				lookup.put(nv[j], j);
+			}
+		}
+	}
+
+	/**
+	 * Finds the palette index of a value.
+	 * 
+	 * @param v The value to find.
+	 * @return A palette index or {@code -1} if the value is not in the palette.
+	 */
+	private int indexOf(Object v) {
+		if (lookup != null) {
+			Integer p = lookup.get(v);
+			return p == null ? -1 : p;
+		}
+		Cells c = cells;
+		for (int j = 0; j < c.size; j++) {
+			if (c.values[j] == v) {
+				return j;
+			}
+		}
+		for (int j = 0; j < c.size; j++) {
+			if (Objects.equals(c.values[j], v)) {
+				return j;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A palette together with the index array that refers to it. A new instance is
+	 * published whenever either array is replaced. Cells of the index array may
+	 * still be written in place as long as they refer to values already in the
+	 * palette.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static final class Cells {
+		/**
+		 * The distinct values in this palette.
+		 */
+		final Object[] values;
+		/**
+		 * The number of values in the palette.
+		 */
+		final int size;
+		/**
+		 * The palette indexes of each cell when the palette has at most 256 values.
+		 */
+		final byte[] bytes;
+		/**
+		 * The palette indexes of each cell when the palette has more than 256 values.
+		 */
+		final short[] shorts;
+
+		/**
+		 * Constructs a new palette and index array pair.
+		 * 
+		 * @param values The distinct values.
+		 * @param size   The number of values in use.
+		 * @param bytes  The byte indexes or {@code null}.
+		 * @param shorts The short indexes or {@code null}.
+		 */
+		Cells(Object[] values, int size, byte[] bytes, short[] shorts) {
+			this.values = values;
+			this.size = size;
+			this.bytes = bytes;
+			this.shorts = shorts;
+		}
+
+		/**
+		 * Gets the palette index of the specified cell.
+		 * 
+		 * @param i The index of the cell.
+		 * @return A palette index.
+		 */
+		int indexAt(int i) {
+			if (shorts != null) {
+				return shorts[i] & 0xFFFF;
+			}
+			if (bytes != null) {
+				return bytes[i] & 0xFF;
+			}
+			return 0;
+		}
+	}
+}
@@ -34,11 +34,23 @@ package io.github.tomaso2468.rpgonline.world2d.chunk;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.newdawn.slick.util.Log;
 
 import io.github.tomaso2468.rpgonline.world2d.LightSource;
 import io.github.tomaso2468.rpgonline.world2d.Tile;
 import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.WorldChangeListener;
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityList;
 
 /**
  * A class for storing world data using many chunks.
@@ -48,17 +60,46 @@ import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
  */
 public class ChunkWorld implements World {
 	/**
-	 * The list of chunks in this world.
+	 * The maximum number of chunk loads that can wait for a loader thread.
+	 */
+	private static final int LOAD_QUEUE_SIZE = 256;
+	/**
+	 * The index of chunks in this world.
+	 */
+	protected final ChunkIndex chunks = new ChunkIndex();
+	/**
+	 * The ring of loaded chunks swept by the clock eviction policy.
+	 */
+	private final List<Chunk> clock = new ArrayList<Chunk>();
+	/**
+	 * The position of the clock hand in the ring of loaded chunks.
+	 */
+	private int clock_hand = 0;
+	/**
+	 * The maximum number of chunks to keep loaded.
+	 */
+	private int chunk_budget = Integer.MAX_VALUE;
+	/**
+	 * The number of lookups that found a loaded chunk.
+	 */
+	private final LongAdder hits = new LongAdder();
+	/**
+	 * The number of lookups that had to create or load a chunk.
 	 */
-	protected final List<Chunk> chunks = new ArrayList<Chunk>();
+	private volatile long misses = 0;
 	/**
-	 * The list of more frequently used cached chunks.
+	 * The number of chunks that have been unloaded.
 	 */
-	protected final List<CacheEntry> cache = new ArrayList<CacheEntry>();
+	private volatile long evictions = 0;
+	/**
+	 * The threads used to load chunks or {@code null} if chunks are loaded on the
+	 * calling thread.
+	 */
+	private volatile ThreadPoolExecutor loader = null;
 	/**
 	 * The most recently accessed chunk.
 	 */
-	protected Chunk last_chunk = null;
+	protected volatile Chunk last_chunk = null;
 	/**
 	 * The minimum X position of the world.
 	 */
@@ -95,10 +136,18 @@ public class ChunkWorld implements World {
 	 * The tile registry for this world.
 	 */
 	protected Map<String, Tile> registry;
+	/**
+	 * The grid used to find entities near a position.
+	 */
+	private final EntityGrid entityGrid = new EntityGrid(8);
 	/**
 	 * The list of entities in this world.
 	 */
-	private List<Entity> entities = new ArrayList<>();
+	private List<Entity> entities = new EntityList(entityGrid);
+	/**
+	 * The objects told when tiles change.
+	 */
+	private final List<WorldChangeListener> listeners = new CopyOnWriteArrayList<WorldChangeListener>();
 	
 	/**
 	 * Constructs a new ChunkWorld
@@ -113,7 +162,7 @@ public class ChunkWorld implements World {
 	 */
 	@Override
 	public Tile getTile(long x, long y, long z) {
-		Tile t = getChunk(x, y, z).getTile(xToChunk(x), xToChunk(y), zToChunk(z));
+		Tile t = getChunkNow(x, y, z).getTile(xToChunk(x), xToChunk(y), zToChunk(z));
 		if (t == null) {
 			return registry.get("air");
 		}
@@ -125,7 +174,7 @@ public class ChunkWorld implements World {
 	 */
 	@Override
 	public String getTileState(long x, long y, long z) {
-		return getChunk(x, y, z).getState(xToChunk(x), xToChunk(y), zToChunk(z));
+		return getChunkNow(x, y, z).getState(xToChunk(x), xToChunk(y), zToChunk(z));
 	}
 
 	/**
@@ -153,6 +202,52 @@ public class ChunkWorld implements World {
 		}
 		getChunk(x, y, z).setTile(xToChunk(x), xToChunk(y), zToChunk(z), tile);
 		getChunk(x, y, z).setState(xToChunk(x), xToChunk(y), zToChunk(z), state);
+		fireTilesChanged(x, y, z, x, y, z);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean addChangeListener(WorldChangeListener l) {
+		listeners.add(l);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void removeChangeListener(WorldChangeListener l) {
+		listeners.remove(l);
+	}
+
+	/**
+	 * Tells all listeners that tiles in an area have changed.
+	 * @param minX The smallest X position that changed.
+	 * @param minY The smallest Y position that changed.
+	 * @param minZ The smallest Z position that changed.
+	 * @param maxX The largest X position that changed.
+	 * @param maxY The largest Y position that changed.
+	 * @param maxZ The largest Z position that changed.
+	 */
+	protected void fireTilesChanged(long minX, long minY, long minZ, long maxX, long maxY, long maxZ) {
+		for (WorldChangeListener l : listeners) {
+			l.tilesChanged(minX, minY, minZ, maxX, maxY, maxZ);
+		}
+	}
+
+	/**
+	 * Tells all listeners that every tile in a chunk may have changed. This is
+	 * used when a chunk replaces a placeholder, when a chunk is unloaded and when
+	 * the data of a chunk is replaced.
+	 * @param c The chunk that changed.
+	 */
+	protected void fireChunkChanged(Chunk c) {
+		if (!listeners.isEmpty()) {
+			fireTilesChanged(c.getX() * Chunk.SIZE, c.getY() * Chunk.SIZE, c.getZ() * 2,
+					c.getX() * Chunk.SIZE + Chunk.SIZE - 1, c.getY() * Chunk.SIZE + Chunk.SIZE - 1, c.getZ() * 2 + 1);
+		}
 	}
 
 	/**
@@ -172,50 +267,387 @@ public class ChunkWorld implements World {
 	}
 	
 	/**
-	 * Gets a chunk at the specified position.
+	 * Gets a chunk at the specified position. Chunks that are already loaded are
+	 * found without taking a lock.
 	 * @param x The X position of the chunk in world coordinates.
 	 * @param y The Y position of the chunk in world coordinates.
 	 * @param z The Z position of the chunk in world coordinates.
 	 * @return A chunk object.
 	 */
-	protected synchronized Chunk getChunk(long x, long y, long z) {
+	protected Chunk getChunk(long x, long y, long z) {
 		long cx = (int) Math.floor(x / (Chunk.SIZE * 1f));
 		long cy = (int) Math.floor(y / (Chunk.SIZE * 1f));
 		long cz = (int) Math.floor(z / (2 * 1f));
 
-		if (last_chunk != null) {
-			if (last_chunk.isAt(cx, cy, cz)) {
-				return last_chunk;
+		Chunk chunk = last_chunk;
+		if (chunk != null && chunk.isAt(cx, cy, cz)) {
+			if (!chunk.accessed) {
+				chunk.accessed = true;
 			}
+			return chunk;
 		}
 
-		synchronized (cache) {
-			for (CacheEntry e : cache) {
-				Chunk chunk = e.getChunk();
-				if (chunk.isAt(cx, cy, cz)) {
-					e.setTime(System.currentTimeMillis());
-					last_chunk = chunk;
-					return chunk;
-				}
+		chunk = chunks.get(cx, cy, cz);
+		if (chunk == null) {
+			chunk = addChunk(cx, cy, cz);
+		} else {
+			hits.increment();
+			if (!chunk.accessed) {
+				chunk.accessed = true;
 			}
 		}
+		while (chunk.loading != null) {
+			try {
+				chunk = chunk.loading.join();
+			} catch (CompletionException e) {
+				chunk = addChunk(cx, cy, cz);
+			}
+		}
+		setLastChunk(chunk);
 
-		for (Chunk chunk : chunks) {
-			if (chunk.isAt(cx, cy, cz)) {
-				cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
-				last_chunk = chunk;
-				return chunk;
+		return chunk;
+	}
+
+	/**
+	 * Gets a chunk at the specified position for reading without waiting for it
+	 * to load. If the chunk is not loaded and loader threads are enabled an empty
+	 * placeholder chunk is returned while the chunk is loaded in the background.
+	 * Placeholders must not be modified.
+	 * @param x The X position of the chunk in world coordinates.
+	 * @param y The Y position of the chunk in world coordinates.
+	 * @param z The Z position of the chunk in world coordinates.
+	 * @return A chunk object.
+	 * 
+	 * @see #setLoaderThreads(int)
+	 */
+	protected Chunk getChunkNow(long x, long y, long z) {
+		if (loader == null) {
+			return getChunk(x, y, z);
+		}
+
+		long cx = (int) Math.floor(x / (Chunk.SIZE * 1f));
+		long cy = (int) Math.floor(y / (Chunk.SIZE * 1f));
+		long cz = (int) Math.floor(z / (2 * 1f));
+
+		Chunk chunk = last_chunk;
+		if (chunk != null && chunk.isAt(cx, cy, cz)) {
+			if (!chunk.accessed) {
+				chunk.accessed = true;
+			}
+			return chunk;
+		}
+
+		chunk = chunks.get(cx, cy, cz);
+		if (chunk == null) {
+			return loadChunkAsync(cx, cy, cz);
+		}
+		hits.increment();
+		if (chunk.loading == null) {
+			if (!chunk.accessed) {
+				chunk.accessed = true;
 			}
+			setLastChunk(chunk);
 		}
 
-		Chunk chunk = new Chunk(registry, cx, cy, cz);
-		chunks.add(chunk);
-		cache.add(new CacheEntry(chunk, System.currentTimeMillis()));
+		return chunk;
+	}
+
+	/**
+	 * Caches the most recently accessed chunk. Lookups do not hold the lock used
+	 * for eviction so the chunk is checked again after it has been cached. If it
+	 * was evicted in the meantime the cache is cleared so that later lookups do not
+	 * modify a chunk that is no longer part of the world.
+	 * @param chunk The chunk that was accessed.
+	 */
+	private void setLastChunk(Chunk chunk) {
 		last_chunk = chunk;
+		if (chunks.get(chunk.getX(), chunk.getY(), chunk.getZ()) != chunk) {
+			last_chunk = null;
+		}
+	}
+
+	/**
+	 * Gets a chunk at the specified chunk position creating it if it has not been
+	 * loaded.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A chunk object.
+	 */
+	protected synchronized Chunk addChunk(long cx, long cy, long cz) {
+		Chunk chunk = chunks.get(cx, cy, cz);
+		if (chunk != null) {
+			hits.increment();
+			return chunk;
+		}
+
+		misses += 1;
+
+		if (chunks.size() >= chunk_budget) {
+			unloadChunks(0, chunks.size() - chunk_budget + 1);
+		}
+
+		chunk = createChunk(cx, cy, cz);
+		publishChunk(chunk);
 
 		return chunk;
 	}
 
+	/**
+	 * Starts loading a chunk in the background. A placeholder chunk is added in
+	 * place of the chunk until it has finished loading. If the loader threads are
+	 * busy the chunk is loaded on the calling thread.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return The loaded chunk or a placeholder if it is still loading.
+	 */
+	protected Chunk loadChunkAsync(long cx, long cy, long cz) {
+		Chunk placeholder;
+		synchronized (this) {
+			Chunk chunk = chunks.get(cx, cy, cz);
+			if (chunk != null) {
+				hits.increment();
+				return chunk;
+			}
+
+			misses += 1;
+
+			if (chunks.size() >= chunk_budget) {
+				unloadChunks(0, chunks.size() - chunk_budget + 1);
+			}
+
+			placeholder = new Chunk(registry, cx, cy, cz);
+			placeholder.loading = new CompletableFuture<Chunk>();
+			chunks.put(placeholder);
+		}
+
+		Runnable job = () -> finishLoad(placeholder);
+		ThreadPoolExecutor loader = this.loader;
+		if (loader == null) {
+			job.run();
+		} else {
+			loader.execute(job);
+		}
+
+		return placeholder;
+	}
+
+	/**
+	 * Loads the chunk for a placeholder and publishes it in place of the
+	 * placeholder. If the chunk cannot be loaded the placeholder is removed so the
+	 * chunk is loaded again on the next access.
+	 * @param placeholder The placeholder of the chunk to load.
+	 */
+	private void finishLoad(Chunk placeholder) {
+		Chunk chunk;
+		try {
+			chunk = createChunk(placeholder.getX(), placeholder.getY(), placeholder.getZ());
+		} catch (RuntimeException e) {
+			Log.error("Error loading chunk " + placeholder.getX() + " " + placeholder.getY() + " "
+					+ placeholder.getZ() + ".", e);
+			synchronized (clock) {
+				if (chunks.get(placeholder.getX(), placeholder.getY(), placeholder.getZ()) == placeholder) {
+					chunks.remove(placeholder.getX(), placeholder.getY(), placeholder.getZ());
+				}
+			}
+			placeholder.loading.completeExceptionally(e);
+			return;
+		}
+		publishChunk(chunk);
+		fireChunkChanged(chunk);
+		placeholder.loading.complete(chunk);
+	}
+
+	/**
+	 * Adds a loaded chunk to the index replacing any placeholder and makes it
+	 * available for eviction.
+	 * @param chunk The chunk to add.
+	 */
+	private void publishChunk(Chunk chunk) {
+		synchronized (clock) {
+			chunks.put(chunk);
+			clock.add(chunk);
+		}
+	}
+
+	/**
+	 * Starts loading all chunks within a radius of a position that are not
+	 * already loaded. Nearer chunks are requested first. This method does nothing
+	 * unless loader threads are enabled.
+	 * @param x The X position in world coordinates.
+	 * @param y The Y position in world coordinates.
+	 * @param z The Z position in world coordinates.
+	 * @param radius The radius in chunks.
+	 */
+	@Override
+	public void prefetch(double x, double y, long z, int radius) {
+		if (loader == null) {
+			return;
+		}
+
+		long cx = (long) Math.floor(x / Chunk.SIZE);
+		long cy = (long) Math.floor(y / Chunk.SIZE);
+		long cz = (long) Math.floor(z / (2 * 1f));
+
+		for (int r = 0; r <= radius; r++) {
+			for (int dx = -r; dx <= r; dx++) {
+				for (int dy = -r; dy <= r; dy++) {
+					if (Math.max(Math.abs(dx), Math.abs(dy)) != r || dx * dx + dy * dy > radius * radius) {
+						continue;
+					}
+					if (chunks.get(cx + dx, cy + dy, cz) == null) {
+						loadChunkAsync(cx + dx, cy + dy, cz);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts loading the chunks around a list of entities such as the players
+	 * connected to a server.
+	 * @param players The entities to load chunks around.
+	 * @param radius The radius in chunks.
+	 * 
+	 * @see #prefetch(double, double, long, int)
+	 */
+	public void prefetch(List<? extends Entity> players, int radius) {
+		for (Entity e : players) {
+			prefetch(e.getX(), e.getY(), 0, radius);
+		}
+	}
+
+	/**
+	 * Gets the number of threads used to load chunks.
+	 * @return A positive integer or zero if chunks are loaded on the calling
+	 *         thread.
+	 */
+	public int getLoaderThreads() {
+		ThreadPoolExecutor loader = this.loader;
+		return loader == null ? 0 : loader.getMaximumPoolSize();
+	}
+
+	/**
+	 * Sets the number of threads used to load chunks. When loader threads are
+	 * enabled reads from chunks that are not loaded return empty placeholders
+	 * instead of waiting for the chunk to be loaded or generated.
+	 * @param threads The number of threads or zero to load chunks on the calling
+	 *            thread.
+	 */
+	public synchronized void setLoaderThreads(int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("Loader thread count must not be negative: " + threads);
+		}
+		if (loader != null) {
+			loader.shutdown();
+		}
+		if (threads == 0) {
+			loader = null;
+			return;
+		}
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(LOAD_QUEUE_SIZE), r -> {
+					Thread t = new Thread(r, "Chunk Loader");
+					t.setDaemon(true);
+					return t;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		loader = executor;
+	}
+
+	/**
+	 * Gets the number of chunks waiting for a loader thread.
+	 * @return A positive integer.
+	 */
+	public int getLoadQueueDepth() {
+		ThreadPoolExecutor loader = this.loader;
+		return loader == null ? 0 : loader.getQueue().size();
+	}
+
+	/**
+	 * Unloads a chunk that has been evicted. Chunks that cannot be recreated
+	 * later must not be unloaded.
+	 * @param chunk The chunk to unload.
+	 * @return {@code true} if the chunk can be removed from memory, {@code false}
+	 *         otherwise.
+	 */
+	protected boolean unloadChunk(Chunk chunk) {
+		return false;
+	}
+
+	/**
+	 * Sweeps the loaded chunks using the clock policy and unloads chunks that have
+	 * not been accessed. Chunks that have been accessed since the last sweep are
+	 * kept and their access time is updated.
+	 * @param time The minimum time in milliseconds since a chunk was last accessed
+	 *            for it to be unloaded.
+	 * @param max The maximum number of chunks to unload.
+	 * @return The number of chunks unloaded.
+	 */
+	protected synchronized int unloadChunks(long time, int max) {
+		synchronized (clock) {
+			return sweepClock(time, max);
+		}
+	}
+
+	/**
+	 * Sweeps the clock ring. This method must be called while holding the lock on
+	 * the ring.
+	 * @param time The minimum time in milliseconds since a chunk was last accessed
+	 *            for it to be unloaded.
+	 * @param max The maximum number of chunks to unload.
+	 * @return The number of chunks unloaded.
+	 */
+	private int sweepClock(long time, int max) {
+		long now = System.currentTimeMillis();
+		int count = 0;
+		int remaining = clock.size() * 2;
+
+		while (count < max && remaining > 0 && !clock.isEmpty()) {
+			remaining -= 1;
+			if (clock_hand >= clock.size()) {
+				clock_hand = 0;
+			}
+			Chunk c = clock.get(clock_hand);
+
+			if (c.accessed) {
+				c.accessed = false;
+				c.lastAccess = now;
+				clock_hand += 1;
+			} else if (c.lastAccess + time <= now && unloadChunk(c)) {
+				// The chunk is removed before the cache is checked so that a lookup caching it
+				// concurrently either sees it missing or has its cached entry cleared here.
+				chunks.remove(c.getX(), c.getY(), c.getZ());
+				Chunk last = clock.remove(clock.size() - 1);
+				if (last != c) {
+					clock.set(clock_hand, last);
+				}
+				if (last_chunk == c) {
+					last_chunk = null;
+				}
+				evictions += 1;
+				count += 1;
+				fireChunkChanged(c);
+			} else {
+				clock_hand += 1;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Creates a chunk that is not currently loaded.
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @param cz The Z position of the chunk.
+	 * @return A new chunk object.
+	 */
+	protected Chunk createChunk(long cx, long cy, long cz) {
+		return new Chunk(registry, cx, cy, cz);
+	}
+
 	/**
 	 * Converts a X/Y world space coordinate to chunk space.
 	 * @param x The X/Y position in world space coordinates.
@@ -245,28 +677,16 @@ public class ChunkWorld implements World {
 	 * A fast clear of the cache optimised for clients.
 	 */
 	public void checkCacheClientQuick() {
-		clearCacheQuick(1000 * 2, 8);
+		clearCacheQuick(1000 * 15, 8);
 	}
 
 	/**
-	 * A method that clears some of the cache.
+	 * A method that unloads some of the chunks that have not been used recently.
 	 * @param time The time delay for chunks being unloaded.
 	 * @param max The maximum count of chunks to unload.
 	 */
-	public synchronized void clearCacheQuick(long time, int max) {
-		int count = 0;
-		synchronized (cache) {
-			for (int i = 0; i < cache.size(); i++) {
-				if (count > max) {
-					return;
-				}
-				CacheEntry e = cache.get(i);
-				if (e.getTime() + time < System.currentTimeMillis()) {
-					cache.remove(e);
-					count += 1;
-				}
-			}
-		}
+	public void clearCacheQuick(long time, int max) {
+		unloadChunks(time, max);
 	}
 
 	/**
@@ -284,25 +704,80 @@ public class ChunkWorld implements World {
 	}
 
 	/**
-	 * A method that clears the cache.
+	 * A method that unloads all chunks that have not been used recently.
 	 * @param time The time delay to keep chunks for.
 	 */
-	public synchronized void clearCache(long time) {
-		synchronized (cache) {
-			for (int i = 0; i < cache.size(); i++) {
-				CacheEntry e = cache.get(i);
-				if (e.getTime() + time < System.currentTimeMillis()) {
-					cache.remove(e);
-				}
+	public void clearCache(long time) {
+		unloadChunks(time, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * A method that unloads every chunk that can be unloaded.
+	 */
+	public synchronized void clearCacheFull() {
+		synchronized (clock) {
+			for (Chunk c : clock) {
+				c.accessed = false;
+				c.lastAccess = 0;
 			}
+			sweepClock(0, Integer.MAX_VALUE);
 		}
 	}
 
 	/**
-	 * A method that completely empties the cache.
+	 * Gets the maximum number of chunks to keep loaded.
+	 * @return A positive integer.
 	 */
-	public synchronized void clearCacheFull() {
-		cache.clear();
+	public int getChunkBudget() {
+		return chunk_budget;
+	}
+
+	/**
+	 * Sets the maximum number of chunks to keep loaded. When a new chunk is loaded
+	 * and the budget is full a chunk that has not been recently used is unloaded.
+	 * @param budget A positive integer.
+	 */
+	public synchronized void setChunkBudget(int budget) {
+		if (budget < 1) {
+			throw new IllegalArgumentException("Chunk budget must be positive: " + budget);
+		}
+		this.chunk_budget = budget;
+		if (chunks.size() > budget) {
+			unloadChunks(0, chunks.size() - budget);
+		}
+	}
+
+	/**
+	 * Gets the number of chunks currently loaded.
+	 * @return A positive integer.
+	 */
+	public int getLoadedChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * Gets the number of chunk lookups that found a loaded chunk. Repeated lookups
+	 * of the most recently used chunk are not counted.
+	 * @return A long value.
+	 */
+	public long getChunkHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of chunk lookups that had to create or load a chunk.
+	 * @return A long value.
+	 */
+	public long getChunkMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of chunks that have been unloaded.
+	 * @return A long value.
+	 */
+	public long getChunkEvictions() {
+		return evictions;
 	}
 
 	/**
@@ -370,11 +845,13 @@ public class ChunkWorld implements World {
 	}
 
 	/**
-	 * Gets a list of all chunks in this world.
+	 * Gets a list of all loaded chunks in this world.
 	 * @return A unique list object.
 	 */
-	public synchronized List<Chunk> getChunks() {
-		return new ArrayList<Chunk>(chunks);
+	public List<Chunk> getChunks() {
+		List<Chunk> l = chunks.values();
+		l.removeIf(Chunk::isPlaceholder);
+		return l;
 	}
 
 	/**
@@ -414,7 +891,7 @@ public class ChunkWorld implements World {
 	 */
 	@Override
 	public String getAreaID(long x, long y, long z) {
-		return getChunk(x, y, z).getArea(xToChunk(x), xToChunk(y), zToChunk(z));
+		return getChunkNow(x, y, z).getArea(xToChunk(x), xToChunk(y), zToChunk(z));
 	}
 
 	/**
@@ -430,7 +907,7 @@ public class ChunkWorld implements World {
 	 */
 	@Override
 	public int getBiomeID(long x, long y, long z) {
-		return getChunk(x, y, z).getBiome(xToChunk(x), xToChunk(y), zToChunk(z));
+		return getChunkNow(x, y, z).getBiome(xToChunk(x), xToChunk(y), zToChunk(z));
 	}
 
 	/**
@@ -441,11 +918,20 @@ public class ChunkWorld implements World {
 		return entities;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public EntityGrid getEntityGrid() {
+		return entityGrid;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void setState(long x, long y, long z, String state) {
-		getChunk(x, y, z).setState(x, y, z, state);
+		getChunk(x, y, z).setState(xToChunk(x), xToChunk(y), zToChunk(z), state);
+		fireTilesChanged(x, y, z, x, y, z);
 	}
 }
@@ -0,0 +1,241 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import io.github.tomaso2468.abt.TagDoc;
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * <p>
+ * An offline tool that moves the single chunk files of a world folder into
+ * region files.
+ * </p>
+ * <p>
+ * Both binary chunk files ({@code chunk_<x>_<y>_<z>.chunk}) and ABT chunk
+ * files ({@code chunk_<x>_<y>_<z>.abt}) are converted. Chunks that are already
+ * stored in a region file are not overwritten.
+ * </p>
+ * <p>
+ * Usage: {@code RegionConverter <world folder> [--delete]}
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.chunk.RegionFile
+ */
+public class RegionConverter {
+	/**
+	 * The pattern used to match chunk file names.
+	 */
+	private static final Pattern CHUNK_FILE = Pattern
+			.compile("chunk_([0-9a-f]+)_([0-9a-f]+)_([0-9a-f]+)\\.(chunk|abt)");
+	/**
+	 * The world folder to convert.
+	 */
+	private final File folder;
+	/**
+	 * A tile registry that creates a tile for every ID it is asked for so that ABT
+	 * chunks can be converted without the game's tiles.
+	 */
+	private final Map<String, Tile> registry = new HashMap<String, Tile>() {
+		private static final long serialVersionUID = 2512338372389916095L;
+
+		@Override
+		public Tile get(Object key) {
+			Tile t = super.get(key);
+			if (t == null && key != null) {
+				t = new Tile((String) key, null, null, this);
+			}
+			return t;
+		}
+	};
+	/**
+	 * The maximum number of region files to keep open.
+	 */
+	private static final int MAX_OPEN_REGIONS = 64;
+	/**
+	 * The region files opened by this converter in least recently used order.
+	 */
+	private final Map<File, RegionFile> regions = new LinkedHashMap<File, RegionFile>(16, 0.75f, true) {
+		private static final long serialVersionUID = -6914036474186722129L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, RegionFile> eldest) {
+			if (size() > MAX_OPEN_REGIONS) {
+				try {
+					eldest.getValue().close();
+				} catch (IOException e) {
+					System.err.println("Could not close " + eldest.getKey().getName() + ": " + e);
+				}
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Constructs a new RegionConverter.
+	 * 
+	 * @param folder The world folder to convert.
+	 */
+	public RegionConverter(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Converts all chunk files in the world folder.
+	 * 
+	 * @param delete Determines if chunk files should be deleted once they are
+	 *               stored in a region file.
+	 * @return The number of chunks converted.
+	 * @throws IOException If an error occurs writing a region file.
+	 */
+	public int convert(boolean delete) throws IOException {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			throw new IOException("Not a folder: " + folder);
+		}
+
+		int count = 0;
+		try {
+			// Binary chunk files are converted first as they are newer than ABT files.
+			for (String type : new String[] { "chunk", "abt" }) {
+				for (File f : files) {
+					Matcher m = CHUNK_FILE.matcher(f.getName());
+					if (!m.matches() || !m.group(4).equals(type)) {
+						continue;
+					}
+
+					long x = Long.parseUnsignedLong(m.group(1), 16);
+					long y = Long.parseUnsignedLong(m.group(2), 16);
+					long z = Long.parseUnsignedLong(m.group(3), 16);
+
+					RegionFile r = getRegion(x, y, z);
+					if (!r.has(RegionFile.toLocal(x), RegionFile.toLocal(y))) {
+						try {
+							r.write(RegionFile.toLocal(x), RegionFile.toLocal(y), read(f, x, y, z));
+						} catch (IOException | RuntimeException e) {
+							System.err.println("Skipping " + f.getName() + ": " + e);
+							continue;
+						}
+						count += 1;
+					}
+
+					if (delete && !f.delete()) {
+						System.err.println("Could not delete " + f.getName());
+					}
+				}
+			}
+		} finally {
+			for (RegionFile r : regions.values()) {
+				r.close();
+			}
+			regions.clear();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads a chunk file and converts it to the binary chunk format.
+	 * 
+	 * @param f The file to read.
+	 * @param x The X position of the chunk.
+	 * @param y The Y position of the chunk.
+	 * @param z The Z position of the chunk.
+	 * @return The chunk in the binary chunk format.
+	 * @throws IOException If an error occurs reading the chunk.
+	 */
+	private byte[] read(File f, long x, long y, long z) throws IOException {
+		byte[] data = Files.readAllBytes(f.toPath());
+
+		if (ChunkFormat.isBinary(ByteBuffer.wrap(data))) {
+			return data;
+		}
+
+		TagDoc d = TagDoc.read(new GZIPInputStream(new ByteArrayInputStream(data)), "map_c");
+
+		return ChunkFormat.write(ChunkFormat.readTags(registry, x, y, z, d.getTags(), new Chunk(registry, x, y, z)));
+	}
+
+	/**
+	 * Gets the region file containing a chunk.
+	 * 
+	 * @param x The X position of the chunk.
+	 * @param y The Y position of the chunk.
+	 * @param z The Z position of the chunk.
+	 * @return A region file.
+	 * @throws IOException If an error occurs opening the region file.
+	 */
+	private RegionFile getRegion(long x, long y, long z) throws IOException {
+		File f = new File(folder, "region_" + Long.toHexString(RegionFile.toRegion(x)) + "_"
+				+ Long.toHexString(RegionFile.toRegion(y)) + "_" + Long.toHexString(z) + ".region");
+		RegionFile r = regions.get(f);
+		if (r == null) {
+			r = new RegionFile(f);
+			regions.put(f, r);
+		}
+		return r;
+	}
+
+	/**
+	 * Runs the converter.
+	 * 
+	 * @param args The world folder followed by {@code --delete} to delete
+	 *             converted chunk files.
+	 * @throws IOException If an error occurs converting the world.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: RegionConverter <world folder> [--delete]");
+			System.exit(1);
+		}
+
+		boolean delete = args.length > 1 && args[1].equals("--delete");
+
+		int count = new RegionConverter(new File(args[0])).convert(delete);
+
+		System.out.println("Converted " + count + " chunks.");
+	}
+}
@@ -0,0 +1,355 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * <p>
+ * A file storing a square block of chunks.
+ * </p>
+ * <p>
+ * The file is divided into sectors of {@link #SECTOR_SIZE} bytes. The first
+ * sectors hold a header and a table giving the first sector and byte length of
+ * each chunk in the region. Chunk data is stored in the binary chunk format in
+ * consecutive sectors. A chunk that still fits in its sectors is rewritten in
+ * place, otherwise it is moved to the first free run of sectors large enough
+ * to hold it.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.chunk.ChunkFormat
+ */
+public class RegionFile implements Closeable {
+	/**
+	 * The number of chunks along the X and Y axis of a region.
+	 */
+	public static final int SIZE = 32;
+	/**
+	 * The size of a sector in bytes.
+	 */
+	public static final int SECTOR_SIZE = 1024;
+	/**
+	 * The magic number at the start of every region file ("RPGR").
+	 */
+	public static final int MAGIC = 0x52504752;
+	/**
+	 * The current region format version.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * The size of the header before the chunk table in bytes.
+	 */
+	private static final int HEADER_SIZE = 8;
+	/**
+	 * The size of a chunk table entry in bytes.
+	 */
+	private static final int ENTRY_SIZE = 8;
+	/**
+	 * The number of sectors used by the header and chunk table.
+	 */
+	private static final int TABLE_SECTORS = (HEADER_SIZE + SIZE * SIZE * ENTRY_SIZE + SECTOR_SIZE - 1)
+			/ SECTOR_SIZE;
+	/**
+	 * The channel used to access the file.
+	 */
+	private final FileChannel channel;
+	/**
+	 * The first sector of each chunk or 0 if the chunk is not stored.
+	 */
+	private final int[] offsets = new int[SIZE * SIZE];
+	/**
+	 * The length in bytes of each chunk.
+	 */
+	private final int[] lengths = new int[SIZE * SIZE];
+	/**
+	 * The sectors that are in use.
+	 */
+	private final BitSet used = new BitSet();
+
+	/**
+	 * Opens a region file creating it if it does not exist.
+	 * 
+	 * @param f The file to open.
+	 * @throws IOException If an error occurs reading the file or the file is not a
+	 *                     region file.
+	 */
+	public RegionFile(File f) throws IOException {
+		channel = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+
+		try {
+			used.set(0, TABLE_SECTORS);
+
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(TABLE_SECTORS * SECTOR_SIZE);
+				header.putInt(MAGIC);
+				header.putInt(VERSION);
+				header.rewind();
+				writeFully(header, 0);
+				return;
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + SIZE * SIZE * ENTRY_SIZE);
+			readFully(header, 0);
+			header.flip();
+
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a region file: " + f.getName());
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unknown region version: " + version);
+			}
+
+			long sectors = (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+			for (int i = 0; i < offsets.length; i++) {
+				int offset = header.getInt();
+				int length = header.getInt();
+				int count = sectorCount(length);
+				if (offset < TABLE_SECTORS || length <= 0 || offset + count > sectors) {
+					continue;
+				}
+				offsets[i] = offset;
+				lengths[i] = length;
+				used.set(offset, offset + count);
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Determines if a chunk is stored in this region.
+	 * 
+	 * @param lx The X position of the chunk within this region.
+	 * @param ly The Y position of the chunk within this region.
+	 * @return {@code true} if the chunk is stored, {@code false} otherwise.
+	 */
+	public synchronized boolean has(int lx, int ly) {
+		return offsets[entry(lx, ly)] != 0;
+	}
+
+	/**
+	 * Reads a chunk from this region.
+	 * 
+	 * @param lx The X position of the chunk within this region.
+	 * @param ly The Y position of the chunk within this region.
+	 * @return A buffer containing the chunk data or {@code null} if the chunk is
+	 *         not stored.
+	 * @throws IOException If an error occurs reading the file.
+	 */
+	public synchronized ByteBuffer read(int lx, int ly) throws IOException {
+		int i = entry(lx, ly);
+		if (offsets[i] == 0) {
+			return null;
+		}
+
+		ByteBuffer buf = ByteBuffer.allocate(lengths[i]);
+		readFully(buf, (long) offsets[i] * SECTOR_SIZE);
+		buf.flip();
+
+		return buf;
+	}
+
+	/**
+	 * Writes a chunk to this region.
+	 * 
+	 * @param lx   The X position of the chunk within this region.
+	 * @param ly   The Y position of the chunk within this region.
+	 * @param data The chunk data.
+	 * @throws IOException If an error occurs writing the file.
+	 */
+	public synchronized void write(int lx, int ly, byte[] data) throws IOException {
+		int i = entry(lx, ly);
+		int count = sectorCount(data.length);
+		int offset = offsets[i];
+		int old = sectorCount(lengths[i]);
+
+		if (offset == 0 || count > old) {
+			if (offset != 0) {
+				used.clear(offset, offset + old);
+			}
+			offset = allocate(count);
+		} else if (count < old) {
+			used.clear(offset + count, offset + old);
+		}
+		used.set(offset, offset + count);
+
+		ByteBuffer buf = ByteBuffer.allocate(count * SECTOR_SIZE);
+		buf.put(data);
+		buf.rewind();
+		writeFully(buf, (long) offset * SECTOR_SIZE);
+
+		offsets[i] = offset;
+		lengths[i] = data.length;
+		writeEntry(i);
+	}
+
+	/**
+	 * Removes a chunk from this region.
+	 * 
+	 * @param lx The X position of the chunk within this region.
+	 * @param ly The Y position of the chunk within this region.
+	 * @throws IOException If an error occurs writing the file.
+	 */
+	public synchronized void delete(int lx, int ly) throws IOException {
+		int i = entry(lx, ly);
+		if (offsets[i] != 0) {
+			used.clear(offsets[i], offsets[i] + sectorCount(lengths[i]));
+			offsets[i] = 0;
+			lengths[i] = 0;
+			writeEntry(i);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Gets the region coordinate containing a chunk coordinate.
+	 * 
+	 * @param c An X or Y chunk coordinate.
+	 * @return A region coordinate.
+	 */
+	public static long toRegion(long c) {
+		return Math.floorDiv(c, SIZE);
+	}
+
+	/**
+	 * Gets the position of a chunk coordinate within its region.
+	 * 
+	 * @param c An X or Y chunk coordinate.
+	 * @return A value between 0 and {@link #SIZE} (exclusive).
+	 */
+	public static int toLocal(long c) {
+		return (int) Math.floorMod(c, (long) SIZE);
+	}
+
+	/**
+	 * Gets the table entry of a chunk.
+	 * 
+	 * @param lx The X position of the chunk within this region.
+	 * @param ly The Y position of the chunk within this region.
+	 * @return An index into the chunk table.
+	 */
+	private static int entry(int lx, int ly) {
+		if (lx < 0 || lx >= SIZE || ly < 0 || ly >= SIZE) {
+			throw new IndexOutOfBoundsException("Position outside region: " + lx + " " + ly);
+		}
+		return ly * SIZE + lx;
+	}
+
+	/**
+	 * Gets the number of sectors needed to store data.
+	 * 
+	 * @param length The length of the data in bytes.
+	 * @return A number of sectors.
+	 */
+	private static int sectorCount(int length) {
+		return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+	}
+
+	/**
+	 * Finds the first run of free sectors of the specified size.
+	 * 
+	 * @param count The number of sectors needed.
+	 * @return The first sector of the run.
+	 */
+	private int allocate(int count) {
+		int start = used.nextClearBit(TABLE_SECTORS);
+		while (true) {
+			int end = used.nextSetBit(start);
+			if (end == -1 || end - start >= count) {
+				return start;
+			}
+			start = used.nextClearBit(end);
+		}
+	}
+
+	/**
+	 * Writes a chunk table entry to the file.
+	 * 
+	 * @param i The index of the entry.
+	 * @throws IOException If an error occurs writing the file.
+	 */
+	private void writeEntry(int i) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(ENTRY_SIZE);
+		buf.putInt(offsets[i]);
+		buf.putInt(lengths[i]);
+		buf.rewind();
+		writeFully(buf, HEADER_SIZE + (long) i * ENTRY_SIZE);
+	}
+
+	/**
+	 * Reads until a buffer is full.
+	 * 
+	 * @param buf      The buffer to read to.
+	 * @param position The position in the file to read from.
+	 * @throws IOException If an error occurs reading the file or the file ends.
+	 */
+	private void readFully(ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			int n = channel.read(buf, position);
+			if (n == -1) {
+				throw new IOException("Region file is truncated.");
+			}
+			position += n;
+		}
+	}
+
+	/**
+	 * Writes all of a buffer.
+	 * 
+	 * @param buf      The buffer to write.
+	 * @param position The position in the file to write to.
+	 * @throws IOException If an error occurs writing the file.
+	 */
+	private void writeFully(ByteBuffer buf, long position) throws IOException {
+		while (buf.hasRemaining()) {
+			position += channel.write(buf, position);
+		}
+	}
+}
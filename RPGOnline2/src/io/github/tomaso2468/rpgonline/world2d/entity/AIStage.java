@@ -0,0 +1,483 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.github.tomaso2468.rpgonline.world2d.LightSource;
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.WorldWrapper;
+
+/**
+ * <p>
+ * Runs the AI of many entities at once on a fork-join pool.
+ * </p>
+ * <p>
+ * Entities are split into batches that are spread across the pool by work
+ * stealing. While the stage runs, no entity or world data is changed. Each AI
+ * reads the state from the start of the stage plus any writes it has made
+ * itself. Writes to entities, entities added to or removed from the entity list
+ * and changes to tiles and lights are logged. Once every AI has finished, the
+ * logs are applied one entity at a time in list order. This means the result
+ * of a stage does not depend on the number of threads or the order batches
+ * finish in.
+ * </p>
+ * <p>
+ * AI code must not change other shared state directly while a stage is
+ * running. Such changes should be made through the world and entities passed to
+ * {@code EntityAI.doAI()} so that they are logged. Entities created by AI get
+ * their IDs when they are constructed so their IDs depend on thread timing even
+ * though the order they are added in does not.
+ * </p>
+ * <p>
+ * A stage is usually run in the {@code AI} phase of a tick:
+ * </p>
+ * 
+ * <pre>
+ * scheduler.addTask(TickPhase.AI, d -&gt; stage.run(world, wind, world.getEntities()));
+ * </pre>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.EntityAI
+ * @see io.github.tomaso2468.rpgonline.net.TickScheduler
+ */
+public class AIStage {
+	/**
+	 * The write log of the entity whose AI is running on each thread.
+	 */
+	private static final ThreadLocal<EntityWrites> CURRENT = new ThreadLocal<EntityWrites>();
+	/**
+	 * The pool used to run AI.
+	 */
+	private final ForkJoinPool pool;
+	/**
+	 * The largest number of entities run as one task.
+	 */
+	private int batchSize = 32;
+	/**
+	 * The write logs reused between runs.
+	 */
+	private EntityWrites[] logs = new EntityWrites[0];
+	/**
+	 * The view of the world given to AI. This is kept between runs so that caches
+	 * keyed by world are shared between runs. {@code NavGrid} keys its grids on
+	 * the wrapped world so replacing this view does not leave grids behind.
+	 */
+	private StagedWorld stagedWorld;
+
+	/**
+	 * Constructs a new AIStage using the common fork-join pool.
+	 */
+	public AIStage() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a new AIStage.
+	 * 
+	 * @param pool The pool used to run AI.
+	 */
+	public AIStage(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the largest number of entities run as one task.
+	 * 
+	 * @return A positive integer.
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the largest number of entities run as one task. Smaller batches
+	 * balance uneven AI costs better but add scheduling overhead.
+	 * 
+	 * @param batchSize A positive integer.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Gets the write log of the AI running on the current thread.
+	 * 
+	 * @return A write log or {@code null} if no AI is running on this thread.
+	 */
+	static EntityWrites current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Runs the AI of every entity in a list and applies the results. Entities
+	 * without AI are skipped. If any AI throws an exception, the writes of every
+	 * entity are still applied and the exception from the earliest entity in the
+	 * list is then rethrown.
+	 * 
+	 * @param w        The current world.
+	 * @param wind     The current wind value.
+	 * @param entities The entities to run AI for.
+	 */
+	public synchronized void run(World w, float wind, List<Entity> entities) {
+		Entity[] list = entities.toArray(new Entity[0]);
+		int n = list.length;
+		if (logs.length < n) {
+			int old = logs.length;
+			logs = Arrays.copyOf(logs, Math.max(n, old * 2));
+			for (int i = old; i < logs.length; i++) {
+				logs[i] = new EntityWrites();
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			logs[i].clear();
+			list[i].getBounds();
+			list[i].staged = true;
+		}
+
+		List<Entity> view = new StagedList(list, entities);
+		if (stagedWorld == null || stagedWorld.world != w) {
+			stagedWorld = new StagedWorld(w);
+		}
+		stagedWorld.entities = view;
+		World world = stagedWorld;
+		RuntimeException[] errors = new RuntimeException[n];
+		try {
+			if (n > batchSize && pool.getParallelism() > 1) {
+				pool.invoke(new Batch(list, 0, n, world, wind, view, errors));
+			} else {
+				runRange(list, 0, n, world, wind, view, errors);
+			}
+		} finally {
+			for (int i = 0; i < n; i++) {
+				list[i].staged = false;
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			logs[i].apply();
+		}
+		for (int i = 0; i < n; i++) {
+			if (errors[i] != null) {
+				throw errors[i];
+			}
+		}
+	}
+
+	/**
+	 * Runs the AI of a range of entities on the current thread.
+	 * 
+	 * @param list   The entities in the stage.
+	 * @param start  The first entity to run.
+	 * @param end    The index after the last entity to run.
+	 * @param w      The world view given to AI.
+	 * @param wind   The current wind value.
+	 * @param view   The entity list given to AI.
+	 * @param errors The array to store exceptions in.
+	 */
+	private void runRange(Entity[] list, int start, int end, World w, float wind, List<Entity> view,
+			RuntimeException[] errors) {
+		EntityWrites previous = CURRENT.get();
+		try {
+			for (int i = start; i < end; i++) {
+				Entity e = list[i];
+				EntityAI ai = e.getAI();
+				if (ai == null) {
+					continue;
+				}
+				CURRENT.set(logs[i]);
+				try {
+					ai.doAI(e, w, wind, view);
+				} catch (RuntimeException ex) {
+					errors[i] = ex;
+				}
+			}
+		} finally {
+			CURRENT.set(previous);
+		}
+	}
+
+	/**
+	 * A task that runs the AI of a range of entities, splitting the range until it
+	 * fits in a batch.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private class Batch extends RecursiveAction {
+		/**
+		 * The ID for serialization.
+		 */
+		private static final long serialVersionUID = 8017455312076284914L;
+		/**
+		 * The entities in the stage.
+		 */
+		private final Entity[] list;
+		/**
+		 * The first entity to run.
+		 */
+		private final int start;
+		/**
+		 * The index after the last entity to run.
+		 */
+		private final int end;
+		/**
+		 * The world view given to AI.
+		 */
+		private final World w;
+		/**
+		 * The current wind value.
+		 */
+		private final float wind;
+		/**
+		 * The entity list given to AI.
+		 */
+		private final List<Entity> view;
+		/**
+		 * The array to store exceptions in.
+		 */
+		private final RuntimeException[] errors;
+
+		/**
+		 * Constructs a new Batch.
+		 * 
+		 * @param list   The entities in the stage.
+		 * @param start  The first entity to run.
+		 * @param end    The index after the last entity to run.
+		 * @param w      The world view given to AI.
+		 * @param wind   The current wind value.
+		 * @param view   The entity list given to AI.
+		 * @param errors The array to store exceptions in.
+		 */
+		public Batch(Entity[] list, int start, int end, World w, float wind, List<Entity> view,
+				RuntimeException[] errors) {
+			this.list = list;
+			this.start = start;
+			this.end = end;
+			this.w = w;
+			this.wind = wind;
+			this.view = view;
+			this.errors = errors;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute() {
+			if (end - start <= batchSize) {
+				runRange(list, start, end, w, wind, view, errors);
+				return;
+			}
+			int mid = (start + end) >>> 1;
+			invokeAll(new Batch(list, start, mid, w, wind, view, errors),
+					new Batch(list, mid, end, w, wind, view, errors));
+		}
+	}
+
+	/**
+	 * Runs an action now if no AI is running on this thread or logs it otherwise.
+	 * 
+	 * @param r The action to run.
+	 */
+	private static void defer(Runnable r) {
+		EntityWrites w = CURRENT.get();
+		if (w == null) {
+			r.run();
+		} else {
+			w.action(r);
+		}
+	}
+
+	/**
+	 * A read only view of the entities in a stage. Entities added or removed
+	 * through this list are added to or removed from the real list when the stage
+	 * is merged.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class StagedList extends AbstractList<Entity> implements RandomAccess {
+		/**
+		 * The entities at the start of the stage.
+		 */
+		private final Entity[] list;
+		/**
+		 * The list that changes are applied to.
+		 */
+		private final List<Entity> target;
+
+		/**
+		 * Constructs a new StagedList.
+		 * 
+		 * @param list   The entities at the start of the stage.
+		 * @param target The list that changes are applied to.
+		 */
+		public StagedList(Entity[] list, List<Entity> target) {
+			this.list = list;
+			this.target = target;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Entity get(int index) {
+			return list[index];
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int size() {
+			return list.length;
+		}
+
+		/**
+		 * Adds an entity to the real list when the stage is merged.
+		 */
+		@Override
+		public boolean add(Entity e) {
+			defer(() -> target.add(e));
+			return true;
+		}
+
+		/**
+		 * Removes an entity from the real list when the stage is merged.
+		 */
+		@Override
+		public boolean remove(Object o) {
+			defer(() -> target.remove(o));
+			return contains(o);
+		}
+	}
+
+	/**
+	 * A view of the world for AI in a stage. Changes to tiles and lights are
+	 * applied when the stage is merged.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class StagedWorld extends WorldWrapper {
+		/**
+		 * The world that changes are applied to.
+		 */
+		private final World world;
+		/**
+		 * The entity list given to AI.
+		 */
+		private volatile List<Entity> entities;
+
+		/**
+		 * Constructs a new StagedWorld.
+		 * 
+		 * @param world The world that changes are applied to.
+		 */
+		public StagedWorld(World world) {
+			super(world);
+			this.world = world;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setTile(long x, long y, long z, Tile tile, String state) {
+			defer(() -> world.setTile(x, y, z, tile, state));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setTile(long x, long y, long z, Tile tile) {
+			defer(() -> world.setTile(x, y, z, tile));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setState(long x, long y, long z, String state) {
+			defer(() -> world.setState(x, y, z, state));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setAreaID(long x, long y, long z, String id) {
+			defer(() -> world.setAreaID(x, y, z, id));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setBiomeID(long x, long y, long z, int id) {
+			defer(() -> world.setBiomeID(x, y, z, id));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void addLight(LightSource light) {
+			defer(() -> world.addLight(light));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void removeLight(LightSource light) {
+			defer(() -> world.removeLight(light));
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public List<Entity> getEntities() {
+			return entities;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+/**
+ * <p>
+ * A rectangle that may be rotated, stored as primitive values so it can be
+ * tested for collision without creating shapes.
+ * </p>
+ * <p>
+ * Boxes are tested using the separating axis theorem. Boxes that touch are
+ * treated as overlapping. A box only recalculates its corners when it is set
+ * to a different position, size or angle.
+ * </p>
+ *
+ * @author Tomaso2468
+ */
+public final class CollisionBox {
+	/**
+	 * The X positions of the corners.
+	 */
+	private final double[] xs = new double[4];
+	/**
+	 * The Y positions of the corners.
+	 */
+	private final double[] ys = new double[4];
+	/**
+	 * The angle of this box in radians.
+	 */
+	private double angle = 0;
+	/**
+	 * The cosine of the angle of this box.
+	 */
+	private double cos = 1;
+	/**
+	 * The sine of the angle of this box.
+	 */
+	private double sin = 0;
+	/**
+	 * The lowest X position of a corner.
+	 */
+	private double minX;
+	/**
+	 * The lowest Y position of a corner.
+	 */
+	private double minY;
+	/**
+	 * The highest X position of a corner.
+	 */
+	private double maxX;
+	/**
+	 * The highest Y position of a corner.
+	 */
+	private double maxY;
+	/**
+	 * The values this box was last set to.
+	 */
+	private final double[] key = { Double.NaN, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * Sets this box to a rectangle rotated around the origin and then moved.
+	 *
+	 * @param x The X position to move the rectangle by.
+	 * @param y The Y position to move the rectangle by.
+	 * @param rx The X position of the rectangle before it is rotated.
+	 * @param ry The Y position of the rectangle before it is rotated.
+	 * @param width The width of the rectangle.
+	 * @param height The height of the rectangle.
+	 * @param angle The angle to rotate by in radians.
+	 */
+	public void set(double x, double y, double rx, double ry, double width, double height, double angle) {
+		double[] k = key;
+		if (k[0] == x && k[1] == y && k[2] == rx && k[3] == ry && k[4] == width && k[5] == height && k[6] == angle) {
+			return;
+		}
+		k[0] = x;
+		k[1] = y;
+		k[2] = rx;
+		k[3] = ry;
+		k[4] = width;
+		k[5] = height;
+		k[6] = angle;
+
+		if (angle != this.angle) {
+			this.angle = angle;
+			cos = Math.cos(angle);
+			sin = Math.sin(angle);
+		}
+		corner(0, x, y, rx, ry);
+		corner(1, x, y, rx + width, ry);
+		corner(2, x, y, rx + width, ry + height);
+		corner(3, x, y, rx, ry + height);
+
+		minX = Math.min(Math.min(xs[0], xs[1]), Math.min(xs[2], xs[3]));
+		minY = Math.min(Math.min(ys[0], ys[1]), Math.min(ys[2], ys[3]));
+		maxX = Math.max(Math.max(xs[0], xs[1]), Math.max(xs[2], xs[3]));
+		maxY = Math.max(Math.max(ys[0], ys[1]), Math.max(ys[2], ys[3]));
+	}
+
+	/**
+	 * Rotates and moves a corner.
+	 *
+	 * @param i The index of the corner.
+	 * @param x The X position to move by.
+	 * @param y The Y position to move by.
+	 * @param lx The X position before rotation.
+	 * @param ly The Y position before rotation.
+	 */
+	private void corner(int i, double x, double y, double lx, double ly) {
+		xs[i] = lx * cos - ly * sin + x;
+		ys[i] = lx * sin + ly * cos + y;
+	}
+
+	/**
+	 * Determines if this box overlaps a rectangle that is not rotated.
+	 *
+	 * @param minX The lowest X position of the rectangle.
+	 * @param minY The lowest Y position of the rectangle.
+	 * @param maxX The highest X position of the rectangle.
+	 * @param maxY The highest Y position of the rectangle.
+	 * @return {@code true} if the boxes overlap or touch, {@code false} otherwise.
+	 */
+	public boolean overlaps(double minX, double minY, double maxX, double maxY) {
+		if (this.maxX < minX || this.minX > maxX || this.maxY < minY || this.minY > maxY) {
+			return false;
+		}
+		if (sin == 0 || cos == 0) {
+			return true;
+		}
+		return overlapsOnAxis(cos, sin, minX, minY, maxX, maxY)
+				&& overlapsOnAxis(-sin, cos, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Determines if this box overlaps another box.
+	 *
+	 * @param b The box to test.
+	 * @return {@code true} if the boxes overlap or touch, {@code false} otherwise.
+	 */
+	public boolean overlaps(CollisionBox b) {
+		if (maxX < b.minX || minX > b.maxX || maxY < b.minY || minY > b.maxY) {
+			return false;
+		}
+		return overlapsOnAxis(cos, sin, b) && overlapsOnAxis(-sin, cos, b) && b.overlapsOnAxis(b.cos, b.sin, this)
+				&& b.overlapsOnAxis(-b.sin, b.cos, this);
+	}
+
+	/**
+	 * Determines if this box and another box overlap when projected onto an axis.
+	 *
+	 * @param ax The X component of the axis.
+	 * @param ay The Y component of the axis.
+	 * @param b The other box.
+	 * @return {@code true} if the projections overlap, {@code false} otherwise.
+	 */
+	private boolean overlapsOnAxis(double ax, double ay, CollisionBox b) {
+		double amin = Double.POSITIVE_INFINITY;
+		double amax = Double.NEGATIVE_INFINITY;
+		double bmin = Double.POSITIVE_INFINITY;
+		double bmax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 4; i++) {
+			double p = xs[i] * ax + ys[i] * ay;
+			amin = Math.min(amin, p);
+			amax = Math.max(amax, p);
+			double q = b.xs[i] * ax + b.ys[i] * ay;
+			bmin = Math.min(bmin, q);
+			bmax = Math.max(bmax, q);
+		}
+		return amax >= bmin && bmax >= amin;
+	}
+
+	/**
+	 * Determines if this box and a rectangle overlap when projected onto an axis.
+	 *
+	 * @param ax The X component of the axis.
+	 * @param ay The Y component of the axis.
+	 * @param minX The lowest X position of the rectangle.
+	 * @param minY The lowest Y position of the rectangle.
+	 * @param maxX The highest X position of the rectangle.
+	 * @param maxY The highest Y position of the rectangle.
+	 * @return {@code true} if the projections overlap, {@code false} otherwise.
+	 */
+	private boolean overlapsOnAxis(double ax, double ay, double minX, double minY, double maxX, double maxY) {
+		double amin = Double.POSITIVE_INFINITY;
+		double amax = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < 4; i++) {
+			double p = xs[i] * ax + ys[i] * ay;
+			amin = Math.min(amin, p);
+			amax = Math.max(amax, p);
+		}
+		double p1 = minX * ax + minY * ay;
+		double p2 = maxX * ax + minY * ay;
+		double p3 = maxX * ax + maxY * ay;
+		double p4 = minX * ax + maxY * ay;
+		double bmin = Math.min(Math.min(p1, p2), Math.min(p3, p4));
+		double bmax = Math.max(Math.max(p1, p2), Math.max(p3, p4));
+		return amax >= bmin && bmax >= amin;
+	}
+
+	/**
+	 * Gets the lowest X position of this box.
+	 *
+	 * @return A double value.
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Gets the lowest Y position of this box.
+	 *
+	 * @return A double value.
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Gets the highest X position of this box.
+	 *
+	 * @return A double value.
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Gets the highest Y position of this box.
+	 *
+	 * @return A double value.
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+}
@@ -58,8 +58,16 @@ import io.github.tomaso2468.rpgonline.world2d.texture.entity.EntityTexture;
  * over the network it is best not to override methods in this class and instead
  * set values.
  * </p>
+ * <p>
+ * Variables used by the engine such as the position, velocity and hitbox are
+ * stored in the primitive arrays of an {@code EntityStore}. All other variables
+ * are stored in maps. Both are accessed through the same named getters and
+ * setters.
+ * </p>
  * 
  * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.EntityStore
  */
 public class Entity {
 	/**
@@ -197,6 +205,38 @@ public class Entity {
 	 * A map of tag values stored in this entity.
 	 */
 	private final Map<String, TagGroup> tags = new HashMap<String, TagGroup>();
+	/**
+	 * The store that holds the variables used by the engine. Entities that have
+	 * not been added to a shared store read from a read-only store shared by all
+	 * entities until a variable is first written and a store of their own is
+	 * created.
+	 */
+	EntityStore store = EntityStore.EMPTY;
+	/**
+	 * The index of this entity in its store.
+	 */
+	int handle = 0;
+	/**
+	 * The grid this entity is in or {@code null} if it is not in a grid.
+	 */
+	EntityGrid grid;
+	/**
+	 * The packed coordinates of the grid cell this entity is in.
+	 */
+	long gridCell;
+	/**
+	 * The index of this entity in its grid cell.
+	 */
+	int gridIndex;
+	/**
+	 * Determines if this entity is part of a running {@code AIStage}. While it is,
+	 * writes made by AI threads are logged instead of applied.
+	 */
+	boolean staged;
+	/**
+	 * The direction constants indexed by ordinal.
+	 */
+	private static final Direction[] DIRECTIONS = Direction.values();
 
 	/**
 	 * This entity's texture.
@@ -214,6 +254,10 @@ public class Entity {
 	 * The hitbox cache for this entity.
 	 */
 	private Rectangle hitbox;
+	/**
+	 * The transformed hitbox used for collision.
+	 */
+	private final CollisionBox bounds = new CollisionBox();
 
 	/**
 	 * Constructs a new entity. (This method should be run on the server).
@@ -224,7 +268,9 @@ public class Entity {
 	 *                  {@code true} to enabled, {@code false otherwise}.
 	 */
 	public Entity(EntityManager m, String entity_id, boolean packet) {
+		this.m = m;
 		this.packet = false;
+		this.store = EntityStore.DEFAULTS;
 		setString("id", m.getNextID());
 		setString("entity_id", entity_id);
 		setBoolean("solid", true);
@@ -254,10 +300,11 @@ public class Entity {
 	 *               {@code true} to enabled, {@code false otherwise}.
 	 */
 	public Entity(EntityManager m, TagGroup g, boolean packet) {
+		this.m = m;
 		this.packet = false;
 		for (Tag t : g.getTags()) {
 			if (t instanceof TagDouble) {
-				doubles.put(t.getName(), ((TagDouble) t).getData());
+				putDouble(t.getName(), ((TagDouble) t).getData());
 				continue;
 			}
 			if (t instanceof TagString) {
@@ -273,11 +320,11 @@ public class Entity {
 				continue;
 			}
 			if (t instanceof TagBoolean) {
-				bools.put(t.getName(), ((TagBoolean) t).getData());
+				putBoolean(t.getName(), ((TagBoolean) t).getData());
 				continue;
 			}
 			if (t instanceof TagInt) {
-				ints.put(t.getName(), ((TagInt) t).getData());
+				putInt(t.getName(), ((TagInt) t).getData());
 				continue;
 			}
 			if (t instanceof TagLong) {
@@ -299,13 +346,146 @@ public class Entity {
 	 */
 	public static final float[] colors = new float[3];
 
+	/**
+	 * Gets the write log of the AI stage running on this thread if this entity is
+	 * part of the stage.
+	 * 
+	 * @return A write log or {@code null} if writes should be applied directly.
+	 */
+	private EntityWrites staged() {
+		return staged ? AIStage.current() : null;
+	}
+
+	/**
+	 * Logs a write if this entity is part of the AI stage running on this thread.
+	 * 
+	 * @param kind  The kind of write.
+	 * @param slot  The slot written to or -1.
+	 * @param name  The variable written to or {@code null}.
+	 * @param value The primitive value as bits.
+	 * @param ref   The object value.
+	 * @return {@code true} if the write was logged, {@code false} if it should be
+	 *         applied.
+	 */
+	private boolean logged(byte kind, int slot, String name, long value, Object ref) {
+		EntityWrites w = staged();
+		if (w == null) {
+			return false;
+		}
+		w.add(this, kind, slot, name, value, ref);
+		return true;
+	}
+
+	/**
+	 * Reads a double slot including writes logged by the AI on this thread.
+	 * 
+	 * @param slot The slot to read.
+	 * @return A double value.
+	 */
+	private double readDoubleSlot(int slot) {
+		if (staged) {
+			EntityWrites w = AIStage.current();
+			int i = w == null ? -1 : w.find(this, EntityWrites.DOUBLE_SLOT, slot);
+			if (i >= 0) {
+				return Double.longBitsToDouble(w.value(i));
+			}
+		}
+		return store.doubles[slot][handle];
+	}
+
+	/**
+	 * Reads a boolean slot including writes logged by the AI on this thread.
+	 * 
+	 * @param slot The slot to read.
+	 * @return A boolean value.
+	 */
+	private boolean readBooleanSlot(int slot) {
+		if (staged) {
+			EntityWrites w = AIStage.current();
+			int i = w == null ? -1 : w.find(this, EntityWrites.BOOLEAN_SLOT, slot);
+			if (i >= 0) {
+				return w.value(i) != 0;
+			}
+		}
+		return store.booleans[slot][handle];
+	}
+
+	/**
+	 * Reads an int slot including writes logged by the AI on this thread.
+	 * 
+	 * @param slot The slot to read.
+	 * @return An int value.
+	 */
+	private int readIntSlot(int slot) {
+		if (staged) {
+			EntityWrites w = AIStage.current();
+			int i = w == null ? -1 : w.find(this, EntityWrites.INT_SLOT, slot);
+			if (i >= 0) {
+				return (int) w.value(i);
+			}
+		}
+		return store.ints[slot][handle];
+	}
+
+	/**
+	 * Applies a write logged during an AI stage.
+	 * 
+	 * @param kind  The kind of write.
+	 * @param slot  The slot written to or -1.
+	 * @param name  The variable written to or {@code null}.
+	 * @param value The primitive value as bits.
+	 * @param ref   The object value.
+	 */
+	void applyWrite(byte kind, int slot, String name, long value, Object ref) {
+		switch (kind) {
+		case EntityWrites.DOUBLE_SLOT:
+			setDoubleSlot(slot, Double.longBitsToDouble(value));
+			break;
+		case EntityWrites.BOOLEAN_SLOT:
+			setBooleanSlot(slot, value != 0);
+			break;
+		case EntityWrites.INT_SLOT:
+			setIntSlot(slot, (int) value);
+			break;
+		case EntityWrites.STRING:
+			setString(name, (String) ref);
+			break;
+		case EntityWrites.INT:
+			setInt(name, (int) value);
+			break;
+		case EntityWrites.LONG:
+			setLong(name, value);
+			break;
+		case EntityWrites.FLOAT:
+			setFloat(name, Float.intBitsToFloat((int) value));
+			break;
+		case EntityWrites.BOOLEAN:
+			setBoolean(name, value != 0);
+			break;
+		case EntityWrites.DOUBLE:
+			setDouble(name, Double.longBitsToDouble(value));
+			break;
+		case EntityWrites.TAG:
+			setTag(name, (TagGroup) ref);
+			break;
+		case EntityWrites.PUSH_TAG:
+			pushtag(name);
+			break;
+		case EntityWrites.HITBOX:
+			hitbox = (Rectangle) ref;
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown write kind: " + kind);
+		}
+	}
+
 	/**
 	 * Gets the X position of this entity.
 	 * 
 	 * @return A double value.
 	 */
 	public double getX() {
-		return getDouble("x");
+		return readDoubleSlot(EntitySchema.X);
 	}
 
 	/**
@@ -314,7 +494,7 @@ public class Entity {
 	 * @return A double value.
 	 */
 	public double getY() {
-		return getDouble("y");
+		return readDoubleSlot(EntitySchema.Y);
 	}
 
 	/**
@@ -323,7 +503,7 @@ public class Entity {
 	 * @param x A double value.
 	 */
 	public void setX(double x) {
-		setDouble("x", x);
+		setDoubleSlot(EntitySchema.X, x);
 	}
 
 	/**
@@ -332,7 +512,7 @@ public class Entity {
 	 * @param y A double value.
 	 */
 	public void setY(double y) {
-		setDouble("y", y);
+		setDoubleSlot(EntitySchema.Y, y);
 	}
 
 	/**
@@ -341,7 +521,7 @@ public class Entity {
 	 * @return A double value.
 	 */
 	public double getDX() {
-		return getDouble("dx");
+		return readDoubleSlot(EntitySchema.DX);
 	}
 
 	/**
@@ -350,7 +530,7 @@ public class Entity {
 	 * @return A signed double value.
 	 */
 	public double getDY() {
-		return getDouble("dy");
+		return readDoubleSlot(EntitySchema.DY);
 	}
 
 	/**
@@ -359,7 +539,7 @@ public class Entity {
 	 * @param x A signed double value.
 	 */
 	public void setDX(double x) {
-		setDouble("dx", x);
+		setDoubleSlot(EntitySchema.DX, x);
 	}
 
 	/**
@@ -368,7 +548,7 @@ public class Entity {
 	 * @param y A signed double value.
 	 */
 	public void setDY(double y) {
-		setDouble("dy", y);
+		setDoubleSlot(EntitySchema.DY, y);
 	}
 
 	/**
@@ -377,7 +557,7 @@ public class Entity {
 	 * @return {@code true} if the entity is flying, {@code false} otherwise.
 	 */
 	public boolean isFlying() {
-		return getBoolean("flying");
+		return readBooleanSlot(EntitySchema.FLYING);
 	}
 
 	/**
@@ -386,7 +566,7 @@ public class Entity {
 	 * @param flying {@code true} if the entity is flying, {@code false} otherwise.
 	 */
 	public void setFlying(boolean flying) {
-		setBoolean("flying", flying);
+		setBooleanSlot(EntitySchema.FLYING, flying);
 	}
 
 	/**
@@ -395,11 +575,34 @@ public class Entity {
 	 * @return {@code true} if the variable exists, {@code false} otherwise.
 	 */
 	public final boolean isVariable(String name) {
-		return doubles.containsKey(name) || floats.containsKey(name) || ints.containsKey(name)
+		EntityWrites w = staged();
+		if (w != null && w.defines(this, name)) {
+			return true;
+		}
+		return isSlotSet(name) || doubles.containsKey(name) || floats.containsKey(name) || ints.containsKey(name)
 				|| longs.containsKey(name) || strings.containsKey(name) || bools.containsKey(name)
 				|| tags.containsKey(name);
 	}
 
+	/**
+	 * Checks if a variable stored in a slot has been set.
+	 * @param name The name of the variable.
+	 * @return {@code true} if the variable is stored in a slot and has been set,
+	 *         {@code false} otherwise.
+	 */
+	private boolean isSlotSet(String name) {
+		int slot = EntitySchema.doubleSlot(name);
+		if (slot >= 0 && (store.doublesSet[handle] & (1 << slot)) != 0) {
+			return true;
+		}
+		slot = EntitySchema.booleanSlot(name);
+		if (slot >= 0 && (store.booleansSet[handle] & (1 << slot)) != 0) {
+			return true;
+		}
+		slot = EntitySchema.intSlot(name);
+		return slot >= 0 && (store.intsSet[handle] & (1 << slot)) != 0;
+	}
+
 	/**
 	 * Sets a string value stored in this entity.
 	 * 
@@ -407,6 +610,9 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setString(String name, String value) {
+		if (logged(EntityWrites.STRING, -1, name, 0, value == null ? "null" : value)) {
+			return;
+		}
 		if (strings.get(name) != null && value != null) {
 			if (strings.get(name).equals(value)) {
 				return;
@@ -427,6 +633,13 @@ public class Entity {
 	 * @return The value of the variable or null if the variable does not exist.
 	 */
 	public final String getString(String name) {
+		EntityWrites w = staged();
+		if (w != null) {
+			int i = w.find(this, EntityWrites.STRING, name);
+			if (i >= 0) {
+				return (String) w.ref(i);
+			}
+		}
 		String s = strings.get(name);
 		return s;
 	}
@@ -438,6 +651,14 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setInt(String name, int value) {
+		int slot = EntitySchema.intSlot(name);
+		if (slot >= 0) {
+			setIntSlot(slot, value);
+			return;
+		}
+		if (logged(EntityWrites.INT, -1, name, value, null)) {
+			return;
+		}
 		if (getInt(name) == value) {
 			return;
 		}
@@ -446,6 +667,43 @@ public class Entity {
 		ints.put(name, value);
 	}
 
+	/**
+	 * Sets an int value stored in a slot.
+	 * 
+	 * @param slot  The slot of the variable.
+	 * @param value The value to set the variable to.
+	 */
+	private void setIntSlot(int slot, int value) {
+		if (logged(EntityWrites.INT_SLOT, slot, null, value, null)) {
+			return;
+		}
+		if (store.ints[slot][handle] == value) {
+			return;
+		}
+		if (packet)
+			((Server2D) ServerManager.getServer()).updateEntity(new UInt(getID(), EntitySchema.INTS[slot], value));
+		writableStore();
+		store.ints[slot][handle] = value;
+		store.intsSet[handle] |= 1 << slot;
+	}
+
+	/**
+	 * Stores an int value without sending an update.
+	 * 
+	 * @param name  The name of the variable.
+	 * @param value The value of the variable.
+	 */
+	private void putInt(String name, int value) {
+		int slot = EntitySchema.intSlot(name);
+		if (slot >= 0) {
+			writableStore();
+			store.ints[slot][handle] = value;
+			store.intsSet[handle] |= 1 << slot;
+		} else {
+			ints.put(name, value);
+		}
+	}
+
 	/**
 	 * Gets an int value stored in this entity.
 	 * 
@@ -453,6 +711,17 @@ public class Entity {
 	 * @return The value of the variable or 0 if the variable does not exist.
 	 */
 	public final int getInt(String name) {
+		int slot = EntitySchema.intSlot(name);
+		if (slot >= 0) {
+			return readIntSlot(slot);
+		}
+		EntityWrites w = staged();
+		if (w != null) {
+			int j = w.find(this, EntityWrites.INT, name);
+			if (j >= 0) {
+				return (int) w.value(j);
+			}
+		}
 		Integer i = ints.get(name);
 		if (i == null) {
 			return 0;
@@ -468,6 +737,9 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public void setLong(String name, long value) {
+		if (logged(EntityWrites.LONG, -1, name, value, null)) {
+			return;
+		}
 		if (getLong(name) == value) {
 			return;
 		}
@@ -483,6 +755,13 @@ public class Entity {
 	 * @return The value of the variable or 0 if the variable does not exist.
 	 */
 	public final long getLong(String name) {
+		EntityWrites w = staged();
+		if (w != null) {
+			int j = w.find(this, EntityWrites.LONG, name);
+			if (j >= 0) {
+				return w.value(j);
+			}
+		}
 		Long i = longs.get(name);
 		if (i == null) {
 			return 0;
@@ -498,6 +777,9 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setFloat(String name, float value) {
+		if (logged(EntityWrites.FLOAT, -1, name, Float.floatToRawIntBits(value), null)) {
+			return;
+		}
 		if (getFloat(name) == value) {
 			return;
 		}
@@ -513,6 +795,13 @@ public class Entity {
 	 * @return The value of the variable or NaN if the variable does not exist.
 	 */
 	public final float getFloat(String name) {
+		EntityWrites w = staged();
+		if (w != null) {
+			int j = w.find(this, EntityWrites.FLOAT, name);
+			if (j >= 0) {
+				return Float.intBitsToFloat((int) w.value(j));
+			}
+		}
 		Float i = floats.get(name);
 		if (i == null) {
 			return 0;
@@ -528,6 +817,14 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setBoolean(String name, boolean value) {
+		int slot = EntitySchema.booleanSlot(name);
+		if (slot >= 0) {
+			setBooleanSlot(slot, value);
+			return;
+		}
+		if (logged(EntityWrites.BOOLEAN, -1, name, value ? 1 : 0, null)) {
+			return;
+		}
 		if (getBoolean(name) == value) {
 			return;
 		}
@@ -536,6 +833,44 @@ public class Entity {
 		bools.put(name, value);
 	}
 
+	/**
+	 * Sets a boolean value stored in a slot.
+	 * 
+	 * @param slot  The slot of the variable.
+	 * @param value The value to set the variable to.
+	 */
+	private void setBooleanSlot(int slot, boolean value) {
+		if (logged(EntityWrites.BOOLEAN_SLOT, slot, null, value ? 1 : 0, null)) {
+			return;
+		}
+		if (store.booleans[slot][handle] == value) {
+			return;
+		}
+		if (packet)
+			((Server2D) ServerManager.getServer())
+					.updateEntity(new UBoolean(getID(), EntitySchema.BOOLEANS[slot], value));
+		writableStore();
+		store.booleans[slot][handle] = value;
+		store.booleansSet[handle] |= 1 << slot;
+	}
+
+	/**
+	 * Stores a boolean value without sending an update.
+	 * 
+	 * @param name  The name of the variable.
+	 * @param value The value of the variable.
+	 */
+	private void putBoolean(String name, boolean value) {
+		int slot = EntitySchema.booleanSlot(name);
+		if (slot >= 0) {
+			writableStore();
+			store.booleans[slot][handle] = value;
+			store.booleansSet[handle] |= 1 << slot;
+		} else {
+			bools.put(name, value);
+		}
+	}
+
 	/**
 	 * Gets a boolean value stored in this entity.
 	 * 
@@ -543,6 +878,17 @@ public class Entity {
 	 * @return The value of the variable or false if the variable does not exist.
 	 */
 	public final boolean getBoolean(String name) {
+		int slot = EntitySchema.booleanSlot(name);
+		if (slot >= 0) {
+			return readBooleanSlot(slot);
+		}
+		EntityWrites w = staged();
+		if (w != null) {
+			int j = w.find(this, EntityWrites.BOOLEAN, name);
+			if (j >= 0) {
+				return w.value(j) != 0;
+			}
+		}
 		Boolean i = bools.get(name);
 		if (i == null) {
 			return false;
@@ -558,6 +904,14 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setDouble(String name, double value) {
+		int slot = EntitySchema.doubleSlot(name);
+		if (slot >= 0) {
+			setDoubleSlot(slot, value);
+			return;
+		}
+		if (logged(EntityWrites.DOUBLE, -1, name, Double.doubleToRawLongBits(value), null)) {
+			return;
+		}
 		if (getDouble(name) == value) {
 			return;
 		}
@@ -566,6 +920,47 @@ public class Entity {
 		doubles.put(name, value);
 	}
 
+	/**
+	 * Sets a double value stored in a slot.
+	 * 
+	 * @param slot  The slot of the variable.
+	 * @param value The value to set the variable to.
+	 */
+	private void setDoubleSlot(int slot, double value) {
+		if (logged(EntityWrites.DOUBLE_SLOT, slot, null, Double.doubleToRawLongBits(value), null)) {
+			return;
+		}
+		if (store.doubles[slot][handle] == value) {
+			return;
+		}
+		if (packet)
+			((Server2D) ServerManager.getServer())
+					.updateEntity(new UDouble(getID(), EntitySchema.DOUBLES[slot], value));
+		writableStore();
+		store.doubles[slot][handle] = value;
+		store.doublesSet[handle] |= 1 << slot;
+		if (grid != null && EntitySchema.isSpatial(slot)) {
+			grid.update(this);
+		}
+	}
+
+	/**
+	 * Stores a double value without sending an update.
+	 * 
+	 * @param name  The name of the variable.
+	 * @param value The value of the variable.
+	 */
+	private void putDouble(String name, double value) {
+		int slot = EntitySchema.doubleSlot(name);
+		if (slot >= 0) {
+			writableStore();
+			store.doubles[slot][handle] = value;
+			store.doublesSet[handle] |= 1 << slot;
+		} else {
+			doubles.put(name, value);
+		}
+	}
+
 	/**
 	 * Gets a double value stored in this entity.
 	 * 
@@ -573,6 +968,17 @@ public class Entity {
 	 * @return The value of the variable or NaN if the variable does not exist.
 	 */
 	public final double getDouble(String name) {
+		int slot = EntitySchema.doubleSlot(name);
+		if (slot >= 0) {
+			return readDoubleSlot(slot);
+		}
+		EntityWrites w = staged();
+		if (w != null) {
+			int j = w.find(this, EntityWrites.DOUBLE, name);
+			if (j >= 0) {
+				return Double.longBitsToDouble(w.value(j));
+			}
+		}
 		Double i = doubles.get(name);
 		if (i == null) {
 			return 0;
@@ -588,6 +994,9 @@ public class Entity {
 	 * @param value The value to set the variable to.
 	 */
 	public final void setTag(String name, TagGroup value) {
+		if (logged(EntityWrites.TAG, -1, name, 0, value)) {
+			return;
+		}
 		if (getTag(name) == value) {
 			return;
 		}
@@ -603,6 +1012,13 @@ public class Entity {
 	 * @return The value of the variable or null if the variable does not exist.
 	 */
 	public final TagGroup getTag(String name) {
+		EntityWrites w = staged();
+		if (w != null) {
+			int i = w.find(this, EntityWrites.TAG, name);
+			if (i >= 0) {
+				return (TagGroup) w.ref(i);
+			}
+		}
 		return tags.get(name);
 	}
 
@@ -613,6 +1029,9 @@ public class Entity {
 	 * @param name The name of the variable to push.
 	 */
 	public final void pushtag(String name) {
+		if (logged(EntityWrites.PUSH_TAG, -1, name, 0, null)) {
+			return;
+		}
 		if (packet)
 			((Server2D) ServerManager.getServer()).updateEntity(new UTag(getID(), name, getTag(name)));
 	}
@@ -638,6 +1057,44 @@ public class Entity {
 		strings.put("id", m.getNewID(getID()));
 	}
 
+	/**
+	 * Gives this entity a store of its own if it is still using a read-only store
+	 * so that its variables can be written.
+	 */
+	private void writableStore() {
+		if (store.isReadOnly()) {
+			new EntityStore(1).add(this);
+		}
+	}
+
+	/**
+	 * Gets the store that holds the variables of this entity used by the engine.
+	 * 
+	 * @return An entity store.
+	 */
+	public EntityStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Gets the index of this entity in its store. This changes when entities are
+	 * added to or removed from the store.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getHandle() {
+		return handle;
+	}
+
+	/**
+	 * Gets the grid this entity is in.
+	 * 
+	 * @return An entity grid or {@code null} if this entity is not in a grid.
+	 */
+	public EntityGrid getGrid() {
+		return grid;
+	}
+
 	/**
 	 * Gets this entity's texture. This method does not make a call to entity
 	 * manager.
@@ -669,6 +1126,11 @@ public class Entity {
 		for (Entry<String, Double> e : doubles.entrySet()) {
 			g.add(new TagDouble(e.getKey(), e.getValue()));
 		}
+		for (int i = 0; i < EntitySchema.DOUBLES.length; i++) {
+			if ((store.doublesSet[handle] & (1 << i)) != 0) {
+				g.add(new TagDouble(EntitySchema.DOUBLES[i], store.doubles[i][handle]));
+			}
+		}
 		for (Entry<String, String> e : strings.entrySet()) {
 			g.add(new TagStringShort(e.getKey(), e.getValue()));
 		}
@@ -684,9 +1146,19 @@ public class Entity {
 		for (Entry<String, Integer> e : ints.entrySet()) {
 			g.add(new TagInt(e.getKey(), e.getValue()));
 		}
+		for (int i = 0; i < EntitySchema.INTS.length; i++) {
+			if ((store.intsSet[handle] & (1 << i)) != 0) {
+				g.add(new TagInt(EntitySchema.INTS[i], store.ints[i][handle]));
+			}
+		}
 		for (Entry<String, Boolean> e : bools.entrySet()) {
 			g.add(new TagBoolean(e.getKey(), e.getValue()));
 		}
+		for (int i = 0; i < EntitySchema.BOOLEANS.length; i++) {
+			if ((store.booleansSet[handle] & (1 << i)) != 0) {
+				g.add(new TagBoolean(EntitySchema.BOOLEANS[i], store.booleans[i][handle]));
+			}
+		}
 		for (Entry<String, TagGroup> e : tags.entrySet()) {
 			g.add(e.getValue().clone());
 		}
@@ -727,7 +1199,7 @@ public class Entity {
 	 * @return {@code true} if this entity has collision, {@code false} otherwise.
 	 */
 	public boolean isSolid() {
-		return getBoolean("solid");
+		return readBooleanSlot(EntitySchema.SOLID);
 	}
 
 	/**
@@ -743,7 +1215,7 @@ public class Entity {
 	 *              otherwise.
 	 */
 	public void setSolid(boolean solid) {
-		setBoolean("solid", solid);
+		setBooleanSlot(EntitySchema.SOLID, solid);
 	}
 
 	/**
@@ -770,11 +1242,14 @@ public class Entity {
 	 * @param r A rectangle.
 	 */
 	public void setHitBox(Rectangle r) {
-		setDouble("hitbox_x", r.getX());
-		setDouble("hitbox_y", r.getY());
-		setDouble("hitbox_w", r.getWidth());
-		setDouble("hitbox_h", r.getHeight());
+		setDoubleSlot(EntitySchema.HITBOX_X, r.getX());
+		setDoubleSlot(EntitySchema.HITBOX_Y, r.getY());
+		setDoubleSlot(EntitySchema.HITBOX_W, r.getWidth());
+		setDoubleSlot(EntitySchema.HITBOX_H, r.getHeight());
 
+		if (logged(EntityWrites.HITBOX, -1, null, 0, r)) {
+			return;
+		}
 		this.hitbox = r;
 	}
 
@@ -784,7 +1259,7 @@ public class Entity {
 	 * @param a A float angle in radians.
 	 */
 	public void setHitBoxAngle(float a) {
-		setDouble("hitbox_a", a);
+		setDoubleSlot(EntitySchema.HITBOX_A, a);
 	}
 
 	/**
@@ -793,7 +1268,7 @@ public class Entity {
 	 * @return A float angle in radians.
 	 */
 	public float getHitBoxAngle() {
-		return (float) getDouble("hitbox_a");
+		return (float) readDoubleSlot(EntitySchema.HITBOX_A);
 	}
 
 	/**
@@ -802,10 +1277,42 @@ public class Entity {
 	 * @return A shape.
 	 */
 	public Shape getHitBox() {
+		Rectangle hitbox = this.hitbox;
+		EntityWrites w = staged();
+		if (w != null) {
+			int i = w.find(this, EntityWrites.HITBOX, -1);
+			if (i >= 0) {
+				hitbox = (Rectangle) w.ref(i);
+			}
+		}
 		return hitbox.transform(Transform.createRotateTransform(getHitBoxAngle()))
 				.transform(Transform.createTranslateTransform((float) getX(), (float) getY()));
 	}
 
+	/**
+	 * Gets the transformed hitbox of this entity for collision checks. The box is
+	 * reused and only recalculated when the position or hitbox of this entity
+	 * changes so it should not be read while this entity is moving on another
+	 * thread.
+	 * 
+	 * @return A collision box.
+	 */
+	public CollisionBox getBounds() {
+		EntityWrites w = staged();
+		if (w != null && w.movesBounds(this)) {
+			CollisionBox b = new CollisionBox();
+			b.set(getX(), getY(), readDoubleSlot(EntitySchema.HITBOX_X), readDoubleSlot(EntitySchema.HITBOX_Y),
+					readDoubleSlot(EntitySchema.HITBOX_W), readDoubleSlot(EntitySchema.HITBOX_H), getHitBoxAngle());
+			return b;
+		}
+		double[][] d = store.doubles;
+		int h = handle;
+		bounds.set(d[EntitySchema.X][h], d[EntitySchema.Y][h], d[EntitySchema.HITBOX_X][h],
+				d[EntitySchema.HITBOX_Y][h], d[EntitySchema.HITBOX_W][h], d[EntitySchema.HITBOX_H][h],
+				getHitBoxAngle());
+		return bounds;
+	}
+
 	/**
 	 * Gets the direction this entity is facing (this does not effect hitboxes).
 	 * 
@@ -814,7 +1321,7 @@ public class Entity {
 	 * @see #getHitBoxAngle()
 	 */
 	public Direction getDirection() {
-		return Direction.values()[getInt("direction")];
+		return DIRECTIONS[readIntSlot(EntitySchema.DIRECTION)];
 	}
 
 	/**
@@ -825,6 +1332,6 @@ public class Entity {
 	 * @see #setHitBoxAngle(float)
 	 */
 	public void setDirection(Direction d) {
-		setInt("direction", d.ordinal());
+		setIntSlot(EntitySchema.DIRECTION, d.ordinal());
 	}
 }
@@ -37,13 +37,15 @@ import java.util.Map;
 import java.util.concurrent.Future;
 
 import org.apache.commons.math3.util.FastMath;
-import org.newdawn.slick.util.pathfinding.AStarPathFinder;
 import org.newdawn.slick.util.pathfinding.Path;
 import org.newdawn.slick.util.pathfinding.PathFindingContext;
 import org.newdawn.slick.util.pathfinding.TileBasedMap;
 
 import io.github.tomaso2468.rpgonline.world2d.Tile;
 import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.pathfinding.NavGrid;
+import io.github.tomaso2468.rpgonline.world2d.pathfinding.NavPathFinder;
+import io.github.tomaso2468.rpgonline.world2d.pathfinding.NavProfile;
 import io.github.tomaso2468.rpgonline.world2d.pathfinding.PathFindingManager;
 
 /**
@@ -70,7 +72,9 @@ public interface EntityAI {
 	public void doAI(Entity e, World w, float wind, List<Entity> entities);
 
 	/**
-	 * A method used to find a path between tiles.
+	 * A method used to find a path between tiles. Tiles are read from the shared
+	 * {@code NavGrid} of the world so repeated searches do not need to check the
+	 * tiles of the world again.
 	 * 
 	 * @param e              The entity to run pathfinding for.
 	 * @param w              The current world.
@@ -81,18 +85,18 @@ public interface EntityAI {
 	 * @param brave          Determines how the entity reacts to danger.
 	 * @param tileRegistry   The tile registry for the world.
 	 * @param em             The current entity manager.
-	 * @return A path from the entities location to the target location or null if
-	 *         no path could be found.
+	 * @return A path in world tile positions from the entities location to the
+	 *         target location or null if no path could be found.
 	 */
 	public default Future<Path> pathfind(Entity e, World w, double tx, double ty, int searchDistance,
 			List<Entity> entities, boolean brave, Map<String, Tile> tileRegistry, EntityManager em) {
-		// XXX Apologies to any sane being that tries to read this.
-		return PathFindingManager
-				.pathfind(new AStarPathFinder(
-						constructMapFromWorld(e, (int) e.getX(), (int) e.getY(), w, searchDistance + 5,
-								getValuedTiles(tileRegistry), getDislikedTiles(tileRegistry),
-								getDangerousTiles(tileRegistry), brave, entities, getScaredEntities(em)),
-						searchDistance, false), (int) e.getX(), (int) e.getY(), (int) tx, (int) ty);
+		NavProfile profile = new NavProfile(getValuedTiles(tileRegistry), getDislikedTiles(tileRegistry),
+				getDangerousTiles(tileRegistry), brave, e.isFlying());
+		return PathFindingManager.pathfind(
+				new NavPathFinder(NavGrid.get(w, profile), searchDistance, e.getGrid(), entities,
+						getScaredEntities(em)),
+				(int) FastMath.floor(e.getX()), (int) FastMath.floor(e.getY()), (int) FastMath.floor(tx),
+				(int) FastMath.floor(ty));
 	}
 	
 	/**
@@ -115,6 +119,7 @@ public interface EntityAI {
 	
 	/**
 	 * A method used to locate the nearest entity with the specified ID to this entity.
+	 * If the entity is in an {@code EntityGrid} the grid is searched instead of the list.
 	 * @param e The entity to compute AI for.
 	 * @param entities A list of all entities in the world.
 	 * @param c The condition used to determine entities for eligibility.
@@ -122,6 +127,12 @@ public interface EntityAI {
 	 * @return A entity or null if no entity could be found.
 	 */
 	public static Entity locateNearest(Entity e, List<Entity> entities, Comparable<Entity> c, int searchDistance) {
+		EntityGrid grid = e.getGrid();
+		if (grid != null) {
+			List<Entity> found = grid.nearest(e.getX(), e.getY(), 1, searchDistance, o -> c.compareTo(o) == 0);
+			return found.isEmpty() ? null : found.get(0);
+		}
+		
 		Entity nearest = null;
 		double ndist = Double.POSITIVE_INFINITY;
 		
@@ -0,0 +1,555 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * <p>
+ * A uniform grid of entities used to find the entities near a position without
+ * checking every entity in the world.
+ * </p>
+ * <p>
+ * The world is split into square cells and each entity is stored in the cell
+ * that contains its position. Entities in a grid move between cells when their
+ * position is set so the grid does not need to be rebuilt. An entity can only
+ * be in one grid at a time.
+ * </p>
+ * <p>
+ * Queries return entities by position. The largest distance between the
+ * position of an entity and a corner of its hitbox is tracked so that
+ * collision checks can expand their search to include every hitbox that could
+ * overlap.
+ * </p>
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.EntityList
+ */
+public class EntityGrid {
+	/**
+	 * The size of a cell in tiles.
+	 */
+	private final double cellSize;
+	/**
+	 * The cells that contain entities by their packed coordinates.
+	 */
+	private final CellMap cells = new CellMap();
+	/**
+	 * The number of entities in this grid.
+	 */
+	private int size;
+	/**
+	 * The largest hitbox extent of an entity added to this grid.
+	 */
+	private volatile double maxExtent;
+	/**
+	 * The lowest X cell that has contained an entity.
+	 */
+	private int minCX = Integer.MAX_VALUE;
+	/**
+	 * The lowest Y cell that has contained an entity.
+	 */
+	private int minCY = Integer.MAX_VALUE;
+	/**
+	 * The highest X cell that has contained an entity.
+	 */
+	private int maxCX = Integer.MIN_VALUE;
+	/**
+	 * The highest Y cell that has contained an entity.
+	 */
+	private int maxCY = Integer.MIN_VALUE;
+
+	/**
+	 * Constructs a new EntityGrid.
+	 *
+	 * @param cellSize The size of a cell in tiles.
+	 */
+	public EntityGrid(double cellSize) {
+		if (!(cellSize > 0)) {
+			throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Adds an entity to this grid.
+	 *
+	 * @param e The entity to add.
+	 */
+	public synchronized void add(Entity e) {
+		if (e.grid == this) {
+			return;
+		}
+		if (e.grid != null) {
+			e.grid.remove(e);
+		}
+		e.grid = this;
+		long key = key(e.getX(), e.getY());
+		insert(e, key);
+		size += 1;
+		extend(e);
+	}
+
+	/**
+	 * Removes an entity from this grid.
+	 *
+	 * @param e The entity to remove.
+	 */
+	public synchronized void remove(Entity e) {
+		if (e.grid != this) {
+			return;
+		}
+		delete(e);
+		e.grid = null;
+		size -= 1;
+	}
+
+	/**
+	 * Moves an entity to the cell containing its current position. This is called
+	 * by the entity when its position or hitbox is set.
+	 *
+	 * @param e The entity that changed.
+	 */
+	void update(Entity e) {
+		long key = key(e.getX(), e.getY());
+		double extent = extent(e);
+		if (key == e.gridCell && extent <= maxExtent) {
+			return;
+		}
+		synchronized (this) {
+			if (e.grid != this) {
+				return;
+			}
+			if (key != e.gridCell) {
+				delete(e);
+				insert(e, key);
+			}
+			if (extent > maxExtent) {
+				maxExtent = extent;
+			}
+		}
+	}
+
+	/**
+	 * Finds all entities with a position inside a rectangle.
+	 *
+	 * @param minX The lowest X position.
+	 * @param minY The lowest Y position.
+	 * @param maxX The highest X position.
+	 * @param maxY The highest Y position.
+	 * @param out The list to add entities to.
+	 * @return The list {@code out}.
+	 */
+	public synchronized List<Entity> queryAABB(double minX, double minY, double maxX, double maxY, List<Entity> out) {
+		int cx1 = Math.max(cell(minX), minCX);
+		int cy1 = Math.max(cell(minY), minCY);
+		int cx2 = Math.min(cell(maxX), maxCX);
+		int cy2 = Math.min(cell(maxY), maxCY);
+		for (int cx = cx1; cx <= cx2; cx++) {
+			for (int cy = cy1; cy <= cy2; cy++) {
+				Cell c = cells.get(pack(cx, cy));
+				if (c == null) {
+					continue;
+				}
+				for (int i = 0; i < c.size; i++) {
+					Entity e = c.entities[i];
+					double x = e.getX();
+					double y = e.getY();
+					if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+						out.add(e);
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Finds all entities within a distance of a position.
+	 *
+	 * @param x The X position.
+	 * @param y The Y position.
+	 * @param radius The distance to search.
+	 * @param out The list to add entities to.
+	 * @return The list {@code out}.
+	 */
+	public synchronized List<Entity> queryRadius(double x, double y, double radius, List<Entity> out) {
+		double r2 = radius * radius;
+		int cx1 = Math.max(cell(x - radius), minCX);
+		int cy1 = Math.max(cell(y - radius), minCY);
+		int cx2 = Math.min(cell(x + radius), maxCX);
+		int cy2 = Math.min(cell(y + radius), maxCY);
+		for (int cx = cx1; cx <= cx2; cx++) {
+			for (int cy = cy1; cy <= cy2; cy++) {
+				Cell c = cells.get(pack(cx, cy));
+				if (c == null) {
+					continue;
+				}
+				for (int i = 0; i < c.size; i++) {
+					Entity e = c.entities[i];
+					if (EntityAI.sqrdist(x, y, e.getX(), e.getY()) <= r2) {
+						out.add(e);
+					}
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Finds the entities closest to a position. Cells are searched in rings
+	 * around the position until no closer entity can be found.
+	 *
+	 * @param x The X position.
+	 * @param y The Y position.
+	 * @param k The number of entities to find.
+	 * @param maxDistance The largest distance to search.
+	 * @param filter The condition an entity must meet or {@code null} to accept
+	 *            all entities.
+	 * @return A list of up to {@code k} entities sorted by distance.
+	 */
+	public synchronized List<Entity> nearest(double x, double y, int k, double maxDistance,
+			Predicate<? super Entity> filter) {
+		if (k < 1 || size == 0) {
+			return new ArrayList<Entity>(0);
+		}
+		double max2 = maxDistance * maxDistance;
+		int ccx = cell(x);
+		int ccy = cell(y);
+		int rings = Math.max(Math.max(ccx - minCX, maxCX - ccx), Math.max(ccy - minCY, maxCY - ccy));
+		if (maxDistance < Double.POSITIVE_INFINITY) {
+			rings = (int) Math.min(rings, FastMath.ceil(maxDistance / cellSize) + 1);
+		}
+
+		List<Entity> found = new ArrayList<Entity>();
+		List<Double> distances = new ArrayList<Double>();
+		for (int r = 0; r <= rings; r++) {
+			for (int cx = ccx - r; cx <= ccx + r; cx++) {
+				boolean edge = cx == ccx - r || cx == ccx + r;
+				for (int cy = ccy - r; cy <= ccy + r; cy += edge ? 1 : 2 * r) {
+					Cell c = cells.get(pack(cx, cy));
+					if (c == null) {
+						continue;
+					}
+					for (int i = 0; i < c.size; i++) {
+						Entity e = c.entities[i];
+						double d = EntityAI.sqrdist(x, y, e.getX(), e.getY());
+						if (d <= max2 && (filter == null || filter.test(e))) {
+							int index = insertionPoint(distances, d);
+							distances.add(index, d);
+							found.add(index, e);
+							if (found.size() > k) {
+								distances.remove(k);
+								found.remove(k);
+							}
+						}
+					}
+				}
+			}
+			// Every entity in the next ring is at least r cells away.
+			if (found.size() == k && distances.get(k - 1) <= (r * cellSize) * (r * cellSize)) {
+				break;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Gets the largest distance between the position of an entity in this grid
+	 * and a corner of its hitbox.
+	 *
+	 * @return A positive double or zero.
+	 */
+	public double getMaxExtent() {
+		return maxExtent;
+	}
+
+	/**
+	 * Gets the number of entities in this grid.
+	 *
+	 * @return A positive integer or zero.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the largest distance between the position of an entity and a corner of
+	 * its hitbox. This covers the hitbox at any angle.
+	 *
+	 * @param e The entity to check.
+	 * @return A positive double or zero.
+	 */
+	public static double extent(Entity e) {
+		double hx = e.getDouble("hitbox_x");
+		double hy = e.getDouble("hitbox_y");
+		double hx2 = hx + e.getDouble("hitbox_w");
+		double hy2 = hy + e.getDouble("hitbox_h");
+		double ex = Math.max(Math.abs(hx), Math.abs(hx2));
+		double ey = Math.max(Math.abs(hy), Math.abs(hy2));
+		return Math.sqrt(ex * ex + ey * ey);
+	}
+
+	/**
+	 * Updates the largest extent with the extent of an entity.
+	 *
+	 * @param e The entity to check.
+	 */
+	private void extend(Entity e) {
+		double extent = extent(e);
+		if (extent > maxExtent) {
+			maxExtent = extent;
+		}
+	}
+
+	/**
+	 * Adds an entity to a cell.
+	 *
+	 * @param e The entity to add.
+	 * @param key The packed coordinates of the cell.
+	 */
+	private void insert(Entity e, long key) {
+		Cell c = cells.get(key);
+		if (c == null) {
+			c = new Cell();
+			cells.put(key, c);
+			int cx = (int) (key >> 32);
+			int cy = (int) key;
+			minCX = Math.min(minCX, cx);
+			minCY = Math.min(minCY, cy);
+			maxCX = Math.max(maxCX, cx);
+			maxCY = Math.max(maxCY, cy);
+		}
+		if (c.size == c.entities.length) {
+			c.entities = Arrays.copyOf(c.entities, c.size * 2);
+		}
+		c.entities[c.size] = e;
+		e.gridCell = key;
+		e.gridIndex = c.size;
+		c.size += 1;
+	}
+
+	/**
+	 * Removes an entity from its cell.
+	 *
+	 * @param e The entity to remove.
+	 */
+	private void delete(Entity e) {
+		Cell c = cells.get(e.gridCell);
+		int last = c.size - 1;
+		if (e.gridIndex != last) {
+			Entity moved = c.entities[last];
+			c.entities[e.gridIndex] = moved;
+			moved.gridIndex = e.gridIndex;
+		}
+		c.entities[last] = null;
+		c.size = last;
+		if (last == 0) {
+			cells.remove(e.gridCell);
+		}
+	}
+
+	/**
+	 * Finds the index to insert a distance at to keep a list sorted.
+	 *
+	 * @param distances A sorted list of distances.
+	 * @param d The distance to insert.
+	 * @return An index.
+	 */
+	private static int insertionPoint(List<Double> distances, double d) {
+		int i = distances.size();
+		while (i > 0 && distances.get(i - 1) > d) {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * Gets the cell coordinate of a position.
+	 *
+	 * @param v An X or Y position.
+	 * @return A cell coordinate.
+	 */
+	private int cell(double v) {
+		return (int) FastMath.floor(v / cellSize);
+	}
+
+	/**
+	 * Gets the packed coordinates of the cell containing a position.
+	 *
+	 * @param x The X position.
+	 * @param y The Y position.
+	 * @return Packed cell coordinates.
+	 */
+	private long key(double x, double y) {
+		return pack(cell(x), cell(y));
+	}
+
+	/**
+	 * Packs cell coordinates into one long.
+	 *
+	 * @param cx The X cell.
+	 * @param cy The Y cell.
+	 * @return Packed cell coordinates.
+	 */
+	private static long pack(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * A hash map from packed cell coordinates to cells that does not box its
+	 * keys. Collisions are resolved by linear probing.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class CellMap {
+		/**
+		 * The keys of the map.
+		 */
+		private long[] keys = new long[64];
+		/**
+		 * The cells of the map or {@code null} for empty slots.
+		 */
+		private Cell[] values = new Cell[64];
+		/**
+		 * The number of cells in the map.
+		 */
+		private int size;
+
+		/**
+		 * Gets the slot a key hashes to.
+		 *
+		 * @param key The key.
+		 * @param mask The length of the table minus one.
+		 * @return A slot index.
+		 */
+		private static int hash(long key, int mask) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		/**
+		 * Gets the cell with a key.
+		 *
+		 * @param key The packed cell coordinates.
+		 * @return A cell or {@code null} if the cell is empty.
+		 */
+		public Cell get(long key) {
+			int mask = keys.length - 1;
+			for (int i = hash(key, mask);; i = (i + 1) & mask) {
+				Cell c = values[i];
+				if (c == null || keys[i] == key) {
+					return c;
+				}
+			}
+		}
+
+		/**
+		 * Adds a cell that is not already in the map.
+		 *
+		 * @param key The packed cell coordinates.
+		 * @param c The cell to add.
+		 */
+		public void put(long key, Cell c) {
+			if ((size + 1) * 2 > keys.length) {
+				long[] oldKeys = keys;
+				Cell[] oldValues = values;
+				keys = new long[oldKeys.length * 2];
+				values = new Cell[oldKeys.length * 2];
+				size = 0;
+				for (int i = 0; i < oldKeys.length; i++) {
+					if (oldValues[i] != null) {
+						put(oldKeys[i], oldValues[i]);
+					}
+				}
+			}
+			int mask = keys.length - 1;
+			int i = hash(key, mask);
+			while (values[i] != null) {
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			values[i] = c;
+			size += 1;
+		}
+
+		/**
+		 * Removes a cell.
+		 *
+		 * @param key The packed cell coordinates.
+		 */
+		public void remove(long key) {
+			int mask = keys.length - 1;
+			int i = hash(key, mask);
+			while (values[i] != null && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			if (values[i] == null) {
+				return;
+			}
+			values[i] = null;
+			size -= 1;
+			// Move later entries of the same run back so lookups do not stop early.
+			for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+				int h = hash(keys[j], mask);
+				if (((j - h) & mask) >= ((j - i) & mask)) {
+					keys[i] = keys[j];
+					values[i] = values[j];
+					values[j] = null;
+					i = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A cell of the grid.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class Cell {
+		/**
+		 * The entities in this cell.
+		 */
+		private Entity[] entities = new Entity[4];
+		/**
+		 * The number of entities in this cell.
+		 */
+		private int size;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A list of entities that adds and removes entities from an
+ * {@code EntityGrid} as they are added to and removed from the list. Entities
+ * must not be in the list more than once. Entities are also indexed by ID so
+ * they can be found without searching the list.
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid
+ */
+public class EntityList extends AbstractList<Entity> implements RandomAccess {
+	/**
+	 * The entities in this list.
+	 */
+	private final List<Entity> entities = new ArrayList<Entity>();
+	/**
+	 * The grid kept up to date by this list.
+	 */
+	private final EntityGrid grid;
+	/**
+	 * The entities in this list indexed by ID.
+	 */
+	private final Map<String, Entity> ids = new HashMap<String, Entity>();
+
+	/**
+	 * Constructs a new EntityList.
+	 *
+	 * @param grid The grid to keep up to date.
+	 */
+	public EntityList(EntityGrid grid) {
+		this.grid = grid;
+	}
+
+	/**
+	 * Gets the grid kept up to date by this list.
+	 *
+	 * @return An entity grid.
+	 */
+	public EntityGrid getGrid() {
+		return grid;
+	}
+
+	/**
+	 * Finds the entity with an ID. If the ID of an entity has changed since it
+	 * was added the list is searched and the index is updated.
+	 *
+	 * @param id The ID to find.
+	 * @return An entity or null if there is no entity with the ID in this list.
+	 */
+	public Entity getByID(String id) {
+		Entity e = ids.get(id);
+		if (e != null && id.equals(e.getID())) {
+			return e;
+		}
+		for (int i = 0; i < entities.size(); i++) {
+			Entity e2 = entities.get(i);
+			if (id.equals(e2.getID())) {
+				ids.put(id, e2);
+				return e2;
+			}
+		}
+		if (e != null) {
+			ids.remove(id);
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Entity get(int index) {
+		return entities.get(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return entities.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Entity set(int index, Entity e) {
+		Entity old = entities.set(index, e);
+		grid.remove(old);
+		ids.remove(old.getID(), old);
+		grid.add(e);
+		ids.put(e.getID(), e);
+		return old;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(int index, Entity e) {
+		entities.add(index, e);
+		grid.add(e);
+		ids.put(e.getID(), e);
+		modCount++;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Entity remove(int index) {
+		Entity e = entities.remove(index);
+		grid.remove(e);
+		ids.remove(e.getID(), e);
+		modCount++;
+		return e;
+	}
+}
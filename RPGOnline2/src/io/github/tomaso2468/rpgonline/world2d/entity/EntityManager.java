@@ -59,7 +59,7 @@ public class EntityManager {
 	 * Gets the next available entity ID.
 	 * @return
 	 */
-	public String getNextID() {
+	public synchronized String getNextID() {
 		lastID = lastID.add(BigInteger.valueOf(1));
 		return lastID.toString(16);
 	}
@@ -69,7 +69,7 @@ public class EntityManager {
 	 * @param id The ID to reload.
 	 * @return A new ID.
 	 */
-	public String getNewID(String id) {
+	public synchronized String getNewID(String id) {
 		BigInteger v = new BigInteger(id, 16);
 		
 		if (v.compareTo(lastID) <= 0) {
@@ -0,0 +1,197 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+/**
+ * <p>
+ * The variables of an entity that are used by the engine. These are stored in
+ * primitive arrays in each entity instead of in maps so they can be read and
+ * written without hashing or boxing.
+ * </p>
+ * <p>
+ * Each variable has a slot which is its index in the array for its type.
+ * Variables that are not listed here are stored in maps.
+ * </p>
+ *
+ * @author Tomaso2468
+ */
+final class EntitySchema {
+	/**
+	 * The slot of the X position.
+	 */
+	static final int X = 0;
+	/**
+	 * The slot of the Y position.
+	 */
+	static final int Y = 1;
+	/**
+	 * The slot of the X velocity.
+	 */
+	static final int DX = 2;
+	/**
+	 * The slot of the Y velocity.
+	 */
+	static final int DY = 3;
+	/**
+	 * The slot of the hitbox angle.
+	 */
+	static final int HITBOX_A = 4;
+	/**
+	 * The slot of the hitbox X position.
+	 */
+	static final int HITBOX_X = 5;
+	/**
+	 * The slot of the hitbox Y position.
+	 */
+	static final int HITBOX_Y = 6;
+	/**
+	 * The slot of the hitbox width.
+	 */
+	static final int HITBOX_W = 7;
+	/**
+	 * The slot of the hitbox height.
+	 */
+	static final int HITBOX_H = 8;
+	/**
+	 * The slot of the weight (friction) factor.
+	 */
+	static final int WEIGHT_F = 9;
+	/**
+	 * The names of the double variables indexed by slot.
+	 */
+	static final String[] DOUBLES = { "x", "y", "dx", "dy", "hitbox_a", "hitbox_x", "hitbox_y", "hitbox_w",
+			"hitbox_h", "weight_f" };
+
+	/**
+	 * The slot of the solid flag.
+	 */
+	static final int SOLID = 0;
+	/**
+	 * The slot of the flying flag.
+	 */
+	static final int FLYING = 1;
+	/**
+	 * The names of the boolean variables indexed by slot.
+	 */
+	static final String[] BOOLEANS = { "solid", "flying" };
+
+	/**
+	 * The slot of the direction.
+	 */
+	static final int DIRECTION = 0;
+	/**
+	 * The names of the int variables indexed by slot.
+	 */
+	static final String[] INTS = { "direction" };
+
+	/**
+	 * Prevent instantiation
+	 */
+	private EntitySchema() {
+
+	}
+
+	/**
+	 * Gets the slot of a double variable.
+	 *
+	 * @param name The name of the variable.
+	 * @return A slot or -1 if the variable is stored in a map.
+	 */
+	static int doubleSlot(String name) {
+		switch (name) {
+		case "x":
+			return X;
+		case "y":
+			return Y;
+		case "dx":
+			return DX;
+		case "dy":
+			return DY;
+		case "hitbox_a":
+			return HITBOX_A;
+		case "hitbox_x":
+			return HITBOX_X;
+		case "hitbox_y":
+			return HITBOX_Y;
+		case "hitbox_w":
+			return HITBOX_W;
+		case "hitbox_h":
+			return HITBOX_H;
+		case "weight_f":
+			return WEIGHT_F;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Determines if a double variable changes the area covered by an entity.
+	 *
+	 * @param slot The slot of the variable.
+	 * @return {@code true} for the position and hitbox, {@code false} otherwise.
+	 */
+	static boolean isSpatial(int slot) {
+		return slot != DX && slot != DY && slot != WEIGHT_F;
+	}
+
+	/**
+	 * Gets the slot of a boolean variable.
+	 *
+	 * @param name The name of the variable.
+	 * @return A slot or -1 if the variable is stored in a map.
+	 */
+	static int booleanSlot(String name) {
+		switch (name) {
+		case "solid":
+			return SOLID;
+		case "flying":
+			return FLYING;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * Gets the slot of an int variable.
+	 *
+	 * @param name The name of the variable.
+	 * @return A slot or -1 if the variable is stored in a map.
+	 */
+	static int intSlot(String name) {
+		switch (name) {
+		case "direction":
+			return DIRECTION;
+		default:
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,473 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.apache.commons.math3.util.FastMath;
+
+/**
+ * <p>
+ * A store of the variables used by the engine for many entities. Each variable
+ * is stored in its own primitive array and each entity in the store has a
+ * handle which is its index in every array. An {@code Entity} is a view of one
+ * handle in its store.
+ * </p>
+ * <p>
+ * Entities start by reading from a read-only store that is shared by all
+ * entities and holds the variables of a new entity. A store of their own is
+ * only created when a variable is first written before they are added to a
+ * shared store. Adding them to a shared store moves their variables into the
+ * arrays of that store so bulk operations such as {@code integrate()} can run
+ * as a loop over arrays instead of over objects. Removing an entity moves the
+ * last entity in the store into its handle.
+ * </p>
+ * <p>
+ * This class is not thread safe. Bulk operations keep the {@code EntityGrid} of
+ * each entity up to date but change variables without sending updates to
+ * clients so servers should send the new positions themselves, for example by
+ * recording them in an {@code UpdateJournal}.
+ * </p>
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.Entity
+ * @see io.github.tomaso2468.rpgonline.world2d.net.UpdateJournal
+ */
+public class EntityStore {
+	/**
+	 * The number of entities processed by one task in parallel operations.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+	/**
+	 * The bits of the position slots.
+	 */
+	private static final int POSITION = (1 << EntitySchema.X) | (1 << EntitySchema.Y);
+	/**
+	 * The read-only store of entities that are not in a store and have no
+	 * variables set.
+	 */
+	static final EntityStore EMPTY = new EntityStore(1, true);
+	/**
+	 * The read-only store of entities that have been constructed but have not
+	 * been written to since. This matches the variables set by the entity
+	 * constructor.
+	 */
+	static final EntityStore DEFAULTS = new EntityStore(1, true);
+	static {
+		DEFAULTS.booleans[EntitySchema.SOLID][0] = true;
+		DEFAULTS.booleansSet[0] = 1 << EntitySchema.SOLID;
+	}
+	/**
+	 * The double variables indexed by slot and then by handle.
+	 */
+	double[][] doubles;
+	/**
+	 * The boolean variables indexed by slot and then by handle.
+	 */
+	boolean[][] booleans;
+	/**
+	 * The int variables indexed by slot and then by handle.
+	 */
+	int[][] ints;
+	/**
+	 * A bit mask of the double slots that have been set for each handle.
+	 */
+	int[] doublesSet;
+	/**
+	 * A bit mask of the boolean slots that have been set for each handle.
+	 */
+	int[] booleansSet;
+	/**
+	 * A bit mask of the int slots that have been set for each handle.
+	 */
+	int[] intsSet;
+	/**
+	 * The entities in this store indexed by handle.
+	 */
+	private Entity[] entities;
+	/**
+	 * The number of entities in this store.
+	 */
+	private int size;
+	/**
+	 * Determines if this store is shared by entities that have no store of their
+	 * own. Read-only stores hold the variables of handle 0 and no entities.
+	 */
+	private final boolean readOnly;
+
+	/**
+	 * Constructs a new EntityStore.
+	 */
+	public EntityStore() {
+		this(64);
+	}
+
+	/**
+	 * Constructs a new EntityStore.
+	 *
+	 * @param capacity The number of entities to allocate space for.
+	 */
+	public EntityStore(int capacity) {
+		this(capacity, false);
+	}
+
+	/**
+	 * Constructs a new EntityStore.
+	 *
+	 * @param capacity The number of entities to allocate space for.
+	 * @param readOnly Determines if the store is shared by entities that have no
+	 *            store of their own.
+	 */
+	private EntityStore(int capacity, boolean readOnly) {
+		this.readOnly = readOnly;
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		doubles = new double[EntitySchema.DOUBLES.length][capacity];
+		booleans = new boolean[EntitySchema.BOOLEANS.length][capacity];
+		ints = new int[EntitySchema.INTS.length][capacity];
+		doublesSet = new int[capacity];
+		booleansSet = new int[capacity];
+		intsSet = new int[capacity];
+		entities = new Entity[capacity];
+	}
+
+	/**
+	 * Adds an entity to the end of this store with all variables unset.
+	 *
+	 * @param e The entity to add.
+	 * @return The handle of the entity.
+	 */
+	int allocate(Entity e) {
+		if (size == entities.length) {
+			int capacity = entities.length * 2;
+			for (int i = 0; i < doubles.length; i++) {
+				doubles[i] = Arrays.copyOf(doubles[i], capacity);
+			}
+			for (int i = 0; i < booleans.length; i++) {
+				booleans[i] = Arrays.copyOf(booleans[i], capacity);
+			}
+			for (int i = 0; i < ints.length; i++) {
+				ints[i] = Arrays.copyOf(ints[i], capacity);
+			}
+			doublesSet = Arrays.copyOf(doublesSet, capacity);
+			booleansSet = Arrays.copyOf(booleansSet, capacity);
+			intsSet = Arrays.copyOf(intsSet, capacity);
+			entities = Arrays.copyOf(entities, capacity);
+		}
+		entities[size] = e;
+		return size++;
+	}
+
+	/**
+	 * Moves an entity into this store. Nothing happens if the entity is already
+	 * in this store.
+	 *
+	 * @param e The entity to add.
+	 */
+	public void add(Entity e) {
+		if (readOnly) {
+			throw new IllegalStateException("Entities cannot be added to a read-only store.");
+		}
+		if (e.store != this) {
+			move(e, this);
+		}
+	}
+
+	/**
+	 * Moves an entity out of this store. If its variables match one of the
+	 * read-only stores the entity reads from that store, otherwise it is given a
+	 * store of its own.
+	 *
+	 * @param e The entity to remove.
+	 */
+	public void remove(Entity e) {
+		if (e.store != this || readOnly) {
+			throw new IllegalArgumentException("Entity is not in this store: " + e.getID());
+		}
+		int h = e.handle;
+		EntityStore to = matches(h, DEFAULTS) ? DEFAULTS : matches(h, EMPTY) ? EMPTY : null;
+		if (to == null) {
+			move(e, new EntityStore(1));
+			return;
+		}
+		release(h);
+		e.store = to;
+		e.handle = 0;
+	}
+
+	/**
+	 * Determines if this store is shared by entities that have no store of their
+	 * own. Read-only stores cannot be written to or hold entities.
+	 *
+	 * @return {@code true} if this store is read-only, {@code false} otherwise.
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Determines if the variables of a handle are the same as the variables of
+	 * a read-only store.
+	 *
+	 * @param handle The handle to check.
+	 * @param s The read-only store to compare with.
+	 * @return {@code true} if every variable matches, {@code false} otherwise.
+	 */
+	private boolean matches(int handle, EntityStore s) {
+		if (doublesSet[handle] != s.doublesSet[0] || booleansSet[handle] != s.booleansSet[0]
+				|| intsSet[handle] != s.intsSet[0]) {
+			return false;
+		}
+		for (int i = 0; i < doubles.length; i++) {
+			if (Double.doubleToRawLongBits(doubles[i][handle]) != Double.doubleToRawLongBits(s.doubles[i][0])) {
+				return false;
+			}
+		}
+		for (int i = 0; i < booleans.length; i++) {
+			if (booleans[i][handle] != s.booleans[i][0]) {
+				return false;
+			}
+		}
+		for (int i = 0; i < ints.length; i++) {
+			if (ints[i][handle] != s.ints[i][0]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of entities in this store.
+	 *
+	 * @return A positive integer or zero.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the entity with a handle.
+	 *
+	 * @param handle The handle of the entity.
+	 * @return An entity.
+	 */
+	public Entity getEntity(int handle) {
+		if (handle < 0 || handle >= size) {
+			throw new IndexOutOfBoundsException("Invalid handle: " + handle);
+		}
+		return entities[handle];
+	}
+
+	/**
+	 * <p>
+	 * Moves every entity in this store by its velocity and then slows it down
+	 * using its weight factor. This is the same as calling
+	 * {@code VelocityAI.doVelocity()} for each entity but runs as a loop over the
+	 * arrays of this store.
+	 * </p>
+	 * <p>
+	 * If a filter is given and it blocks a move the velocity of the entity is set
+	 * to zero. When running in parallel the filter is called from several threads
+	 * at once.
+	 * </p>
+	 *
+	 * @param filter The filter used to check collision or {@code null} to allow
+	 *            all moves.
+	 * @param parallel {@code true} to split the entities between threads,
+	 *            {@code false} to use the current thread.
+	 *
+	 * @see io.github.tomaso2468.rpgonline.world2d.entity.VelocityAI#doVelocity(Entity,
+	 *      io.github.tomaso2468.rpgonline.world2d.World, java.util.List)
+	 */
+	public void integrate(MoveFilter filter, boolean parallel) {
+		int size = this.size;
+		if (parallel && size > CHUNK_SIZE) {
+			IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(
+					c -> integrate(filter, c * CHUNK_SIZE, Math.min(size, (c + 1) * CHUNK_SIZE)));
+		} else {
+			integrate(filter, 0, size);
+		}
+	}
+
+	/**
+	 * Moves a range of entities by their velocity.
+	 *
+	 * @param filter The filter used to check collision or {@code null} to allow
+	 *            all moves.
+	 * @param start The first handle to move.
+	 * @param end The handle after the last handle to move.
+	 */
+	private void integrate(MoveFilter filter, int start, int end) {
+		final double[] x = doubles[EntitySchema.X];
+		final double[] y = doubles[EntitySchema.Y];
+		final double[] dx = doubles[EntitySchema.DX];
+		final double[] dy = doubles[EntitySchema.DY];
+		final double[] weight = doubles[EntitySchema.WEIGHT_F];
+		final int[] set = doublesSet;
+		final double min = VelocityAI.SPEED_MIN;
+
+		for (int i = start; i < end; i++) {
+			double nx = x[i] + dx[i];
+			double ny = y[i] + dy[i];
+			int changed = 0;
+			if (filter == null || filter.canMove(entities[i], nx, ny)) {
+				if (x[i] != nx) {
+					x[i] = nx;
+					changed |= 1 << EntitySchema.X;
+				}
+				if (y[i] != ny) {
+					y[i] = ny;
+					changed |= 1 << EntitySchema.Y;
+				}
+				double ndx = dx[i] / weight[i];
+				double ndy = dy[i] / weight[i];
+				if (FastMath.abs(ndx) < min) {
+					ndx = 0;
+				}
+				if (FastMath.abs(ndy) < min) {
+					ndy = 0;
+				}
+				if (dx[i] != ndx) {
+					dx[i] = ndx;
+					changed |= 1 << EntitySchema.DX;
+				}
+				if (dy[i] != ndy) {
+					dy[i] = ndy;
+					changed |= 1 << EntitySchema.DY;
+				}
+			} else {
+				if (dx[i] != 0) {
+					dx[i] = 0;
+					changed |= 1 << EntitySchema.DX;
+				}
+				if (dy[i] != 0) {
+					dy[i] = 0;
+					changed |= 1 << EntitySchema.DY;
+				}
+			}
+			set[i] |= changed;
+			if ((changed & POSITION) != 0 && entities[i].grid != null) {
+				entities[i].grid.update(entities[i]);
+			}
+		}
+	}
+
+	/**
+	 * Moves the variables of an entity from its current store into another store.
+	 *
+	 * @param e The entity to move.
+	 * @param to The store to move the entity to.
+	 */
+	private static void move(Entity e, EntityStore to) {
+		EntityStore from = e.store;
+		int h = e.handle;
+		int n = to.allocate(e);
+		copy(from, h, to, n);
+		if (!from.readOnly) {
+			from.release(h);
+		}
+		e.store = to;
+		e.handle = n;
+	}
+
+	/**
+	 * Removes the entity with a handle by moving the last entity into its place.
+	 *
+	 * @param handle The handle to remove.
+	 */
+	private void release(int handle) {
+		int last = size - 1;
+		if (handle != last) {
+			copy(this, last, this, handle);
+			entities[handle] = entities[last];
+			entities[handle].handle = handle;
+		}
+		for (double[] a : doubles) {
+			a[last] = 0;
+		}
+		for (boolean[] a : booleans) {
+			a[last] = false;
+		}
+		for (int[] a : ints) {
+			a[last] = 0;
+		}
+		doublesSet[last] = 0;
+		booleansSet[last] = 0;
+		intsSet[last] = 0;
+		entities[last] = null;
+		size = last;
+	}
+
+	/**
+	 * Copies all variables of one handle to another handle.
+	 *
+	 * @param from The store to copy from.
+	 * @param fromHandle The handle to copy from.
+	 * @param to The store to copy to.
+	 * @param toHandle The handle to copy to.
+	 */
+	private static void copy(EntityStore from, int fromHandle, EntityStore to, int toHandle) {
+		for (int i = 0; i < from.doubles.length; i++) {
+			to.doubles[i][toHandle] = from.doubles[i][fromHandle];
+		}
+		for (int i = 0; i < from.booleans.length; i++) {
+			to.booleans[i][toHandle] = from.booleans[i][fromHandle];
+		}
+		for (int i = 0; i < from.ints.length; i++) {
+			to.ints[i][toHandle] = from.ints[i][fromHandle];
+		}
+		to.doublesSet[toHandle] = from.doublesSet[fromHandle];
+		to.booleansSet[toHandle] = from.booleansSet[fromHandle];
+		to.intsSet[toHandle] = from.intsSet[fromHandle];
+	}
+
+	/**
+	 * A check for whether an entity can move to a position.
+	 *
+	 * @author Tomaso2468
+	 */
+	@FunctionalInterface
+	public interface MoveFilter {
+		/**
+		 * Determines if an entity can move to a position.
+		 *
+		 * @param e The entity to move.
+		 * @param x The X position to move to.
+		 * @param y The Y position to move to.
+		 * @return {@code true} if the move is allowed, {@code false} otherwise.
+		 */
+		public boolean canMove(Entity e, double x, double y);
+	}
+}
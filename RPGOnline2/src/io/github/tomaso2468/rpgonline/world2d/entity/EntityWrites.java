@@ -0,0 +1,320 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * An ordered log of the writes made by one entity's AI during an
+ * {@code AIStage}.
+ * </p>
+ * <p>
+ * Writes to entity variables are kept with their target entity so that the AI
+ * can read back its own writes. Other changes, such as adding entities or
+ * setting tiles, are kept as actions. The log is replayed in order when the
+ * stage is merged.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.entity.AIStage
+ */
+final class EntityWrites {
+	/**
+	 * A double stored in a slot.
+	 */
+	static final byte DOUBLE_SLOT = 0;
+	/**
+	 * A boolean stored in a slot.
+	 */
+	static final byte BOOLEAN_SLOT = 1;
+	/**
+	 * An int stored in a slot.
+	 */
+	static final byte INT_SLOT = 2;
+	/**
+	 * A string variable.
+	 */
+	static final byte STRING = 3;
+	/**
+	 * An int variable.
+	 */
+	static final byte INT = 4;
+	/**
+	 * A long variable.
+	 */
+	static final byte LONG = 5;
+	/**
+	 * A float variable.
+	 */
+	static final byte FLOAT = 6;
+	/**
+	 * A boolean variable.
+	 */
+	static final byte BOOLEAN = 7;
+	/**
+	 * A double variable.
+	 */
+	static final byte DOUBLE = 8;
+	/**
+	 * A tag variable.
+	 */
+	static final byte TAG = 9;
+	/**
+	 * A request to send a tag variable.
+	 */
+	static final byte PUSH_TAG = 10;
+	/**
+	 * A hitbox rectangle.
+	 */
+	static final byte HITBOX = 11;
+	/**
+	 * A runnable that is not tied to an entity variable.
+	 */
+	static final byte ACTION = 12;
+
+	/**
+	 * The entity written to by each write.
+	 */
+	private Entity[] targets = new Entity[8];
+	/**
+	 * The kind of each write.
+	 */
+	private byte[] kinds = new byte[8];
+	/**
+	 * The slot of each write or -1 if the write is not to a slot.
+	 */
+	private int[] slots = new int[8];
+	/**
+	 * The variable name of each write or {@code null} if the write is to a slot.
+	 */
+	private String[] names = new String[8];
+	/**
+	 * The primitive value of each write stored as bits.
+	 */
+	private long[] values = new long[8];
+	/**
+	 * The object value of each write.
+	 */
+	private Object[] refs = new Object[8];
+	/**
+	 * The number of writes.
+	 */
+	private int size;
+
+	/**
+	 * Adds a write to the end of the log.
+	 * 
+	 * @param target The entity written to or {@code null} for an action.
+	 * @param kind   The kind of write.
+	 * @param slot   The slot written to or -1.
+	 * @param name   The variable written to or {@code null}.
+	 * @param value  The primitive value as bits.
+	 * @param ref    The object value.
+	 */
+	void add(Entity target, byte kind, int slot, String name, long value, Object ref) {
+		if (size == kinds.length) {
+			int length = size * 2;
+			targets = Arrays.copyOf(targets, length);
+			kinds = Arrays.copyOf(kinds, length);
+			slots = Arrays.copyOf(slots, length);
+			names = Arrays.copyOf(names, length);
+			values = Arrays.copyOf(values, length);
+			refs = Arrays.copyOf(refs, length);
+		}
+		targets[size] = target;
+		kinds[size] = kind;
+		slots[size] = slot;
+		names[size] = name;
+		values[size] = value;
+		refs[size] = ref;
+		size += 1;
+	}
+
+	/**
+	 * Adds an action to the end of the log.
+	 * 
+	 * @param r The action to run when the log is applied.
+	 */
+	void action(Runnable r) {
+		add(null, ACTION, -1, null, 0, r);
+	}
+
+	/**
+	 * Finds the latest write to a slot.
+	 * 
+	 * @param target The entity to check.
+	 * @param kind   The kind of slot.
+	 * @param slot   The slot to find.
+	 * @return The index of the write or -1 if the slot has not been written.
+	 */
+	int find(Entity target, byte kind, int slot) {
+		for (int i = size - 1; i >= 0; i--) {
+			if (targets[i] == target && kinds[i] == kind && slots[i] == slot) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Finds the latest write to a named variable.
+	 * 
+	 * @param target The entity to check.
+	 * @param kind   The kind of variable.
+	 * @param name   The name of the variable.
+	 * @return The index of the write or -1 if the variable has not been written.
+	 */
+	int find(Entity target, byte kind, String name) {
+		for (int i = size - 1; i >= 0; i--) {
+			if (targets[i] == target && kinds[i] == kind && name.equals(names[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Determines if a variable of any kind has been written.
+	 * 
+	 * @param target The entity to check.
+	 * @param name   The name of the variable.
+	 * @return {@code true} if the variable has been written, {@code false}
+	 *         otherwise.
+	 */
+	boolean defines(Entity target, String name) {
+		for (int i = size - 1; i >= 0; i--) {
+			if (targets[i] != target) {
+				continue;
+			}
+			switch (kinds[i]) {
+			case DOUBLE_SLOT:
+				if (EntitySchema.DOUBLES[slots[i]].equals(name)) {
+					return true;
+				}
+				break;
+			case BOOLEAN_SLOT:
+				if (EntitySchema.BOOLEANS[slots[i]].equals(name)) {
+					return true;
+				}
+				break;
+			case INT_SLOT:
+				if (EntitySchema.INTS[slots[i]].equals(name)) {
+					return true;
+				}
+				break;
+			case PUSH_TAG:
+			case HITBOX:
+				break;
+			default:
+				if (name.equals(names[i])) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines if any write could change the hitbox of an entity.
+	 * 
+	 * @param target The entity to check.
+	 * @return {@code true} if the position or hitbox has been written,
+	 *         {@code false} otherwise.
+	 */
+	boolean movesBounds(Entity target) {
+		for (int i = size - 1; i >= 0; i--) {
+			if (targets[i] == target
+					&& (kinds[i] == HITBOX || (kinds[i] == DOUBLE_SLOT && EntitySchema.isSpatial(slots[i])))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the primitive value of a write as bits.
+	 * 
+	 * @param i The index of the write.
+	 * @return A long value.
+	 */
+	long value(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Gets the object value of a write.
+	 * 
+	 * @param i The index of the write.
+	 * @return An object or {@code null}.
+	 */
+	Object ref(int i) {
+		return refs[i];
+	}
+
+	/**
+	 * Gets the number of writes in this log.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Applies every write in the order it was made and then clears this log.
+	 */
+	void apply() {
+		try {
+			for (int i = 0; i < size; i++) {
+				if (kinds[i] == ACTION) {
+					((Runnable) refs[i]).run();
+				} else {
+					targets[i].applyWrite(kinds[i], slots[i], names[i], values[i], refs[i]);
+				}
+			}
+		} finally {
+			clear();
+		}
+	}
+
+	/**
+	 * Removes every write from this log.
+	 */
+	void clear() {
+		Arrays.fill(targets, 0, size, null);
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(refs, 0, size, null);
+		size = 0;
+	}
+}
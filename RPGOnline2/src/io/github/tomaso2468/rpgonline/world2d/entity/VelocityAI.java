@@ -33,10 +33,9 @@ package io.github.tomaso2468.rpgonline.world2d.entity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.RandomAccess;
 
 import org.apache.commons.math3.util.FastMath;
-import org.newdawn.slick.geom.Shape;
-import org.newdawn.slick.geom.Transform;
 
 import io.github.tomaso2468.rpgonline.debug.Debugger;
 import io.github.tomaso2468.rpgonline.world2d.Tile;
@@ -52,6 +51,10 @@ public class VelocityAI implements EntityAI {
 	 * The minimum speed before velocity is set to 0.
 	 */
 	public static double SPEED_MIN = 1e-5;
+	/**
+	 * A reusable list for entities found by collision checks.
+	 */
+	private static final ThreadLocal<List<Entity>> scratch = ThreadLocal.withInitial(ArrayList::new);
 
 	/**
 	 * {@inheritDoc}
@@ -112,7 +115,10 @@ public class VelocityAI implements EntityAI {
 	}
 
 	/**
-	 * A method ran to determine collision.
+	 * A method ran to determine collision. If the entity is in an
+	 * {@code EntityGrid} only the entities in the grid that could touch its
+	 * hitbox are checked. Hitboxes are compared as {@code CollisionBox} objects
+	 * so no shapes are created.
 	 * @param x The x position to move to.
 	 * @param y The y position to move to.
 	 * @param e The entity to affect.
@@ -129,39 +135,57 @@ public class VelocityAI implements EntityAI {
 		}
 		
 		Debugger.start("collision");
+		boolean collision = isCollision(x, y, e, w, entities, e.getBounds());
+		if (!collision && !w.getTile(wx, wy, 0).isSolid(w.getTileState(wx, wy, 0))) {
+			collision = true;
+		}
+		Debugger.stop("collision");
+		return collision;
+	}
 
-		List<Shape> hitboxes = new ArrayList<Shape>();
+	/**
+	 * Determines if an entity's hitbox touches a solid tile or entity.
+	 * @param x The x position to move to.
+	 * @param y The y position to move to.
+	 * @param e The entity to affect.
+	 * @param w The current world.
+	 * @param entities A list of all entities.
+	 * @param box The hitbox of the entity.
+	 * @return {@code true} if collision occurs, {@code false} otherwise.
+	 */
+	private static boolean isCollision(double x, double y, Entity e, World w, List<Entity> entities,
+			CollisionBox box) {
 		for (int tx = (int) (Math.round(x) - 1); tx <= (int) (Math.round(x) + 1); tx++) {
 			for (int ty = (int) (Math.round(y) - 1); ty <= (int) (Math.round(y) + 1); ty++) {
 				Tile t = w.getTile(tx, ty, -1);
 				
 				if (t.isSolid(w.getTileState(tx, ty, -1))) {
-					hitboxes.add(t.getHitBox().transform(Transform.createTranslateTransform(tx, ty)));
+					float[] b = t.getHitBoxBounds();
+					if (box.overlaps(tx + b[0], ty + b[1], tx + b[0] + b[2], ty + b[1] + b[3])) {
+						return true;
+					}
 				}
 			}
 		}
 		
-		for (Entity e2 : entities) {
-			if (e2 != e) {
-				if(e2.isSolid()) {
-					hitboxes.add(e2.getHitBox());
-				}
-			}
+		EntityGrid grid = e.getGrid();
+		if (grid != null) {
+			double range = EntityGrid.extent(e) + grid.getMaxExtent();
+			List<Entity> nearby = scratch.get();
+			nearby.clear();
+			grid.queryAABB(e.getX() - range, e.getY() - range, e.getX() + range, e.getY() + range, nearby);
+			entities = nearby;
 		}
 		
-		for (Shape s : hitboxes) {
-			if (s.contains(e.getHitBox()) || s.intersects(e.getHitBox()) || e.getHitBox().contains(s)) {
-				Debugger.stop("collision");
+		if (!(entities instanceof RandomAccess)) {
+			entities = new ArrayList<Entity>(entities);
+		}
+		for (int i = 0; i < entities.size(); i++) {
+			Entity e2 = entities.get(i);
+			if (e2 != e && e2.isSolid() && box.overlaps(e2.getBounds())) {
 				return true;
 			}
 		}
-		
-		if (!w.getTile(wx, wy, 0).isSolid(w.getTileState(wx, wy, 0))) {
-			Debugger.stop("collision");
-			return true;
-		}
-
-		Debugger.stop("collision");
 		return false;
 	}
 
@@ -95,4 +95,13 @@ public interface Client2D extends Client {
 	 * @param s {@code true} if sprint is pressed, {@code false} otherwise.
 	 */
 	public void setSprint(boolean s);
+	/**
+	 * Gets the object used to smooth the movement of entities. Clients that pass
+	 * entity updates to an interpolator should return it here so that entities
+	 * are moved before each frame is rendered.
+	 * @return An entity interpolator or null if updates are applied directly.
+	 */
+	public default EntityInterpolator getInterpolator() {
+		return null;
+	}
 }
@@ -0,0 +1,463 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+
+/**
+ * <p>
+ * Smooths the movement of entities on a client.
+ * </p>
+ * <p>
+ * Position updates (doubles with the key {@code x} or {@code y}) passed to
+ * {@code apply()} are stored with the time they arrived instead of being
+ * applied. Other updates are applied at once. Each moving entity has a small
+ * ring buffer of these snapshots. When {@code update()} is called before
+ * rendering, entities are moved to the position they had one delay ago,
+ * interpolating between the snapshots on either side. If no newer snapshot has
+ * arrived the last movement is continued for at most the extrapolation limit.
+ * After that the entity is placed at its last known position and its buffer is
+ * removed until it moves again.
+ * </p>
+ * <p>
+ * A snapshot further than the teleport distance from the previous one clears
+ * the buffer so the entity jumps to its new position. Updates to X and Y that
+ * arrive within a short time of each other are merged into one snapshot.
+ * </p>
+ * <p>
+ * Network threads may call {@code apply()} while the render thread calls
+ * {@code update()}.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.net.Client2D#getInterpolator()
+ */
+public class EntityInterpolator {
+	/**
+	 * The default number of snapshots kept for each entity.
+	 */
+	public static final int DEFAULT_CAPACITY = 8;
+	/**
+	 * The snapshots of moving entities indexed by entity ID.
+	 */
+	private final Map<String, Track> tracks = new HashMap<String, Track>();
+	/**
+	 * The number of snapshots kept for each entity.
+	 */
+	private final int capacity;
+	/**
+	 * The time in nanoseconds that rendering is behind received updates.
+	 */
+	private long delay = 100000000L;
+	/**
+	 * The longest time in nanoseconds to continue movement past the last
+	 * snapshot.
+	 */
+	private long maxExtrapolation = 50000000L;
+	/**
+	 * Updates that arrive within this time in nanoseconds of the last snapshot
+	 * are merged into it.
+	 */
+	private long mergeTime = 5000000L;
+	/**
+	 * The distance in tiles between snapshots at which an entity jumps instead of
+	 * moving.
+	 */
+	private double teleportDistance = 4;
+
+	/**
+	 * Constructs a new EntityInterpolator keeping {@code DEFAULT_CAPACITY}
+	 * snapshots for each entity.
+	 */
+	public EntityInterpolator() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a new EntityInterpolator.
+	 * 
+	 * @param capacity The number of snapshots kept for each entity (at least 2).
+	 */
+	public EntityInterpolator(int capacity) {
+		if (capacity < 2) {
+			throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Applies an update that arrived now.
+	 * 
+	 * @param up       The update to apply.
+	 * @param entities The entities of the client world.
+	 * @return {@code true} if the entity of the update was found, {@code false}
+	 *         otherwise.
+	 */
+	public boolean apply(UpdatePacket up, List<Entity> entities) {
+		return apply(up, entities, System.nanoTime());
+	}
+
+	/**
+	 * Applies an update. Position updates are stored as snapshots and all other
+	 * updates are applied to the entity at once.
+	 * 
+	 * @param up       The update to apply.
+	 * @param entities The entities of the client world.
+	 * @param time     The time the update arrived as given by
+	 *                 {@code System.nanoTime()}.
+	 * @return {@code true} if the entity of the update was found, {@code false}
+	 *         otherwise.
+	 */
+	public synchronized boolean apply(UpdatePacket up, List<Entity> entities, long time) {
+		Track t = tracks.get(up.getID());
+		Entity e = t != null ? t.entity : UpdatePacket.find(up.getID(), entities);
+		if (e == null) {
+			return false;
+		}
+
+		double x = Double.NaN;
+		double y = Double.NaN;
+		if (up instanceof UpdatePacket.UBatch) {
+			for (UpdatePacket u : ((UpdatePacket.UBatch) up).getUpdates()) {
+				if (isPosition(u, "x")) {
+					x = ((UpdatePacket.UDouble) u).getValue();
+				} else if (isPosition(u, "y")) {
+					y = ((UpdatePacket.UDouble) u).getValue();
+				} else {
+					u.applyTo(e);
+				}
+			}
+		} else if (isPosition(up, "x")) {
+			x = ((UpdatePacket.UDouble) up).getValue();
+		} else if (isPosition(up, "y")) {
+			y = ((UpdatePacket.UDouble) up).getValue();
+		} else {
+			up.applyTo(e);
+		}
+
+		if (Double.isNaN(x) && Double.isNaN(y)) {
+			return true;
+		}
+		if (t == null) {
+			t = new Track(e, capacity);
+			tracks.put(up.getID(), t);
+			t.push(time - delay, e.getX(), e.getY());
+		}
+		t.record(time, x, y);
+		return true;
+	}
+
+	/**
+	 * Determines if an update is a position update.
+	 * 
+	 * @param up  The update to check.
+	 * @param key The position key.
+	 * @return {@code true} if the update sets the key to a double, {@code false}
+	 *         otherwise.
+	 */
+	private static boolean isPosition(UpdatePacket up, String key) {
+		return up instanceof UpdatePacket.UDouble && up.getKey().equals(key);
+	}
+
+	/**
+	 * Moves all entities with snapshots to their position for the current time.
+	 */
+	public void update() {
+		update(System.nanoTime());
+	}
+
+	/**
+	 * Moves all entities with snapshots to their position for a time.
+	 * 
+	 * @param time The current time as given by {@code System.nanoTime()}.
+	 */
+	public synchronized void update(long time) {
+		long render = time - delay;
+		Iterator<Track> i = tracks.values().iterator();
+		while (i.hasNext()) {
+			if (i.next().update(render)) {
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes the snapshots of an entity. This should be called when an entity is
+	 * removed from the world.
+	 * 
+	 * @param id The ID of the entity.
+	 */
+	public synchronized void remove(String id) {
+		tracks.remove(id);
+	}
+
+	/**
+	 * Removes all snapshots.
+	 */
+	public synchronized void clear() {
+		tracks.clear();
+	}
+
+	/**
+	 * Gets the number of entities that have snapshots.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public synchronized int getTrackCount() {
+		return tracks.size();
+	}
+
+	/**
+	 * Sets the time that rendering is behind received updates. This should be
+	 * around twice the time between position updates from the server.
+	 * 
+	 * @param millis The delay in milliseconds.
+	 */
+	public synchronized void setDelay(long millis) {
+		this.delay = millis * 1000000L;
+	}
+
+	/**
+	 * Gets the time that rendering is behind received updates.
+	 * 
+	 * @return The delay in milliseconds.
+	 */
+	public synchronized long getDelay() {
+		return delay / 1000000L;
+	}
+
+	/**
+	 * Sets the longest time to continue movement past the last snapshot.
+	 * 
+	 * @param millis The limit in milliseconds or zero to disable extrapolation.
+	 */
+	public synchronized void setMaxExtrapolation(long millis) {
+		this.maxExtrapolation = millis * 1000000L;
+	}
+
+	/**
+	 * Gets the longest time to continue movement past the last snapshot.
+	 * 
+	 * @return The limit in milliseconds.
+	 */
+	public synchronized long getMaxExtrapolation() {
+		return maxExtrapolation / 1000000L;
+	}
+
+	/**
+	 * Sets the distance between snapshots at which an entity jumps instead of
+	 * moving.
+	 * 
+	 * @param distance The distance in tiles.
+	 */
+	public synchronized void setTeleportDistance(double distance) {
+		this.teleportDistance = distance;
+	}
+
+	/**
+	 * Gets the distance between snapshots at which an entity jumps instead of
+	 * moving.
+	 * 
+	 * @return The distance in tiles.
+	 */
+	public synchronized double getTeleportDistance() {
+		return teleportDistance;
+	}
+
+	/**
+	 * The snapshots of one entity.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private final class Track {
+		/**
+		 * The entity that is moved.
+		 */
+		final Entity entity;
+		/**
+		 * The time each snapshot arrived.
+		 */
+		final long[] times;
+		/**
+		 * The X position of each snapshot.
+		 */
+		final double[] xs;
+		/**
+		 * The Y position of each snapshot.
+		 */
+		final double[] ys;
+		/**
+		 * The index of the oldest snapshot.
+		 */
+		int head;
+		/**
+		 * The number of snapshots.
+		 */
+		int count;
+
+		/**
+		 * Constructs a new Track.
+		 * 
+		 * @param entity   The entity that is moved.
+		 * @param capacity The number of snapshots to keep.
+		 */
+		Track(Entity entity, int capacity) {
+			this.entity = entity;
+			this.times = new long[capacity];
+			this.xs = new double[capacity];
+			this.ys = new double[capacity];
+		}
+
+		/**
+		 * Gets the array index of a snapshot.
+		 * 
+		 * @param i The position of the snapshot with 0 being the oldest.
+		 * @return An array index.
+		 */
+		int index(int i) {
+			return (head + i) % times.length;
+		}
+
+		/**
+		 * Adds a snapshot, replacing the oldest if the buffer is full.
+		 * 
+		 * @param time The time of the snapshot.
+		 * @param x    The X position.
+		 * @param y    The Y position.
+		 */
+		void push(long time, double x, double y) {
+			int i;
+			if (count == times.length) {
+				i = head;
+				head = index(1);
+			} else {
+				i = index(count);
+				count += 1;
+			}
+			times[i] = time;
+			xs[i] = x;
+			ys[i] = y;
+		}
+
+		/**
+		 * Records a position update. Missing coordinates keep the value of the last
+		 * snapshot.
+		 * 
+		 * @param time The time the update arrived.
+		 * @param x    The new X position or NaN if it was not sent.
+		 * @param y    The new Y position or NaN if it was not sent.
+		 */
+		void record(long time, double x, double y) {
+			int last = index(count - 1);
+			if (Double.isNaN(x)) {
+				x = xs[last];
+			}
+			if (Double.isNaN(y)) {
+				y = ys[last];
+			}
+			if (time <= times[last] || count > 1 && time - times[last] < mergeTime) {
+				xs[last] = x;
+				ys[last] = y;
+				if (count > 1 && Math.hypot(x - xs[index(count - 2)], y - ys[index(count - 2)]) > teleportDistance) {
+					head = last;
+					count = 1;
+				}
+				return;
+			}
+			if (Math.hypot(x - xs[last], y - ys[last]) > teleportDistance) {
+				count = 0;
+			}
+			push(time, x, y);
+		}
+
+		/**
+		 * Moves the entity to its position at a time.
+		 * 
+		 * @param render The time to show.
+		 * @return {@code true} if the entity has stopped and the track can be
+		 *         removed, {@code false} otherwise.
+		 */
+		boolean update(long render) {
+			int first = index(0);
+			if (render <= times[first]) {
+				move(xs[first], ys[first]);
+				return false;
+			}
+			for (int n = 1; n < count; n++) {
+				int b = index(n);
+				if (render < times[b]) {
+					int a = index(n - 1);
+					double f = (render - times[a]) / (double) (times[b] - times[a]);
+					move(xs[a] + (xs[b] - xs[a]) * f, ys[a] + (ys[b] - ys[a]) * f);
+					return false;
+				}
+			}
+
+			int last = index(count - 1);
+			long past = render - times[last];
+			if (past > maxExtrapolation || count < 2) {
+				move(xs[last], ys[last]);
+				return true;
+			}
+			int prev = index(count - 2);
+			if (times[last] <= times[prev]) {
+				move(xs[last], ys[last]);
+				return false;
+			}
+			double f = past / (double) (times[last] - times[prev]);
+			move(xs[last] + (xs[last] - xs[prev]) * f, ys[last] + (ys[last] - ys[prev]) * f);
+			return false;
+		}
+
+		/**
+		 * Moves the entity if its position has changed.
+		 * 
+		 * @param x The new X position.
+		 * @param y The new Y position.
+		 */
+		void move(double x, double y) {
+			if (entity.getX() != x) {
+				entity.setX(x);
+			}
+			if (entity.getY() != y) {
+				entity.setY(y);
+			}
+		}
+	}
+}
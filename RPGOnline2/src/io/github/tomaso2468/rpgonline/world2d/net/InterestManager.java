@@ -0,0 +1,528 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.newdawn.slick.util.Log;
+
+import io.github.tomaso2468.rpgonline.net.Connection;
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.net.packet.EntityAddPacket;
+import io.github.tomaso2468.rpgonline.world2d.net.packet.EntityRemovePacket;
+
+/**
+ * <p>
+ * A server side index of entities and player views used to only send entity
+ * updates to the clients that can see the entity.
+ * </p>
+ * <p>
+ * The world is split into square cells. Each client views the cells within a
+ * radius of the cell it is in. When an entity or a client moves so that an
+ * entity enters a view the client is sent an {@code EntityAddPacket} and when
+ * it leaves the view the client is sent an {@code EntityRemovePacket}. Updates
+ * are only sent to the clients viewing the cell of the entity.
+ * </p>
+ * <p>
+ * A {@code Server2D} should pass the entities and updates it receives to this
+ * class and move the view of each client when its player moves.
+ * </p>
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.world2d.net.Server2D
+ */
+public class InterestManager {
+	/**
+	 * The size of a cell in tiles.
+	 */
+	private final int cellSize;
+	/**
+	 * The number of cells around a client that the client can see.
+	 */
+	private final int radius;
+	/**
+	 * The cells that contain entities or viewers.
+	 */
+	private final Map<Long, Cell> cells = new HashMap<Long, Cell>();
+	/**
+	 * The tracked entities by ID.
+	 */
+	private final Map<String, Tracked> entities = new HashMap<String, Tracked>();
+	/**
+	 * The clients by connection.
+	 */
+	private final Map<Connection, Viewer> viewers = new IdentityHashMap<Connection, Viewer>();
+	/**
+	 * The number of packets sent.
+	 */
+	private long packets = 0;
+
+	/**
+	 * Constructs a new InterestManager.
+	 *
+	 * @param cellSize The size of a cell in tiles.
+	 * @param radius The number of cells around a client that the client can see.
+	 */
+	public InterestManager(int cellSize, int radius) {
+		if (cellSize < 1 || radius < 0) {
+			throw new IllegalArgumentException("Invalid cell size or radius: " + cellSize + ", " + radius);
+		}
+		this.cellSize = cellSize;
+		this.radius = radius;
+	}
+
+	/**
+	 * Adds a client and sends it all entities in its view.
+	 *
+	 * @param c The connection of the client.
+	 * @param x The X position of the player.
+	 * @param y The Y position of the player.
+	 */
+	public synchronized void addViewer(Connection c, double x, double y) {
+		if (viewers.containsKey(c)) {
+			moveViewer(c, x, y);
+			return;
+		}
+		Viewer v = new Viewer(c, toCell(x), toCell(y));
+		viewers.put(c, v);
+		for (int cx = v.cx - radius; cx <= v.cx + radius; cx++) {
+			for (int cy = v.cy - radius; cy <= v.cy + radius; cy++) {
+				enterCell(v, cx, cy);
+			}
+		}
+	}
+
+	/**
+	 * Moves the view of a client. Entities that enter the view are sent to the
+	 * client and entities that leave the view are removed from the client.
+	 *
+	 * @param c The connection of the client.
+	 * @param x The X position of the player.
+	 * @param y The Y position of the player.
+	 */
+	public synchronized void moveViewer(Connection c, double x, double y) {
+		Viewer v = viewers.get(c);
+		if (v == null) {
+			addViewer(c, x, y);
+			return;
+		}
+		int ncx = toCell(x);
+		int ncy = toCell(y);
+		if (ncx == v.cx && ncy == v.cy) {
+			return;
+		}
+
+		int ocx = v.cx;
+		int ocy = v.cy;
+		for (int cx = ocx - radius; cx <= ocx + radius; cx++) {
+			for (int cy = ocy - radius; cy <= ocy + radius; cy++) {
+				if (!inView(ncx, ncy, cx, cy)) {
+					leaveCell(v, cx, cy);
+				}
+			}
+		}
+		v.cx = ncx;
+		v.cy = ncy;
+		for (int cx = ncx - radius; cx <= ncx + radius; cx++) {
+			for (int cy = ncy - radius; cy <= ncy + radius; cy++) {
+				if (!inView(ocx, ocy, cx, cy)) {
+					enterCell(v, cx, cy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes a client. No packets are sent to the client.
+	 *
+	 * @param c The connection of the client.
+	 */
+	public synchronized void removeViewer(Connection c) {
+		Viewer v = viewers.remove(c);
+		if (v == null) {
+			return;
+		}
+		for (int cx = v.cx - radius; cx <= v.cx + radius; cx++) {
+			for (int cy = v.cy - radius; cy <= v.cy + radius; cy++) {
+				Cell cell = cells.get(key(cx, cy));
+				if (cell != null) {
+					cell.viewers.remove(v);
+					removeIfEmpty(cell, cx, cy);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds an entity and sends it to the clients that can see it.
+	 *
+	 * @param e The entity to add.
+	 */
+	public synchronized void addEntity(Entity e) {
+		if (entities.containsKey(e.getID())) {
+			return;
+		}
+		Tracked t = new Tracked(e, toCell(e.getX()), toCell(e.getY()));
+		entities.put(e.getID(), t);
+		Cell cell = getCell(t.cx, t.cy);
+		cell.entities.add(e);
+
+		if (!cell.viewers.isEmpty()) {
+			NetPacket p = new EntityAddPacket(e);
+			for (Viewer v : cell.viewers) {
+				send(v, p);
+			}
+		}
+	}
+
+	/**
+	 * Removes an entity from the clients that can see it.
+	 *
+	 * @param e The entity to remove.
+	 */
+	public synchronized void removeEntity(Entity e) {
+		Tracked t = entities.remove(e.getID());
+		if (t == null) {
+			return;
+		}
+		Cell cell = cells.get(key(t.cx, t.cy));
+		cell.entities.remove(t.entity);
+
+		NetPacket p = new EntityRemovePacket(e.getID());
+		for (Viewer v : cell.viewers) {
+			send(v, p);
+		}
+		removeIfEmpty(cell, t.cx, t.cy);
+	}
+
+	/**
+	 * Sends an entity update to the clients that can see the entity. Updates to
+	 * the position of the entity move it between cells.
+	 *
+	 * @param up The update to send.
+	 */
+	public synchronized void updateEntity(UpdatePacket up) {
+		Tracked t = entities.get(up.getID());
+		if (t == null) {
+			return;
+		}
+
+		if (up.hasKey("x") || up.hasKey("y")) {
+			int ocx = t.cx;
+			int ocy = t.cy;
+			if (relocate(t)) {
+				for (Viewer v : cells.get(key(t.cx, t.cy)).viewers) {
+					if (inView(v.cx, v.cy, ocx, ocy)) {
+						send(v, up);
+					}
+				}
+				return;
+			}
+		}
+
+		for (Viewer v : cells.get(key(t.cx, t.cy)).viewers) {
+			send(v, up);
+		}
+	}
+
+	/**
+	 * Moves an entity to the cell of its current position. Clients that can no
+	 * longer see the entity are sent a remove packet and clients that can now see
+	 * the entity are sent an add packet.
+	 *
+	 * @param t The entity to move.
+	 * @return {@code true} if the entity changed cell, {@code false} otherwise.
+	 */
+	private boolean relocate(Tracked t) {
+		int ncx = toCell(t.entity.getX());
+		int ncy = toCell(t.entity.getY());
+		if (ncx == t.cx && ncy == t.cy) {
+			return false;
+		}
+
+		Cell from = cells.get(key(t.cx, t.cy));
+		Cell to = getCell(ncx, ncy);
+		from.entities.remove(t.entity);
+		to.entities.add(t.entity);
+
+		NetPacket remove = null;
+		for (Viewer v : from.viewers) {
+			if (!inView(v.cx, v.cy, ncx, ncy)) {
+				if (remove == null) {
+					remove = new EntityRemovePacket(t.entity.getID());
+				}
+				send(v, remove);
+			}
+		}
+		NetPacket add = null;
+		for (Viewer v : to.viewers) {
+			if (!inView(v.cx, v.cy, t.cx, t.cy)) {
+				if (add == null) {
+					add = new EntityAddPacket(t.entity);
+				}
+				send(v, add);
+			}
+		}
+
+		removeIfEmpty(from, t.cx, t.cy);
+		t.cx = ncx;
+		t.cy = ncy;
+		return true;
+	}
+
+	/**
+	 * Determines if a client can see an entity.
+	 *
+	 * @param c The connection of the client.
+	 * @param e The entity.
+	 * @return {@code true} if the client has been sent the entity, {@code false}
+	 *         otherwise.
+	 */
+	public synchronized boolean isVisible(Connection c, Entity e) {
+		Viewer v = viewers.get(c);
+		Tracked t = entities.get(e.getID());
+		return v != null && t != null && inView(v.cx, v.cy, t.cx, t.cy);
+	}
+
+	/**
+	 * Gets the number of packets sent to clients.
+	 *
+	 * @return A long value.
+	 */
+	public synchronized long getPacketCount() {
+		return packets;
+	}
+
+	/**
+	 * Subscribes a client to a cell and sends it the entities in the cell.
+	 *
+	 * @param v The client.
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 */
+	private void enterCell(Viewer v, int cx, int cy) {
+		Cell cell = getCell(cx, cy);
+		cell.viewers.add(v);
+		for (Entity e : cell.entities) {
+			send(v, new EntityAddPacket(e));
+		}
+	}
+
+	/**
+	 * Unsubscribes a client from a cell and removes the entities in the cell from
+	 * the client.
+	 *
+	 * @param v The client.
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 */
+	private void leaveCell(Viewer v, int cx, int cy) {
+		Cell cell = cells.get(key(cx, cy));
+		if (cell == null) {
+			return;
+		}
+		cell.viewers.remove(v);
+		for (Entity e : cell.entities) {
+			send(v, new EntityRemovePacket(e.getID()));
+		}
+		removeIfEmpty(cell, cx, cy);
+	}
+
+	/**
+	 * Sends a packet to a client. Errors are logged and otherwise ignored.
+	 *
+	 * @param v The client.
+	 * @param p The packet to send.
+	 */
+	private void send(Viewer v, NetPacket p) {
+		packets += 1;
+		try {
+			v.connection.send(p);
+		} catch (IOException e) {
+			Log.error("Error sending entity packet.", e);
+		}
+	}
+
+	/**
+	 * Determines if a cell is within the view of a client.
+	 *
+	 * @param vx The X position of the cell of the client.
+	 * @param vy The Y position of the cell of the client.
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 * @return {@code true} if the cell can be seen, {@code false} otherwise.
+	 */
+	private boolean inView(int vx, int vy, int cx, int cy) {
+		return Math.abs(vx - cx) <= radius && Math.abs(vy - cy) <= radius;
+	}
+
+	/**
+	 * Gets a cell creating it if it does not exist.
+	 *
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 * @return A cell.
+	 */
+	private Cell getCell(int cx, int cy) {
+		Long k = key(cx, cy);
+		Cell cell = cells.get(k);
+		if (cell == null) {
+			cell = new Cell();
+			cells.put(k, cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Removes a cell if it has no entities or viewers.
+	 *
+	 * @param cell The cell.
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 */
+	private void removeIfEmpty(Cell cell, int cx, int cy) {
+		if (cell.entities.isEmpty() && cell.viewers.isEmpty()) {
+			cells.remove(key(cx, cy));
+		}
+	}
+
+	/**
+	 * Converts a position in tiles to a cell position.
+	 *
+	 * @param x The position in tiles.
+	 * @return The cell position.
+	 */
+	private int toCell(double x) {
+		return (int) Math.floor(x / cellSize);
+	}
+
+	/**
+	 * Packs a cell position into a single key.
+	 *
+	 * @param cx The X position of the cell.
+	 * @param cy The Y position of the cell.
+	 * @return A long value.
+	 */
+	private static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * A square area of the world.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class Cell {
+		/**
+		 * The entities in this cell.
+		 */
+		private final List<Entity> entities = new ArrayList<Entity>();
+		/**
+		 * The clients that can see this cell.
+		 */
+		private final List<Viewer> viewers = new ArrayList<Viewer>();
+	}
+
+	/**
+	 * A client and the cell it is viewing from.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class Viewer {
+		/**
+		 * The connection of the client.
+		 */
+		private final Connection connection;
+		/**
+		 * The X position of the cell the client is in.
+		 */
+		private int cx;
+		/**
+		 * The Y position of the cell the client is in.
+		 */
+		private int cy;
+
+		/**
+		 * Constructs a new Viewer.
+		 *
+		 * @param connection The connection of the client.
+		 * @param cx The X position of the cell the client is in.
+		 * @param cy The Y position of the cell the client is in.
+		 */
+		private Viewer(Connection connection, int cx, int cy) {
+			this.connection = connection;
+			this.cx = cx;
+			this.cy = cy;
+		}
+	}
+
+	/**
+	 * An entity and the cell it is in.
+	 *
+	 * @author Tomaso2468
+	 */
+	private static class Tracked {
+		/**
+		 * The entity.
+		 */
+		private final Entity entity;
+		/**
+		 * The X position of the cell the entity is in.
+		 */
+		private int cx;
+		/**
+		 * The Y position of the cell the entity is in.
+		 */
+		private int cy;
+
+		/**
+		 * Constructs a new Tracked.
+		 *
+		 * @param entity The entity.
+		 * @param cx The X position of the cell the entity is in.
+		 * @param cy The Y position of the cell the entity is in.
+		 */
+		private Tracked(Entity entity, int cx, int cy) {
+			this.entity = entity;
+			this.cx = cx;
+			this.cy = cy;
+		}
+	}
+}
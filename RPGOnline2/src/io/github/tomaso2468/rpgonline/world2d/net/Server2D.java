@@ -37,9 +37,14 @@ import io.github.tomaso2468.rpgonline.world2d.LightSource.LightUpdate;
 import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
 
 /**
- * The server for the world2d engine.
+ * The server for the world2d engine. Servers with many players can use an
+ * {@code InterestManager} to only send entities and entity updates to the
+ * players that can see them. Updates can be recorded in an
+ * {@code UpdateJournal} and sent once per tick.
  * @author Tomaso2468
  *
+ * @see io.github.tomaso2468.rpgonline.world2d.net.InterestManager
+ * @see io.github.tomaso2468.rpgonline.world2d.net.UpdateJournal
  */
 public interface Server2D extends Server {
 	/**
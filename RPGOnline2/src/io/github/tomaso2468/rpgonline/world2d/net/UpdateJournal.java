@@ -0,0 +1,171 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+
+/**
+ * <p>
+ * A server side record of the entity variables changed during a tick.
+ * </p>
+ * <p>
+ * Entities send an update every time one of their variables is set so an
+ * entity that moves sends several updates to the same keys each tick. This
+ * class keeps only the last update to each key of each entity. At the end of a
+ * tick the remaining updates are flushed with one packet per entity. An entity
+ * with several changed keys is sent as a single {@code UBatch}.
+ * </p>
+ * <p>
+ * A {@code Server2D} should record the updates passed to
+ * {@code updateEntity()} and flush the journal once per tick, for example to
+ * {@code InterestManager.updateEntity()}.
+ * </p>
+ *
+ * @author Tomaso2468
+ *
+ * @see io.github.tomaso2468.rpgonline.net.packet.UpdatePacket.UBatch
+ * @see io.github.tomaso2468.rpgonline.world2d.net.InterestManager
+ */
+public class UpdateJournal {
+	/**
+	 * The changed keys of each entity in the order the entities were first
+	 * changed.
+	 */
+	private Map<String, Map<String, UpdatePacket>> changes = new LinkedHashMap<String, Map<String, UpdatePacket>>();
+	/**
+	 * The number of updates recorded.
+	 */
+	private long recorded = 0;
+	/**
+	 * The number of packets flushed.
+	 */
+	private long flushed = 0;
+
+	/**
+	 * Records an update. Any earlier update to the same key of the same entity
+	 * is replaced.
+	 *
+	 * @param up The update to record.
+	 */
+	public synchronized void record(UpdatePacket up) {
+		if (up instanceof UpdatePacket.UBatch) {
+			for (UpdatePacket u : ((UpdatePacket.UBatch) up).getUpdates()) {
+				record(u);
+			}
+			return;
+		}
+		Map<String, UpdatePacket> keys = changes.get(up.getID());
+		if (keys == null) {
+			keys = new LinkedHashMap<String, UpdatePacket>();
+			changes.put(up.getID(), keys);
+		}
+		// Remove first so the key moves to the end and updates stay in order.
+		keys.remove(up.getKey());
+		keys.put(up.getKey(), up);
+		recorded += 1;
+	}
+
+	/**
+	 * Removes all recorded updates to an entity. This should be called when an
+	 * entity is removed from the server.
+	 *
+	 * @param id The ID of the entity.
+	 */
+	public synchronized void discard(String id) {
+		changes.remove(id);
+	}
+
+	/**
+	 * Removes all recorded updates and merges them into one packet per entity.
+	 *
+	 * @return A list of updates.
+	 */
+	public synchronized List<UpdatePacket> drain() {
+		List<UpdatePacket> packets = new ArrayList<UpdatePacket>(changes.size());
+		for (Map.Entry<String, Map<String, UpdatePacket>> e : changes.entrySet()) {
+			Map<String, UpdatePacket> keys = e.getValue();
+			if (keys.size() == 1) {
+				packets.add(keys.values().iterator().next());
+			} else {
+				packets.add(new UpdatePacket.UBatch(e.getKey(), new ArrayList<UpdatePacket>(keys.values())));
+			}
+		}
+		changes = new LinkedHashMap<String, Map<String, UpdatePacket>>();
+		flushed += packets.size();
+		return packets;
+	}
+
+	/**
+	 * Removes all recorded updates and passes them on with one packet per
+	 * entity.
+	 *
+	 * @param sink The object that sends the updates.
+	 */
+	public void flush(Consumer<? super UpdatePacket> sink) {
+		for (UpdatePacket up : drain()) {
+			sink.accept(up);
+		}
+	}
+
+	/**
+	 * Gets the number of entities with recorded updates.
+	 *
+	 * @return A positive integer or zero.
+	 */
+	public synchronized int getPendingCount() {
+		return changes.size();
+	}
+
+	/**
+	 * Gets the number of updates recorded by this journal.
+	 *
+	 * @return A long value.
+	 */
+	public synchronized long getRecordedCount() {
+		return recorded;
+	}
+
+	/**
+	 * Gets the number of packets flushed by this journal.
+	 *
+	 * @return A long value.
+	 */
+	public synchronized long getFlushedCount() {
+		return flushed;
+	}
+}
@@ -0,0 +1,344 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.pathfinding;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.WorldChangeListener;
+import io.github.tomaso2468.rpgonline.world2d.WorldWrapper;
+import io.github.tomaso2468.rpgonline.world2d.chunk.Chunk;
+
+/**
+ * <p>
+ * A cache of the cell values of a world for one {@code NavProfile}.
+ * </p>
+ * <p>
+ * Cells are computed a chunk at a time the first time they are needed and kept
+ * until the tiles of the chunk change. If the world does not report changes,
+ * cells are not cached and are read from the world every time.
+ * </p>
+ * <p>
+ * Shared grids are kept for the world underneath any {@code WorldWrapper} so
+ * that views of the same world share one grid. Each world keeps the grids of
+ * the {@link #MAX_PROFILES} most recently used profiles and disposes the rest.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.NavProfile
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.NavPathFinder
+ */
+public class NavGrid implements WorldChangeListener {
+	/**
+	 * The width and height of a cached chunk in tiles.
+	 */
+	public static final int SIZE = Chunk.SIZE;
+	/**
+	 * The maximum number of shared grids kept for each world.
+	 */
+	public static final int MAX_PROFILES = 32;
+	/**
+	 * The grids of each world.
+	 */
+	private static final Map<World, Map<NavProfile, NavGrid>> grids = new WeakHashMap<World, Map<NavProfile, NavGrid>>();
+	/**
+	 * The world the cells are read from.
+	 */
+	private final WeakReference<World> world;
+	/**
+	 * The profile used to compute cells.
+	 */
+	private final NavProfile profile;
+	/**
+	 * Determines if the world reports changes.
+	 */
+	private final boolean cached;
+	/**
+	 * Determines if this grid has been disposed and no longer caches cells.
+	 */
+	private volatile boolean disposed = false;
+	/**
+	 * The cells of each cached chunk.
+	 */
+	private final Map<Long, byte[]> chunks = new ConcurrentHashMap<Long, byte[]>();
+	/**
+	 * Incremented whenever cells are invalidated.
+	 */
+	private final AtomicLong version = new AtomicLong();
+	/**
+	 * The number of chunks that have been computed.
+	 */
+	private final AtomicLong builds = new AtomicLong();
+
+	/**
+	 * Constructs a new NavGrid.
+	 * 
+	 * @param world   The world to read cells from.
+	 * @param profile The profile used to compute cells.
+	 */
+	public NavGrid(World world, NavProfile profile) {
+		this.world = new WeakReference<World>(world);
+		this.profile = profile;
+		this.cached = !profile.isFlying() && world.addChangeListener(this);
+	}
+
+	/**
+	 * Gets the shared grid for a world and profile, creating it if needed. If
+	 * the world is a {@code WorldWrapper} the grid of the wrapped world is used.
+	 * 
+	 * @param w       The world to read cells from.
+	 * @param profile The profile used to compute cells.
+	 * @return A navigation grid.
+	 */
+	public static NavGrid get(World w, NavProfile profile) {
+		while (w instanceof WorldWrapper) {
+			w = ((WorldWrapper) w).getWrappedWorld();
+		}
+		synchronized (grids) {
+			Map<NavProfile, NavGrid> m = grids.get(w);
+			if (m == null) {
+				m = new LinkedHashMap<NavProfile, NavGrid>(16, 0.75f, true) {
+					private static final long serialVersionUID = 2918469466375301385L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<NavProfile, NavGrid> eldest) {
+						if (size() > MAX_PROFILES) {
+							eldest.getValue().dispose();
+							return true;
+						}
+						return false;
+					}
+				};
+				grids.put(w, m);
+			}
+			NavGrid g = m.get(profile);
+			if (g == null) {
+				g = new NavGrid(w, profile);
+				m.put(profile, g);
+			}
+			return g;
+		}
+	}
+
+	/**
+	 * Gets the profile used to compute cells.
+	 * 
+	 * @return A navigation profile.
+	 */
+	public NavProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * Gets the cell value of a tile.
+	 * 
+	 * @param x The X position of the tile.
+	 * @param y The Y position of the tile.
+	 * @return A cell value.
+	 */
+	public byte getCell(long x, long y) {
+		if (!isCached()) {
+			return profile.getCell(getWorld(), x, y);
+		}
+		byte[] c = getChunk(Math.floorDiv(x, SIZE), Math.floorDiv(y, SIZE));
+		return c[(int) (Math.floorMod(y, SIZE) * SIZE + Math.floorMod(x, SIZE))];
+	}
+
+	/**
+	 * Copies the cell values of an area into an array. Rows are stored one after
+	 * another.
+	 * 
+	 * @param minX   The X position of the first tile.
+	 * @param minY   The Y position of the first tile.
+	 * @param width  The width of the area.
+	 * @param height The height of the area.
+	 * @param out    The array to copy cells into.
+	 */
+	public void copyCells(long minX, long minY, int width, int height, byte[] out) {
+		if (!isCached()) {
+			World w = getWorld();
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					out[y * width + x] = profile.getCell(w, minX + x, minY + y);
+				}
+			}
+			return;
+		}
+		for (int y = 0; y < height;) {
+			long wy = minY + y;
+			long cy = Math.floorDiv(wy, SIZE);
+			int oy = (int) Math.floorMod(wy, SIZE);
+			int rows = Math.min(height - y, SIZE - oy);
+			for (int x = 0; x < width;) {
+				long wx = minX + x;
+				long cx = Math.floorDiv(wx, SIZE);
+				int ox = (int) Math.floorMod(wx, SIZE);
+				int cols = Math.min(width - x, SIZE - ox);
+				byte[] c = getChunk(cx, cy);
+				for (int r = 0; r < rows; r++) {
+					System.arraycopy(c, (oy + r) * SIZE + ox, out, (y + r) * width + x, cols);
+				}
+				x += cols;
+			}
+			y += rows;
+		}
+	}
+
+	/**
+	 * Gets the cells of a chunk, computing them if they are not cached.
+	 * 
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @return An array of cells indexed by {@code y * SIZE + x}.
+	 */
+	private byte[] getChunk(long cx, long cy) {
+		Long key = key(cx, cy);
+		byte[] c = chunks.get(key);
+		if (c != null) {
+			return c;
+		}
+		long v = version.get();
+		World w = getWorld();
+		c = new byte[SIZE * SIZE];
+		long ox = cx * SIZE;
+		long oy = cy * SIZE;
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				c[y * SIZE + x] = profile.getCell(w, ox + x, oy + y);
+			}
+		}
+		builds.incrementAndGet();
+		chunks.put(key, c);
+		if (version.get() != v) {
+			chunks.remove(key, c);
+		}
+		return c;
+	}
+
+	/**
+	 * Gets the world cells are read from.
+	 * 
+	 * @return A world.
+	 * @throws IllegalStateException If the world is no longer in use.
+	 */
+	private World getWorld() {
+		World w = world.get();
+		if (w == null) {
+			throw new IllegalStateException("The world of this grid is no longer in use.");
+		}
+		return w;
+	}
+
+	/**
+	 * Removes the cached cells of the chunks in an area.
+	 */
+	@Override
+	public void tilesChanged(long minX, long minY, long minZ, long maxX, long maxY, long maxZ) {
+		if (maxZ < -1 || minZ > 0) {
+			return;
+		}
+		version.incrementAndGet();
+		long maxCX = Math.floorDiv(maxX, SIZE);
+		long maxCY = Math.floorDiv(maxY, SIZE);
+		for (long cy = Math.floorDiv(minY, SIZE); cy <= maxCY; cy++) {
+			for (long cx = Math.floorDiv(minX, SIZE); cx <= maxCX; cx++) {
+				chunks.remove(key(cx, cy));
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached cells.
+	 */
+	public void invalidate() {
+		version.incrementAndGet();
+		chunks.clear();
+	}
+
+	/**
+	 * Stops this grid from listening to its world and removes all cached cells.
+	 * Cells are read from the world every time after a grid has been disposed.
+	 */
+	public void dispose() {
+		disposed = true;
+		World w = world.get();
+		if (w != null) {
+			w.removeChangeListener(this);
+		}
+		invalidate();
+	}
+
+	/**
+	 * Determines if cells are cached.
+	 * 
+	 * @return {@code true} if the world reports changes and cells are cached,
+	 *         {@code false} otherwise.
+	 */
+	public boolean isCached() {
+		return cached && !disposed;
+	}
+
+	/**
+	 * Gets the number of cached chunks.
+	 * 
+	 * @return A positive integer or zero.
+	 */
+	public int getCachedChunks() {
+		return chunks.size();
+	}
+
+	/**
+	 * Gets the number of times the cells of a chunk have been computed.
+	 * 
+	 * @return A long value.
+	 */
+	public long getBuildCount() {
+		return builds.get();
+	}
+
+	/**
+	 * Packs chunk coordinates into a key.
+	 * 
+	 * @param cx The X position of the chunk.
+	 * @param cy The Y position of the chunk.
+	 * @return A long value.
+	 */
+	private static long key(long cx, long cy) {
+		return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,437 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.newdawn.slick.util.pathfinding.Mover;
+import org.newdawn.slick.util.pathfinding.Path;
+import org.newdawn.slick.util.pathfinding.PathFinder;
+
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
+
+/**
+ * <p>
+ * An A* path finder that reads tiles from a {@code NavGrid}.
+ * </p>
+ * <p>
+ * Positions are world tile positions. The search only covers a square window
+ * around the start position, so a path is only found if the target is within
+ * the search distance of the start. Movement is allowed in 4 directions and the
+ * cost of a step is the cost of the tile that is entered. Solid entities double
+ * the cost of the tile they are on and entities that are being avoided increase
+ * the cost of the tiles next to them.
+ * </p>
+ * <p>
+ * The arrays used by a search are kept for each thread and reused by later
+ * searches so a search does not create any objects other than its result.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.NavGrid
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.PathFindingManager
+ */
+public class NavPathFinder implements PathFinder {
+	/**
+	 * The arrays used by searches on each thread.
+	 */
+	private static final ThreadLocal<Search> SEARCH = new ThreadLocal<Search>() {
+		@Override
+		protected Search initialValue() {
+			return new Search();
+		}
+	};
+	/**
+	 * The grid to read tiles from.
+	 */
+	private final NavGrid grid;
+	/**
+	 * The largest distance from the start position that will be searched.
+	 */
+	private final int searchDistance;
+	/**
+	 * The grid used to find nearby entities or null.
+	 */
+	private final EntityGrid entityGrid;
+	/**
+	 * The list of entities used if there is no entity grid.
+	 */
+	private final List<Entity> entities;
+	/**
+	 * The IDs of the entities being avoided.
+	 */
+	private final List<String> scared;
+
+	/**
+	 * Constructs a new NavPathFinder that ignores entities.
+	 * 
+	 * @param grid           The grid to read tiles from.
+	 * @param searchDistance The largest distance from the start position that
+	 *                       will be searched.
+	 */
+	public NavPathFinder(NavGrid grid, int searchDistance) {
+		this(grid, searchDistance, null, Collections.<Entity>emptyList(), Collections.<String>emptyList());
+	}
+
+	/**
+	 * Constructs a new NavPathFinder.
+	 * 
+	 * @param grid           The grid to read tiles from.
+	 * @param searchDistance The largest distance from the start position that
+	 *                       will be searched.
+	 * @param entityGrid     The grid used to find nearby entities or null to check
+	 *                       every entity in the list.
+	 * @param entities       A list of all entities in the world.
+	 * @param scared         The IDs of the entities being avoided.
+	 */
+	public NavPathFinder(NavGrid grid, int searchDistance, EntityGrid entityGrid, List<Entity> entities,
+			List<String> scared) {
+		if (searchDistance < 1) {
+			throw new IllegalArgumentException("Search distance must be positive: " + searchDistance);
+		}
+		this.grid = grid;
+		this.searchDistance = searchDistance;
+		this.entityGrid = entityGrid;
+		this.entities = entities;
+		this.scared = scared;
+	}
+
+	/**
+	 * Finds a path between two tiles.
+	 * 
+	 * @param mover Not used.
+	 * @param sx    The X position of the start tile.
+	 * @param sy    The Y position of the start tile.
+	 * @param tx    The X position of the target tile.
+	 * @param ty    The Y position of the target tile.
+	 * @return A path that includes the start tile or null if no path could be
+	 *         found.
+	 */
+	@Override
+	public Path findPath(Mover mover, int sx, int sy, int tx, int ty) {
+		if (Math.abs(tx - sx) > searchDistance || Math.abs(ty - sy) > searchDistance) {
+			return null;
+		}
+		int size = searchDistance * 2 + 1;
+		long minX = (long) sx - searchDistance;
+		long minY = (long) sy - searchDistance;
+
+		Search s = SEARCH.get();
+		s.begin(size * size);
+		grid.copyCells(minX, minY, size, size, s.cells);
+
+		int target = (int) ((ty - minY) * size + (tx - minX));
+		if (s.cells[target] == NavProfile.BLOCKED) {
+			return null;
+		}
+		addEntityCosts(s, minX, minY, size);
+
+		NavProfile profile = grid.getProfile();
+		float h = profile.getMinCost();
+		int start = (int) ((sy - minY) * size + (sx - minX));
+		int gen = s.generation;
+		s.open(start, 0, 0);
+		s.push(start, h * (Math.abs(tx - sx) + Math.abs(ty - sy)));
+
+		while (s.heapSize > 0) {
+			int node = s.pop();
+			if (s.closed[node] == gen) {
+				continue;
+			}
+			if (node == target) {
+				return buildPath(s, start, target, minX, minY, size);
+			}
+			s.closed[node] = gen;
+			int x = node % size;
+			int y = node / size;
+			float g = s.g[node];
+			for (int d = 0; d < 4; d++) {
+				int nx = x + (d == 0 ? 1 : d == 1 ? -1 : 0);
+				int ny = y + (d == 2 ? 1 : d == 3 ? -1 : 0);
+				if (nx < 0 || ny < 0 || nx >= size || ny >= size) {
+					continue;
+				}
+				int n = ny * size + nx;
+				byte cell = s.cells[n];
+				if (cell == NavProfile.BLOCKED || s.closed[n] == gen) {
+					continue;
+				}
+				float cost = profile.getCost(cell);
+				if (s.costStamp[n] == gen) {
+					cost *= s.costs[n];
+				}
+				float ng = g + cost;
+				if (s.stamp[n] != gen || ng < s.g[n]) {
+					s.open(n, ng, node);
+					long hx = Math.abs(minX + nx - tx);
+					long hy = Math.abs(minY + ny - ty);
+					s.push(n, ng + h * (hx + hy));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the extra cost of the tiles near entities.
+	 * 
+	 * @param s    The search to store costs in.
+	 * @param minX The X position of the window.
+	 * @param minY The Y position of the window.
+	 * @param size The width and height of the window.
+	 */
+	private void addEntityCosts(Search s, long minX, long minY, int size) {
+		List<Entity> near;
+		if (entityGrid != null) {
+			s.entities.clear();
+			near = entityGrid.queryAABB(minX - 1, minY - 1, minX + size + 1, minY + size + 1, s.entities);
+		} else {
+			near = entities;
+		}
+		int gen = s.generation;
+		for (int i = 0; i < near.size(); i++) {
+			Entity e = near.get(i);
+			boolean solid = e.isSolid();
+			boolean avoid = !scared.isEmpty() && scared.contains(e.getEntityID());
+			if (!solid && !avoid) {
+				continue;
+			}
+			double ex = e.getX();
+			double ey = e.getY();
+			long x0 = Math.max((long) Math.floor(ex) - 1, minX);
+			long y0 = Math.max((long) Math.floor(ey) - 1, minY);
+			long x1 = Math.min((long) Math.ceil(ex) + 1, minX + size - 1);
+			long y1 = Math.min((long) Math.ceil(ey) + 1, minY + size - 1);
+			for (long y = y0; y <= y1; y++) {
+				for (long x = x0; x <= x1; x++) {
+					double d = Math.hypot(ex - x, ey - y);
+					float m = 1;
+					if (solid && d < 0.25) {
+						m *= 2;
+					}
+					if (avoid && d < 1) {
+						m *= (float) (1 / d);
+					}
+					if (m != 1) {
+						int n = (int) ((y - minY) * size + (x - minX));
+						if (s.costStamp[n] != gen) {
+							s.costStamp[n] = gen;
+							s.costs[n] = m;
+						} else {
+							s.costs[n] *= m;
+						}
+					}
+				}
+			}
+		}
+		if (entityGrid != null) {
+			s.entities.clear();
+		}
+	}
+
+	/**
+	 * Follows the parents of the target back to the start.
+	 * 
+	 * @param s      The completed search.
+	 * @param start  The index of the start tile.
+	 * @param target The index of the target tile.
+	 * @param minX   The X position of the window.
+	 * @param minY   The Y position of the window.
+	 * @param size   The width and height of the window.
+	 * @return A path.
+	 */
+	private static Path buildPath(Search s, int start, int target, long minX, long minY, int size) {
+		Path p = new Path();
+		int n = target;
+		while (n != start) {
+			p.prependStep((int) (minX + n % size), (int) (minY + n / size));
+			n = s.parent[n];
+		}
+		p.prependStep((int) (minX + start % size), (int) (minY + start / size));
+		return p;
+	}
+
+	/**
+	 * The arrays used by a search. Entries are only valid if their stamp matches
+	 * the generation of the current search so the arrays do not need to be cleared
+	 * between searches.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static final class Search {
+		/**
+		 * The cells of the window.
+		 */
+		byte[] cells = new byte[0];
+		/**
+		 * The cost of the best known path to each tile.
+		 */
+		float[] g = new float[0];
+		/**
+		 * The tile before each tile on the best known path.
+		 */
+		int[] parent = new int[0];
+		/**
+		 * The generation in which {@code g} and {@code parent} were set.
+		 */
+		int[] stamp = new int[0];
+		/**
+		 * The generation in which each tile was closed.
+		 */
+		int[] closed = new int[0];
+		/**
+		 * The entity cost multiplier of each tile.
+		 */
+		float[] costs = new float[0];
+		/**
+		 * The generation in which {@code costs} was set.
+		 */
+		int[] costStamp = new int[0];
+		/**
+		 * The tiles in the open heap.
+		 */
+		int[] heap = new int[64];
+		/**
+		 * The estimated total cost of each entry in the open heap.
+		 */
+		float[] keys = new float[64];
+		/**
+		 * The number of entries in the open heap.
+		 */
+		int heapSize;
+		/**
+		 * The generation of the current search.
+		 */
+		int generation;
+		/**
+		 * The list used to collect nearby entities.
+		 */
+		final List<Entity> entities = new ArrayList<Entity>();
+
+		/**
+		 * Prepares the arrays for a new search.
+		 * 
+		 * @param n The number of tiles in the window.
+		 */
+		void begin(int n) {
+			if (cells.length < n) {
+				cells = new byte[n];
+				g = new float[n];
+				parent = new int[n];
+				stamp = new int[n];
+				closed = new int[n];
+				costs = new float[n];
+				costStamp = new int[n];
+				generation = 0;
+			}
+			generation += 1;
+			if (generation == 0) {
+				Arrays.fill(stamp, 0);
+				Arrays.fill(closed, 0);
+				Arrays.fill(costStamp, 0);
+				generation = 1;
+			}
+			heapSize = 0;
+		}
+
+		/**
+		 * Records a better path to a tile.
+		 * 
+		 * @param n      The index of the tile.
+		 * @param cost   The cost of the path.
+		 * @param parent The index of the previous tile.
+		 */
+		void open(int n, float cost, int parent) {
+			g[n] = cost;
+			this.parent[n] = parent;
+			stamp[n] = generation;
+		}
+
+		/**
+		 * Adds an entry to the open heap.
+		 * 
+		 * @param n The index of the tile.
+		 * @param f The estimated total cost.
+		 */
+		void push(int n, float f) {
+			if (heapSize == heap.length) {
+				heap = Arrays.copyOf(heap, heapSize * 2);
+				keys = Arrays.copyOf(keys, heapSize * 2);
+			}
+			int i = heapSize++;
+			while (i > 0) {
+				int p = (i - 1) >>> 1;
+				if (keys[p] <= f) {
+					break;
+				}
+				heap[i] = heap[p];
+				keys[i] = keys[p];
+				i = p;
+			}
+			heap[i] = n;
+			keys[i] = f;
+		}
+
+		/**
+		 * Removes the entry with the lowest estimated total cost from the open heap.
+		 * 
+		 * @return The index of the tile.
+		 */
+		int pop() {
+			int top = heap[0];
+			int last = heap[--heapSize];
+			float f = keys[heapSize];
+			int i = 0;
+			int half = heapSize >>> 1;
+			while (i < half) {
+				int c = 2 * i + 1;
+				if (c + 1 < heapSize && keys[c + 1] < keys[c]) {
+					c += 1;
+				}
+				if (f <= keys[c]) {
+					break;
+				}
+				heap[i] = heap[c];
+				keys[i] = keys[c];
+				i = c;
+			}
+			heap[i] = last;
+			keys[i] = f;
+			return top;
+		}
+	}
+}
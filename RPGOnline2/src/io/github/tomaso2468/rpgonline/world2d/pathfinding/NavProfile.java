@@ -0,0 +1,250 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.pathfinding;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.World;
+
+/**
+ * <p>
+ * Describes how a type of entity moves through tiles.
+ * </p>
+ * <p>
+ * A tile can be walked on if the tile below it (Z -1) is not solid and the
+ * ground (Z 0) is solid. Each tile that can be walked on is given a cost of 1
+ * which is multiplied by 0.75 for valued tiles, 2.5 (5 if not brave) for
+ * disliked tiles and 50 (200 if not brave) for dangerous tiles. Flying
+ * entities can cross every tile at a cost of 1.
+ * </p>
+ * <p>
+ * Tiles are stored as cell bytes. A cell of 0 cannot be walked on. Any other
+ * cell is one more than a combination of the valued, disliked and dangerous
+ * flags, so costs can be looked up without checking the tile lists.
+ * </p>
+ * 
+ * @author Tomaso2468
+ * 
+ * @see io.github.tomaso2468.rpgonline.world2d.pathfinding.NavGrid
+ */
+public final class NavProfile {
+	/**
+	 * The cell value of a tile that cannot be walked on.
+	 */
+	public static final byte BLOCKED = 0;
+	/**
+	 * The cell value of a tile with no valued, disliked or dangerous flags.
+	 */
+	public static final byte OPEN = 1;
+	/**
+	 * The flag for valued tiles.
+	 */
+	private static final int VALUED = 1;
+	/**
+	 * The flag for disliked tiles.
+	 */
+	private static final int DISLIKED = 2;
+	/**
+	 * The flag for dangerous tiles.
+	 */
+	private static final int DANGEROUS = 4;
+	/**
+	 * The tiles this profile prefers to walk on.
+	 */
+	private final Set<Tile> valued;
+	/**
+	 * The tiles this profile dislikes walking on.
+	 */
+	private final Set<Tile> disliked;
+	/**
+	 * The tiles that are dangerous to this profile.
+	 */
+	private final Set<Tile> dangerous;
+	/**
+	 * Determines how the entity reacts to danger.
+	 */
+	private final boolean brave;
+	/**
+	 * Determines if the entity flies over tiles.
+	 */
+	private final boolean flying;
+	/**
+	 * The cost of each cell value.
+	 */
+	private final float[] costs = new float[9];
+	/**
+	 * The lowest cost of a cell that can be walked on.
+	 */
+	private final float minCost;
+
+	/**
+	 * Constructs a new NavProfile.
+	 * 
+	 * @param valued    The tiles the entity prefers to walk on.
+	 * @param disliked  The tiles the entity dislikes walking on.
+	 * @param dangerous The tiles that are dangerous to the entity.
+	 * @param brave     Determines how the entity reacts to danger.
+	 * @param flying    Determines if the entity flies over tiles.
+	 */
+	public NavProfile(Collection<Tile> valued, Collection<Tile> disliked, Collection<Tile> dangerous, boolean brave,
+			boolean flying) {
+		this.valued = Collections.unmodifiableSet(new HashSet<Tile>(valued));
+		this.disliked = Collections.unmodifiableSet(new HashSet<Tile>(disliked));
+		this.dangerous = Collections.unmodifiableSet(new HashSet<Tile>(dangerous));
+		this.brave = brave;
+		this.flying = flying;
+
+		float min = Float.POSITIVE_INFINITY;
+		for (int flags = 0; flags < 8; flags++) {
+			float c = 1;
+			if ((flags & VALUED) != 0) {
+				c *= 0.75f;
+			}
+			if ((flags & DISLIKED) != 0) {
+				c *= brave ? 2.5f : 5f;
+			}
+			if ((flags & DANGEROUS) != 0) {
+				c *= brave ? 50f : 200f;
+			}
+			costs[flags + 1] = c;
+			if (!flying && c < min && isUsed(flags)) {
+				min = c;
+			}
+		}
+		this.minCost = flying ? 1 : Math.min(min, 1);
+	}
+
+	/**
+	 * Determines if a combination of flags can occur with the tile lists of this
+	 * profile.
+	 * 
+	 * @param flags The flags to check.
+	 * @return {@code true} if the flags can occur, {@code false} otherwise.
+	 */
+	private boolean isUsed(int flags) {
+		return ((flags & VALUED) == 0 || !valued.isEmpty()) && ((flags & DISLIKED) == 0 || !disliked.isEmpty())
+				&& ((flags & DANGEROUS) == 0 || !dangerous.isEmpty());
+	}
+
+	/**
+	 * Computes the cell value of a tile.
+	 * 
+	 * @param w The world to read.
+	 * @param x The X position of the tile.
+	 * @param y The Y position of the tile.
+	 * @return A cell value.
+	 */
+	public byte getCell(World w, long x, long y) {
+		if (flying) {
+			return OPEN;
+		}
+		Tile t = w.getTile(x, y, -1);
+		if (t.isSolid(w.getTileState(x, y, -1))) {
+			return BLOCKED;
+		}
+		if (!w.getTile(x, y, 0).isSolid(w.getTileState(x, y, 0))) {
+			return BLOCKED;
+		}
+		int flags = 0;
+		if (valued.contains(t)) {
+			flags |= VALUED;
+		}
+		if (disliked.contains(t)) {
+			flags |= DISLIKED;
+		}
+		if (dangerous.contains(t)) {
+			flags |= DANGEROUS;
+		}
+		return (byte) (flags + 1);
+	}
+
+	/**
+	 * Gets the cost of entering a cell.
+	 * 
+	 * @param cell A cell value other than {@code BLOCKED}.
+	 * @return A positive float.
+	 */
+	public float getCost(byte cell) {
+		return costs[cell];
+	}
+
+	/**
+	 * Gets the lowest cost of entering a cell.
+	 * 
+	 * @return A positive float.
+	 */
+	public float getMinCost() {
+		return minCost;
+	}
+
+	/**
+	 * Determines if this profile flies over tiles.
+	 * 
+	 * @return {@code true} if every tile can be crossed, {@code false} otherwise.
+	 */
+	public boolean isFlying() {
+		return flying;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		int result = valued.hashCode();
+		result = 31 * result + disliked.hashCode();
+		result = 31 * result + dangerous.hashCode();
+		result = 31 * result + (brave ? 1 : 0);
+		result = 31 * result + (flying ? 1 : 0);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NavProfile)) {
+			return false;
+		}
+		NavProfile o = (NavProfile) obj;
+		return brave == o.brave && flying == o.flying && valued.equals(o.valued) && disliked.equals(o.disliked)
+				&& dangerous.equals(o.dangerous);
+	}
+}
@@ -34,6 +34,8 @@ package io.github.tomaso2468.rpgonline.world2d.pathfinding;
 import java.math.BigInteger;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.newdawn.slick.util.pathfinding.Mover;
 import org.newdawn.slick.util.pathfinding.Path;
@@ -62,10 +64,7 @@ public final class PathFindingManager {
 	
 	static {
 		if (RPGConfig.getPathfindingThreads() > 0) {
-			pool = new ContinuousPool(
-					RPGConfig.getPathfindingThreads(),
-					RPGConfig.getPathfindingSleepDelay(),
-					RPGConfig.getPathfindingSleepTime());
+			pool = new ContinuousPool(RPGConfig.getPathfindingThreads(), RPGConfig.getPathfindingQueueSize());
 		} else {
 			pool = null;
 		}
@@ -94,6 +93,14 @@ public final class PathFindingManager {
 		return Long.parseLong(lastID.toString());
 	}
 	
+	/**
+	 * Gets the thread pool used for pathfinding.
+	 * @return A thread pool or null if pathfinding runs on the calling thread.
+	 */
+	public static ContinuousPool getPool() {
+		return pool;
+	}
+	
 	/**
 	 * Schedules a pathfind to the specified point.
 	 * @param path The pathfinder to use.
@@ -104,15 +111,40 @@ public final class PathFindingManager {
 	 * @return A future object representing the call.
 	 */
 	public static Future<Path> pathfind(PathFinder path, int sx, int sy, int tx, int ty) {
+		return pathfind(path, sx, sy, tx, ty, ContinuousPool.DEFAULT_PRIORITY, 0);
+	}
+	
+	/**
+	 * Schedules a pathfind to the specified point. If no pathfinding threads are
+	 * configured the path is found on the calling thread. This method does not
+	 * block: if the queue is full either this pathfind or a queued pathfind with a
+	 * lower priority fails with a {@code RejectedExecutionException}.
+	 * @param path The pathfinder to use.
+	 * @param sx The x coordinate of the start location
+	 * @param sy The y coordinate of the start location
+	 * @param tx The x coordinate of the target location
+	 * @param ty The y coordinate of the target location
+	 * @param priority The priority of the pathfind. Higher priorities are run first.
+	 * @param timeout The time in milliseconds the pathfind may wait to start or zero to wait forever.
+	 * @return A future object representing the call.
+	 */
+	public static Future<Path> pathfind(PathFinder path, int sx, int sy, int tx, int ty, int priority,
+			long timeout) {
 		getNextID();
 		
-		Future<Path> f = pool.submit(new Callable<Path>() {
+		Callable<Path> task = new Callable<Path>() {
 			@Override
 			public Path call() throws Exception {
 				return path.findPath(new Mover() {}, sx, sy, tx, ty);
 			}
-		});
+		};
+		
+		if (pool == null) {
+			FutureTask<Path> f = new FutureTask<Path>(task);
+			f.run();
+			return f;
+		}
 		
-		return f;
+		return pool.submit(task, priority, timeout, TimeUnit.MILLISECONDS);
 	}
 }
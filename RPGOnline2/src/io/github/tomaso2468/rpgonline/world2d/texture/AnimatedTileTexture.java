@@ -131,6 +131,14 @@ public class AnimatedTileTexture implements TileTexture {
 		final int index = (int) (System.currentTimeMillis() / interval % textures.length);
 		return textures[index];
 	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStatic() {
+		return false;
+	}
 	
 	/**
 	 * {@inheritDoc}
@@ -80,6 +80,14 @@ public class BasicTileTexture implements TileTexture {
 		return this.t;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
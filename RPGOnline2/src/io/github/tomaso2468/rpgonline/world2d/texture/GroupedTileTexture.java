@@ -77,5 +77,13 @@ public class GroupedTileTexture implements TileTexture {
 	public TileTexture[] getTextures(long x, long y, long z, World w, String state, Tile t) {
 		return textures;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
 
 }
@@ -48,5 +48,13 @@ public class NullTileTexture implements TileTexture {
 	public int getTexture(long x, long y, long z, World w, String state, Tile t) {
 		return -1;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isStatic() {
+		return true;
+	}
 
 }
@@ -62,6 +62,19 @@ public interface TileTexture {
 		return false;
 	}
 	
+	/**
+	 * Determines if the texture ID of this texture only depends on the tile, its
+	 * state and its position. Textures that return {@code true} may be cached and
+	 * baked. The default is {@code false} so that textures that change over time
+	 * are never frozen by the cache.
+	 * @return {@code true} if the texture can be cached, {@code false} otherwise.
+	 * 
+	 * @see io.github.tomaso2468.rpgonline.world2d.TileRenderCache
+	 */
+	public default boolean isStatic() {
+		return false;
+	}
+	
 	/**
 	 * Gets the texture ID for this texture.
 	 * @param x The X position of the tile.
@@ -78,6 +78,17 @@ public class WindTexture extends BasicTileTexture {
 		return RPGConfig.isWind();
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Wind textures are only static while wind is disabled. Tile caches are
+	 * rebuilt when the wind setting changes.
+	 */
+	@Override
+	public boolean isStatic() {
+		return !RPGConfig.isWind();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
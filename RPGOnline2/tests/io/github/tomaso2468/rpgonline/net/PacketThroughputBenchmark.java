@@ -0,0 +1,144 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import io.github.tomaso2468.rpgonline.net.packet.TextPacket;
+
+/**
+ * A benchmark measuring packet throughput over a loopback connection when
+ * packets are sent one at a time and when they are batched once per tick.
+ * 
+ * @author Tomaso2468
+ */
+public class PacketThroughputBenchmark {
+	/**
+	 * The number of packets sent in each simulated tick.
+	 */
+	private static final int PACKETS_PER_TICK = 200;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of packets to send, defaults to 200000.
+	 * @throws IOException If an error occurs sending packets.
+	 * @throws InterruptedException If the benchmark is interrupted.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int count = args.length == 0 ? 200000 : Integer.parseInt(args[0]);
+
+		try (PacketSelector selector = new PacketSelector(2);
+				ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress("localhost", 0));
+			int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+
+			for (int w = 0; w < 3; w++) {
+				SelectorPacketConnection client = new SelectorPacketConnection(
+						SocketChannel.open(server.getLocalAddress()), BasicPacketConnection.basicTypes(), selector);
+				run(client, server, selector, count / 4, 0);
+				client = new SelectorPacketConnection(SocketChannel.open(server.getLocalAddress()),
+						BasicPacketConnection.basicTypes(), selector);
+				run(client, server, selector, count / 4, -1);
+			}
+
+			SelectorPacketConnection unbatched = new SelectorPacketConnection(
+					SocketChannel.open(server.getLocalAddress()), BasicPacketConnection.basicTypes(), selector);
+			double single = run(unbatched, server, selector, count, 0);
+			System.out.printf("Selector, unbatched: %.0f packets/s (%d batches)%n", single,
+					unbatched.getBatchCount());
+
+			SelectorPacketConnection batched = new SelectorPacketConnection(
+					SocketChannel.open(server.getLocalAddress()), BasicPacketConnection.basicTypes(), selector);
+			double ticked = run(batched, server, selector, count, -1);
+			System.out.printf("Selector, batched per tick: %.0f packets/s (%d batches)%n", ticked,
+					batched.getBatchCount());
+
+			BasicPacketConnection basic = new BasicPacketConnection(new Socket("localhost", port));
+			double blocking = run(basic, server, selector, count, -1);
+			System.out.printf("Basic, batched per tick: %.0f packets/s%n", blocking);
+		}
+	}
+
+	/**
+	 * Sends packets from a client to the server and waits for them to arrive.
+	 * @param client The client connection.
+	 * @param server The server to accept the connection on.
+	 * @param selector The selector used for the server side of the connection.
+	 * @param count The number of packets to send.
+	 * @param delay The flush delay of the client.
+	 * @return The number of packets received per second.
+	 * @throws IOException If an error occurs sending packets.
+	 * @throws InterruptedException If the benchmark is interrupted.
+	 */
+	private static double run(Connection client, ServerSocketChannel server, PacketSelector selector, int count,
+			long delay) throws IOException, InterruptedException {
+		SelectorPacketConnection remote = new SelectorPacketConnection(server.accept(),
+				BasicPacketConnection.basicTypes(), selector);
+		if (client instanceof SelectorPacketConnection) {
+			((SelectorPacketConnection) client).setFlushDelay(delay);
+		} else {
+			((BasicPacketConnection) client).setFlushDelay(delay);
+		}
+		TextPacket p = new TextPacket("player moved to 1024.5, 2048.25");
+
+		long t = System.nanoTime();
+		int received = 0;
+		for (int i = 0; i < count; i++) {
+			client.send(p);
+			if (i % PACKETS_PER_TICK == PACKETS_PER_TICK - 1) {
+				client.flush();
+			}
+			while (remote.isAvaliable()) {
+				remote.getNext();
+				received += 1;
+			}
+		}
+		client.flush();
+		while (received < count) {
+			if (remote.isAvaliable()) {
+				remote.getNext();
+				received += 1;
+			} else {
+				Thread.yield();
+			}
+		}
+		double rate = count / ((System.nanoTime() - t) / 1000000000.0);
+
+		client.close();
+		remote.close();
+		return rate;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+import io.github.tomaso2468.rpgonline.net.packet.TextPacket;
+
+class SelectorPacketConnectionTest {
+	private static NetPacket waitForPacket(Connection c) throws IOException, InterruptedException {
+		for (int i = 0; i < 500 && !c.isAvaliable(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(c.isAvaliable());
+		return c.getNext();
+	}
+
+	@Test
+	void testLoopback() throws IOException, InterruptedException {
+		try (PacketSelector selector = new PacketSelector(2);
+				ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress("localhost", 0));
+			SelectorPacketConnection client = new SelectorPacketConnection(
+					SocketChannel.open(server.getLocalAddress()), BasicPacketConnection.basicTypes(),
+					selector);
+			SelectorPacketConnection remote = new SelectorPacketConnection(server.accept(),
+					BasicPacketConnection.basicTypes(), selector);
+
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 20000; i++) {
+				sb.append((char) ('a' + i % 26));
+			}
+			String large = sb.toString();
+
+			for (int i = 0; i < 1000; i++) {
+				client.send(new TextPacket("packet " + i));
+			}
+			client.send(new TextPacket(large));
+			for (int i = 0; i < 1000; i++) {
+				assertEquals("packet " + i, ((TextPacket) waitForPacket(remote)).getText());
+			}
+			assertEquals(large, ((TextPacket) waitForPacket(remote)).getText());
+
+			remote.send(new TextPacket("reply"));
+			assertEquals("reply", ((TextPacket) waitForPacket(client)).getText());
+
+			client.close();
+			for (int i = 0; i < 500 && !remote.isClosed(); i++) {
+				Thread.sleep(10);
+			}
+			assertTrue(remote.isClosed());
+		}
+	}
+
+	@Test
+	void testBatchedBasicConnection() throws IOException, InterruptedException {
+		try (PacketSelector selector = new PacketSelector(1);
+				ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress("localhost", 0));
+			BasicPacketConnection client = new BasicPacketConnection(new Socket("localhost",
+					((InetSocketAddress) server.getLocalAddress()).getPort()));
+			SelectorPacketConnection remote = new SelectorPacketConnection(server.accept(),
+					BasicPacketConnection.basicTypes(), selector);
+
+			client.setFlushDelay(-1);
+			for (int i = 0; i < 100; i++) {
+				client.send(new TextPacket("packet " + i));
+			}
+			Thread.sleep(100);
+			assertFalse(remote.isAvaliable());
+
+			client.flush();
+			for (int i = 0; i < 100; i++) {
+				assertEquals("packet " + i, ((TextPacket) waitForPacket(remote)).getText());
+			}
+
+			remote.setFlushDelay(-1);
+			remote.send(new TextPacket("reply"));
+			remote.send(new TextPacket("reply 2"));
+			remote.flush();
+			assertEquals("reply", ((TextPacket) waitForPacket(client)).getText());
+			assertEquals("reply 2", ((TextPacket) waitForPacket(client)).getText());
+			assertEquals(1, remote.getBatchCount());
+
+			client.close();
+			for (int i = 0; i < 500 && !remote.isClosed(); i++) {
+				Thread.sleep(10);
+			}
+			assertTrue(remote.isClosed());
+		}
+	}
+}
@@ -0,0 +1,153 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class TickSchedulerTest {
+	@Test
+	void testPhaseOrder() throws Exception {
+		TickScheduler s = new TickScheduler("test", 20);
+		List<String> order = new ArrayList<String>();
+		s.addTask(TickPhase.NETWORK_OUT, d -> order.add("out"));
+		s.addTask(TickPhase.WORLD, d -> order.add("world"));
+		s.addTask(TickPhase.NETWORK_IN, d -> order.add("in"));
+		s.addTask(TickPhase.AI, d -> {
+			assertEquals(0.05, d, 1e-9);
+			order.add("ai");
+		});
+		s.tick();
+		assertEquals(4, order.size());
+		assertEquals("in", order.get(0));
+		assertEquals("ai", order.get(1));
+		assertEquals("world", order.get(2));
+		assertEquals("out", order.get(3));
+		assertEquals(1, s.getPhaseTimes(TickPhase.AI).getCount());
+		assertEquals(0, s.getPhaseTimes(TickPhase.PHYSICS).getCount());
+	}
+
+	@Test
+	void testParallelPhase() throws Exception {
+		TickScheduler s = new TickScheduler("test", 20);
+		s.setParallel(TickPhase.AI, true);
+		List<Integer> done = Collections.synchronizedList(new ArrayList<Integer>());
+		for (int i = 0; i < 8; i++) {
+			int n = i;
+			s.addTask(TickPhase.AI, d -> done.add(n));
+		}
+		s.addTask(TickPhase.WORLD, d -> assertEquals(8, done.size()));
+		s.tick();
+		assertEquals(8, done.size());
+
+		s.addTask(TickPhase.AI, d -> {
+			throw new IllegalStateException("fail");
+		});
+		assertThrows(IllegalStateException.class, s::tick);
+	}
+
+	@Test
+	void testRunAndCatchUp() throws InterruptedException {
+		TickScheduler s = new TickScheduler("test", 200);
+		s.setMaxCatchUp(2);
+		AtomicInteger count = new AtomicInteger();
+		s.addTask(TickPhase.WORLD, d -> {
+			if (count.incrementAndGet() == 3) {
+				Thread.sleep(100);
+			}
+		});
+		Thread t = s.start("Test Scheduler");
+		for (int i = 0; i < 500 && count.get() < 10; i++) {
+			Thread.sleep(10);
+		}
+		s.stop();
+		t.join(1000);
+		assertFalse(t.isAlive());
+		assertTrue(count.get() >= 10);
+		assertTrue(s.getSkippedCount() > 0);
+		assertEquals(s.getTickCount(), s.getTickTimes().getCount());
+		assertTrue(s.getTickTimes().getMax() >= 100000000L);
+	}
+
+	@Test
+	void testStopAfterFailures() throws InterruptedException {
+		TickScheduler s = new TickScheduler("test", 1000);
+		s.setMaxFailures(1);
+		s.addTask(TickPhase.WORLD, d -> {
+			throw new IllegalStateException("fail");
+		});
+		Thread t = s.start("Test Scheduler");
+		t.join(1000);
+		assertFalse(t.isAlive());
+		assertEquals(0, s.getTickCount());
+	}
+
+	@Test
+	void testStopBeforeRun() throws InterruptedException {
+		TickScheduler s = new TickScheduler("test", 1000);
+		AtomicInteger count = new AtomicInteger();
+		s.addTask(TickPhase.WORLD, d -> count.incrementAndGet());
+		s.stop();
+		Thread t = s.start("Test Scheduler");
+		t.join(1000);
+		assertFalse(t.isAlive());
+		assertFalse(s.isRunning());
+		assertEquals(0, count.get());
+	}
+
+	@Test
+	void testHistogram() {
+		TickHistogram h = new TickHistogram();
+		assertEquals(0, h.getPercentile(50));
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1000L);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1000000, h.getMax());
+		assertEquals(500500, h.getMean(), 1e-6);
+		assertEquals(500000, h.getPercentile(50), 500000 / 8);
+		assertEquals(990000, h.getPercentile(99), 990000 / 8);
+		assertEquals(1000000, h.getPercentile(100));
+		for (long v = 0; v < 100000; v += 7) {
+			assertTrue(TickHistogram.upperBound(TickHistogram.bucket(v)) >= v);
+			assertTrue(TickHistogram.bucket(v) == 0 || TickHistogram.upperBound(TickHistogram.bucket(v) - 1) < v);
+		}
+		h.reset();
+		assertEquals(0, h.getCount());
+	}
+}
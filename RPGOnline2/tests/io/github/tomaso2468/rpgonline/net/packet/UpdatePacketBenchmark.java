@@ -0,0 +1,130 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net.packet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+/**
+ * A benchmark comparing the size and encoding time of entity updates written
+ * with Java serialisation and with the compact update encoding.
+ * 
+ * @author Tomaso2468
+ */
+public class UpdatePacketBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of packets to encode, defaults to 200000.
+	 * @throws IOException If an error occurs encoding packets.
+	 */
+	public static void main(String[] args) throws IOException {
+		int count = args.length == 0 ? 200000 : Integer.parseInt(args[0]);
+
+		UpdatePacket[] packets = new UpdatePacket[1024];
+		for (int i = 0; i < packets.length; i++) {
+			String id = Integer.toHexString(i + 1000);
+			switch (i % 4) {
+			case 0:
+				packets[i] = new UpdatePacket.UDouble(id, "x", i * 1.5);
+				break;
+			case 1:
+				packets[i] = new UpdatePacket.UDouble(id, "y", i * -0.5);
+				break;
+			case 2:
+				packets[i] = new UpdatePacket.UInt(id, "direction", i % 8);
+				break;
+			default:
+				packets[i] = new UpdatePacket.UBoolean(id, "flying", i % 3 == 0);
+				break;
+			}
+		}
+
+		for (int w = 0; w < 3; w++) {
+			serialised(packets, count / 4);
+			compact(packets, count / 4);
+		}
+
+		long t = System.nanoTime();
+		long serialSize = serialised(packets, count);
+		double serialTime = (System.nanoTime() - t) / (double) count;
+
+		t = System.nanoTime();
+		long compactSize = compact(packets, count);
+		double compactTime = (System.nanoTime() - t) / (double) count;
+
+		System.out.printf("Serialised: %.1f bytes/packet, %.0f ns/packet%n", serialSize / (double) count, serialTime);
+		System.out.printf("Compact: %.1f bytes/packet, %.0f ns/packet%n", compactSize / (double) count, compactTime);
+	}
+
+	/**
+	 * Encodes packets the way {@code NetPacket} encodes packets by default.
+	 * @param packets The packets to encode.
+	 * @param n The number of packets to encode.
+	 * @return The total size of the encoded packets in bytes.
+	 * @throws IOException If an error occurs encoding packets.
+	 */
+	private static long serialised(UpdatePacket[] packets, int n) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		long size = 0;
+		for (int i = 0; i < n; i++) {
+			b.reset();
+			out.write(NetPacket.PACKET_OBJECT);
+			ObjectOutputStream oos = new ObjectOutputStream(out);
+			oos.writeObject(packets[i % packets.length]);
+			oos.flush();
+			size += b.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Encodes packets using their own packet types.
+	 * @param packets The packets to encode.
+	 * @param n The number of packets to encode.
+	 * @return The total size of the encoded packets in bytes.
+	 * @throws IOException If an error occurs encoding packets.
+	 */
+	private static long compact(UpdatePacket[] packets, int n) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		long size = 0;
+		for (int i = 0; i < n; i++) {
+			b.reset();
+			packets[i % packets.length].write(out);
+			size += b.size();
+		}
+		return size;
+	}
+}
@@ -0,0 +1,100 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.net.packet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.net.BasicPacketConnection;
+import io.github.tomaso2468.rpgonline.net.PacketType;
+
+class UpdatePacketTest {
+	private static byte[] encode(NetPacket p) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		p.write(new DataOutputStream(b));
+		return b.toByteArray();
+	}
+
+	private static UpdatePacket roundTrip(UpdatePacket p) throws IOException, ClassNotFoundException {
+		byte[] data = encode(p);
+		PacketType type = BasicPacketConnection.basicTypes()[data[0] & 0xFF];
+		assertNotNull(type);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+		UpdatePacket q = (UpdatePacket) type.readPacket(in);
+		assertEquals(-1, in.read());
+		assertEquals(p.getClass(), q.getClass());
+		assertEquals(p.getID(), q.getID());
+		assertEquals(p.getKey(), q.getKey());
+		assertArrayEquals(data, encode(q));
+		return q;
+	}
+
+	@Test
+	void testRoundTrip() throws IOException, ClassNotFoundException {
+		roundTrip(new UpdatePacket.UDouble("1f", "x", 12.5));
+		roundTrip(new UpdatePacket.UFloat("abcdef012", "custom_key", -3f));
+		roundTrip(new UpdatePacket.UInt("0", "direction", 3));
+		roundTrip(new UpdatePacket.ULong("player-1", "score", Long.MIN_VALUE));
+		roundTrip(new UpdatePacket.UBoolean("00ff", "solid", true));
+		roundTrip(new UpdatePacket.UString("ffffffffffffffffff", "name", "\u00e9t\u00e9"));
+		roundTrip(new UpdatePacket.UBatch("2a", Arrays.<UpdatePacket>asList(new UpdatePacket.UDouble("2a", "x", 1),
+				new UpdatePacket.UDouble("2a", "y", 2), new UpdatePacket.UString("2a", "name", "a"))));
+	}
+
+	@Test
+	void testSize() throws IOException {
+		assertEquals(11, encode(new UpdatePacket.UDouble("1f", "x", 12.5)).length);
+		assertEquals(8, encode(new UpdatePacket.UInt("3e8", "direction", 2)).length);
+	}
+
+	@Test
+	void testVarLong() throws IOException {
+		long[] values = { 0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1 };
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		for (long v : values) {
+			PacketUtils.writeVarLong(out, v);
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(b.toByteArray()));
+		for (long v : values) {
+			assertEquals(v, PacketUtils.readVarLong(in));
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render;
+
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.TextureReference;
+
+/**
+ * A benchmark of the rate quads can be added to a {@code SpriteBatch} at
+ * several capacities. Flushed batches are summed instead of drawn to include
+ * the cost of reading the buffer. Runs with a sheet change after every quad
+ * and every 4 quads show the cost of small batches.
+ * 
+ * @author Tomaso2468
+ */
+public class SpriteBatchBenchmark {
+	/**
+	 * The sum of all flushed vertex data.
+	 */
+	private static double checksum;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of quads to add in each run, defaults to 10000000.
+	 */
+	public static void main(String[] args) {
+		int count = args.length == 0 ? 10000000 : Integer.parseInt(args[0]);
+
+		TextureReference[] sheets = new TextureReference[] { new NullTexture(), new NullTexture() };
+		Image img = new Image(null, sheets[0], 0, 0, 0.25f, 0.25f, 16, 16);
+
+		for (int run = 0; run < 2; run++) {
+			for (int capacity : new int[] { 64, 512, 2048, 8192 }) {
+				for (int sheetRun : new int[] { 0, 4, 1 }) {
+					SpriteBatch batch = new SpriteBatch(capacity, (texture, buffer, quads) -> {
+						double sum = 0;
+						for (int i = buffer.position(); i < buffer.limit(); i += SpriteBatch.VERTEX_SIZE) {
+							sum += buffer.get(i);
+						}
+						checksum += sum;
+					});
+					long t = System.nanoTime();
+					batch.setTexture(sheets[0]);
+					for (int i = 0; i < count; i++) {
+						if (sheetRun != 0 && i % sheetRun == 0) {
+							batch.setTexture(sheets[(i / sheetRun) & 1]);
+						}
+						batch.add(img, i & 1023, i >> 10, 16, 16);
+					}
+					batch.flush();
+					double ns = (System.nanoTime() - t) / (double) count;
+					System.out.printf("capacity %5d, sheet change %-6s %.1f ns/quad, %.1f M quads/s, %d flushes%n",
+							capacity, sheetRun == 0 ? "never," : "/" + sheetRun + ",", ns, 1000 / ns,
+							batch.getFlushCount());
+				}
+			}
+		}
+		System.out.println("checksum " + checksum);
+	}
+
+	/**
+	 * A texture that does nothing.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class NullTexture implements TextureReference {
+		@Override
+		public int getWidth() {
+			return 64;
+		}
+
+		@Override
+		public int getHeight() {
+			return 64;
+		}
+
+		@Override
+		public float getLibraryWidth() {
+			return 1;
+		}
+
+		@Override
+		public float getLibraryHeight() {
+			return 1;
+		}
+
+		@Override
+		public void bind() {
+		}
+
+		@Override
+		public void destroy() {
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.TextureReference;
+
+class SpriteBatchTest {
+	@Test
+	void testBatch() {
+		List<float[]> batches = new ArrayList<float[]>();
+		List<TextureReference> textures = new ArrayList<TextureReference>();
+		SpriteBatch batch = new SpriteBatch(2, (texture, buffer, quads) -> {
+			assertEquals(quads * SpriteBatch.QUAD_SIZE, buffer.remaining());
+			float[] data = new float[buffer.remaining()];
+			buffer.get(data);
+			batches.add(data);
+			textures.add(texture);
+		});
+		TextureReference sheet1 = texture();
+		TextureReference sheet2 = texture();
+		Image img = new Image(null, sheet1, 0.25f, 0.5f, 0.25f, 0.5f, 16, 16);
+
+		batch.setTexture(sheet1);
+		batch.add(img, 10, 20, 16, 8);
+		assertEquals(1, batch.getQuadCount());
+		assertEquals(0, batch.getFlushCount());
+
+		float[] first = { 10, 20, 0.25f, 0.5f, 1, 1, 1, 1, 10, 28, 0.25f, 1, 1, 1, 1, 1, 26, 28, 0.5f, 1, 1, 1, 1, 1,
+				26, 20, 0.5f, 0.5f, 1, 1, 1, 1 };
+
+		batch.setColor(0.5f, 0.25f, 0, 1);
+		batch.addSheared(img, 0, 0, 16, 16, 2, 0);
+		batch.add(img, 0, 0, 16, 16);
+		assertEquals(1, batches.size());
+		assertEquals(2 * SpriteBatch.QUAD_SIZE, batches.get(0).length);
+		assertArrayEquals(first, Arrays.copyOf(batches.get(0), SpriteBatch.QUAD_SIZE));
+		assertEquals(2, batches.get(0)[SpriteBatch.QUAD_SIZE + SpriteBatch.VERTEX_SIZE], 0);
+		assertEquals(0.5f, batches.get(0)[SpriteBatch.QUAD_SIZE + 4], 0);
+		assertEquals(1, batch.getQuadCount());
+
+		batch.setTexture(sheet1);
+		assertEquals(1, batches.size());
+		batch.setTexture(sheet2);
+		assertEquals(2, batches.size());
+		assertSame(sheet1, textures.get(1));
+		assertEquals(SpriteBatch.QUAD_SIZE, batches.get(1).length);
+
+		batch.flush();
+		assertEquals(2, batches.size());
+		batch.add(img, 0, 0, 16, 16);
+		batch.flush();
+		assertSame(sheet2, textures.get(2));
+		assertEquals(3, batch.getFlushCount());
+		assertEquals(4, batch.getFlushedQuadCount());
+	}
+
+	/**
+	 * Creates a texture that does nothing.
+	 * @return A texture reference.
+	 */
+	private static TextureReference texture() {
+		return new TextureReference() {
+			@Override
+			public int getWidth() {
+				return 64;
+			}
+
+			@Override
+			public int getHeight() {
+				return 64;
+			}
+
+			@Override
+			public float getLibraryWidth() {
+				return 1;
+			}
+
+			@Override
+			public float getLibraryHeight() {
+				return 1;
+			}
+
+			@Override
+			public void bind() {
+			}
+
+			@Override
+			public void destroy() {
+			}
+		};
+	}
+}
@@ -0,0 +1,140 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render.java2d;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.newdawn.slick.Color;
+
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.RenderMode;
+import io.github.tomaso2468.rpgonline.render.SpriteBatch;
+
+class RecordingRendererTest {
+	@Test
+	void testRecording() throws RenderException {
+		RecordingRenderer r = new RecordingRenderer(800, 600);
+		r.setLogging(true);
+		Image sheet = new Image(r, r.createEmptyTexture(64, 64));
+		Image other = new Image(r, r.createEmptyTexture(32, 32));
+
+		r.translate2D(100, 50);
+		r.scale2D(2, 2);
+		r.startUse(sheet);
+		r.renderEmbedded(sheet, 10, 5, 16, 16);
+		r.endUse(sheet);
+		r.startUse(sheet);
+		r.renderEmbedded(sheet, 0, 0, 16, 16);
+		r.endUse(sheet);
+		r.render(other, 0, 0, 32, 32);
+		r.drawQuad(0, 0, 1, 1, Color.white);
+		assertEquals(4, r.getDrawCalls());
+		assertEquals(4, r.getQuads());
+		assertEquals(2, r.getBinds());
+		assertEquals(2, r.getTransformChanges());
+		assertEquals("renderEmbedded empty64x64 120.0 60.0 16.0 16.0", r.getLog().get(1));
+
+		r.setMode(RenderMode.MODE_2D_COLOR_NOVBO);
+		r.setMode(RenderMode.MODE_2D_COLOR_NOVBO);
+		assertEquals(1, r.getStateChanges());
+
+		Image target = new Image(r, 128, 128);
+		r.setRenderTarget(target);
+		assertSame(target, r.getCurrentTarget());
+		assertEquals(128, r.getRenderWidth());
+		assertEquals(RenderMode.MODE_2D_SPRITE_NOVBO, r.getMode());
+		assertTrue(Arrays.equals(new float[] { 1, 0, 0, 1, 0, 0 }, r.getTransform()));
+		r.setRenderTarget(null);
+		assertNull(r.getCurrentTarget());
+		assertEquals(800, r.getRenderWidth());
+		assertEquals(2, r.getTargetSwitches());
+
+		r.pushTransform();
+		r.rotate2D(0, 0, 90);
+		float[] t = r.getTransform();
+		assertEquals(0, t[0], 1e-6);
+		assertEquals(1, t[1], 1e-6);
+		assertEquals(-1, t[2], 1e-6);
+		assertEquals(0, t[3], 1e-6);
+		assertEquals(5, r.getTransformChanges());
+		r.popTransform();
+		assertTrue(Arrays.equals(new float[] { 1, 0, 0, 1, 0, 0 }, r.getTransform()));
+		assertEquals(6, r.getTransformChanges());
+
+		r.doUpdate();
+		assertEquals(1, r.getFrames());
+		r.resetCounters();
+		assertEquals(0, r.getDrawCalls());
+		assertEquals(0, r.getQuads());
+		assertEquals(0, r.getLog().size());
+	}
+
+	@Test
+	void testBatching() throws RenderException {
+		RecordingRenderer r = new RecordingRenderer(800, 600);
+		Image sheet = new Image(r, r.createEmptyTexture(64, 64));
+		Image other = new Image(r, r.createEmptyTexture(32, 32));
+
+		r.startUse(sheet);
+		for (int i = 0; i < 3; i++) {
+			r.renderEmbedded(sheet, i * 16, 0, 16, 16);
+		}
+		r.renderShearedEmbedded(sheet, 0, 16, 16, 16, 2, 0);
+		r.endUse(sheet);
+		assertEquals(1, r.getDrawCalls());
+		assertEquals(4, r.getQuads());
+
+		r.setMode(RenderMode.MODE_2D_SPRITE_BATCH_VBO);
+		r.startUse(sheet);
+		r.renderEmbedded(sheet, 0, 0, 16, 16);
+		r.startUse(other);
+		r.renderEmbedded(other, 0, 0, 16, 16);
+		r.renderEmbedded(other, 16, 0, 16, 16);
+		r.startUse(other);
+		r.renderEmbedded(other, 32, 0, 16, 16);
+		r.endUse(other);
+		assertEquals(3, r.getDrawCalls());
+		assertEquals(8, r.getQuads());
+
+		r.startUse(sheet);
+		for (int i = 0; i <= SpriteBatch.DEFAULT_CAPACITY; i++) {
+			r.renderEmbedded(sheet, 0, 0, 16, 16);
+		}
+		r.endUse(sheet);
+		assertEquals(5, r.getDrawCalls());
+		assertEquals(9 + SpriteBatch.DEFAULT_CAPACITY, r.getQuads());
+	}
+}
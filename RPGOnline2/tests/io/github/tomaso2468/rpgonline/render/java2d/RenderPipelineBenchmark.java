@@ -0,0 +1,186 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.render.java2d;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.GameState;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.RPGConfig;
+import io.github.tomaso2468.rpgonline.TextureMapImpl;
+import io.github.tomaso2468.rpgonline.Version;
+import io.github.tomaso2468.rpgonline.bullet.BasicBullet;
+import io.github.tomaso2468.rpgonline.bullet.BulletState;
+import io.github.tomaso2468.rpgonline.net.ServerManager;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.Renderer;
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.WorldState;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.net.Client2D;
+import io.github.tomaso2468.rpgonline.world2d.texture.AnimatedTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.BasicTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.NullTileTexture;
+
+/**
+ * A headless benchmark of the full render methods of {@code WorldState} and
+ * {@code BulletState} using a {@code RecordingRenderer}. The CPU time, draw
+ * calls, quads, texture binds and state changes of each frame are reported.
+ * 
+ * @author Tomaso2468
+ */
+public class RenderPipelineBenchmark {
+	/**
+	 * The width and height of the world in tiles.
+	 */
+	private static final int SIZE = 512;
+	/**
+	 * The number of bullets.
+	 */
+	private static final int BULLETS = 5000;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of frames to render for each state, defaults to 50.
+	 * @throws RenderException If an error occurs rendering.
+	 */
+	public static void main(String[] args) throws RenderException {
+		int frames = args.length == 0 ? 50 : Integer.parseInt(args[0]);
+
+		RecordingRenderer renderer = new RecordingRenderer(1920, 1080);
+		Game game = new Game("benchmark", new Version("1.0.0"));
+		game.setRenderer(renderer);
+		game.setTextures(new TextureMapImpl());
+		for (String s : new String[] { "grass", "dirt", "bush", "water.0", "water.1", "bullet" }) {
+			game.getTextures().addTexture(s, new Image(renderer, renderer.createEmptyTexture(16, 16)));
+		}
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile grass = new Tile("grass", null, new BasicTileTexture(game, "grass"), registry);
+		Tile dirt = new Tile("dirt", null, new BasicTileTexture(game, "dirt"), registry);
+		Tile bush = new Tile("bush", null, new BasicTileTexture(game, "bush", 0, -4), registry);
+		Tile water = new Tile("water", null, new AnimatedTileTexture(game, "water", 2, 1000000), registry);
+		ChunkWorld world = new ChunkWorld(registry);
+		Random r = new Random(0);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				int n = r.nextInt(100);
+				world.setTile(x, y, 0, n < 3 ? water : n < 30 ? dirt : grass, "");
+				if (r.nextInt(10) == 0) {
+					world.setTile(x, y, -1, bush, "");
+				}
+			}
+		}
+
+		ServerManager.setClient((Client2D) Proxy.newProxyInstance(Client2D.class.getClassLoader(),
+				new Class<?>[] { Client2D.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "getWorld":
+						return world;
+					case "getWind":
+						return 0f;
+					default:
+						return null;
+					}
+				}));
+
+		WorldState state = new WorldState(0) {
+			{
+				x = SIZE / 2;
+				y = SIZE / 2;
+			}
+		};
+
+		BulletState bullets = new BulletState(1) {
+			@Override
+			public void renderPlayer(Game game, Renderer renderer, float sx, float sy) {
+			}
+		};
+		for (int i = 0; i < BULLETS; i++) {
+			bullets.addBullet(new BasicBullet(game, r.nextFloat() * 1920 - 960, r.nextFloat() * 1080 - 540, 0, 0,
+					"bullet"));
+		}
+
+		for (int run = 0; run < 2; run++) {
+			for (String mode : new String[] { "direct", "cached", "baked" }) {
+				state.setTileCacheEnabled(!mode.equals("direct"));
+				state.setTileBakingEnabled(mode.equals("baked"));
+				measure("WorldState " + mode, game, renderer, state, mode.equals("baked") ? 100 : 1, frames);
+			}
+			measure("BulletState", game, renderer, bullets, 1, frames);
+		}
+	}
+
+	/**
+	 * Renders a state and prints the cost of each frame.
+	 * @param name The name of the measurement.
+	 * @param game The current game.
+	 * @param renderer The recording renderer.
+	 * @param state The state to render.
+	 * @param warmup The number of frames to render before measuring.
+	 * @param frames The number of frames to measure.
+	 * @throws RenderException If an error occurs rendering.
+	 */
+	private static void measure(String name, Game game, RecordingRenderer renderer, GameState state, int warmup,
+			int frames) throws RenderException {
+		for (int f = 0; f < warmup; f++) {
+			frame(game, renderer, state);
+		}
+		renderer.resetCounters();
+		long t = System.nanoTime();
+		for (int f = 0; f < frames; f++) {
+			frame(game, renderer, state);
+		}
+		double ns = (System.nanoTime() - t) / (double) renderer.getFrames();
+		System.out.printf("%-20s %.0f ns/frame, %d draws/frame, %d quads/frame, %d binds/frame, %d state changes/frame%n",
+				name, ns, renderer.getDrawCalls() / renderer.getFrames(), renderer.getQuads() / renderer.getFrames(),
+				renderer.getBinds() / renderer.getFrames(), renderer.getStateChanges() / renderer.getFrames());
+	}
+
+	/**
+	 * Renders one frame in the same way as {@code Game}.
+	 * @param game The current game.
+	 * @param renderer The recording renderer.
+	 * @param state The state to render.
+	 * @throws RenderException If an error occurs rendering.
+	 */
+	private static void frame(Game game, RecordingRenderer renderer, GameState state) throws RenderException {
+		renderer.clear();
+		renderer.resetTransform();
+		state.render(game, renderer);
+		renderer.doUpdate();
+	}
+}
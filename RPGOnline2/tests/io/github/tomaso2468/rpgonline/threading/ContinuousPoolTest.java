@@ -0,0 +1,148 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.threading;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+class ContinuousPoolTest {
+	@Test
+	void testFutures() throws Exception {
+		ContinuousPool pool = new ContinuousPool(2);
+		Future<Integer> f = pool.submit(() -> {
+			Thread.sleep(50);
+			return 42;
+		});
+		assertEquals(42, (int) f.get());
+		assertTrue(f.isDone());
+
+		Future<Object> error = pool.submit(() -> {
+			throw new IllegalStateException("fail");
+		});
+		ExecutionException e = assertThrows(ExecutionException.class, error::get);
+		assertTrue(e.getCause() instanceof IllegalStateException);
+
+		List<Future<Integer>> all = pool.invokeAll(Arrays.asList(() -> 1, () -> 2, () -> 3));
+		int sum = 0;
+		for (Future<Integer> r : all) {
+			assertTrue(r.isDone());
+			sum += r.get();
+		}
+		assertEquals(6, sum);
+
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+		assertTrue(pool.isTerminated());
+	}
+
+	@Test
+	void testPriorityDeadlineAndCancel() throws Exception {
+		ContinuousPool pool = new ContinuousPool(1, 16);
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		pool.submit(() -> {
+			started.countDown();
+			block.await();
+			return null;
+		});
+		started.await();
+
+		List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		pool.submit(() -> order.add(1), 1);
+		pool.submit(() -> order.add(5), 5);
+		pool.submit(() -> order.add(2), 1);
+		Future<Boolean> cancelled = pool.submit(() -> order.add(9), 9);
+		Future<Boolean> expired = pool.submit(() -> order.add(7), 7, 1, TimeUnit.MILLISECONDS);
+		assertEquals(5, pool.getQueueDepth());
+		assertTrue(cancelled.cancel(false));
+		assertEquals(4, pool.getQueueDepth());
+
+		Thread.sleep(20);
+		block.countDown();
+		Future<Boolean> last = pool.submit(() -> order.add(0), -1);
+		last.get();
+
+		assertEquals(Arrays.asList(5, 1, 2, 0), order);
+		assertThrows(CancellationException.class, cancelled::get);
+		ExecutionException e = assertThrows(ExecutionException.class, expired::get);
+		assertTrue(e.getCause() instanceof TimeoutException);
+		assertEquals(1, pool.getExpiredCount());
+		assertEquals(1, pool.getCancelledCount());
+		assertEquals(5, pool.getMaxQueueDepth());
+		pool.shutdownNow();
+	}
+
+	@Test
+	void testBoundedQueue() throws Exception {
+		ContinuousPool pool = new ContinuousPool(1, 1);
+		CountDownLatch block = new CountDownLatch(1);
+		CountDownLatch started = new CountDownLatch(1);
+		pool.submit(() -> {
+			started.countDown();
+			block.await();
+			return null;
+		});
+		started.await();
+		Future<Integer> low = pool.submit(() -> 1, 0);
+
+		Future<Integer> same = pool.submit(() -> 2, 0);
+		assertTrue(same.isDone());
+		ExecutionException e = assertThrows(ExecutionException.class, same::get);
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+
+		Future<Integer> high = pool.submit(() -> 3, 1);
+		assertTrue(low.isDone());
+		e = assertThrows(ExecutionException.class, low::get);
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+		assertEquals(2, pool.getRejectedCount());
+		assertEquals(1, pool.getQueueDepth());
+
+		block.countDown();
+		assertEquals(3, (int) high.get());
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+		assertEquals(2, pool.getCompletedCount());
+	}
+}
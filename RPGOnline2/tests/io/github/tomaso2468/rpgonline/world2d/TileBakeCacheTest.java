@@ -0,0 +1,219 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.TextureMapImpl;
+import io.github.tomaso2468.rpgonline.TextureReference;
+import io.github.tomaso2468.rpgonline.Version;
+import io.github.tomaso2468.rpgonline.net.Client;
+import io.github.tomaso2468.rpgonline.net.ServerManager;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.Renderer;
+import io.github.tomaso2468.rpgonline.render.java2d.RecordingRenderer;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.net.Client2D;
+import io.github.tomaso2468.rpgonline.world2d.texture.AnimatedTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.BasicTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.NullTileTexture;
+
+class TileBakeCacheTest {
+	int draws;
+	int targets;
+
+	@Test
+	void testBake() throws RenderException {
+		Renderer renderer = (Renderer) Proxy.newProxyInstance(Renderer.class.getClassLoader(),
+				new Class<?>[] { Renderer.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "renderEmbedded":
+						draws += 1;
+						break;
+					case "setRenderTarget":
+						targets += 1;
+						break;
+					case "createEmptyTexture":
+						int w = (Integer) a[0];
+						int h = (Integer) a[1];
+						return Proxy.newProxyInstance(TextureReference.class.getClassLoader(),
+								new Class<?>[] { TextureReference.class }, (p, m, b) -> {
+									switch (m.getName()) {
+									case "getWidth":
+									case "getLibraryWidth":
+										return m.getReturnType() == int.class ? (Object) w : (Object) (float) w;
+									case "getHeight":
+									case "getLibraryHeight":
+										return m.getReturnType() == int.class ? (Object) h : (Object) (float) h;
+									default:
+										return null;
+									}
+								});
+					}
+					return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+				});
+
+		Game game = new Game("test", new Version("1.0.0"));
+		game.setTextures(new TextureMapImpl());
+		game.getTextures().addTexture("grass", new Image(null, null, 0, 0, 1, 1, 16, 16));
+		game.getTextures().addTexture("water.0", new Image(null, null, 0, 0, 1, 1, 16, 16));
+		game.getTextures().addTexture("water.1", new Image(null, null, 0, 0, 1, 1, 16, 16));
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile floor = new Tile("grass", null, new BasicTileTexture(game, "grass"), registry);
+		Tile water = new Tile("water", null, new AnimatedTileTexture(game, "water", 2, 100), registry);
+		ChunkWorld w = new ChunkWorld(registry);
+		w.setTile(1, 1, 0, floor, "");
+		w.setTile(2, 1, 0, floor, "");
+		w.setTile(9, 1, 0, water, "");
+
+		TileRenderCache tiles = new TileRenderCache(w, (t, l, x, y, z, world, tile, state) -> l.add(t));
+		TileBakeCache bakes = new TileBakeCache(w, 4);
+		assertTrue(bakes.isEnabled());
+		bakes.setBudget(128 * 128 * 4);
+
+		tiles.beginFrame(game);
+		bakes.beginFrame(game);
+		assertTrue(bakes.needsBake(0, 0, 0));
+		assertNull(bakes.getBake(0, 0, 0));
+		assertTrue(bakes.bake(game, renderer, tiles, 0, 0, 0));
+		assertEquals(1, targets);
+		assertEquals(2, draws);
+		TileBakeCache.Bake b = bakes.getBake(0, 0, 0);
+		assertEquals(96, b.getImage().getWidth(), 0);
+		assertFalse(bakes.needsBake(0, 0, 0));
+
+		assertTrue(bakes.needsBake(2, 0, 0));
+		assertFalse(bakes.bake(game, renderer, tiles, 2, 0, 0));
+		assertFalse(bakes.needsBake(2, 0, 0));
+		assertNull(bakes.getBake(2, 0, 0));
+		assertEquals(1, targets);
+		assertEquals(1, bakes.getBakedCount());
+
+		w.setTile(2, 2, 0, floor, "");
+		tiles.beginFrame(game);
+		bakes.beginFrame(game);
+		assertTrue(bakes.needsBake(0, 0, 0));
+		assertNull(bakes.getBake(0, 0, 0));
+		assertTrue(bakes.bake(game, renderer, tiles, 0, 0, 0));
+		assertSame(b, bakes.getBake(0, 0, 0));
+		assertEquals(5, draws);
+
+		assertFalse(bakes.bake(game, renderer, tiles, 5, 5, 0));
+		assertEquals(0, bakes.getEvictionCount());
+
+		tiles.beginFrame(game);
+		bakes.beginFrame(game);
+		assertFalse(bakes.bake(game, renderer, tiles, 5, 5, 0));
+		tiles.beginFrame(game);
+		bakes.beginFrame(game);
+		assertTrue(bakes.bake(game, renderer, tiles, 5, 5, 0));
+		assertEquals(1, bakes.getEvictionCount());
+		assertTrue(bakes.needsBake(0, 0, 0));
+		assertSame(b.getImage(), bakes.getBake(5, 5, 0).getImage());
+		assertEquals(1, bakes.getBakedCount());
+		assertEquals(128 * 128 * 4, bakes.getMemoryUsed());
+
+		bakes.dispose();
+		assertEquals(0, bakes.getBakedCount());
+	}
+
+	@Test
+	void testDrawOrder() throws RenderException {
+		RecordingRenderer renderer = new RecordingRenderer(320, 240);
+		Game game = new Game("test", new Version("1.0.0"));
+		game.setRenderer(renderer);
+		game.setTextures(new TextureMapImpl());
+		for (String s : new String[] { "grass", "bush", "water.0", "water.1" }) {
+			game.getTextures().addTexture(s, new Image(renderer, renderer.createEmptyTexture(16, 16)));
+		}
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile grass = new Tile("grass", null, new BasicTileTexture(game, "grass"), registry);
+		Tile bush = new Tile("bush", null, new BasicTileTexture(game, "bush", 0, -4), registry);
+		Tile water = new Tile("water", null, new AnimatedTileTexture(game, "water", 2, 1000000), registry);
+		ChunkWorld world = new ChunkWorld(registry);
+		for (int y = -40; y < 40; y++) {
+			for (int x = -40; x < 40; x++) {
+				world.setTile(x, y, 0, (x + y) % 7 == 0 ? water : (x * y) % 5 == 0 ? bush : grass, "");
+			}
+		}
+
+		Client client = ServerManager.getClient();
+		ServerManager.setClient((Client2D) Proxy.newProxyInstance(Client2D.class.getClassLoader(),
+				new Class<?>[] { Client2D.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "getWorld":
+						return world;
+					case "getWind":
+						return 0f;
+					default:
+						return null;
+					}
+				}));
+		try {
+			// The view stays inside one unit.
+			WorldState state = new WorldState(0) {
+				{
+					x = TileBakeCache.DEFAULT_SIZE / 2;
+					y = TileBakeCache.DEFAULT_SIZE / 2;
+				}
+			};
+			renderer.setLogging(true);
+			state.setTileCacheEnabled(true);
+			state.setTileBakingEnabled(false);
+			state.render(game, renderer);
+			renderer.resetCounters();
+			state.render(game, renderer);
+			List<String> cached = new ArrayList<String>(renderer.getLog());
+
+			state.setTileBakingEnabled(true);
+			state.render(game, renderer);
+			renderer.resetCounters();
+			state.render(game, renderer);
+			assertEquals(cached, renderer.getLog());
+		} finally {
+			ServerManager.setClient(client);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.RPGConfig;
+import io.github.tomaso2468.rpgonline.TextureMapImpl;
+import io.github.tomaso2468.rpgonline.Version;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.texture.AnimatedTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.BasicTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.NullTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.WindTexture;
+
+class TileRenderCacheTest {
+	@Test
+	void testSections() throws RenderException {
+		Game game = new Game("test", new Version("1.0.0"));
+		game.setTextures(new TextureMapImpl());
+		Image grass = new Image(null, null, 0, 0, 1, 1, 16, 16);
+		game.getTextures().addTexture("grass", grass);
+		game.getTextures().addTexture("water.0", new Image(null, null, 0, 0, 1, 1, 16, 16));
+		game.getTextures().addTexture("water.1", new Image(null, null, 0, 0, 1, 1, 16, 16));
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile floor = new Tile("grass", null, new BasicTileTexture(game, "grass", 2, 3), registry);
+		Tile water = new Tile("water", null, new AnimatedTileTexture(game, "water", 2, 100), registry);
+		ChunkWorld w = new ChunkWorld(registry);
+		w.setTile(1, 1, 0, floor, "");
+		w.setTile(2, 1, 0, water, "");
+
+		TileRenderCache cache = new TileRenderCache(w, (t, l, x, y, z, world, tile, state) -> l.add(t));
+		assertTrue(cache.isEnabled());
+		cache.beginFrame(game);
+		TileRenderCache.Section s = cache.getSection(1, 1, 0);
+		assertEquals(TileRenderCache.SIZE - 1, s.getMaxX());
+		assertEquals(0, s.getEnd(0, 0) - s.getStart(0, 0));
+
+		int i = s.getStart(1, 1);
+		assertEquals(i + 1, s.getEnd(1, 1));
+		assertSame(grass, s.getImage(i));
+		assertSame(grass, s.getSheet(i));
+		assertEquals(RPGConfig.getTileSize() + 2, s.getX(i), 0);
+		assertEquals(RPGConfig.getTileSize() + 3, s.getY(i), 0);
+
+		i = s.getStart(2, 1);
+		assertNull(s.getImage(i));
+		assertTrue(s.getTexture(i) instanceof AnimatedTileTexture);
+		assertSame(water, s.getTile(2, 1));
+
+		assertSame(s, cache.getSection(15, 15, 0));
+		assertEquals(1, cache.getBuildCount());
+
+		w.setTile(100, 100, 0, floor, "");
+		assertSame(s, cache.getSection(1, 1, 0));
+
+		w.setTile(16, 5, 0, floor, "");
+		TileRenderCache.Section s2 = cache.getSection(1, 1, 0);
+		assertNotSame(s, s2);
+
+		w.setTile(3, 1, 0, floor, "");
+		s = cache.getSection(1, 1, 0);
+		assertNotSame(s2, s);
+		assertSame(grass, s.getImage(s.getStart(3, 1)));
+
+		cache.dispose();
+		assertEquals(0, cache.getSectionCount());
+	}
+
+	@Test
+	void testWindSetting() throws RenderException {
+		Game game = new Game("test", new Version("1.0.0"));
+		game.setTextures(new TextureMapImpl());
+		Image grass = new Image(null, null, 0, 0, 1, 1, 16, 16);
+		game.getTextures().addTexture("grass", grass);
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile bush = new Tile("bush", null, new WindTexture(game, "grass", 1), registry);
+		ChunkWorld w = new ChunkWorld(registry);
+		w.setTile(1, 1, 0, bush, "");
+
+		boolean wind = RPGConfig.isWind();
+		try {
+			RPGConfig.setWind(false);
+			TileRenderCache cache = new TileRenderCache(w, (t, l, x, y, z, world, tile, state) -> l.add(t));
+			cache.beginFrame(game);
+			TileRenderCache.Section s = cache.getSection(1, 1, 0);
+			assertSame(grass, s.getImage(s.getStart(1, 1)));
+
+			RPGConfig.setWind(true);
+			cache.beginFrame(game);
+			s = cache.getSection(1, 1, 0);
+			assertNull(s.getImage(s.getStart(1, 1)));
+			assertTrue(s.getTexture(s.getStart(1, 1)) instanceof WindTexture);
+		} finally {
+			RPGConfig.setWind(wind);
+		}
+	}
+}
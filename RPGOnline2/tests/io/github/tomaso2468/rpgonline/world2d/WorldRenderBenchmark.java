@@ -0,0 +1,201 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.Game;
+import io.github.tomaso2468.rpgonline.Image;
+import io.github.tomaso2468.rpgonline.RPGConfig;
+import io.github.tomaso2468.rpgonline.TextureMapImpl;
+import io.github.tomaso2468.rpgonline.TextureReference;
+import io.github.tomaso2468.rpgonline.Version;
+import io.github.tomaso2468.rpgonline.net.ServerManager;
+import io.github.tomaso2468.rpgonline.render.RenderException;
+import io.github.tomaso2468.rpgonline.render.Renderer;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.net.Client2D;
+import io.github.tomaso2468.rpgonline.world2d.texture.AnimatedTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.BasicTileTexture;
+import io.github.tomaso2468.rpgonline.world2d.texture.NullTileTexture;
+
+/**
+ * A headless benchmark of the CPU time per frame of
+ * {@code WorldState.renderWorld()} at several zoom levels with and without the
+ * tile texture cache and tile baking. Draw calls go to a renderer that only
+ * counts them and sums their positions so that the direct and cached versions
+ * can be checked to draw the same images. Frames are drawn before timing so
+ * cached times do not include building the caches.
+ * 
+ * @author Tomaso2468
+ */
+public class WorldRenderBenchmark {
+	/**
+	 * The width and height of the world in tiles.
+	 */
+	private static final int SIZE = 1024;
+	/**
+	 * The number of draw calls made.
+	 */
+	private static long draws;
+	/**
+	 * The number of sheet changes made.
+	 */
+	private static long binds;
+	/**
+	 * The sum of the positions of all draw calls.
+	 */
+	private static double checksum;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of frames to render at each zoom level, defaults to
+	 *            50.
+	 * @throws RenderException If an error occurs rendering.
+	 */
+	public static void main(String[] args) throws RenderException {
+		int frames = args.length == 0 ? 50 : Integer.parseInt(args[0]);
+
+		Renderer renderer = (Renderer) Proxy.newProxyInstance(Renderer.class.getClassLoader(),
+				new Class<?>[] { Renderer.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "renderEmbedded":
+					case "renderShearedEmbedded":
+						draws += 1;
+						checksum += (Float) a[1] + (Float) a[2];
+						break;
+					case "startUse":
+						binds += 1;
+						break;
+					case "createEmptyTexture":
+						return emptyTexture((Integer) a[0], (Integer) a[1]);
+					}
+					return method.getReturnType() == boolean.class ? Boolean.FALSE : null;
+				});
+
+		Game game = new Game("benchmark", new Version("1.0.0"));
+		game.setTextures(new TextureMapImpl());
+		for (String s : new String[] { "grass", "dirt", "bush", "water.0", "water.1" }) {
+			game.getTextures().addTexture(s, new Image(renderer, null, 0, 0, 1, 1, 16, 16));
+		}
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, new NullTileTexture(), registry);
+		Tile grass = new Tile("grass", null, new BasicTileTexture(game, "grass"), registry);
+		Tile dirt = new Tile("dirt", null, new BasicTileTexture(game, "dirt"), registry);
+		Tile bush = new Tile("bush", null, new BasicTileTexture(game, "bush", 0, -4), registry);
+		Tile water = new Tile("water", null, new AnimatedTileTexture(game, "water", 2, 1000000), registry);
+		ChunkWorld world = new ChunkWorld(registry);
+		Random r = new Random(0);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				int n = r.nextInt(100);
+				world.setTile(x, y, 0, n < 3 ? water : n < 30 ? dirt : grass, "");
+				if (r.nextInt(10) == 0) {
+					world.setTile(x, y, -1, bush, "");
+				}
+			}
+		}
+
+		ServerManager.setClient((Client2D) Proxy.newProxyInstance(Client2D.class.getClassLoader(),
+				new Class<?>[] { Client2D.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "getWorld":
+						return world;
+					case "getWind":
+						return 0f;
+					default:
+						return null;
+					}
+				}));
+
+		WorldState state = new WorldState(0);
+		state.x = SIZE / 2;
+		state.y = SIZE / 2;
+		float sx = (float) (state.x * RPGConfig.getTileSize());
+		float sy = (float) (state.y * RPGConfig.getTileSize());
+
+		for (int run = 0; run < 2; run++) {
+			for (float zoom : new float[] { 2, 1, 0.5f, 0.25f }) {
+				long dist_x = (long) (1920 / zoom / RPGConfig.getTileSize() / 2) + 3;
+				long dist_y = (long) (1080 / zoom / RPGConfig.getTileSize() / 2) + 7;
+				for (String mode : new String[] { "direct", "cached", "baked" }) {
+					state.setTileCacheEnabled(!mode.equals("direct"));
+					state.setTileBakingEnabled(mode.equals("baked"));
+					for (int f = 0; f < (mode.equals("baked") ? 100 : 1); f++) {
+						state.renderWorld(game, renderer, dist_x, dist_y, world, sx, sy,
+								Collections.<Entity>emptyList());
+					}
+					draws = 0;
+					binds = 0;
+					checksum = 0;
+					long t = System.nanoTime();
+					for (int f = 0; f < frames; f++) {
+						state.renderWorld(game, renderer, dist_x, dist_y, world, sx, sy,
+								Collections.<Entity>emptyList());
+					}
+					double ms = (System.nanoTime() - t) / 1e6 / frames;
+					System.out.printf("zoom %.2f %-8s %.3f ms/frame, %d draws/frame, %d binds/frame, checksum %.0f%n",
+							zoom, mode, ms, draws / frames, binds / frames, checksum / frames);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a texture that has a size but no contents.
+	 * @param w The width of the texture.
+	 * @param h The height of the texture.
+	 * @return A texture reference.
+	 */
+	private static TextureReference emptyTexture(int w, int h) {
+		return (TextureReference) Proxy.newProxyInstance(TextureReference.class.getClassLoader(),
+				new Class<?>[] { TextureReference.class }, (proxy, method, a) -> {
+					switch (method.getName()) {
+					case "getWidth":
+						return w;
+					case "getHeight":
+						return h;
+					case "getLibraryWidth":
+						return (float) w;
+					case "getLibraryHeight":
+						return (float) h;
+					default:
+						return null;
+					}
+				});
+	}
+}
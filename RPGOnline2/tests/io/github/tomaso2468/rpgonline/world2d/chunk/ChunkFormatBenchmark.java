@@ -0,0 +1,122 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+
+import io.github.tomaso2468.abt.TagGroup;
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * A benchmark comparing the binary chunk format with ABT tag trees for
+ * encoding and decoding a chunk.
+ * 
+ * @author Tomaso2468
+ */
+public class ChunkFormatBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of chunks to encode and decode, defaults to 200.
+	 * @throws IOException If an error occurs decoding chunks.
+	 */
+	public static void main(String[] args) throws IOException {
+		int count = args.length == 0 ? 200 : Integer.parseInt(args[0]);
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, null, registry);
+		Tile[] tiles = new Tile[8];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = new Tile("tile" + i, null, null, registry);
+		}
+
+		Random r = new Random(0);
+		Chunk c = new Chunk(registry, 0, 0, 0);
+		for (int x = 0; x < Chunk.SIZE; x++) {
+			for (int y = 0; y < Chunk.SIZE; y++) {
+				c.setTile(x, y, 0, tiles[0]);
+			}
+		}
+		for (int n = 0; n < 256; n++) {
+			c.setTile(r.nextInt(Chunk.SIZE), r.nextInt(Chunk.SIZE), 0, tiles[r.nextInt(tiles.length)]);
+		}
+
+		for (int w = 0; w < 3; w++) {
+			tags(registry, c, count / 4);
+			binary(registry, c, count);
+		}
+
+		long t = System.nanoTime();
+		tags(registry, c, count);
+		double tags = (System.nanoTime() - t) / 1000.0 / count;
+
+		t = System.nanoTime();
+		int size = binary(registry, c, count);
+		double binary = (System.nanoTime() - t) / 1000.0 / count;
+
+		System.out.printf("ABT tags: %.1f us/chunk, binary: %.1f us/chunk (%d bytes)%n", tags, binary, size);
+	}
+
+	/**
+	 * Encodes and decodes a chunk as an ABT tag tree.
+	 * @param registry The tile registry.
+	 * @param c The chunk to encode.
+	 * @param n The number of times to encode the chunk.
+	 * @throws IOException If an error occurs decoding a chunk.
+	 */
+	private static void tags(HashMap<String, Tile> registry, Chunk c, int n) throws IOException {
+		for (int i = 0; i < n; i++) {
+			TagGroup tg = c.save();
+			ChunkFormat.readTags(registry, 0, 0, 0, tg, new Chunk(registry, 0, 0, 0));
+		}
+	}
+
+	/**
+	 * Encodes and decodes a chunk in the binary chunk format.
+	 * @param registry The tile registry.
+	 * @param c The chunk to encode.
+	 * @param n The number of times to encode the chunk.
+	 * @return The size of the encoded chunk in bytes.
+	 * @throws IOException If an error occurs decoding a chunk.
+	 */
+	private static int binary(HashMap<String, Tile> registry, Chunk c, int n) throws IOException {
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			byte[] data = ChunkFormat.write(c);
+			ChunkFormat.read(registry, ByteBuffer.wrap(data));
+			size = data.length;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+class ChunkFormatTest {
+	@Test
+	void testRoundTrip() throws IOException {
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, null, registry);
+		Tile[] tiles = { new Tile("grass", null, null, registry), new Tile("stone", null, null, registry),
+				new Tile("water", null, null, registry) };
+
+		Random r = new Random(0);
+		Chunk c = new Chunk(registry, 5, -7, 1);
+		for (int x = 0; x < Chunk.SIZE; x++) {
+			for (int y = 0; y < Chunk.SIZE; y++) {
+				c.setTile(x, y, 0, tiles[r.nextInt(tiles.length)]);
+				if (r.nextInt(4) == 0) {
+					c.setState(x, y, 0, "s" + r.nextInt(300));
+				}
+				c.setFlag(x, y, 0, r.nextBoolean());
+				c.setArea(x, y, 0, r.nextInt(10) == 0 ? "area" : null);
+				c.setBiome(x, y, 0, r.nextInt(3) - 1);
+			}
+		}
+
+		ByteBuffer buf = ByteBuffer.wrap(ChunkFormat.write(c));
+		assertTrue(ChunkFormat.isBinary(buf));
+		Chunk d = ChunkFormat.read(registry, buf);
+
+		assertTrue(d.isAt(5, -7, 1));
+		assertFalse(d.isDirty());
+		for (int x = 0; x < Chunk.SIZE; x++) {
+			for (int y = 0; y < Chunk.SIZE; y++) {
+				assertSame(c.getTile(x, y, 0), d.getTile(x, y, 0));
+				assertEquals(c.getState(x, y, 0), d.getState(x, y, 0));
+				assertEquals(c.getFlag(x, y, 0), d.getFlag(x, y, 0));
+				assertEquals(c.getArea(x, y, 0), d.getArea(x, y, 0));
+				assertEquals(c.getBiome(x, y, 0), d.getBiome(x, y, 0));
+			}
+		}
+	}
+
+	@Test
+	void testTruncated() {
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, null, registry);
+		byte[] data = ChunkFormat.write(new Chunk(registry, 0, 0, 0));
+		ByteBuffer buf = ByteBuffer.wrap(data, 0, data.length - 8);
+		assertThrows(IOException.class, () -> ChunkFormat.read(registry, buf));
+	}
+}
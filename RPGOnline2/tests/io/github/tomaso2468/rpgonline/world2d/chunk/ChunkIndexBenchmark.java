@@ -0,0 +1,152 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * A benchmark comparing {@link ChunkIndex} lookups with the linear chunk list
+ * scan previously used by {@link ChunkWorld}. Each size can be passed as an
+ * argument.
+ * 
+ * @author Tomaso2468
+ */
+public class ChunkIndexBenchmark {
+	/**
+	 * The number of lookups timed for each size.
+	 */
+	private static final int LOOKUPS = 1000000;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The chunk counts to test.
+	 */
+	public static void main(String[] args) {
+		int[] sizes = args.length == 0 ? new int[] { 1000, 10000, 100000 } : new int[args.length];
+		for (int i = 0; i < args.length; i++) {
+			sizes[i] = Integer.parseInt(args[i]);
+		}
+
+		for (int size : sizes) {
+			run(size);
+		}
+	}
+
+	/**
+	 * Runs the benchmark for a single world size.
+	 * @param size The number of loaded chunks.
+	 */
+	private static void run(int size) {
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		List<Chunk> list = new ArrayList<Chunk>(size);
+		ChunkIndex index = new ChunkIndex();
+
+		int side = (int) Math.ceil(Math.sqrt(size));
+		for (int i = 0; i < size; i++) {
+			Chunk c = new Chunk(registry, i % side - side / 2, i / side - side / 2, 0);
+			list.add(c);
+			index.put(c);
+		}
+
+		Random r = new Random(0);
+		long[] xs = new long[4096];
+		long[] ys = new long[4096];
+		for (int i = 0; i < xs.length; i++) {
+			Chunk c = list.get(r.nextInt(size));
+			xs[i] = c.getX();
+			ys[i] = c.getY();
+		}
+
+		int scanLookups = Math.max(1000, LOOKUPS / size * 10);
+
+		for (int w = 0; w < 3; w++) {
+			scan(list, xs, ys, scanLookups);
+			index(index, xs, ys, LOOKUPS);
+		}
+
+		long t = System.nanoTime();
+		scan(list, xs, ys, scanLookups);
+		double scan = (System.nanoTime() - t) / (double) scanLookups;
+
+		t = System.nanoTime();
+		index(index, xs, ys, LOOKUPS);
+		double hash = (System.nanoTime() - t) / (double) LOOKUPS;
+
+		System.out.printf("%d chunks: list scan %.1f ns/op, index %.1f ns/op%n", size, scan, hash);
+	}
+
+	/**
+	 * Performs lookups by scanning a list.
+	 * @param list The list of chunks.
+	 * @param xs The X positions to look up.
+	 * @param ys The Y positions to look up.
+	 * @param n The number of lookups.
+	 * @return The number of chunks found.
+	 */
+	private static int scan(List<Chunk> list, long[] xs, long[] ys, int n) {
+		int found = 0;
+		for (int i = 0; i < n; i++) {
+			long x = xs[i & 4095];
+			long y = ys[i & 4095];
+			for (Chunk c : list) {
+				if (c.isAt(x, y, 0)) {
+					found++;
+					break;
+				}
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Performs lookups using an index.
+	 * @param index The index of chunks.
+	 * @param xs The X positions to look up.
+	 * @param ys The Y positions to look up.
+	 * @param n The number of lookups.
+	 * @return The number of chunks found.
+	 */
+	private static int index(ChunkIndex index, long[] xs, long[] ys, int n) {
+		int found = 0;
+		for (int i = 0; i < n; i++) {
+			if (index.get(xs[i & 4095], ys[i & 4095], 0) != null) {
+				found++;
+			}
+		}
+		return found;
+	}
+}
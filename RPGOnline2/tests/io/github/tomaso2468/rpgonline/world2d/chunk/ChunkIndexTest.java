@@ -0,0 +1,79 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+class ChunkIndexTest {
+	@Test
+	void testPutGet() {
+		ChunkIndex index = new ChunkIndex();
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		for (int x = -20; x < 20; x++) {
+			for (int y = -20; y < 20; y++) {
+				index.put(new Chunk(registry, x, y, x & 1));
+			}
+		}
+		assertEquals(1600, index.size());
+		for (int x = -20; x < 20; x++) {
+			for (int y = -20; y < 20; y++) {
+				Chunk c = index.get(x, y, x & 1);
+				assertNotNull(c);
+				assertTrue(c.isAt(x, y, x & 1));
+				assertNull(index.get(x, y, 1 - (x & 1)));
+			}
+		}
+	}
+
+	@Test
+	void testRemove() {
+		ChunkIndex index = new ChunkIndex();
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		for (int i = 0; i < 500; i++) {
+			index.put(new Chunk(registry, i, -i, 0));
+		}
+		for (int i = 0; i < 500; i += 2) {
+			assertNotNull(index.remove(i, -i, 0));
+		}
+		assertEquals(250, index.size());
+		for (int i = 0; i < 500; i++) {
+			assertEquals(i % 2 == 1, index.get(i, -i, 0) != null);
+		}
+		assertEquals(250, index.values().size());
+	}
+}
@@ -0,0 +1,119 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+/**
+ * A benchmark measuring the heap used by a world of loaded chunks. Run with a
+ * large heap (e.g. {@code -Xmx4g}) as the chunks are kept reachable until the
+ * measurement is taken.
+ * 
+ * @author Tomaso2468
+ */
+public class ChunkMemoryBenchmark {
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of chunks to load, defaults to 10000.
+	 */
+	public static void main(String[] args) {
+		int count = args.length == 0 ? 10000 : Integer.parseInt(args[0]);
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		Tile air = new Tile("air", null, null, registry);
+		Tile[] tiles = new Tile[8];
+		for (int i = 0; i < tiles.length; i++) {
+			tiles[i] = new Tile("tile" + i, null, null, registry);
+		}
+		Random r = new Random(0);
+
+		long before = used();
+		long time = System.nanoTime();
+
+		List<Chunk> chunks = new ArrayList<Chunk>(count);
+		for (int i = 0; i < count; i++) {
+			Chunk c = new Chunk(registry, i % 100, i / 100, 0);
+			for (int x = 0; x < Chunk.SIZE; x++) {
+				for (int y = 0; y < Chunk.SIZE; y++) {
+					c.setTile(x, y, 0, tiles[0]);
+				}
+			}
+			for (int n = 0; n < 256; n++) {
+				c.setTile(r.nextInt(Chunk.SIZE), r.nextInt(Chunk.SIZE), 0, tiles[r.nextInt(tiles.length)]);
+				c.setState(r.nextInt(Chunk.SIZE), r.nextInt(Chunk.SIZE), 0, r.nextBoolean() ? "open" : "closed");
+			}
+			c.setArea(r.nextInt(Chunk.SIZE), r.nextInt(Chunk.SIZE), 0, "town");
+			chunks.add(c);
+		}
+
+		time = System.nanoTime() - time;
+		long after = used();
+
+		long read = 0;
+		long readTime = System.nanoTime();
+		for (Chunk c : chunks) {
+			for (int x = 0; x < Chunk.SIZE; x++) {
+				for (int y = 0; y < Chunk.SIZE; y++) {
+					if (c.getTile(x, y, 0) != air) {
+						read++;
+					}
+				}
+			}
+		}
+		readTime = System.nanoTime() - readTime;
+
+		System.out.printf("%d chunks: %.1f MB, %.1f KB/chunk, %.1f ms to fill, %.2f ns/tile read (%d)%n", count,
+				(after - before) / 1024.0 / 1024.0, (after - before) / 1024.0 / count, time / 1000000.0,
+				readTime / (double) (count * Chunk.SIZE * Chunk.SIZE), read);
+
+		if (chunks.size() != count) {
+			throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * Gets the used heap memory after a garbage collection.
+	 * @return A value in bytes.
+	 */
+	private static long used() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+}
@@ -0,0 +1,122 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class ChunkPaletteTest {
+	@Test
+	void testUniform() {
+		ChunkPalette<String> p = new ChunkPalette<String>(4096, "");
+		for (int i = 0; i < 4096; i++) {
+			assertEquals("", p.get(i));
+		}
+		p.set(10, "");
+		assertEquals(1, p.getPaletteSize());
+	}
+
+	@Test
+	void testGrowth() {
+		ChunkPalette<Integer> p = new ChunkPalette<Integer>(4096, 0);
+		for (int i = 0; i < 4096; i++) {
+			p.set(i, i % 1000);
+		}
+		for (int i = 0; i < 4096; i++) {
+			assertEquals(i % 1000, (int) p.get(i));
+		}
+		assertEquals(1000, p.getPaletteSize());
+	}
+
+	@Test
+	void testCompact() {
+		ChunkPalette<Integer> p = new ChunkPalette<Integer>(16, 0);
+		int[] expected = new int[16];
+		for (int i = 0; i < 1000; i++) {
+			p.set(i % 16, i);
+			expected[i % 16] = i;
+		}
+		for (int i = 0; i < 16; i++) {
+			assertEquals(expected[i], (int) p.get(i));
+		}
+		assertTrue(p.getPaletteSize() <= 32);
+	}
+
+	@Test
+	void testNull() {
+		ChunkPalette<String> p = new ChunkPalette<String>(64, null);
+		p.set(3, "a");
+		p.set(4, null);
+		assertNull(p.get(4));
+		assertEquals("a", p.get(3));
+		assertNull(p.get(0));
+	}
+
+	@Test
+	void testSnapshot() {
+		ChunkPalette<String> p = new ChunkPalette<String>(64, "");
+		p.set(1, "a");
+		ChunkPalette<String> s = p.snapshot();
+		p.set(1, "b");
+		p.set(2, "c");
+		s.set(3, "d");
+		assertEquals("a", s.get(1));
+		assertEquals("", s.get(2));
+		assertEquals("d", s.get(3));
+		assertEquals("b", p.get(1));
+		assertEquals("c", p.get(2));
+		assertEquals("", p.get(3));
+	}
+
+	@Test
+	void testConcurrentRead() throws InterruptedException {
+		ChunkPalette<Integer> p = new ChunkPalette<Integer>(512, -1);
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 200000; i++) {
+				p.set(i % 512, i);
+			}
+		});
+		writer.start();
+		boolean consistent = true;
+		while (writer.isAlive()) {
+			for (int j = 0; j < 512; j++) {
+				Integer v = p.get(j);
+				if (v == null || (v != -1 && v % 512 != j)) {
+					consistent = false;
+				}
+			}
+		}
+		writer.join();
+		assertTrue(consistent);
+	}
+}
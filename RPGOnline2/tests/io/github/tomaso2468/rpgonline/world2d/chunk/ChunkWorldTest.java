@@ -0,0 +1,95 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+
+class ChunkWorldTest {
+	@Test
+	void testAsyncLoad() throws InterruptedException {
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		Tile air = new Tile("air", null, null, registry);
+		Tile stone = new Tile("stone", null, null, registry);
+		CountDownLatch latch = new CountDownLatch(1);
+		ChunkWorld world = new ChunkWorld(registry) {
+			@Override
+			protected Chunk createChunk(long cx, long cy, long cz) {
+				try {
+					latch.await();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				Chunk c = super.createChunk(cx, cy, cz);
+				c.setTile(1, 1, 0, stone);
+				return c;
+			}
+		};
+		world.setLoaderThreads(1);
+
+		assertSame(air, world.getTile(1, 1, 0));
+		assertTrue(world.getChunks().isEmpty());
+
+		latch.countDown();
+		world.setTile(2, 2, 0, stone, "");
+		assertSame(stone, world.getTile(1, 1, 0));
+		assertSame(stone, world.getTile(2, 2, 0));
+		assertEquals(1, world.getChunks().size());
+		assertFalse(world.getChunks().get(0).isPlaceholder());
+		assertEquals(1, world.getChunkMisses());
+	}
+
+	@Test
+	void testPrefetch() throws InterruptedException {
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, null, registry);
+		ChunkWorld world = new ChunkWorld(registry);
+		world.prefetch(0, 0, 0, 2);
+		assertEquals(0, world.getLoadedChunkCount());
+
+		world.setLoaderThreads(2);
+		world.prefetch(Chunk.SIZE * 10 + 1, 1, 0, 2);
+		assertEquals(13, world.getLoadedChunkCount());
+		for (int i = 0; i < 100 && world.getChunks().size() < 13; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(13, world.getChunks().size());
+		assertNotNull(world.chunks.get(12, 0, 0));
+		assertNull(world.chunks.get(12, 1, 0));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.chunk;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+class RegionFileTest {
+	private static byte[] data(int length, int seed) {
+		byte[] b = new byte[length];
+		for (int i = 0; i < b.length; i++) {
+			b[i] = (byte) (i * 31 + seed);
+		}
+		return b;
+	}
+
+	private static byte[] bytes(ByteBuffer buf) {
+		byte[] b = new byte[buf.remaining()];
+		buf.get(b);
+		return b;
+	}
+
+	@Test
+	void testReadWrite() throws IOException {
+		File f = File.createTempFile("region", ".region");
+		f.delete();
+		try {
+			try (RegionFile r = new RegionFile(f)) {
+				assertFalse(r.has(3, 4));
+				assertNull(r.read(3, 4));
+				r.write(3, 4, data(100, 1));
+				r.write(0, 0, data(3000, 2));
+				r.write(31, 31, data(5000, 3));
+				assertArrayEquals(data(100, 1), bytes(r.read(3, 4)));
+			}
+			long size = f.length();
+			try (RegionFile r = new RegionFile(f)) {
+				assertTrue(r.has(3, 4));
+				assertArrayEquals(data(100, 1), bytes(r.read(3, 4)));
+				assertArrayEquals(data(3000, 2), bytes(r.read(0, 0)));
+				assertArrayEquals(data(5000, 3), bytes(r.read(31, 31)));
+
+				// Shrinking rewrites in place.
+				r.write(0, 0, data(900, 4));
+				assertEquals(size, f.length());
+				// Growing into the freed sectors.
+				r.write(3, 4, data(2000, 5));
+				assertEquals(size, f.length());
+
+				r.delete(31, 31);
+				assertFalse(r.has(31, 31));
+			}
+			try (RegionFile r = new RegionFile(f)) {
+				assertArrayEquals(data(900, 4), bytes(r.read(0, 0)));
+				assertArrayEquals(data(2000, 5), bytes(r.read(3, 4)));
+				assertNull(r.read(31, 31));
+			}
+		} finally {
+			f.delete();
+		}
+	}
+
+	@Test
+	void testRegionCoordinates() {
+		assertEquals(0, RegionFile.toRegion(31));
+		assertEquals(-1, RegionFile.toRegion(-1));
+		assertEquals(31, RegionFile.toLocal(-1));
+		assertEquals(1, RegionFile.toLocal(33));
+	}
+}
@@ -0,0 +1,126 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+class AIStageTest {
+	private static List<Entity> populate(EntityManager m, int count) {
+		Random r = new Random(3);
+		List<Entity> list = new EntityList(new EntityGrid(8));
+		for (int i = 0; i < count; i++) {
+			Entity e = new Entity(m, "test", false);
+			e.setX(r.nextDouble() * 100);
+			e.setY(r.nextDouble() * 100);
+			list.add(e);
+		}
+		return list;
+	}
+
+	private static EntityManager manager() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+			List<Entity> near = e.getGrid().nearest(e.getX(), e.getY(), 2, 20, o -> o != e);
+			if (!near.isEmpty()) {
+				Entity o = near.get(0);
+				e.setDX((o.getX() - e.getX()) * 0.1);
+				e.setDY((o.getY() - e.getY()) * 0.1);
+				o.setInt("seen", o.getInt("seen") + 1);
+			}
+			e.setX(e.getX() + e.getDX());
+			e.setY(e.getY() + e.getDY());
+			if (e.getDouble("age") == 3 && entities.indexOf(e) % 50 == 0) {
+				entities.add(new Entity(m, "test", false));
+			}
+			e.setDouble("age", e.getDouble("age") + 1);
+		});
+		return m;
+	}
+
+	@Test
+	void testDeterministic() {
+		List<Entity> a = populate(manager(), 500);
+		List<Entity> b = populate(manager(), 500);
+		AIStage single = new AIStage(new ForkJoinPool(1));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		AIStage parallel = new AIStage(pool);
+		parallel.setBatchSize(7);
+		for (int t = 0; t < 6; t++) {
+			single.run(null, 0, a);
+			parallel.run(null, 0, b);
+		}
+		pool.shutdown();
+		assertEquals(a.size(), b.size());
+		assertTrue(a.size() > 500);
+		for (int i = 0; i < a.size(); i++) {
+			assertEquals(a.get(i).getX(), b.get(i).getX());
+			assertEquals(a.get(i).getY(), b.get(i).getY());
+			assertEquals(a.get(i).getInt("seen"), b.get(i).getInt("seen"));
+			assertEquals(a.get(i).getGrid(), a.get(0).getGrid());
+		}
+	}
+
+	@Test
+	void testSnapshotReads() {
+		EntityManager m = new EntityManager();
+		List<Entity> entities = new ArrayList<Entity>();
+		List<Double> seen = new ArrayList<Double>();
+		m.register("writer", null, (e, w, wind, list) -> {
+			Entity other = list.get(1);
+			other.setX(5);
+			assertEquals(5, other.getX());
+			e.setDX(2);
+			e.setX(e.getX() + e.getDX());
+			assertEquals(2, e.getX());
+			assertTrue(e.isVariable("dx"));
+		});
+		m.register("reader", null, (e, w, wind, list) -> {
+			seen.add(e.getX());
+			seen.add(list.get(0).getX());
+		});
+		entities.add(new Entity(m, "writer", false));
+		entities.add(new Entity(m, "reader", false));
+		new AIStage().run(null, 0, entities);
+
+		assertEquals(0, (double) seen.get(0));
+		assertEquals(0, (double) seen.get(1));
+		assertEquals(2, entities.get(0).getX());
+		assertEquals(5, entities.get(1).getX());
+	}
+}
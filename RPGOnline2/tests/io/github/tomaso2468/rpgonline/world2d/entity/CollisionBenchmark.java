@@ -0,0 +1,208 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.util.FastMath;
+import org.newdawn.slick.geom.Rectangle;
+import org.newdawn.slick.geom.Shape;
+import org.newdawn.slick.geom.Transform;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+
+/**
+ * A benchmark of collision checks for 5000 moving entities comparing the
+ * shape based checks previously used by {@code VelocityAI.isCollision()} with
+ * the current {@code CollisionBox} checks. Both versions find nearby entities
+ * with an {@code EntityGrid}. The allocation rate is measured with the thread
+ * allocation counter of the JVM.
+ * 
+ * @author Tomaso2468
+ */
+public class CollisionBenchmark {
+	/**
+	 * The number of entities.
+	 */
+	private static final int ENTITIES = 5000;
+	/**
+	 * The width and height of the area in tiles.
+	 */
+	private static final int SIZE = 300;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of ticks to simulate, defaults to 100.
+	 */
+	public static void main(String[] args) {
+		int ticks = args.length == 0 ? 100 : Integer.parseInt(args[0]);
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		Tile floor = new Tile("floor", null, null, registry);
+		Tile open = new Tile("open", null, null, registry) {
+			@Override
+			public boolean isSolid(String state) {
+				return false;
+			}
+		};
+		Tile wall = new Tile("wall", null, null, registry);
+		World w = new ChunkWorld(registry) {
+			@Override
+			public Tile getTile(long x, long y, long z) {
+				if (z == 0) {
+					return floor;
+				}
+				return (x * 31 + y * 17) % 53 == 0 ? wall : open;
+			}
+
+			@Override
+			public String getTileState(long x, long y, long z) {
+				return "";
+			}
+		};
+
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, world, wind, entities) -> {
+		});
+		Random r = new Random(0);
+		List<Entity> entities = w.getEntities();
+		for (int i = 0; i < ENTITIES; i++) {
+			Entity e = new Entity(m, "npc", false);
+			e.setHitBox(new Rectangle(-0.3f, -0.3f, 0.6f, 0.6f));
+			e.setX(r.nextDouble() * SIZE);
+			e.setY(r.nextDouble() * SIZE);
+			entities.add(e);
+		}
+
+		for (int run = 0; run < 2; run++) {
+			measure("Shapes", ticks, entities, r, (e, x, y) -> !isCollisionShapes(x, y, e, w, entities));
+			measure("CollisionBox", ticks, entities, r, (e, x, y) -> !VelocityAI.isCollision(x, y, e, w, entities));
+		}
+	}
+
+	/**
+	 * Moves every entity once per tick and prints the cost.
+	 * @param name The name of the measurement.
+	 * @param ticks The number of ticks.
+	 * @param entities The entities to move.
+	 * @param r The random number generator.
+	 * @param check The collision check.
+	 */
+	private static void measure(String name, int ticks, List<Entity> entities, Random r, EntityStore.MoveFilter check) {
+		long collisions = 0;
+		long a = allocated();
+		long t = System.nanoTime();
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int i = 0; i < entities.size(); i++) {
+				Entity e = entities.get(i);
+				double x = e.getX() + r.nextDouble() * 0.2 - 0.1;
+				double y = e.getY() + r.nextDouble() * 0.2 - 0.1;
+				if (check.canMove(e, x, y)) {
+					e.setX(x);
+					e.setY(y);
+				} else {
+					collisions++;
+				}
+			}
+		}
+		long moves = (long) ticks * entities.size();
+		double ns = (System.nanoTime() - t) / (double) moves;
+		double bytes = (allocated() - a) / (double) moves;
+		System.out.printf("%s: %.0f ns/tryMove, %.1f B/tryMove, %.1f MB/tick, %d%% blocked%n", name, ns, bytes,
+				bytes * entities.size() / 1000000, collisions * 100 / moves);
+	}
+
+	/**
+	 * The shape based collision check previously used by {@code VelocityAI}.
+	 * @param x The x position to move to.
+	 * @param y The y position to move to.
+	 * @param e The entity to affect.
+	 * @param w The current world.
+	 * @param entities A list of all entities.
+	 * @return {@code true} if collision occurs, {@code false} otherwise.
+	 */
+	private static boolean isCollisionShapes(double x, double y, Entity e, World w, List<Entity> entities) {
+		long wx = FastMath.round(x);
+		long wy = FastMath.round(y);
+
+		if (!e.isSolid()) {
+			return false;
+		}
+
+		List<Shape> hitboxes = new ArrayList<Shape>();
+		for (int tx = (int) (Math.round(x) - 1); tx <= (int) (Math.round(x) + 1); tx++) {
+			for (int ty = (int) (Math.round(y) - 1); ty <= (int) (Math.round(y) + 1); ty++) {
+				Tile t = w.getTile(tx, ty, -1);
+
+				if (t.isSolid(w.getTileState(tx, ty, -1))) {
+					hitboxes.add(t.getHitBox().transform(Transform.createTranslateTransform(tx, ty)));
+				}
+			}
+		}
+
+		EntityGrid grid = e.getGrid();
+		double range = EntityGrid.extent(e) + grid.getMaxExtent();
+		entities = grid.queryAABB(e.getX() - range, e.getY() - range, e.getX() + range, e.getY() + range,
+				new ArrayList<Entity>());
+
+		for (Entity e2 : entities) {
+			if (e2 != e) {
+				if (e2.isSolid()) {
+					hitboxes.add(e2.getHitBox());
+				}
+			}
+		}
+
+		for (Shape s : hitboxes) {
+			if (s.contains(e.getHitBox()) || s.intersects(e.getHitBox()) || e.getHitBox().contains(s)) {
+				return true;
+			}
+		}
+
+		return !w.getTile(wx, wy, 0).isSolid(w.getTileState(wx, wy, 0));
+	}
+
+	/**
+	 * Gets the number of bytes allocated by this thread.
+	 * @return A number of bytes.
+	 */
+	private static long allocated() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,90 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.newdawn.slick.geom.Rectangle;
+import org.newdawn.slick.geom.Shape;
+import org.newdawn.slick.geom.Transform;
+
+class CollisionBoxTest {
+	private static Shape shape(float x, float y, float rx, float ry, float w, float h, float a) {
+		return new Rectangle(rx, ry, w, h).transform(Transform.createRotateTransform(a))
+				.transform(Transform.createTranslateTransform(x, y));
+	}
+
+	@Test
+	void testMatchesShapes() {
+		Random r = new Random(2);
+		CollisionBox a = new CollisionBox();
+		CollisionBox b = new CollisionBox();
+		int overlaps = 0;
+		for (int i = 0; i < 20000; i++) {
+			float[] p = new float[14];
+			for (int j = 0; j < 14; j++) {
+				p[j] = r.nextFloat() * 2 - 0.5f;
+			}
+			float a1 = i % 3 == 0 ? 0 : p[6] * 3;
+			float a2 = i % 5 == 0 ? 0 : p[13] * 3;
+			Shape s1 = shape(p[0] * 2, p[1] * 2, p[2] - 1, p[3] - 1, p[4] + 0.5f, p[5] + 0.5f, a1);
+			Shape s2 = shape(p[7] * 2, p[8] * 2, p[9] - 1, p[10] - 1, p[11] + 0.5f, p[12] + 0.5f, a2);
+			a.set(p[0] * 2, p[1] * 2, p[2] - 1, p[3] - 1, p[4] + 0.5f, p[5] + 0.5f, a1);
+			b.set(p[7] * 2, p[8] * 2, p[9] - 1, p[10] - 1, p[11] + 0.5f, p[12] + 0.5f, a2);
+
+			boolean expected = s1.contains(s2) || s1.intersects(s2) || s2.contains(s1);
+			assertEquals(expected, a.overlaps(b));
+			assertEquals(expected, b.overlaps(a));
+			if (expected) {
+				overlaps++;
+			}
+
+			if (a2 == 0) {
+				float x = p[7] * 2 + p[9] - 1;
+				float y = p[8] * 2 + p[10] - 1;
+				assertEquals(expected, a.overlaps(x, y, x + p[11] + 0.5f, y + p[12] + 0.5f));
+			}
+		}
+		assertTrue(overlaps > 1000);
+	}
+
+	@Test
+	void testTouching() {
+		CollisionBox a = new CollisionBox();
+		a.set(1, 1, -0.5, -0.5, 1, 1, 0);
+		assertTrue(a.overlaps(1.5, 0, 2.5, 1));
+		assertFalse(a.overlaps(1.6, 0, 2.5, 1));
+	}
+}
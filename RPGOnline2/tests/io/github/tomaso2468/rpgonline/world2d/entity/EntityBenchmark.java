@@ -0,0 +1,167 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A benchmark of entity variable access. Variables used by the engine are
+ * stored in slots and other variables are stored in maps, which is how all
+ * variables used to be stored. The allocation rate is measured with the
+ * thread allocation counter of the JVM when it is available.
+ * 
+ * @author Tomaso2468
+ */
+public class EntityBenchmark {
+	/**
+	 * The number of operations in each measurement.
+	 */
+	private static final int OPS = 50000000;
+	/**
+	 * Prevents the JIT from removing reads.
+	 */
+	private static double sink;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) {
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, w, wind, entities) -> {
+		});
+		Entity e = new Entity(m, "npc", false);
+		e.setX(1);
+		e.setDouble("custom", 1);
+
+		for (int warmup = 0; warmup < 3; warmup++) {
+			getSlot(e);
+			getMap(e);
+			setSlot(e);
+			setMap(e);
+		}
+
+		long a = allocated();
+		long t = System.nanoTime();
+		getSlot(e);
+		report("getX()", t, a);
+
+		a = allocated();
+		t = System.nanoTime();
+		getMap(e);
+		report("getDouble(map)", t, a);
+
+		a = allocated();
+		t = System.nanoTime();
+		setSlot(e);
+		report("setX()", t, a);
+
+		a = allocated();
+		t = System.nanoTime();
+		setMap(e);
+		report("setDouble(map)", t, a);
+	}
+
+	/**
+	 * Reads a slot variable.
+	 * @param e The entity to use.
+	 */
+	private static void getSlot(Entity e) {
+		double d = 0;
+		for (int i = 0; i < OPS; i++) {
+			d += e.getX();
+		}
+		sink += d;
+	}
+
+	/**
+	 * Reads a map variable.
+	 * @param e The entity to use.
+	 */
+	private static void getMap(Entity e) {
+		double d = 0;
+		for (int i = 0; i < OPS; i++) {
+			d += e.getDouble("custom");
+		}
+		sink += d;
+	}
+
+	/**
+	 * Writes a slot variable.
+	 * @param e The entity to use.
+	 */
+	private static void setSlot(Entity e) {
+		for (int i = 0; i < OPS; i++) {
+			e.setX(i);
+		}
+		sink += e.getX();
+	}
+
+	/**
+	 * Writes a map variable.
+	 * @param e The entity to use.
+	 */
+	private static void setMap(Entity e) {
+		for (int i = 0; i < OPS; i++) {
+			e.setDouble("custom", i);
+		}
+		sink += e.getDouble("custom");
+	}
+
+	/**
+	 * Prints the result of a measurement.
+	 * @param name The name of the measurement.
+	 * @param start The start time in nanoseconds.
+	 * @param startAllocated The bytes allocated by this thread at the start.
+	 */
+	private static void report(String name, long start, long startAllocated) {
+		double ns = (System.nanoTime() - start) / (double) OPS;
+		long a = allocated();
+		if (a < 0) {
+			System.out.printf("%s: %.2f ns/op%n", name, ns);
+		} else {
+			System.out.printf("%s: %.2f ns/op, %.2f B/op%n", name, ns, (a - startAllocated) / (double) OPS);
+		}
+	}
+
+	/**
+	 * Gets the number of bytes allocated by this thread.
+	 * @return A number of bytes or -1 if this is not supported.
+	 */
+	private static long allocated() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
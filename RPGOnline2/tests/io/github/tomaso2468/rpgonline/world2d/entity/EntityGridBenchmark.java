@@ -0,0 +1,116 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A benchmark of one tick of entity queries for 1000, 10000 and 50000 moving
+ * entities. Each entity moves, looks for the entities within 2 tiles (the
+ * broad phase of collision) and finds the nearest other entity (as
+ * {@code EntityAI.locateNearest()} does). Linear scans of the entity list are
+ * compared with an {@code EntityGrid}. Scans of large worlds are measured for
+ * the first 1000 entities and scaled up.
+ * 
+ * @author Tomaso2468
+ */
+public class EntityGridBenchmark {
+	/**
+	 * The number of entities that are measured using linear scans.
+	 */
+	private static final int SCAN_SAMPLE = 1000;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) {
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, w, wind, entities) -> {
+		});
+		for (int n : new int[] { 1000, 10000, 50000, 1000, 10000, 50000 }) {
+			Random r = new Random(0);
+			double size = Math.sqrt(n) * 4;
+			EntityGrid grid = new EntityGrid(8);
+			List<Entity> entities = new EntityList(grid);
+			for (int i = 0; i < n; i++) {
+				Entity e = new Entity(m, "npc", false);
+				e.setX(r.nextDouble() * size);
+				e.setY(r.nextDouble() * size);
+				entities.add(e);
+			}
+
+			List<Entity> out = new ArrayList<Entity>();
+			long found = 0;
+			int sample = Math.min(n, SCAN_SAMPLE);
+			long t = System.nanoTime();
+			for (int i = 0; i < sample; i++) {
+				Entity e = entities.get(i);
+				for (Entity e2 : entities) {
+					if (EntityAI.sqrdist(e, e2) <= 4) {
+						found += 1;
+					}
+				}
+				Entity nearest = null;
+				double nd = Double.POSITIVE_INFINITY;
+				for (Entity e2 : entities) {
+					double d = EntityAI.sqrdist(e, e2);
+					if (e2 != e && d < nd) {
+						nearest = e2;
+						nd = d;
+					}
+				}
+				if (nearest != null) {
+					found += 1;
+				}
+			}
+			double scan = (System.nanoTime() - t) / 1000000.0 * n / sample;
+
+			t = System.nanoTime();
+			for (Entity e : entities) {
+				e.setX(e.getX() + r.nextDouble() - 0.5);
+				e.setY(e.getY() + r.nextDouble() - 0.5);
+			}
+			for (Entity e : entities) {
+				out.clear();
+				found += grid.queryRadius(e.getX(), e.getY(), 2, out).size();
+				found += grid.nearest(e.getX(), e.getY(), 1, Double.POSITIVE_INFINITY, o -> o != e).size();
+			}
+			double indexed = (System.nanoTime() - t) / 1000000.0;
+
+			System.out.printf("%d entities: scan %.1f ms/tick, grid %.1f ms/tick (%d)%n", n, scan, indexed,
+					found % 10);
+		}
+	}
+}
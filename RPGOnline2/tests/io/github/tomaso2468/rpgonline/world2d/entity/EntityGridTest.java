@@ -0,0 +1,111 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class EntityGridTest {
+	private static List<Entity> populate(List<Entity> list, int count, Random r) {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		for (int i = 0; i < count; i++) {
+			Entity e = new Entity(m, "test", false);
+			e.setX(r.nextDouble() * 200 - 100);
+			e.setY(r.nextDouble() * 200 - 100);
+			list.add(e);
+		}
+		return list;
+	}
+
+	@Test
+	void testQueries() {
+		Random r = new Random(1);
+		EntityGrid grid = new EntityGrid(8);
+		List<Entity> entities = populate(new EntityList(grid), 2000, r);
+		assertEquals(2000, grid.size());
+
+		for (Entity e : entities) {
+			e.setX(e.getX() + r.nextDouble() * 20 - 10);
+			e.setY(e.getY() + r.nextDouble() * 20 - 10);
+		}
+		entities.remove(0);
+		entities.removeIf(e -> e.getX() > 90);
+		assertEquals(entities.size(), grid.size());
+
+		for (int q = 0; q < 50; q++) {
+			double x = r.nextDouble() * 200 - 100;
+			double y = r.nextDouble() * 200 - 100;
+			double radius = r.nextDouble() * 30;
+
+			List<Entity> expected = new ArrayList<Entity>();
+			Entity nearest = null;
+			for (Entity e : entities) {
+				double d = EntityAI.dist(x, y, e.getX(), e.getY());
+				if (d <= radius) {
+					expected.add(e);
+				}
+				if (nearest == null || d < EntityAI.dist(x, y, nearest.getX(), nearest.getY())) {
+					nearest = e;
+				}
+			}
+			assertEquals(new HashSet<Entity>(expected),
+					new HashSet<Entity>(grid.queryRadius(x, y, radius, new ArrayList<Entity>())));
+			assertSame(nearest, grid.nearest(x, y, 1, Double.POSITIVE_INFINITY, null).get(0));
+
+			List<Entity> box = grid.queryAABB(x, y, x + radius, y + radius, new ArrayList<Entity>());
+			for (Entity e : entities) {
+				boolean inside = e.getX() >= x && e.getX() <= x + radius && e.getY() >= y && e.getY() <= y + radius;
+				assertEquals(inside, box.contains(e));
+			}
+		}
+
+		List<Entity> five = grid.nearest(0, 0, 5, 50, e -> e.getX() > 0);
+		assertEquals(5, five.size());
+		for (int i = 1; i < five.size(); i++) {
+			assertTrue(EntityAI.dist(0, 0, five.get(i - 1).getX(), five.get(i - 1).getY()) <= EntityAI.dist(0, 0,
+					five.get(i).getX(), five.get(i).getY()));
+			assertTrue(five.get(i).getX() > 0);
+		}
+
+		entities.clear();
+		assertEquals(0, grid.size());
+		assertNull(five.get(0).getGrid());
+	}
+}
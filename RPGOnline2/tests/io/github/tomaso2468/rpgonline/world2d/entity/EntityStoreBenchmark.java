@@ -0,0 +1,119 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A benchmark of velocity integration for 50000 entities comparing
+ * {@code VelocityAI.doVelocity()} on each entity with
+ * {@code EntityStore.integrate()} on one thread and on all cores. Collision is
+ * disabled so only the movement is measured.
+ * 
+ * @author Tomaso2468
+ */
+public class EntityStoreBenchmark {
+	/**
+	 * The number of entities.
+	 */
+	private static final int ENTITIES = 50000;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of ticks to simulate, defaults to 500.
+	 */
+	public static void main(String[] args) {
+		int ticks = args.length == 0 ? 500 : Integer.parseInt(args[0]);
+
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, w, wind, entities) -> {
+		});
+		VelocityAI ai = new VelocityAI();
+		EntityStore store = new EntityStore();
+		List<Entity> entities = new ArrayList<Entity>();
+		for (int i = 0; i < ENTITIES; i++) {
+			Entity e = new Entity(m, "npc", false);
+			e.setSolid(false);
+			e.setDouble("weight_f", 1.0001);
+			entities.add(e);
+			store.add(e);
+		}
+
+		for (int run = 0; run < 2; run++) {
+			reset(entities);
+			long t = System.nanoTime();
+			for (int tick = 0; tick < ticks; tick++) {
+				for (Entity e : entities) {
+					ai.doVelocity(e, null, entities);
+				}
+			}
+			report("doVelocity()", t, ticks);
+
+			reset(entities);
+			t = System.nanoTime();
+			for (int tick = 0; tick < ticks; tick++) {
+				store.integrate(null, false);
+			}
+			report("integrate()", t, ticks);
+
+			reset(entities);
+			t = System.nanoTime();
+			for (int tick = 0; tick < ticks; tick++) {
+				store.integrate(null, true);
+			}
+			report("integrate() parallel", t, ticks);
+		}
+	}
+
+	/**
+	 * Gives every entity a velocity.
+	 * @param entities The entities to reset.
+	 */
+	private static void reset(List<Entity> entities) {
+		for (int i = 0; i < entities.size(); i++) {
+			entities.get(i).setDX(i % 5 - 2);
+			entities.get(i).setDY(i % 3 - 1);
+		}
+	}
+
+	/**
+	 * Prints the result of a measurement.
+	 * @param name The name of the measurement.
+	 * @param start The start time in nanoseconds.
+	 * @param ticks The number of ticks simulated.
+	 */
+	private static void report(String name, long start, int ticks) {
+		double ms = (System.nanoTime() - start) / 1000000.0 / ticks;
+		System.out.printf("%s: %.3f ms/tick, %.1f M entities/s%n", name, ms, ENTITIES / ms / 1000);
+	}
+}
@@ -0,0 +1,142 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class EntityStoreTest {
+	private static EntityManager manager() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		return m;
+	}
+
+	@Test
+	void testAddRemove() {
+		EntityManager m = manager();
+		EntityStore s = new EntityStore(1);
+		Entity[] entities = new Entity[5];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = new Entity(m, "test", false);
+			entities[i].setX(i + 1);
+			entities[i].setDouble("custom", i);
+			s.add(entities[i]);
+		}
+		assertEquals(5, s.size());
+
+		s.remove(entities[1]);
+		assertEquals(4, s.size());
+		assertNotSame(s, entities[1].getStore());
+		assertEquals(2, entities[1].getX());
+		assertTrue(entities[1].isSolid());
+		assertEquals(1, entities[1].getDouble("custom"));
+
+		for (int i = 0; i < entities.length; i++) {
+			if (i != 1) {
+				assertSame(entities[i], s.getEntity(entities[i].getHandle()));
+				assertEquals(i + 1, entities[i].getX());
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> s.remove(entities[1]));
+	}
+
+	@Test
+	void testDetached() {
+		EntityManager m = manager();
+		Entity a = new Entity(m, "test", false);
+		Entity b = new Entity(m, "test", false);
+		assertSame(a.getStore(), b.getStore());
+		assertTrue(a.getStore().isReadOnly());
+		assertTrue(a.isSolid());
+		assertFalse(a.isVariable("x"));
+
+		a.setX(3);
+		assertFalse(a.getStore().isReadOnly());
+		assertTrue(b.getStore().isReadOnly());
+		assertEquals(3, a.getX());
+		assertTrue(a.isSolid());
+		assertEquals(0, b.getX());
+
+		EntityStore s = new EntityStore();
+		s.add(b);
+		assertSame(s, b.getStore());
+		assertTrue(b.isSolid());
+		s.remove(b);
+		assertTrue(b.getStore().isReadOnly());
+		assertTrue(b.isSolid());
+		assertThrows(IllegalStateException.class, () -> b.getStore().add(a));
+	}
+
+	@Test
+	void testIntegrate() {
+		EntityManager m = manager();
+		EntityStore s = new EntityStore();
+		VelocityAI ai = new VelocityAI();
+		List<Entity> expected = new ArrayList<Entity>();
+		for (int i = 0; i < 10000; i++) {
+			Entity a = new Entity(m, "test", false);
+			Entity b = new Entity(m, "test", false);
+			for (Entity e : new Entity[] { a, b }) {
+				e.setSolid(false);
+				e.setX(i);
+				e.setDX(i % 7 - 3);
+				e.setDY(i * 1e-6);
+				e.setDouble("weight_f", 1.5);
+			}
+			s.add(a);
+			expected.add(b);
+		}
+
+		s.integrate(null, true);
+		for (Entity e : expected) {
+			ai.doVelocity(e, null, expected);
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			Entity a = s.getEntity(i);
+			Entity b = expected.get(i);
+			assertEquals(b.getX(), a.getX());
+			assertEquals(b.getY(), a.getY());
+			assertEquals(b.getDX(), a.getDX());
+			assertEquals(b.getDY(), a.getDY());
+			assertEquals(b.isVariable("y"), a.isVariable("y"));
+		}
+
+		s.integrate((e, x, y) -> false, false);
+		assertEquals(0, s.getEntity(4).getDX());
+	}
+}
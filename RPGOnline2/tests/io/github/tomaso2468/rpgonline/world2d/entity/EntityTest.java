@@ -0,0 +1,99 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.abt.TagBoolean;
+import io.github.tomaso2468.abt.TagDouble;
+import io.github.tomaso2468.abt.TagGroup;
+import io.github.tomaso2468.abt.TagInt;
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.Direction;
+
+class EntityTest {
+	private static EntityManager manager() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		return m;
+	}
+
+	@Test
+	void testSlots() {
+		Entity e = new Entity(manager(), "test", false);
+		assertFalse(e.isVariable("x"));
+		e.setX(3);
+		e.setDouble("dy", -2);
+		e.setDouble("custom", 5);
+		e.setDirection(Direction.values()[1]);
+		assertTrue(e.isVariable("x"));
+		assertTrue(e.isVariable("custom"));
+		assertEquals(3, e.getDouble("x"));
+		assertEquals(-2, e.getDY());
+		assertEquals(5, e.getDouble("custom"));
+		assertEquals(1, e.getInt("direction"));
+		assertTrue(e.getBoolean("solid"));
+
+		List<Entity> entities = new ArrayList<Entity>();
+		entities.add(e);
+		new UpdatePacket.UDouble(e.getID(), "x", 7).apply(entities);
+		new UpdatePacket.UBoolean(e.getID(), "flying", true).apply(entities);
+		assertEquals(7, e.getX());
+		assertTrue(e.isFlying());
+	}
+
+	@Test
+	void testABT() {
+		EntityManager m = manager();
+		Entity e = new Entity(m, "test", false);
+		e.setX(1.5);
+		e.setY(-4);
+		e.setSolid(false);
+		e.setInt("count", 9);
+		e.setDouble("custom", 2);
+
+		TagGroup g = e.toABT("entity");
+		assertTrue(g.getTag("x") instanceof TagDouble);
+		assertTrue(g.getTag("y") instanceof TagDouble);
+		assertTrue(g.getTag("solid") instanceof TagBoolean);
+		assertTrue(g.getTag("count") instanceof TagInt);
+		assertTrue(g.getTag("custom") instanceof TagDouble);
+		assertNull(g.getTag("dx"));
+		assertNotNull(new Entity(m, g, false));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityGrid;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityList;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
+
+class EntityInterpolatorTest {
+	private static final long MS = 1000000L;
+
+	private static UpdatePacket move(Entity e, double x, double y) {
+		return new UpdatePacket.UBatch(e.getID(), Arrays.<UpdatePacket>asList(new UpdatePacket.UDouble(e.getID(), "x", x),
+				new UpdatePacket.UDouble(e.getID(), "y", y)));
+	}
+
+	@Test
+	void testInterpolation() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		Entity e = new Entity(m, "test", false);
+		List<Entity> entities = new EntityList(new EntityGrid(4));
+		entities.add(e);
+		assertSame(e, UpdatePacket.find(e.getID(), entities));
+
+		EntityInterpolator ip = new EntityInterpolator();
+		ip.setMaxExtrapolation(50);
+		assertTrue(ip.apply(move(e, 1, 0), entities, 1000 * MS));
+		assertTrue(ip.apply(new UpdatePacket.UDouble(e.getID(), "dx", 3), entities, 1000 * MS));
+		assertEquals(3, e.getDouble("dx"));
+		assertEquals(0, e.getX());
+
+		ip.update(1050 * MS);
+		assertEquals(0.5, e.getX(), 1e-9);
+
+		assertTrue(ip.apply(new UpdatePacket.UDouble(e.getID(), "x", 2), entities, 1100 * MS));
+		assertTrue(ip.apply(new UpdatePacket.UDouble(e.getID(), "y", 1), entities, 1101 * MS));
+		ip.update(1150 * MS);
+		assertEquals(1.5, e.getX(), 1e-9);
+		assertEquals(0.5, e.getY(), 1e-9);
+
+		ip.update(1220 * MS);
+		assertEquals(2.2, e.getX(), 1e-9);
+		assertEquals(1.2, e.getY(), 1e-9);
+		assertEquals(1, ip.getTrackCount());
+
+		ip.update(1260 * MS);
+		assertEquals(2, e.getX(), 1e-9);
+		assertEquals(1, e.getY(), 1e-9);
+		assertEquals(0, ip.getTrackCount());
+
+		assertTrue(ip.apply(move(e, 20, 20), entities, 2000 * MS));
+		ip.update(2000 * MS);
+		assertEquals(20, e.getX());
+		assertEquals(20, e.getY());
+
+		entities.remove(e);
+		assertNull(UpdatePacket.find(e.getID(), entities));
+		assertFalse(ip.apply(new UpdatePacket.UDouble("missing", "x", 1), entities, 3000 * MS));
+	}
+
+	@Test
+	void testNoDelay() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		Entity e = new Entity(m, "test", false);
+		List<Entity> entities = new EntityList(new EntityGrid(4));
+		entities.add(e);
+
+		EntityInterpolator ip = new EntityInterpolator();
+		ip.setDelay(0);
+		ip.setMaxExtrapolation(50);
+		assertTrue(ip.apply(move(e, 1, 0), entities, 1000 * MS));
+		ip.update(1000 * MS);
+		assertEquals(1, e.getX());
+		ip.update(1020 * MS);
+		assertEquals(1, e.getX());
+		assertEquals(0, e.getY());
+		assertEquals(0, ip.getTrackCount());
+
+		assertTrue(ip.apply(move(e, 2, 0), entities, 1100 * MS));
+		assertTrue(ip.apply(move(e, 3, 0), entities, 1200 * MS));
+		ip.update(1150 * MS);
+		assertEquals(2.5, e.getX(), 1e-9);
+
+		assertTrue(ip.apply(move(e, 20, 20), entities, 1200 * MS));
+		assertTrue(ip.apply(move(e, 21, 20), entities, 1200 * MS));
+		ip.update(1210 * MS);
+		assertEquals(21, e.getX());
+		assertEquals(20, e.getY());
+	}
+}
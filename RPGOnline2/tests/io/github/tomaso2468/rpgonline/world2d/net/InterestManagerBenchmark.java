@@ -0,0 +1,187 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import java.io.IOException;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.net.Connection;
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
+
+/**
+ * A benchmark simulating 1000 moving entities and 200 moving clients in one
+ * process and comparing the packets sent by broadcasting every update with the
+ * packets sent by an {@code InterestManager}.
+ * 
+ * @author Tomaso2468
+ */
+public class InterestManagerBenchmark {
+	/**
+	 * The number of entities.
+	 */
+	private static final int ENTITIES = 1000;
+	/**
+	 * The number of clients.
+	 */
+	private static final int CLIENTS = 200;
+	/**
+	 * The width and height of the simulated area in tiles.
+	 */
+	private static final int SIZE = 1024;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of ticks to simulate, defaults to 200.
+	 */
+	public static void main(String[] args) {
+		int ticks = args.length == 0 ? 200 : Integer.parseInt(args[0]);
+
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, w, wind, entities) -> {
+		});
+		Random r = new Random(0);
+
+		Entity[] entities = new Entity[ENTITIES];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = new Entity(m, "npc", false);
+			entities[i].setX(r.nextDouble() * SIZE);
+			entities[i].setY(r.nextDouble() * SIZE);
+		}
+		CountingConnection[] clients = new CountingConnection[CLIENTS];
+		double[] cx = new double[CLIENTS];
+		double[] cy = new double[CLIENTS];
+		for (int i = 0; i < clients.length; i++) {
+			clients[i] = new CountingConnection();
+			cx[i] = r.nextDouble() * SIZE;
+			cy[i] = r.nextDouble() * SIZE;
+		}
+
+		long t = System.nanoTime();
+		long broadcast = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			for (Entity e : entities) {
+				e.setX(e.getX() + r.nextDouble() - 0.5);
+				e.setY(e.getY() + r.nextDouble() - 0.5);
+				NetPacket x = new UpdatePacket.UDouble(e.getID(), "x", e.getX());
+				NetPacket y = new UpdatePacket.UDouble(e.getID(), "y", e.getY());
+				for (CountingConnection c : clients) {
+					c.send(x);
+					c.send(y);
+					broadcast += 2;
+				}
+			}
+		}
+		double broadcastTime = (System.nanoTime() - t) / 1000000.0 / ticks;
+
+		InterestManager im = new InterestManager(32, 1);
+		for (int i = 0; i < clients.length; i++) {
+			im.addViewer(clients[i], cx[i], cy[i]);
+		}
+		for (Entity e : entities) {
+			im.addEntity(e);
+		}
+		long start = im.getPacketCount();
+
+		t = System.nanoTime();
+		for (int tick = 0; tick < ticks; tick++) {
+			for (Entity e : entities) {
+				e.setX(e.getX() + r.nextDouble() - 0.5);
+				e.setY(e.getY() + r.nextDouble() - 0.5);
+				im.updateEntity(new UpdatePacket.UDouble(e.getID(), "x", e.getX()));
+				im.updateEntity(new UpdatePacket.UDouble(e.getID(), "y", e.getY()));
+			}
+			for (int i = 0; i < clients.length; i++) {
+				cx[i] += r.nextDouble() - 0.5;
+				cy[i] += r.nextDouble() - 0.5;
+				im.moveViewer(clients[i], cx[i], cy[i]);
+			}
+		}
+		double interestTime = (System.nanoTime() - t) / 1000000.0 / ticks;
+		long interest = im.getPacketCount() - start;
+
+		System.out.printf("Broadcast: %d packets/tick, %.2f ms/tick%n", broadcast / ticks, broadcastTime);
+		System.out.printf("Interest managed: %d packets/tick, %.2f ms/tick%n", interest / ticks, interestTime);
+	}
+
+	/**
+	 * A connection that only counts the packets sent to it.
+	 * 
+	 * @author Tomaso2468
+	 */
+	private static class CountingConnection implements Connection {
+		/**
+		 * The number of packets sent.
+		 */
+		private long count;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void send(NetPacket p) {
+			count += 1;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isAvaliable() {
+			return false;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public NetPacket getNext() {
+			return null;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void encrypt() {
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.net.Connection;
+import io.github.tomaso2468.rpgonline.net.packet.NetPacket;
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
+import io.github.tomaso2468.rpgonline.world2d.net.packet.EntityAddPacket;
+import io.github.tomaso2468.rpgonline.world2d.net.packet.EntityRemovePacket;
+
+class InterestManagerTest {
+	private static class RecordingConnection implements Connection {
+		private final List<NetPacket> sent = new ArrayList<NetPacket>();
+
+		@Override
+		public void send(NetPacket p) throws IOException {
+			sent.add(p);
+		}
+
+		@Override
+		public boolean isAvaliable() throws IOException {
+			return false;
+		}
+
+		@Override
+		public NetPacket getNext() throws IOException {
+			return null;
+		}
+
+		@Override
+		public void encrypt() throws IOException {
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	private static Entity entity(EntityManager m, double x, double y) {
+		Entity e = new Entity(m, "test", false);
+		e.setX(x);
+		e.setY(y);
+		return e;
+	}
+
+	@Test
+	void testVisibility() {
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		InterestManager im = new InterestManager(16, 1);
+		RecordingConnection near = new RecordingConnection();
+		RecordingConnection far = new RecordingConnection();
+		im.addViewer(near, 0, 0);
+		im.addViewer(far, 200, 200);
+
+		Entity e = entity(m, 20, 5);
+		im.addEntity(e);
+		assertEquals(1, near.sent.size());
+		assertTrue(near.sent.get(0) instanceof EntityAddPacket);
+		assertTrue(far.sent.isEmpty());
+
+		im.updateEntity(new UpdatePacket.UInt(e.getID(), "direction", 2));
+		assertEquals(2, near.sent.size());
+		assertTrue(far.sent.isEmpty());
+
+		e.setX(190);
+		e.setY(190);
+		im.updateEntity(new UpdatePacket.UDouble(e.getID(), "x", 190));
+		assertTrue(near.sent.get(2) instanceof EntityRemovePacket);
+		assertTrue(far.sent.get(0) instanceof EntityAddPacket);
+		assertFalse(im.isVisible(near, e));
+		assertTrue(im.isVisible(far, e));
+
+		im.moveViewer(near, 180, 180);
+		assertTrue(near.sent.get(3) instanceof EntityAddPacket);
+		im.moveViewer(far, -100, 0);
+		assertTrue(far.sent.get(1) instanceof EntityRemovePacket);
+
+		im.removeEntity(e);
+		assertTrue(near.sent.get(4) instanceof EntityRemovePacket);
+		assertEquals(2, far.sent.size());
+	}
+}
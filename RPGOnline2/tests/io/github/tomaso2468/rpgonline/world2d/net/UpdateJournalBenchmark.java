@@ -0,0 +1,99 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+
+/**
+ * A benchmark comparing sending every entity update as it happens with
+ * coalescing the updates of each tick in an {@code UpdateJournal}. Each entity
+ * changes its velocity and position the same way {@code VelocityAI} does.
+ * 
+ * @author Tomaso2468
+ */
+public class UpdateJournalBenchmark {
+	/**
+	 * The number of entities.
+	 */
+	private static final int ENTITIES = 1000;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of ticks to simulate, defaults to 200.
+	 * @throws IOException If an error occurs writing packets.
+	 */
+	public static void main(String[] args) throws IOException {
+		int ticks = args.length == 0 ? 200 : Integer.parseInt(args[0]);
+
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(b);
+		UpdateJournal j = new UpdateJournal();
+		Random r = new Random(0);
+
+		long direct = 0;
+		long directBytes = 0;
+		long coalesced = 0;
+		long coalescedBytes = 0;
+		for (int tick = 0; tick < ticks; tick++) {
+			for (int i = 0; i < ENTITIES; i++) {
+				String id = Integer.toHexString(i);
+				double dx = r.nextDouble() - 0.5;
+				double dy = r.nextDouble() - 0.5;
+				UpdatePacket[] updates = { new UpdatePacket.UDouble(id, "dx", dx), new UpdatePacket.UDouble(id, "dy", dy),
+						new UpdatePacket.UDouble(id, "dx", dx / 2), new UpdatePacket.UDouble(id, "dy", dy / 2),
+						new UpdatePacket.UDouble(id, "x", i + dx), new UpdatePacket.UDouble(id, "y", i + dy),
+						new UpdatePacket.UDouble(id, "dx", 0), new UpdatePacket.UDouble(id, "dy", 0) };
+				for (UpdatePacket up : updates) {
+					b.reset();
+					up.write(out);
+					direct += 1;
+					directBytes += b.size();
+					j.record(up);
+				}
+			}
+			for (UpdatePacket up : j.drain()) {
+				b.reset();
+				up.write(out);
+				coalesced += 1;
+				coalescedBytes += b.size();
+			}
+		}
+
+		System.out.printf("Direct: %d packets/tick, %d bytes/tick%n", direct / ticks, directBytes / ticks);
+		System.out.printf("Coalesced: %d packets/tick, %d bytes/tick%n", coalesced / ticks, coalescedBytes / ticks);
+	}
+}
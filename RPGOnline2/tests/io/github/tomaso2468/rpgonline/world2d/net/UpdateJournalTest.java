@@ -0,0 +1,90 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.tomaso2468.rpgonline.net.packet.UpdatePacket;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
+
+class UpdateJournalTest {
+	@Test
+	void testCoalesce() {
+		UpdateJournal j = new UpdateJournal();
+		j.record(new UpdatePacket.UDouble("1", "x", 1));
+		j.record(new UpdatePacket.UDouble("1", "y", 2));
+		j.record(new UpdatePacket.UDouble("2", "x", 3));
+		j.record(new UpdatePacket.UDouble("1", "x", 4));
+		assertEquals(2, j.getPendingCount());
+
+		List<UpdatePacket> packets = j.drain();
+		assertEquals(2, packets.size());
+		assertEquals(0, j.getPendingCount());
+		assertEquals(4, j.getRecordedCount());
+		assertEquals(2, j.getFlushedCount());
+
+		assertTrue(packets.get(0) instanceof UpdatePacket.UBatch);
+		List<UpdatePacket> batch = ((UpdatePacket.UBatch) packets.get(0)).getUpdates();
+		assertEquals(2, batch.size());
+		assertEquals("y", batch.get(0).getKey());
+		assertEquals("x", batch.get(1).getKey());
+		assertTrue(packets.get(0).hasKey("x"));
+		assertFalse(packets.get(0).hasKey("dx"));
+		assertTrue(packets.get(1) instanceof UpdatePacket.UDouble);
+
+		EntityManager m = new EntityManager();
+		m.register("test", null, (e, w, wind, entities) -> {
+		});
+		Entity e = new Entity(m, "test", false);
+		List<Entity> entities = new ArrayList<Entity>();
+		entities.add(e);
+		new UpdatePacket.UBatch(e.getID(), batch).apply(entities);
+		assertEquals(4, e.getX());
+		assertEquals(2, e.getY());
+	}
+
+	@Test
+	void testDiscard() {
+		UpdateJournal j = new UpdateJournal();
+		j.record(new UpdatePacket.UDouble("1", "x", 1));
+		j.discard("1");
+		List<UpdatePacket> packets = new ArrayList<UpdatePacket>();
+		j.flush(packets::add);
+		assertTrue(packets.isEmpty());
+	}
+}
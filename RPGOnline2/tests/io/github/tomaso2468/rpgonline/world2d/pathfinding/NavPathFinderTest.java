@@ -0,0 +1,191 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.pathfinding;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.newdawn.slick.util.pathfinding.AStarPathFinder;
+import org.newdawn.slick.util.pathfinding.Path;
+import org.newdawn.slick.util.pathfinding.PathFindingContext;
+import org.newdawn.slick.util.pathfinding.TileBasedMap;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.World;
+import io.github.tomaso2468.rpgonline.world2d.WorldWrapper;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+
+class NavPathFinderTest {
+	private static final int SIZE = 40;
+
+	private final HashMap<String, Tile> registry = new HashMap<String, Tile>();
+	private final Tile air = new Tile("air", null, null, registry) {
+		@Override
+		public boolean isSolid(String state) {
+			return false;
+		}
+	};
+	private final Tile floor = new Tile("floor", null, null, registry);
+	private final Tile wall = new Tile("wall", null, null, registry);
+	private final NavProfile profile = new NavProfile(Collections.<Tile>emptyList(), Collections.<Tile>emptyList(),
+			Collections.<Tile>emptyList(), false, false);
+
+	private ChunkWorld createWorld(Random r, double walls) {
+		ChunkWorld w = new ChunkWorld(registry);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				w.setTile(x, y, 0, floor, "");
+				if (r != null && r.nextDouble() < walls) {
+					w.setTile(x, y, -1, wall, "");
+				}
+			}
+		}
+		return w;
+	}
+
+	@Test
+	void testMatchesAStar() {
+		Random r = new Random(0);
+		for (int map = 0; map < 20; map++) {
+			ChunkWorld w = createWorld(r, 0.25);
+			NavGrid grid = new NavGrid(w, profile);
+			assertTrue(grid.isCached());
+			NavPathFinder finder = new NavPathFinder(grid, SIZE);
+			AStarPathFinder slick = new AStarPathFinder(createMap(w), SIZE * SIZE, false);
+			for (int i = 0; i < 10; i++) {
+				int sx = r.nextInt(SIZE);
+				int sy = r.nextInt(SIZE);
+				int tx = r.nextInt(SIZE);
+				int ty = r.nextInt(SIZE);
+				w.setTile(sx, sy, -1, air, "");
+				Path expected = slick.findPath(null, sx, sy, tx, ty);
+				Path actual = finder.findPath(null, sx, sy, tx, ty);
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+				assertNotNull(actual);
+				assertEquals(expected.getLength(), actual.getLength());
+				assertEquals(sx, actual.getX(0));
+				assertEquals(sy, actual.getY(0));
+				assertEquals(tx, actual.getX(actual.getLength() - 1));
+				assertEquals(ty, actual.getY(actual.getLength() - 1));
+				for (int s = 1; s < actual.getLength(); s++) {
+					assertEquals(1, Math.abs(actual.getX(s) - actual.getX(s - 1))
+							+ Math.abs(actual.getY(s) - actual.getY(s - 1)));
+					assertEquals(NavProfile.OPEN, grid.getCell(actual.getX(s), actual.getY(s)));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testInvalidation() {
+		ChunkWorld w = createWorld(null, 0);
+		for (int y = 0; y < SIZE - 1; y++) {
+			w.setTile(20, y, -1, wall, "");
+		}
+		NavGrid grid = NavGrid.get(w, profile);
+		assertSame(grid, NavGrid.get(w, profile));
+		NavPathFinder finder = new NavPathFinder(grid, SIZE);
+
+		assertEquals(2 * 39 + 20, finder.findPath(null, 10, 0, 30, 0).getLength() - 1);
+		long builds = grid.getBuildCount();
+		finder.findPath(null, 10, 0, 30, 0);
+		assertEquals(builds, grid.getBuildCount());
+
+		w.setTile(20, SIZE - 1, -1, wall, "");
+		assertNull(finder.findPath(null, 10, 0, 30, 0));
+		assertEquals(NavProfile.BLOCKED, grid.getCell(20, SIZE - 1));
+
+		w.setTile(20, 5, -1, air, "");
+		assertEquals(30, finder.findPath(null, 10, 0, 30, 0).getLength() - 1);
+	}
+
+	@Test
+	void testSharedGrids() {
+		ChunkWorld w = createWorld(null, 0);
+		NavGrid grid = NavGrid.get(w, profile);
+		assertSame(grid, NavGrid.get(new WorldWrapper(w), profile));
+
+		for (int i = 0; i < NavGrid.MAX_PROFILES; i++) {
+			Tile t = new Tile("valued" + i, null, null, registry);
+			NavGrid.get(w, new NavProfile(Collections.singletonList(t), Collections.<Tile>emptyList(),
+					Collections.<Tile>emptyList(), false, false));
+		}
+		assertFalse(grid.isCached());
+		assertNotSame(grid, NavGrid.get(w, profile));
+		assertEquals(NavProfile.OPEN, grid.getCell(5, 5));
+		assertEquals(0, grid.getCachedChunks());
+	}
+
+	@Test
+	void testSearchDistance() {
+		ChunkWorld w = createWorld(null, 0);
+		NavPathFinder finder = new NavPathFinder(NavGrid.get(w, profile), 5);
+		assertNotNull(finder.findPath(null, 10, 10, 15, 15));
+		assertNull(finder.findPath(null, 10, 10, 16, 10));
+	}
+
+	private static TileBasedMap createMap(World w) {
+		return new TileBasedMap() {
+			@Override
+			public int getWidthInTiles() {
+				return SIZE;
+			}
+
+			@Override
+			public int getHeightInTiles() {
+				return SIZE;
+			}
+
+			@Override
+			public void pathFinderVisited(int x, int y) {
+			}
+
+			@Override
+			public boolean blocked(PathFindingContext context, int tx, int ty) {
+				return w.getTile(tx, ty, -1).isSolid(w.getTileState(tx, ty, -1))
+						|| !w.getTile(tx, ty, 0).isSolid(w.getTileState(tx, ty, 0));
+			}
+
+			@Override
+			public float getCost(PathFindingContext context, int tx, int ty) {
+				return 1;
+			}
+		};
+	}
+}
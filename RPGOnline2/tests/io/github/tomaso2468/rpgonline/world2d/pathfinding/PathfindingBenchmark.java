@@ -0,0 +1,170 @@
+/*
+BSD 3-Clause License
+
+Copyright (c) 2019, Tomas
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+   list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+   this list of conditions and the following disclaimer in the documentation
+   and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its
+   contributors may be used to endorse or promote products derived from
+   this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+*/
+package io.github.tomaso2468.rpgonline.world2d.pathfinding;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.newdawn.slick.util.pathfinding.AStarPathFinder;
+import org.newdawn.slick.util.pathfinding.Path;
+
+import io.github.tomaso2468.rpgonline.world2d.Tile;
+import io.github.tomaso2468.rpgonline.world2d.chunk.ChunkWorld;
+import io.github.tomaso2468.rpgonline.world2d.entity.Entity;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityAI;
+import io.github.tomaso2468.rpgonline.world2d.entity.EntityManager;
+
+/**
+ * A benchmark of paths found per second with 200 entities in a 256x256 world
+ * comparing the {@code AStarPathFinder} and {@code TileBasedMap} previously
+ * used by {@code EntityAI.pathfind()} with a {@code NavPathFinder} reading from
+ * a cached {@code NavGrid}.
+ * 
+ * @author Tomaso2468
+ */
+public class PathfindingBenchmark {
+	/**
+	 * The number of entities.
+	 */
+	private static final int ENTITIES = 200;
+	/**
+	 * The width and height of the world in tiles.
+	 */
+	private static final int SIZE = 256;
+	/**
+	 * The search distance of each path.
+	 */
+	private static final int DISTANCE = 32;
+
+	/**
+	 * Runs the benchmark.
+	 * @param args The number of paths to find, defaults to 2000.
+	 */
+	public static void main(String[] args) {
+		int paths = args.length == 0 ? 2000 : Integer.parseInt(args[0]);
+
+		HashMap<String, Tile> registry = new HashMap<String, Tile>();
+		new Tile("air", null, null, registry) {
+			@Override
+			public boolean isSolid(String state) {
+				return false;
+			}
+		};
+		Tile floor = new Tile("floor", null, null, registry);
+		Tile wall = new Tile("wall", null, null, registry);
+		ChunkWorld w = new ChunkWorld(registry);
+		Random r = new Random(0);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				w.setTile(x, y, 0, floor, "");
+				if (r.nextInt(5) == 0) {
+					w.setTile(x, y, -1, wall, "");
+				}
+			}
+		}
+
+		EntityManager m = new EntityManager();
+		m.register("npc", null, (e, world, wind, entities) -> {
+		});
+		List<Entity> entities = w.getEntities();
+		for (int i = 0; i < ENTITIES; i++) {
+			Entity e = new Entity(m, "npc", false);
+			e.setX(r.nextDouble() * SIZE);
+			e.setY(r.nextDouble() * SIZE);
+			entities.add(e);
+		}
+		List<String> scared = Collections.singletonList("npc");
+		List<Tile> none = Collections.emptyList();
+		NavProfile profile = new NavProfile(none, none, none, false, false);
+
+		int[] queries = new int[paths * 4];
+		for (int i = 0; i < paths; i++) {
+			queries[i * 4] = DISTANCE + r.nextInt(SIZE - DISTANCE * 2);
+			queries[i * 4 + 1] = DISTANCE + r.nextInt(SIZE - DISTANCE * 2);
+			queries[i * 4 + 2] = queries[i * 4] + r.nextInt(DISTANCE) - DISTANCE / 2;
+			queries[i * 4 + 3] = queries[i * 4 + 1] + r.nextInt(DISTANCE) - DISTANCE / 2;
+		}
+
+		Entity self = entities.get(0);
+		for (int run = 0; run < 3; run++) {
+			measure("AStarPathFinder", queries, (sx, sy, tx, ty) -> {
+				int o = DISTANCE + 5;
+				return new AStarPathFinder(EntityAI.constructMapFromWorld(self, sx, sy, w, o, none, none, none,
+						false, entities, scared), DISTANCE, false).findPath(null, o, o, tx - sx + o, ty - sy + o);
+			});
+			measure("NavPathFinder", queries, (sx, sy, tx, ty) -> new NavPathFinder(NavGrid.get(w, profile),
+					DISTANCE, w.getEntityGrid(), entities, scared).findPath(null, sx, sy, tx, ty));
+		}
+	}
+
+	/**
+	 * Finds every path and prints the rate.
+	 * @param name The name of the measurement.
+	 * @param queries The start and target positions of each path.
+	 * @param finder The function used to find a path.
+	 */
+	private static void measure(String name, int[] queries, Query finder) {
+		int found = 0;
+		long length = 0;
+		long t = System.nanoTime();
+		for (int i = 0; i < queries.length; i += 4) {
+			Path p = finder.find(queries[i], queries[i + 1], queries[i + 2], queries[i + 3]);
+			if (p != null) {
+				found++;
+				length += p.getLength();
+			}
+		}
+		double s = (System.nanoTime() - t) / 1e9;
+		System.out.printf("%s: %.0f paths/s, %d%% found, %.1f mean length%n", name, queries.length / 4 / s,
+				found * 400 / queries.length, length / (double) Math.max(found, 1));
+	}
+
+	/**
+	 * A function that finds a path.
+	 * 
+	 * @author Tomaso2468
+	 */
+	@FunctionalInterface
+	private interface Query {
+		/**
+		 * Finds a path.
+		 * @param sx The X position of the start tile.
+		 * @param sy The Y position of the start tile.
+		 * @param tx The X position of the target tile.
+		 * @param ty The Y position of the target tile.
+		 * @return A path or null.
+		 */
+		public Path find(int sx, int sy, int tx, int ty);
+	}
+}